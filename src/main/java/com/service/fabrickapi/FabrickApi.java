@@ -26,12 +26,33 @@
 
 package com.service.fabrickapi;
 
+import com.service.fabrickapi.configuration.BalancesProperties;
+import com.service.fabrickapi.configuration.CachingProperties;
+import com.service.fabrickapi.configuration.CoalescingProperties;
+import com.service.fabrickapi.configuration.Credentials;
+import com.service.fabrickapi.configuration.ExecutorProperties;
+import com.service.fabrickapi.configuration.HedgeProperties;
+import com.service.fabrickapi.configuration.HistoryProperties;
+import com.service.fabrickapi.configuration.LimiterProperties;
+import com.service.fabrickapi.configuration.OverviewProperties;
+import com.service.fabrickapi.configuration.PersistedFilterProperties;
+import com.service.fabrickapi.configuration.ResilienceProperties;
+import com.service.fabrickapi.configuration.RetryProperties;
+import com.service.fabrickapi.configuration.TransactionsProperties;
+import com.service.fabrickapi.configuration.UpstreamProperties;
+import com.service.fabrickapi.configuration.VirtualThreadProperties;
+import com.service.fabrickapi.configuration.WriteBehindProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 
 @SpringBootApplication
-@EnableConfigurationProperties(value = com.service.fabrickapi.configuration.Credentials.class)
+@EnableConfigurationProperties(value = {Credentials.class, UpstreamProperties.class, CoalescingProperties.class,
+        CachingProperties.class, WriteBehindProperties.class, PersistedFilterProperties.class,
+        HistoryProperties.class, TransactionsProperties.class, ExecutorProperties.class,
+        VirtualThreadProperties.class, BalancesProperties.class, OverviewProperties.class,
+        ResilienceProperties.class, RetryProperties.class, LimiterProperties.class,
+        HedgeProperties.class})
 public class FabrickApi {
 
     public static void main(String[] args) {
@@ -0,0 +1,151 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.service.fabrickapi.configuration.BalancesProperties;
+import com.service.fabrickapi.model.error.ErrorMessage;
+import com.service.fabrickapi.model.rest.AccountBalanceRest;
+import com.service.fabrickapi.model.rest.AccountBalanceResultRest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.service.fabrickapi.model.error.ErrorMessages.GATEWAY_TIMEOUT_ERROR;
+
+/**
+ * Resolves the balances of many accounts at once through the account cache. Cached balances, and loads already
+ * in flight, are answered locally; the others are loaded by the AccountBalanceLoader on the fabrick.io executor,
+ * at most {@code fabrick.balances.max-concurrency} at a time per batch, each completed load starting the next one.
+ * The whole batch waits at most {@code fabrick.balances.timeout}: accounts not resolved by then get a 504 error,
+ * and loads not started yet are dropped, while the ones in flight still fill the cache.
+ */
+@Component
+public class AccountBalanceBatchLoader {
+    private final Logger LOG = LoggerFactory.getLogger(AccountBalanceBatchLoader.class);
+    private final AsyncLoadingCache<Object, Object> accountCache;
+    private final BalancesProperties balancesProperties;
+
+    /**
+     * Constructs a new instance of the AccountBalanceBatchLoader.
+     *
+     * @param cacheManager       The CacheManager holding the asynchronous account cache.
+     * @param balancesProperties The batch size, load concurrency and deadline.
+     */
+    @Autowired
+    @SuppressWarnings("unchecked")
+    public AccountBalanceBatchLoader(CacheManager cacheManager, BalancesProperties balancesProperties) {
+        this((AsyncLoadingCache<Object, Object>) ((CaffeineCache) Objects.requireNonNull(cacheManager.getCache("account")))
+                .getAsyncCache(), balancesProperties);
+    }
+
+    AccountBalanceBatchLoader(AsyncLoadingCache<Object, Object> accountCache, BalancesProperties balancesProperties) {
+        this.accountCache = accountCache;
+        this.balancesProperties = balancesProperties;
+    }
+
+    public int maxAccounts() {
+        return balancesProperties.maxAccounts();
+    }
+
+    /**
+     * Retrieves the balances of the accounts.
+     *
+     * @param accountIds The IDs of the account owners, without duplicates.
+     * @return List<AccountBalanceResultRest> The balance or the error of each account, in the order of the IDs.
+     */
+    public List<AccountBalanceResultRest> getAccountBalances(List<Long> accountIds) {
+        long deadline = System.nanoTime() + balancesProperties.timeout().toNanos();
+        var balances = new ArrayList<CompletableFuture<Object>>(accountIds.size());
+        Queue<Integer> misses = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < accountIds.size(); i++) {
+            var cached = accountCache.getIfPresent(accountIds.get(i));
+            if (cached == null)
+                misses.add(i);
+            balances.add(cached != null ? cached : new CompletableFuture<>());
+        }
+        LOG.debug("BALANCES OF {} ACCOUNTS, {} CACHED", accountIds.size(), accountIds.size() - misses.size());
+
+        for (int started = 0; started < balancesProperties.maxConcurrency() && !misses.isEmpty(); started++)
+            loadNext(accountIds, balances, misses);
+        try {
+            CompletableFuture.allOf(balances.toArray(CompletableFuture[]::new))
+                    .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            LOG.warn("BALANCES OF {} ACCOUNTS NOT LOADED BEFORE THE DEADLINE", balances.stream().filter(f -> !f.isDone()).count());
+        } catch (ExecutionException e) {
+            // reported per account below
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            misses.clear();
+        }
+
+        var results = new ArrayList<AccountBalanceResultRest>(accountIds.size());
+        for (int i = 0; i < accountIds.size(); i++)
+            results.add(result(accountIds.get(i), balances.get(i)));
+        return results;
+    }
+
+    private void loadNext(List<Long> accountIds, List<CompletableFuture<Object>> balances, Queue<Integer> misses) {
+        var next = misses.poll();
+        if (next == null)
+            return;
+        accountCache.get(accountIds.get(next)).whenComplete((balance, e) -> {
+            if (e != null)
+                balances.get(next).completeExceptionally(e);
+            else
+                balances.get(next).complete(balance);
+            loadNext(accountIds, balances, misses);
+        });
+    }
+
+    private static AccountBalanceResultRest result(Long accountId, CompletableFuture<Object> balance) {
+        if (!balance.isDone())
+            return new AccountBalanceResultRest(accountId, null, new ErrorMessage(GATEWAY_TIMEOUT_ERROR.getMessage(), new Date()));
+        try {
+            return new AccountBalanceResultRest(accountId, (AccountBalanceRest) balance.join(), null);
+        } catch (CompletionException | CancellationException e) {
+            var cause = e.getCause() != null ? e.getCause() : e;
+            return new AccountBalanceResultRest(accountId, null, new ErrorMessage(cause.getLocalizedMessage(), new Date()));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.service.fabrickapi.configuration.CachingProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Freshness of the cached account balances. The account cache refresh-after-write is the soft TTL: past it the
+ * cached balance is still returned right away while a background refresh runs, and is kept if that refresh fails.
+ * Its expire-after-write is the hard TTL, past which the balance is dropped and the next read waits for the upstream.
+ */
+@Component
+public class AccountBalanceFreshness {
+    private final Cache<Object, Object> accountCache;
+    private final Duration softTtl;
+
+    /**
+     * Constructs a new instance of the AccountBalanceFreshness.
+     *
+     * @param cacheManager      The CacheManager holding the account cache.
+     * @param cachingProperties The account cache spec, whose refresh-after-write is the soft TTL.
+     */
+    @Autowired
+    public AccountBalanceFreshness(CacheManager cacheManager, CachingProperties cachingProperties) {
+        this(((CaffeineCache) Objects.requireNonNull(cacheManager.getCache("account"))).getNativeCache(),
+                cachingProperties.account().refreshAfterWrite());
+    }
+
+    AccountBalanceFreshness(Cache<Object, Object> accountCache, Duration softTtl) {
+        this.accountCache = accountCache;
+        this.softTtl = softTtl;
+    }
+
+    /**
+     * Time since the cached balance of the account was loaded or last refreshed.
+     *
+     * @param accountId The ID of the account owner.
+     * @return Optional<Duration> The age of the balance, empty if it is not cached.
+     */
+    public Optional<Duration> ageOf(Long accountId) {
+        return accountCache.policy().expireAfterWrite().flatMap(expiration -> expiration.ageOf(accountId));
+    }
+
+    /**
+     * Response headers describing the balance just served: its Age in seconds, which tells a client it is stale once it
+     * exceeds the max-age of the Cache-Control. No Warning is sent, as RFC 9111 made the header obsolete.
+     *
+     * @param accountId The ID of the account owner.
+     * @return HttpHeaders The freshness headers, empty if the balance is not cached.
+     */
+    public HttpHeaders headers(Long accountId) {
+        var headers = new HttpHeaders();
+        ageOf(accountId).ifPresent(age -> headers.set(HttpHeaders.AGE, String.valueOf(age.toSeconds())));
+        return headers;
+    }
+
+    /**
+     * Cache-Control of the balance just served: private, as it is the account holder's, with a max-age of what is
+     * left of the soft TTL, after which the balance may have been refreshed.
+     *
+     * @param accountId The ID of the account owner.
+     * @return CacheControl The Cache-Control of the balance, max-age 0 without a soft TTL.
+     */
+    public CacheControl cacheControl(Long accountId) {
+        if (softTtl == null)
+            return CacheControl.maxAge(Duration.ZERO).cachePrivate();
+        var left = ageOf(accountId).map(softTtl::minus).orElse(softTtl);
+        return CacheControl.maxAge(left.isNegative() ? Duration.ZERO : left).cachePrivate();
+    }
+}
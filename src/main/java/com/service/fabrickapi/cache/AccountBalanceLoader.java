@@ -0,0 +1,75 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.cache;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.service.fabrickapi.service.implementation.AccountServiceImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Loads and refreshes the entries of the account cache through {@link AccountServiceImpl#loadAccountBalance(Long)},
+ * which bypasses the cache.
+ * A failed load or refresh is logged here, on one line with its account, as Caffeine's own warnings of a failed
+ * asynchronous load or refresh are turned off in logback-spring.xml.
+ */
+@Component
+public class AccountBalanceLoader implements CacheLoader<Object, Object> {
+    private final Logger LOG = LoggerFactory.getLogger(AccountBalanceLoader.class);
+    private final ObjectProvider<AccountServiceImpl> accountService;
+
+    /**
+     * Constructs a new instance of the AccountBalanceLoader.
+     *
+     * @param accountService The AccountServiceImpl, resolved on first load as it is itself advised by the cache.
+     */
+    @Autowired
+    public AccountBalanceLoader(ObjectProvider<AccountServiceImpl> accountService) {
+        this.accountService = accountService;
+    }
+
+    @Override
+    public Object load(Object accountId) {
+        try {
+            return accountService.getObject().loadAccountBalance((Long) accountId);
+        } catch (RuntimeException e) {
+            LOG.warn("CANNOT LOAD ACCOUNT BALANCE OF {} - {}", accountId, e.getMessage());
+            throw e;
+        }
+    }
+
+    @Override
+    public Object reload(Object accountId, Object oldValue) {
+        try {
+            return accountService.getObject().loadAccountBalance((Long) accountId);
+        } catch (RuntimeException e) {
+            LOG.warn("CANNOT REFRESH ACCOUNT BALANCE OF {}, SERVING THE CACHED ONE - {}", accountId, e.getMessage());
+            throw e;
+        }
+    }
+}
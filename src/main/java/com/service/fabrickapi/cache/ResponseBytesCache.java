@@ -0,0 +1,347 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.service.fabrickapi.configuration.CacheConfiguration;
+import com.service.fabrickapi.configuration.CachingProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.function.SingletonSupplier;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.accept.ContentNegotiationManager;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Encoded bodies of the hot GET responses, kept per (endpoint, account, parameters, media type) with a strong ETag,
+ * the MD5 of the bytes. A response is encoded once by the MVC message converters and then written as bytes, and a
+ * request whose If-None-Match holds the ETag is answered 304 without a body.
+ * An entry remembers the object it was encoded from and is only served while the service returns that same instance,
+ * or a list of the same instances: a balance refreshed or reloaded in the account cache, or transactions reloaded in
+ * the transactions cache, are encoded again. Entries of an account are also dropped when its balance is evicted.
+ * Each body also carries a Last-Modified, the time its ETag last changed, so If-Modified-Since is answered too.
+ * An endpoint whose value may be up to max-age old can skip the service altogether while its entry was validated
+ * against a value of the service, encoded or found the same, less than max-age ago.
+ * Entries are kept in the "responses" Caffeine cache, weighing their size in bytes.
+ */
+@Component
+public class ResponseBytesCache {
+    private final Logger LOG = LoggerFactory.getLogger(ResponseBytesCache.class);
+    private final Cache<Key, EncodedResponse> responses;
+    private final Supplier<List<HttpMessageConverter<?>>> converters;
+    private final Supplier<ContentNegotiationManager> contentNegotiationManager;
+    private final Clock clock;
+
+    /**
+     * Constructs a new instance of the ResponseBytesCache. The MVC beans are looked up on first use, as they
+     * depend on the CacheManager this cache is registered in.
+     *
+     * @param cachingProperties         The bounds of the responses cache.
+     * @param httpMessageConverters     The MVC message converters encoding the bodies.
+     * @param contentNegotiationManager The MVC content negotiation manager resolving the accepted media types.
+     */
+    @Autowired
+    public ResponseBytesCache(CachingProperties cachingProperties,
+                              ObjectProvider<HttpMessageConverters> httpMessageConverters,
+                              @Qualifier("mvcContentNegotiationManager") ObjectProvider<ContentNegotiationManager> contentNegotiationManager) {
+        this(cachingProperties, SingletonSupplier.of(() -> httpMessageConverters.getObject().getConverters()),
+                SingletonSupplier.of(contentNegotiationManager::getObject));
+    }
+
+    /**
+     * Constructs a new instance of the ResponseBytesCache with the given converters and content negotiation.
+     *
+     * @param cachingProperties         The bounds of the responses cache.
+     * @param converters                The message converters encoding the bodies, in order of preference.
+     * @param contentNegotiationManager The content negotiation manager resolving the accepted media types.
+     */
+    public ResponseBytesCache(CachingProperties cachingProperties,
+                              Supplier<List<HttpMessageConverter<?>>> converters,
+                              Supplier<ContentNegotiationManager> contentNegotiationManager) {
+        this(cachingProperties, converters, contentNegotiationManager, Clock.systemUTC());
+    }
+
+    ResponseBytesCache(CachingProperties cachingProperties,
+                       Supplier<List<HttpMessageConverter<?>>> converters,
+                       Supplier<ContentNegotiationManager> contentNegotiationManager,
+                       Clock clock) {
+        this.clock = clock;
+        this.converters = converters;
+        this.contentNegotiationManager = contentNegotiationManager;
+        this.responses = CacheConfiguration.caffeine(cachingProperties.responses(),
+                (Key key, EncodedResponse response) -> response.body().length).build();
+    }
+
+    /**
+     * Builds the 200 response of a GET endpoint from the encoded body of the value, encoding it on a miss.
+     * The ETag and Last-Modified are checked against If-None-Match and If-Modified-Since by Spring MVC, which turns
+     * the response into a 304.
+     *
+     * @param request   The current request, whose Accept header and mapping select the media type.
+     * @param endpoint  The endpoint name.
+     * @param accountId The ID of the account owner.
+     * @param params    The request parameters the value depends on, empty if none.
+     * @param value     The value returned by the service.
+     * @param type      The declared type of the value, as a generic type for lists.
+     * @param headers   Further headers of the response.
+     * @return ResponseEntity<byte[]> The encoded body with its Content-Type, ETag and Last-Modified.
+     * @throws HttpMediaTypeNotAcceptableException If none of the media types the endpoint produces is accepted.
+     */
+    public ResponseEntity<byte[]> ok(NativeWebRequest request, String endpoint, Long accountId, String params,
+                                     Object value, Type type, HttpHeaders headers) throws HttpMediaTypeNotAcceptableException {
+        var key = new Key(endpoint, accountId, params, mediaType(request));
+        var response = responses.getIfPresent(key);
+        if (response == null || !sameSource(response.source(), value)) {
+            var previous = response;
+            response = encode(value, type, key.mediaType());
+            if (previous != null && previous.eTag().equals(response.eTag()))
+                response = response.modifiedAt(previous.lastModified());
+            responses.put(key, response);
+            LOG.debug("{} RESPONSE OF ACCOUNT {} ENCODED AS {}", endpoint.toUpperCase(), accountId, key.mediaType());
+        } else {
+            response.validate(clock.instant());
+        }
+        return toResponseEntity(response, headers);
+    }
+
+    /**
+     * Builds the 200 response of a GET endpoint from its encoded body if that body was last found to match a value of
+     * the service less than maxAge ago, so that the service is not called: the response is then as fresh as its
+     * Cache-Control max-age promises.
+     *
+     * @param request   The current request, whose Accept header and mapping select the media type.
+     * @param endpoint  The endpoint name.
+     * @param accountId The ID of the account owner.
+     * @param params    The request parameters the value depends on, empty if none.
+     * @param maxAge    The largest age of the body served.
+     * @param headers   Further headers of the response.
+     * @return Optional<ResponseEntity<byte[]>> The encoded body with its Content-Type, ETag and Last-Modified,
+     * empty if it is not cached or is too old.
+     * @throws HttpMediaTypeNotAcceptableException If none of the media types the endpoint produces is accepted.
+     */
+    public Optional<ResponseEntity<byte[]>> fresh(NativeWebRequest request, String endpoint, Long accountId, String params,
+                                                  Duration maxAge, HttpHeaders headers) throws HttpMediaTypeNotAcceptableException {
+        var key = new Key(endpoint, accountId, params, mediaType(request));
+        var response = responses.getIfPresent(key);
+        if (response == null || Duration.between(response.validated(), clock.instant()).compareTo(maxAge) >= 0)
+            return Optional.empty();
+        LOG.debug("{} RESPONSE OF ACCOUNT {} SERVED WITHIN ITS MAX-AGE", endpoint.toUpperCase(), accountId);
+        return Optional.of(toResponseEntity(response, headers));
+    }
+
+    /**
+     * Drops every response cached for the account.
+     *
+     * @param accountId The ID of the account owner.
+     */
+    public void evict(Long accountId) {
+        responses.asMap().keySet().removeIf(key -> key.accountId().equals(accountId));
+    }
+
+    /**
+     * The underlying Caffeine cache, registered as the "responses" cache of the CacheManager.
+     */
+    @SuppressWarnings("unchecked")
+    public Cache<Object, Object> nativeCache() {
+        return (Cache<Object, Object>) (Cache<?, ?>) responses;
+    }
+
+    /**
+     * The media type Spring MVC would write: the most specific accepted one among those the endpoint produces.
+     */
+    MediaType mediaType(NativeWebRequest request) throws HttpMediaTypeNotAcceptableException {
+        @SuppressWarnings("unchecked")
+        var mapped = (Collection<MediaType>) request.getAttribute(
+                HandlerMapping.PRODUCIBLE_MEDIA_TYPES_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        var producible = mapped == null || mapped.isEmpty() ? List.of(MediaType.APPLICATION_JSON) : List.copyOf(mapped);
+        var compatible = new ArrayList<MediaType>();
+        for (var accepted : contentNegotiationManager.get().resolveMediaTypes(request))
+            for (var produced : producible)
+                if (accepted.isCompatibleWith(produced))
+                    compatible.add(produced.copyQualityValue(accepted));
+        MimeTypeUtils.sortBySpecificity(compatible);
+        return compatible.stream()
+                .filter(MediaType::isConcrete)
+                .findFirst()
+                .map(MediaType::removeQualityValue)
+                .orElseThrow(() -> new HttpMediaTypeNotAcceptableException(producible));
+    }
+
+    private static ResponseEntity<byte[]> toResponseEntity(EncodedResponse response, HttpHeaders headers) {
+        return ResponseEntity.ok()
+                .headers(headers)
+                .contentType(response.contentType())
+                .eTag(response.eTag())
+                .lastModified(response.lastModified())
+                .body(response.body());
+    }
+
+    @SuppressWarnings("unchecked")
+    private EncodedResponse encode(Object value, Type type, MediaType mediaType) {
+        var message = new BufferedOutputMessage();
+        try {
+            for (var converter : converters.get()) {
+                if (converter instanceof GenericHttpMessageConverter<?> generic
+                        && generic.canWrite(type, value.getClass(), mediaType)) {
+                    ((GenericHttpMessageConverter<Object>) generic).write(value, type, mediaType, message);
+                    return message.toResponse(value, mediaType, clock.instant());
+                }
+                if (converter.canWrite(value.getClass(), mediaType)) {
+                    ((HttpMessageConverter<Object>) converter).write(value, mediaType, message);
+                    return message.toResponse(value, mediaType, clock.instant());
+                }
+            }
+        } catch (IOException e) {
+            throw new HttpMessageNotWritableException("Could not encode " + value.getClass().getSimpleName(), e);
+        }
+        throw new HttpMessageNotWritableException("No converter for " + value.getClass().getSimpleName()
+                + " as " + mediaType);
+    }
+
+    /**
+     * Whether the value is the one the response was encoded from: the same instance, or a list of the same instances.
+     */
+    static boolean sameSource(Object source, Object value) {
+        if (source == value)
+            return true;
+        if (!(source instanceof List<?> sourceList) || !(value instanceof List<?> valueList)
+                || sourceList.size() != valueList.size())
+            return false;
+        for (int i = 0; i < sourceList.size(); i++)
+            if (sourceList.get(i) != valueList.get(i))
+                return false;
+        return true;
+    }
+
+    record Key(String endpoint, Long accountId, String params, MediaType mediaType) {
+    }
+
+    /**
+     * An encoded body, with the time it was last validated: encoded, or found encoded from the value the service returned.
+     * The validation time is updated in place, so that a hit does not write the entry again.
+     */
+    static final class EncodedResponse {
+        private final Object source;
+        private final byte[] body;
+        private final MediaType contentType;
+        private final String eTag;
+        private final Instant lastModified;
+        private volatile Instant validated;
+
+        EncodedResponse(Object source, byte[] body, MediaType contentType, String eTag, Instant lastModified, Instant validated) {
+            this.source = source;
+            this.body = body;
+            this.contentType = contentType;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.validated = validated;
+        }
+
+        Object source() {
+            return source;
+        }
+
+        byte[] body() {
+            return body;
+        }
+
+        MediaType contentType() {
+            return contentType;
+        }
+
+        String eTag() {
+            return eTag;
+        }
+
+        Instant lastModified() {
+            return lastModified;
+        }
+
+        Instant validated() {
+            return validated;
+        }
+
+        void validate(Instant now) {
+            validated = now;
+        }
+
+        EncodedResponse modifiedAt(Instant lastModified) {
+            return new EncodedResponse(source, body, contentType, eTag, lastModified, validated);
+        }
+    }
+
+    /**
+     * Collects what a message converter writes.
+     */
+    private static final class BufferedOutputMessage implements HttpOutputMessage {
+        private final HttpHeaders headers = new HttpHeaders();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+
+        @Override
+        public OutputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        EncodedResponse toResponse(Object source, MediaType mediaType, Instant now) {
+            var bytes = body.toByteArray();
+            var contentType = headers.getContentType() != null ? headers.getContentType() : mediaType;
+            return new EncodedResponse(source, bytes, contentType, "\"" + DigestUtils.md5DigestAsHex(bytes) + "\"", now, now);
+        }
+    }
+}
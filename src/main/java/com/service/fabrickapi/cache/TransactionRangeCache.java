@@ -0,0 +1,228 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.service.fabrickapi.configuration.CacheConfiguration;
+import com.service.fabrickapi.configuration.CachingProperties;
+import com.service.fabrickapi.configuration.ServiceExecutors;
+import com.service.fabrickapi.model.rest.TransactionRest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+
+/**
+ * Per-account cache of transactions remembering which accounting-date intervals it fully covers.
+ * A requested range inside the covered intervals is answered locally, otherwise only the uncovered gaps
+ * are loaded and merged in. Coverage never extends past yesterday: today's transactions can still change,
+ * so a range reaching today always reloads it.
+ * Accounts are kept in the "transactions" Caffeine cache, weighing the number of transactions they hold.
+ * Several gaps of one range are loaded concurrently on the fabrick.io executor.
+ */
+@Component
+public class TransactionRangeCache {
+    private final Logger LOG = LoggerFactory.getLogger(TransactionRangeCache.class);
+    private final Cache<Long, AccountTransactions> accounts;
+    private final Executor io;
+    private final Clock clock;
+
+    /**
+     * Constructs a new instance of the TransactionRangeCache.
+     *
+     * @param cachingProperties The bounds of the transactions cache.
+     * @param serviceExecutors  The executors whose io executor loads the gaps.
+     */
+    @Autowired
+    public TransactionRangeCache(CachingProperties cachingProperties, ServiceExecutors serviceExecutors) {
+        this(cachingProperties, serviceExecutors.io(), Clock.systemDefaultZone());
+    }
+
+    TransactionRangeCache(CachingProperties cachingProperties, Executor io, Clock clock) {
+        this.io = io;
+        this.clock = clock;
+        this.accounts = CacheConfiguration.caffeine(cachingProperties.transactions(),
+                (Long accountId, AccountTransactions account) -> account.weight()).build();
+    }
+
+    /**
+     * Retrieves the transactions of the account booked between the two accounting dates, both inclusive.
+     *
+     * @param accountId          The ID of the account owner.
+     * @param fromAccountingDate The first accounting date of the range.
+     * @param toAccountingDate   The last accounting date of the range.
+     * @param loader             Loads the transactions of a gap the cache does not cover, with the same range semantics.
+     * @return List<TransactionRest> The transactions of the range, unordered.
+     */
+    public List<TransactionRest> getTransactions(Long accountId,
+                                                 LocalDate fromAccountingDate,
+                                                 LocalDate toAccountingDate,
+                                                 BiFunction<LocalDate, LocalDate, List<TransactionRest>> loader) {
+        var account = accounts.get(accountId, id -> new AccountTransactions());
+        var transactions = new ArrayList<TransactionRest>();
+        List<LocalDate[]> gaps;
+
+        account.lock.lock();
+        try {
+            gaps = account.gaps(fromAccountingDate, toAccountingDate);
+            account.collect(fromAccountingDate, toAccountingDate, gaps, transactions);
+        } finally {
+            account.lock.unlock();
+        }
+        if (gaps.isEmpty()) {
+            LOG.debug("TRANSACTIONS OF ACCOUNT {} FROM {} TO {} SERVED FROM CACHE", accountId, fromAccountingDate, toAccountingDate);
+            return transactions;
+        }
+
+        var yesterday = LocalDate.now(clock).minusDays(1);
+        var loadedGaps = ServiceExecutors.invokeAll(gaps, gap -> {
+            LOG.debug("LOADING TRANSACTIONS OF ACCOUNT {} FROM {} TO {}", accountId, gap[0], gap[1]);
+            return loader.apply(gap[0], gap[1]);
+        }, io);
+        for (int i = 0; i < gaps.size(); i++) {
+            var gap = gaps.get(i);
+            var loaded = loadedGaps.get(i);
+            transactions.addAll(loaded);
+            account.lock.lock();
+            try {
+                account.merge(gap[0], gap[1], loaded, yesterday);
+            } finally {
+                account.lock.unlock();
+            }
+        }
+        // written again to update its weight
+        accounts.put(accountId, account);
+        return transactions;
+    }
+
+    /**
+     * Drops everything cached for the account.
+     *
+     * @param accountId The ID of the account owner.
+     */
+    public void evict(Long accountId) {
+        accounts.invalidate(accountId);
+    }
+
+    /**
+     * The underlying Caffeine cache, registered as the "transactions" cache of the CacheManager.
+     */
+    @SuppressWarnings("unchecked")
+    public Cache<Object, Object> nativeCache() {
+        return (Cache<Object, Object>) (Cache<?, ?>) accounts;
+    }
+
+    /**
+     * @param transactionRest The transaction.
+     * @return LocalDate The accounting date of the transaction, as the Fabrick API dates are parsed at UTC midnight.
+     */
+    public static LocalDate accountingDate(TransactionRest transactionRest) {
+        return transactionRest.accountingDate() == null ? null
+                : transactionRest.accountingDate().toInstant().atOffset(ZoneOffset.UTC).toLocalDate();
+    }
+
+    /**
+     * Covered intervals (first to last accounting date, disjoint and non-adjacent) and cached transactions of one account.
+     * Its lock is held to find the gaps and to merge a loaded gap, never while a gap is loaded from the Fabrick API.
+     */
+    private static final class AccountTransactions {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final NavigableMap<LocalDate, LocalDate> covered = new TreeMap<>();
+        private final NavigableMap<LocalDate, List<TransactionRest>> byAccountingDate = new TreeMap<>();
+        private volatile int weight = 1;
+
+        int weight() {
+            return weight;
+        }
+
+        List<LocalDate[]> gaps(LocalDate from, LocalDate to) {
+            var gaps = new ArrayList<LocalDate[]>();
+            var cursor = from;
+            var floor = covered.floorEntry(from);
+            if (floor != null && !floor.getValue().isBefore(from))
+                cursor = floor.getValue().plusDays(1);
+            for (var interval : covered.subMap(from, false, to, true).entrySet()) {
+                if (cursor.isAfter(to))
+                    break;
+                if (interval.getKey().isAfter(cursor))
+                    gaps.add(new LocalDate[]{cursor, interval.getKey().minusDays(1)});
+                if (!interval.getValue().isBefore(cursor))
+                    cursor = interval.getValue().plusDays(1);
+            }
+            if (!cursor.isAfter(to))
+                gaps.add(new LocalDate[]{cursor, to});
+            return gaps;
+        }
+
+        void collect(LocalDate from, LocalDate to, List<LocalDate[]> gaps, List<TransactionRest> transactions) {
+            for (var day : byAccountingDate.subMap(from, true, to, true).entrySet()) {
+                if (gaps.stream().noneMatch(gap -> !day.getKey().isBefore(gap[0]) && !day.getKey().isAfter(gap[1])))
+                    transactions.addAll(day.getValue());
+            }
+        }
+
+        void merge(LocalDate from, LocalDate to, List<TransactionRest> loaded, LocalDate yesterday) {
+            byAccountingDate.subMap(from, true, to, true).clear();
+            for (var transactionRest : loaded) {
+                var accountingDate = accountingDate(transactionRest);
+                if (accountingDate != null && !accountingDate.isBefore(from) && !accountingDate.isAfter(to))
+                    byAccountingDate.computeIfAbsent(accountingDate, day -> new ArrayList<>()).add(transactionRest);
+            }
+            weight = 1 + byAccountingDate.values().stream().mapToInt(List::size).sum();
+            if (from.isAfter(yesterday))
+                return;
+            cover(from, to.isAfter(yesterday) ? yesterday : to);
+        }
+
+        private void cover(LocalDate from, LocalDate to) {
+            var start = from;
+            var end = to;
+            var floor = covered.floorEntry(from);
+            if (floor != null && !floor.getValue().plusDays(1).isBefore(from)) {
+                start = floor.getKey();
+                if (floor.getValue().isAfter(end))
+                    end = floor.getValue();
+            }
+            var overlapping = covered.subMap(start, true, end.plusDays(1), true);
+            for (var interval : overlapping.values()) {
+                if (interval.isAfter(end))
+                    end = interval;
+            }
+            overlapping.clear();
+            covered.put(start, end);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.configuration;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Weigher;
+import com.service.fabrickapi.cache.AccountBalanceLoader;
+import com.service.fabrickapi.cache.ResponseBytesCache;
+import com.service.fabrickapi.cache.TransactionRangeCache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Caffeine caches: bounded by weight, expiring after write and evicting with the frequency-aware W-TinyLFU policy.
+ * Every cache records its stats, bound to the cache.* metrics and listed by /actuator/caches.
+ * Balance loads and refreshes call the Fabrick API, so they run on the fabrick.io executor rather than Caffeine's
+ * default ForkJoinPool.commonPool(). The account cache is asynchronous: a synchronous loading cache runs the load
+ * inside a ConcurrentHashMap bin lock, pinning the carrier of a virtual thread for the whole upstream call, whereas
+ * here the caller only waits on the load's future.
+ * An account evicted from the account cache, as after a transfer, also drops its encoded responses.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfiguration {
+
+    @Bean
+    public CacheManager cacheManager(CachingProperties cachingProperties,
+                                     AccountBalanceLoader accountBalanceLoader,
+                                     TransactionRangeCache transactionRangeCache,
+                                     ResponseBytesCache responseBytesCache,
+                                     ServiceExecutors serviceExecutors) {
+        var cacheManager = new CaffeineCacheManager();
+        cacheManager.setAllowNullValues(false);
+        cacheManager.registerCustomCache("account", caffeine(cachingProperties.account(), Weigher.singletonWeigher())
+                .executor(serviceExecutors.io())
+                .removalListener((Object accountId, Object balance, RemovalCause cause) -> {
+                    if (cause == RemovalCause.EXPLICIT && accountId instanceof Long id)
+                        responseBytesCache.evict(id);
+                })
+                .buildAsync(accountBalanceLoader));
+        cacheManager.registerCustomCache("transactions", transactionRangeCache.nativeCache());
+        cacheManager.registerCustomCache("responses", responseBytesCache.nativeCache());
+        return cacheManager;
+    }
+
+    /**
+     * Caffeine builder bounded by the spec and weighing entries with the weigher, with stats recording on.
+     */
+    public static <K, V> Caffeine<K, V> caffeine(CachingProperties.Spec spec, Weigher<? super K, ? super V> weigher) {
+        Caffeine<K, V> caffeine = Caffeine.newBuilder()
+                .maximumWeight(spec.maximumWeight())
+                .expireAfterWrite(spec.expireAfterWrite())
+                .recordStats()
+                .weigher(weigher);
+        if (spec.refreshAfterWrite() != null)
+            caffeine.refreshAfterWrite(spec.refreshAfterWrite());
+        return caffeine;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "fabrick.cache")
+public record CachingProperties(@DefaultValue Spec account,
+                                @DefaultValue Spec transactions,
+                                @DefaultValue Spec responses) {
+
+    /**
+     * Bounds of one cache.
+     *
+     * @param maximumWeight     The total weight kept: balances weigh 1, accounts of the transactions cache weigh their transaction count,
+     *                          encoded responses their size in bytes.
+     * @param expireAfterWrite  The age after which an entry is dropped.
+     * @param refreshAfterWrite The age after which a read reloads the entry in the background, none when unset.
+     */
+    public record Spec(@DefaultValue("10000") long maximumWeight,
+                       @DefaultValue("10m") Duration expireAfterWrite,
+                       Duration refreshAfterWrite) {
+    }
+}
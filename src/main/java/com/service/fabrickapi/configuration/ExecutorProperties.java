@@ -0,0 +1,53 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "fabrick.executors")
+public record ExecutorProperties(@DefaultValue Cpu cpu,
+                                 @DefaultValue Io io) {
+
+    /**
+     * The platform thread pool of CPU-bound mapping and ranking work.
+     *
+     * @param threads       The pool threads, the available processors when 0.
+     * @param queueCapacity The tasks waiting for a thread; past it the submitting thread runs the task itself.
+     * @param chunkSize     The elements ranked by one task; shorter lists are ranked by the calling thread.
+     */
+    public record Cpu(@DefaultValue("0") int threads,
+                      @DefaultValue("1000") int queueCapacity,
+                      @DefaultValue("50000") int chunkSize) {
+    }
+
+    /**
+     * The virtual-thread executor of blocking I/O: upstream fetches, cache refreshes and database writes.
+     *
+     * @param maxConcurrency The tasks running at once; the others wait for a permit, counted as queued.
+     */
+    public record Io(@DefaultValue("256") int maxConcurrency) {
+    }
+}
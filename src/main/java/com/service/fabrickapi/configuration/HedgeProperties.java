@@ -0,0 +1,53 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Hedging of the balance and transactions reads of the Fabrick API.
+ *
+ * @param enabled        Whether a read still unanswered after the hedge delay is sent a second time.
+ * @param percentile     The percentile of the recent read latencies the hedge delay is set to.
+ * @param minDelay       The shortest hedge delay.
+ * @param maxDelay       The longest hedge delay.
+ * @param windowSize     The recent read latencies of an operation the percentile is taken from.
+ * @param minimumCalls   The reads of an operation measured before it is hedged.
+ * @param budgetRatio    The hedge tokens each read deposits into the budget of its operation, a hedge taking one.
+ * @param budgetCapacity The hedge tokens the budget of an operation holds at most, and starts with.
+ */
+@ConfigurationProperties(prefix = "fabrick.hedge")
+public record HedgeProperties(@DefaultValue("false") boolean enabled,
+                              @DefaultValue("95") double percentile,
+                              @DefaultValue("10ms") Duration minDelay,
+                              @DefaultValue("2s") Duration maxDelay,
+                              @DefaultValue("1000") int windowSize,
+                              @DefaultValue("100") int minimumCalls,
+                              @DefaultValue("0.05") double budgetRatio,
+                              @DefaultValue("10") int budgetCapacity) {
+}
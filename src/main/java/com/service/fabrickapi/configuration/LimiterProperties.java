@@ -0,0 +1,51 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Adaptive limit of the calls of each Fabrick API operation in flight at once, the same bounds for every operation.
+ *
+ * @param enabled       Whether calls are limited, off by default as the circuit breakers and bulkheads already bound them.
+ * @param initialLimit  The limit before any call completed.
+ * @param minLimit      The lowest the limit goes.
+ * @param maxLimit      The highest the limit goes.
+ * @param maxWait       How long a call waits for the calls in flight to drop under the limit before it is rejected.
+ * @param backoffRatio  The factor the limit is multiplied by when a call times out or the upstream is overloaded.
+ * @param probeInterval The calls after which the no-load round trip time is measured again.
+ */
+@ConfigurationProperties(prefix = "fabrick.limiter")
+public record LimiterProperties(@DefaultValue("false") boolean enabled,
+                                @DefaultValue("20") int initialLimit,
+                                @DefaultValue("4") int minLimit,
+                                @DefaultValue("200") int maxLimit,
+                                @DefaultValue("50ms") Duration maxWait,
+                                @DefaultValue("0.9") double backoffRatio,
+                                @DefaultValue("1000") int probeInterval) {
+}
@@ -0,0 +1,61 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "fabrick.resilience")
+public record ResilienceProperties(@DefaultValue("true") boolean enabled,
+                                   @DefaultValue Guard balance,
+                                   @DefaultValue Guard transactions,
+                                   @DefaultValue Guard transfers) {
+
+    /**
+     * Circuit breaker and bulkhead of one upstream operation.
+     *
+     * @param windowSize            The most recent calls whose outcomes decide whether the circuit opens.
+     * @param minimumCalls          The calls the window needs before its rates are considered.
+     * @param failureRateThreshold  The percentage of failed calls in the window at which the circuit opens.
+     * @param slowCallDuration      The duration past which a call is slow.
+     * @param slowCallRateThreshold The percentage of slow calls in the window at which the circuit opens.
+     * @param openDuration          How long an open circuit rejects calls before letting trial calls through.
+     * @param halfOpenCalls         The trial calls whose outcomes decide whether the circuit closes again.
+     * @param maxConcurrentCalls    The calls of the operation in flight at once.
+     * @param maxWait               How long a call waits for a free slot before it is rejected.
+     */
+    public record Guard(@DefaultValue("50") int windowSize,
+                        @DefaultValue("10") int minimumCalls,
+                        @DefaultValue("50") int failureRateThreshold,
+                        @DefaultValue("3s") Duration slowCallDuration,
+                        @DefaultValue("80") int slowCallRateThreshold,
+                        @DefaultValue("30s") Duration openDuration,
+                        @DefaultValue("3") int halfOpenCalls,
+                        @DefaultValue("50") int maxConcurrentCalls,
+                        @DefaultValue("0ms") Duration maxWait) {
+    }
+}
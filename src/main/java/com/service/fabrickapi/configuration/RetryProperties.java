@@ -0,0 +1,49 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Retries of the calls of the Fabrick API.
+ *
+ * @param enabled        Whether failed calls are retried.
+ * @param maxAttempts    The attempts of a call, the first one included.
+ * @param initialBackoff The shortest wait before a retry.
+ * @param maxBackoff     The longest wait before a retry.
+ * @param budgetRatio    The retry tokens each call deposits into the budget of its operation, a retry taking one.
+ * @param budgetCapacity The retry tokens the budget of an operation holds at most, and starts with.
+ */
+@ConfigurationProperties(prefix = "fabrick.retry")
+public record RetryProperties(@DefaultValue("true") boolean enabled,
+                              @DefaultValue("3") int maxAttempts,
+                              @DefaultValue("100ms") Duration initialBackoff,
+                              @DefaultValue("2s") Duration maxBackoff,
+                              @DefaultValue("0.1") double budgetRatio,
+                              @DefaultValue("10") int budgetCapacity) {
+}
@@ -0,0 +1,174 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.configuration;
+
+import com.service.fabrickapi.shared.BoundedVirtualExecutor;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import io.micrometer.core.instrument.internal.TimedExecutorService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The executors of the service layer, in place of the JVM-wide ForkJoinPool.commonPool():
+ * a bounded platform pool, "fabrick.cpu", for CPU-bound mapping and ranking, and a virtual-thread executor,
+ * "fabrick.io", for blocking upstream calls, cache refreshes and database writes.
+ * Both publish executor.active, executor.queued, executor.pool.max and the executor and executor.idle timers,
+ * tagged with their name: cpu through ExecutorServiceMetrics, io, which it cannot bind, through gauges of its own.
+ * The holder is not an Executor bean itself, which would replace Spring Boot's applicationTaskExecutor.
+ */
+@Component
+public class ServiceExecutors {
+    public static final String CPU = "fabrick.cpu";
+    public static final String IO = "fabrick.io";
+    private final Logger LOG = LoggerFactory.getLogger(ServiceExecutors.class);
+    private final ExecutorService cpu;
+    private final ExecutorService io;
+    private final int cpuChunkSize;
+
+    /**
+     * Constructs a new instance of the ServiceExecutors.
+     *
+     * @param executorProperties The sizes of the executors.
+     * @param meterRegistry      The registry of the executor metrics.
+     */
+    @Autowired
+    public ServiceExecutors(ExecutorProperties executorProperties, MeterRegistry meterRegistry) {
+        var threads = executorProperties.cpu().threads() > 0
+                ? executorProperties.cpu().threads()
+                : Runtime.getRuntime().availableProcessors();
+        var cpuPool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(executorProperties.cpu().queueCapacity()),
+                Thread.ofPlatform().name("fabrick-cpu-", 0).daemon().factory(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.cpu = ExecutorServiceMetrics.monitor(meterRegistry, cpuPool, CPU);
+        this.cpuChunkSize = executorProperties.cpu().chunkSize();
+
+        var ioThreads = new BoundedVirtualExecutor("fabrick-io-", executorProperties.io().maxConcurrency());
+        Gauge.builder("executor.active", ioThreads, BoundedVirtualExecutor::getActiveCount)
+                .tag("name", IO).description("The approximate number of threads that are actively executing tasks")
+                .baseUnit("threads").register(meterRegistry);
+        Gauge.builder("executor.queued", ioThreads, BoundedVirtualExecutor::getQueuedCount)
+                .tag("name", IO).description("The approximate number of tasks that are queued for execution")
+                .baseUnit("tasks").register(meterRegistry);
+        Gauge.builder("executor.pool.max", ioThreads, BoundedVirtualExecutor::getMaxConcurrency)
+                .tag("name", IO).description("The maximum number of tasks running at once")
+                .baseUnit("threads").register(meterRegistry);
+        this.io = new TimedExecutorService(meterRegistry, ioThreads, IO, "", Tags.empty());
+        LOG.info("SERVICE EXECUTORS: {} {} THREADS, {} UP TO {} VIRTUAL THREADS",
+                CPU, threads, IO, executorProperties.io().maxConcurrency());
+    }
+
+    public ExecutorService cpu() {
+        return cpu;
+    }
+
+    public ExecutorService io() {
+        return io;
+    }
+
+    public int cpuChunkSize() {
+        return cpuChunkSize;
+    }
+
+    /**
+     * Waits for the future, rethrowing the exception it failed with rather than a CompletionException,
+     * so that service exceptions keep their status code.
+     *
+     * @param future The future.
+     * @return T The value of the future.
+     */
+    public static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException)
+                throw runtimeException;
+            if (e.getCause() instanceof Error error)
+                throw error;
+            throw e;
+        }
+    }
+
+    /**
+     * Applies the task to every input, concurrently on the executor when there is more than one input.
+     * The calling thread runs the tasks the executor has not started yet itself, so that it only ever waits for
+     * tasks already running: a task of a bounded executor calling invokeAll on that same executor cannot starve.
+     *
+     * @param inputs   The inputs.
+     * @param task     The task, typically blocking I/O.
+     * @param executor The executor of the tasks, typically io().
+     * @return List<R> The results, in the order of the inputs.
+     * @throws RuntimeException The first exception thrown by a task, in input order.
+     */
+    public static <T, R> List<R> invokeAll(List<T> inputs, Function<? super T, ? extends R> task, Executor executor) {
+        if (inputs.size() < 2)
+            return inputs.stream().<R>map(task).toList();
+        var claims = inputs.stream().map(input -> new AtomicBoolean()).toList();
+        var futures = inputs.stream().map(input -> new CompletableFuture<R>()).toList();
+        for (int i = 0; i < inputs.size(); i++) {
+            var index = i;
+            executor.execute(() -> run(claims.get(index), futures.get(index), () -> task.apply(inputs.get(index))));
+        }
+        for (int i = 0; i < inputs.size(); i++) {
+            var index = i;
+            run(claims.get(index), futures.get(index), () -> task.apply(inputs.get(index)));
+        }
+        return futures.stream().map(ServiceExecutors::join).toList();
+    }
+
+    private static <R> void run(AtomicBoolean claim, CompletableFuture<R> future, Supplier<? extends R> task) {
+        if (!claim.compareAndSet(false, true))
+            return;
+        try {
+            future.complete(task.get());
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cpu.shutdown();
+        io.shutdown();
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.configuration;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
+import org.apache.hc.core5.pool.PoolReusePolicy;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+
+import java.net.http.HttpClient;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class UpstreamClientConfiguration {
+    private final UpstreamProperties upstreamProperties;
+
+    @Autowired
+    public UpstreamClientConfiguration(UpstreamProperties upstreamProperties) {
+        this.upstreamProperties = upstreamProperties;
+    }
+
+    /**
+     * Keep-alive connection pool shared by every call to the Fabrick API.
+     *
+     * @return PoolingHttpClientConnectionManager The pool, bounded in total and per route.
+     * @implNote Connections are handed out LIFO so that the hottest ones stay warm and the
+     * surplus ones go idle long enough to be evicted.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "fabrick.upstream", name = "transport", havingValue = "pooled", matchIfMissing = true)
+    public PoolingHttpClientConnectionManager upstreamConnectionManager() {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(upstreamProperties.maxConnections())
+                .setMaxConnPerRoute(upstreamProperties.maxConnectionsPerRoute())
+                .setPoolConcurrencyPolicy(PoolConcurrencyPolicy.STRICT)
+                .setConnPoolPolicy(PoolReusePolicy.LIFO)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(upstreamProperties.connectTimeout()))
+                        .setSocketTimeout(Timeout.of(upstreamProperties.readTimeout()))
+                        .setTimeToLive(TimeValue.of(upstreamProperties.connectionTimeToLive()))
+                        .setValidateAfterInactivity(TimeValue.of(upstreamProperties.validateAfterInactivity()))
+                        .build())
+                .build();
+    }
+
+    /**
+     * Publishes leased, available, pending and max connections of the pool as {@code httpcomponents.httpclient.pool.*} metrics.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "fabrick.upstream", name = "transport", havingValue = "pooled", matchIfMissing = true)
+    public MeterBinder upstreamConnectionPoolMetrics(PoolingHttpClientConnectionManager upstreamConnectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(upstreamConnectionManager, "fabrick");
+    }
+
+    /**
+     * The client of the pooled transport, closed on shutdown before its pool.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "fabrick.upstream", name = "transport", havingValue = "pooled", matchIfMissing = true)
+    public CloseableHttpClient upstreamHttpClient(PoolingHttpClientConnectionManager upstreamConnectionManager) {
+        return pooledHttpClient(upstreamConnectionManager);
+    }
+
+    /**
+     * Builds the request factory behind the RestTemplate according to {@code fabrick.upstream.transport}.
+     *
+     * @param upstreamHttpClient The client, only present for the pooled transport.
+     * @param environment        The environment telling whether {@code spring.threads.virtual.enabled} is on.
+     * @return ClientHttpRequestFactory The factory used for every Fabrick API call.
+     */
+    @Bean
+    public ClientHttpRequestFactory upstreamRequestFactory(ObjectProvider<CloseableHttpClient> upstreamHttpClient,
+                                                           Environment environment) {
+        return switch (upstreamProperties.transport()) {
+            case SIMPLE -> simpleRequestFactory();
+            case POOLED -> new HttpComponentsClientHttpRequestFactory(upstreamHttpClient.getObject());
+            case HTTP2 -> http2RequestFactory(Threading.VIRTUAL.isActive(environment));
+        };
+    }
+
+    /**
+     * @implNote A call waits at most {@code fabrick.upstream.connection-request-timeout} for a connection of the
+     * exhausted pool, instead of the three minutes of the client's default.
+     */
+    public CloseableHttpClient pooledHttpClient(PoolingHttpClientConnectionManager connectionManager) {
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(upstreamProperties.connectionRequestTimeout()))
+                        .build())
+                .evictIdleConnections(TimeValue.of(upstreamProperties.idleEviction()))
+                .evictExpiredConnections()
+                .build();
+    }
+
+    public ClientHttpRequestFactory simpleRequestFactory() {
+        var requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(upstreamProperties.connectTimeout());
+        requestFactory.setReadTimeout(upstreamProperties.readTimeout());
+        return requestFactory;
+    }
+
+    public ClientHttpRequestFactory http2RequestFactory() {
+        return http2RequestFactory(false);
+    }
+
+    /**
+     * @param virtualThreads true to run the client's response handling on virtual threads instead of its default
+     *                       cached pool of platform threads, which grows with the calls in flight.
+     */
+    public ClientHttpRequestFactory http2RequestFactory(boolean virtualThreads) {
+        var builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(upstreamProperties.connectTimeout());
+        if (virtualThreads)
+            builder.executor(Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("fabrick-http2-", 0).factory()));
+        var httpClient = builder.build();
+        var requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(upstreamProperties.readTimeout());
+        return requestFactory;
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.configuration;
+
+import com.service.fabrickapi.upstream.UpstreamMode;
+import com.service.fabrickapi.upstream.UpstreamTransport;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "fabrick.upstream")
+public record UpstreamProperties(@DefaultValue("blocking") UpstreamMode mode,
+                                 @DefaultValue("pooled") UpstreamTransport transport,
+                                 @DefaultValue("10s") Duration connectTimeout,
+                                 @DefaultValue("10s") Duration readTimeout,
+                                 @DefaultValue("200") int maxConnections,
+                                 @DefaultValue("50") int maxConnectionsPerRoute,
+                                 @DefaultValue("30s") Duration idleEviction,
+                                 @DefaultValue("5m") Duration connectionTimeToLive,
+                                 @DefaultValue("2s") Duration validateAfterInactivity,
+                                 @DefaultValue("2s") Duration connectionRequestTimeout) {
+}
@@ -24,9 +24,16 @@
 
 package com.service.fabrickapi.controller;
 
+import com.service.fabrickapi.cache.AccountBalanceFreshness;
+import com.service.fabrickapi.cache.ResponseBytesCache;
+import com.service.fabrickapi.configuration.TransactionsProperties;
 import com.service.fabrickapi.model.error.ErrorMessage;
 import com.service.fabrickapi.model.rest.AccountBalanceRest;
+import com.service.fabrickapi.model.rest.AccountBalanceResultRest;
+import com.service.fabrickapi.model.rest.AccountOverviewRest;
+import com.service.fabrickapi.model.rest.TransactionPageRest;
 import com.service.fabrickapi.model.rest.TransactionRest;
+import com.service.fabrickapi.service.AccountOverviewService;
 import com.service.fabrickapi.service.AccountService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -36,23 +43,44 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.lang.reflect.Type;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/v1/account")
 public class AccountController {
+    private static final Type TRANSACTIONS_TYPE = ResolvableType.forClassWithGenerics(List.class, TransactionRest.class).getType();
     private final Logger LOG = LoggerFactory.getLogger(AccountController.class);
     private final AccountService accountService;
+    private final AccountBalanceFreshness accountBalanceFreshness;
+    private final AccountOverviewService accountOverviewService;
+    private final ResponseBytesCache responseBytesCache;
+    private final TransactionsProperties transactionsProperties;
 
     @Autowired
-    public AccountController(AccountService accountService) {
+    public AccountController(AccountService accountService,
+                             AccountBalanceFreshness accountBalanceFreshness,
+                             AccountOverviewService accountOverviewService,
+                             ResponseBytesCache responseBytesCache,
+                             TransactionsProperties transactionsProperties) {
         this.accountService = accountService;
+        this.accountBalanceFreshness = accountBalanceFreshness;
+        this.accountOverviewService = accountOverviewService;
+        this.responseBytesCache = responseBytesCache;
+        this.transactionsProperties = transactionsProperties;
     }
 
 
@@ -62,12 +90,19 @@ public class AccountController {
      * The response can be formatted in either XML or JSON.
      *
      * @param accountId The unique identifier of the account for which the balance is requested.
-     * @return ResponseEntity<String> A response entity containing the balance of the account in the requested currency.
-     * The balance is returned as a JSON or XML object, depending on the requested media type.
+     * @param request   The current request, selecting the media type and carrying If-None-Match.
+     * @return ResponseEntity<byte[]> A response entity containing the balance of the account in the requested currency.
+     * The balance is returned as a JSON or XML object, depending on the requested media type, with a strong ETag
+     * and a Last-Modified; a request whose If-None-Match or If-Modified-Since still holds is answered 304 Not Modified.
      * @implNote This endpoint is accessible via the HTTP GET method.
      * The produced media types include both XML and JSON formats.
      * The method logs relevant information about the request, including account ID
      * and the requester's thread.
+     * The Age header carries the seconds since the balance was fetched from the Fabrick API; past the soft TTL it
+     * exceeds the Cache-Control max-age, which tells the balance is stale, served while it is refreshed or while
+     * the Fabrick API fails.
+     * The encoded body is kept by ResponseBytesCache as long as the account cache holds the same balance.
+     * Cache-Control is private with a max-age of what is left of the balance soft TTL.
      */
 
     @Operation(
@@ -99,12 +134,64 @@ public class AccountController {
     })
     @GetMapping(path = "/{accountId}/balance",
             produces = {MediaType.APPLICATION_XML_VALUE, MediaType.APPLICATION_JSON_VALUE})
-    public ResponseEntity<AccountBalanceRest> getAccountBalance(@PathVariable Long accountId) {
+    public ResponseEntity<byte[]> getAccountBalance(@PathVariable Long accountId, NativeWebRequest request)
+            throws HttpMediaTypeNotAcceptableException {
         LOG.info("GET API ENDPOINT REQUEST | Account Balance - Account ID: {} - Requested By: {}",
                 accountId,
                 Thread.currentThread().getName());
         var returnValue = accountService.getAccountBalance(accountId);
-        return new ResponseEntity<>(returnValue, new HttpHeaders(), HttpStatus.OK);
+        var headers = accountBalanceFreshness.headers(accountId);
+        headers.setCacheControl(accountBalanceFreshness.cacheControl(accountId));
+        return responseBytesCache.ok(request, "balance", accountId, "", returnValue, AccountBalanceRest.class, headers);
+    }
+
+
+    /**
+     * Controller endpoint for retrieving the balances of several accounts in one call.
+     *
+     * @param accountIds The unique identifiers of the accounts, comma separated, at most fabrick.balances.max-accounts.
+     * @return ResponseEntity<List<AccountBalanceResultRest>> A response entity containing, for each account in the
+     * requested order, either its balance or the error fetching it failed with.
+     * @implNote This endpoint is accessible via the HTTP GET method.
+     * The produced media types include both XML and JSON formats.
+     * Cached balances are answered locally, the others fetched from the Fabrick API in parallel; the response
+     * is 200 even when some accounts failed or were not answered within fabrick.balances.timeout.
+     */
+
+    @Operation(
+            summary = "GET BALANCES",
+            description = "Endpoint to fetch the current balances of several accounts of the creditor."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Balances fetched, possibly with per-account errors",
+                    content = {
+                            @Content(
+                                    mediaType = MediaType.APPLICATION_XML_VALUE,
+                                    schema = @Schema(implementation = AccountBalanceResultRest.class)
+                            )
+                    }),
+            @ApiResponse(responseCode = "400", description = "No account ids or too many",
+                    content = {
+                            @Content(
+                                    mediaType = MediaType.APPLICATION_XML_VALUE,
+                                    schema = @Schema(implementation = ErrorMessage.class)
+                            )
+                    }),
+            @ApiResponse(responseCode = "500", description = "Internal server error",
+                    content = {
+                            @Content(
+                                    mediaType = MediaType.APPLICATION_XML_VALUE,
+                                    schema = @Schema(implementation = ErrorMessage.class)
+                            )
+                    })
+    })
+    @GetMapping(path = "/balances",
+            produces = {MediaType.APPLICATION_XML_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<List<AccountBalanceResultRest>> getAccountBalances(@RequestParam List<Long> accountIds) {
+        LOG.info("GET API ENDPOINT REQUEST | Account Balances - Accounts: {} - Requested By: {}",
+                accountIds.size(),
+                Thread.currentThread().getName());
+        return ResponseEntity.ok(accountService.getAccountBalances(accountIds));
     }
 
 
@@ -116,14 +203,20 @@ public class AccountController {
      * @param accountId          The unique identifier of the account for which transactions are requested.
      * @param fromAccountingDate The start date (ISO 8601 format) for filtering transactions.
      * @param toAccountingDate   The end date (ISO 8601 format) for filtering transactions.
-     * @return ResponseEntity<List < TransactionDTO>> A response entity containing the list of transactions.
+     * @param limit              The number of most recent transactions returned, bounded by fabrick.transactions.max-limit.
+     * @param request            The current request, selecting the media type and carrying If-None-Match.
+     * @return ResponseEntity<byte[]> A response entity containing the list of transactions, with a strong ETag and a
+     * Last-Modified; a request whose If-None-Match or If-Modified-Since still holds is answered 304 Not Modified.
      * The transactions are ordered by date and may include details such as transaction ID, amount,
      * currency, description, and transaction type.
      * @implNote This endpoint is accessible via the HTTP GET method.
      * The produced media types include both XML and JSON formats.
-     * The transactions list is limited to 100 transactions.
+     * The transactions list is limited to fabrick.transactions.default-limit (30) transactions unless a limit is given.
      * The method logs relevant information about the request, including account ID,
      * date range, and the requester's thread.
+     * The encoded body is kept by ResponseBytesCache as long as the transactions cache serves the same transactions.
+     * Cache-Control is private with a max-age of fabrick.transactions.max-age, within which the same request is
+     * answered from the encoded body without reloading today's transactions.
      */
 
     @Operation(
@@ -155,16 +248,227 @@ public class AccountController {
     })
     @GetMapping(path = "/{accountId}/transactions",
             produces = {MediaType.APPLICATION_XML_VALUE, MediaType.APPLICATION_JSON_VALUE})
-    public ResponseEntity<List<TransactionRest>> getAccountTransactions(
+    public ResponseEntity<byte[]> getAccountTransactions(
             @PathVariable Long accountId,
             @RequestParam String fromAccountingDate,
-            @RequestParam String toAccountingDate) {
-        LOG.info("GET API ENDPOINT REQUEST | Account Transactions - Account ID: {} - With Query Params: fromAccountingDate: {} toAccountingDate: {} - Requested By: {}",
+            @RequestParam String toAccountingDate,
+            @RequestParam(required = false) Integer limit,
+            NativeWebRequest request) throws HttpMediaTypeNotAcceptableException {
+        LOG.info("GET API ENDPOINT REQUEST | Account Transactions - Account ID: {} - With Query Params: fromAccountingDate: {} toAccountingDate: {} limit: {} - Requested By: {}",
+                accountId,
+                fromAccountingDate,
+                toAccountingDate,
+                limit,
+                Thread.currentThread().getName());
+        var params = fromAccountingDate + "/" + toAccountingDate + "/" + limit;
+        var headers = new HttpHeaders();
+        headers.setCacheControl(CacheControl.maxAge(transactionsProperties.maxAge()).cachePrivate());
+        var fresh = responseBytesCache.fresh(request, "transactions", accountId, params, transactionsProperties.maxAge(), headers);
+        if (fresh.isPresent())
+            return fresh.get();
+        var transactions = accountService.getAccountTransactions(accountId, fromAccountingDate, toAccountingDate, limit);
+        return responseBytesCache.ok(request, "transactions", accountId, params, transactions, TRANSACTIONS_TYPE, headers);
+    }
+
+
+    /**
+     * Controller endpoint for retrieving the balance and the most recent transactions of a specified account in one call.
+     *
+     * @param accountId          The unique identifier of the account.
+     * @param fromAccountingDate The start date (ISO 8601 format) of the transactions, fabrick.overview.days (30) before today when omitted.
+     * @param toAccountingDate   The end date (ISO 8601 format) of the transactions, today when omitted.
+     * @param limit              The number of most recent transactions returned, bounded by fabrick.transactions.max-limit.
+     * @return ResponseEntity<AccountOverviewRest> A response entity containing the balance and the transactions, newest first.
+     * @implNote This endpoint is accessible via the HTTP GET method.
+     * The produced media types include both XML and JSON formats.
+     * The balance and the transactions are fetched concurrently within fabrick.overview.timeout; if either fails the
+     * other is cancelled and the error of the failed one is returned, past the deadline a 504.
+     */
+
+    @Operation(
+            summary = "GET OVERVIEW",
+            description = "Endpoint to fetch the balance and the recent transactions of the creditor in one call."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Overview fetched successfully",
+                    content = {
+                            @Content(
+                                    mediaType = MediaType.APPLICATION_XML_VALUE,
+                                    schema = @Schema(implementation = AccountOverviewRest.class)
+                            )
+                    }),
+            @ApiResponse(responseCode = "400", description = "Invalid date range or limit",
+                    content = {
+                            @Content(
+                                    mediaType = MediaType.APPLICATION_XML_VALUE,
+                                    schema = @Schema(implementation = ErrorMessage.class)
+                            )
+                    }),
+            @ApiResponse(responseCode = "504", description = "Balance and transactions not fetched in time",
+                    content = {
+                            @Content(
+                                    mediaType = MediaType.APPLICATION_XML_VALUE,
+                                    schema = @Schema(implementation = ErrorMessage.class)
+                            )
+                    }),
+            @ApiResponse(responseCode = "500", description = "Internal server error",
+                    content = {
+                            @Content(
+                                    mediaType = MediaType.APPLICATION_XML_VALUE,
+                                    schema = @Schema(implementation = ErrorMessage.class)
+                            )
+                    })
+    })
+    @GetMapping(path = "/{accountId}/overview",
+            produces = {MediaType.APPLICATION_XML_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<AccountOverviewRest> getAccountOverview(
+            @PathVariable Long accountId,
+            @RequestParam(required = false) String fromAccountingDate,
+            @RequestParam(required = false) String toAccountingDate,
+            @RequestParam(required = false) Integer limit) {
+        LOG.info("GET API ENDPOINT REQUEST | Account Overview - Account ID: {} - With Query Params: fromAccountingDate: {} toAccountingDate: {} limit: {} - Requested By: {}",
                 accountId,
                 fromAccountingDate,
                 toAccountingDate,
+                limit,
                 Thread.currentThread().getName());
-        var transactions = accountService.getAccountTransactions(accountId, fromAccountingDate, toAccountingDate);
-        return ResponseEntity.ok(transactions);
+        var overview = accountOverviewService.getAccountOverview(accountId, fromAccountingDate, toAccountingDate, limit);
+        return new ResponseEntity<>(overview, accountBalanceFreshness.headers(accountId), HttpStatus.OK);
+    }
+
+    /**
+     * Controller endpoint for paging through the transaction history of a specified account within a given date range.
+     * Pages are served from the local transactions store, newest first, and each one carries the cursor of the next.
+     *
+     * @param accountId          The unique identifier of the account for which transactions are requested.
+     * @param fromAccountingDate The start date (ISO 8601 format) for filtering transactions.
+     * @param toAccountingDate   The end date (ISO 8601 format) for filtering transactions.
+     * @param size               The transactions per page, bounded by fabrick.history.max-page-size.
+     * @param cursor             The nextCursor of the previous page; omitted for the first page.
+     * @return ResponseEntity<TransactionPageRest> A response entity containing the page and the cursor of the next one,
+     * null on the last page.
+     * @implNote This endpoint is accessible via the HTTP GET method.
+     * The produced media types include both XML and JSON formats.
+     * The cursor is opaque and only valid with the same account and date range.
+     */
+
+    @Operation(
+            summary = "GET TRANSACTION HISTORY",
+            description = "Endpoint to page through the stored account transactions of the creditor."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Transaction page fetched successfully",
+                    content = {
+                            @Content(
+                                    mediaType = MediaType.APPLICATION_XML_VALUE,
+                                    schema = @Schema(implementation = TransactionPageRest.class)
+                            )
+                    }),
+            @ApiResponse(responseCode = "400", description = "Invalid date range, page size or cursor",
+                    content = {
+                            @Content(
+                                    mediaType = MediaType.APPLICATION_XML_VALUE,
+                                    schema = @Schema(implementation = ErrorMessage.class)
+                            )
+                    }),
+            @ApiResponse(responseCode = "500", description = "Internal server error",
+                    content = {
+                            @Content(
+                                    mediaType = MediaType.APPLICATION_XML_VALUE,
+                                    schema = @Schema(implementation = ErrorMessage.class)
+                            )
+                    })
+    })
+    @GetMapping(path = "/{accountId}/transactions/history",
+            produces = {MediaType.APPLICATION_XML_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<TransactionPageRest> getTransactionHistory(
+            @PathVariable Long accountId,
+            @RequestParam String fromAccountingDate,
+            @RequestParam String toAccountingDate,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String cursor) {
+        LOG.info("GET API ENDPOINT REQUEST | Transaction History - Account ID: {} - With Query Params: fromAccountingDate: {} toAccountingDate: {} size: {} cursor: {} - Requested By: {}",
+                accountId,
+                fromAccountingDate,
+                toAccountingDate,
+                size,
+                cursor,
+                Thread.currentThread().getName());
+        var page = accountService.getTransactionHistory(accountId, fromAccountingDate, toAccountingDate, size, cursor);
+        return ResponseEntity.ok(page);
+    }
+
+    /**
+     * Controller endpoint for exporting the stored transactions of a specified account within a given date range.
+     * Rows are streamed oldest first while they are read from the local transactions store, so the export holds
+     * the same memory for any number of transactions.
+     *
+     * @param accountId          The unique identifier of the account for which transactions are exported.
+     * @param fromAccountingDate The start date (ISO 8601 format) for filtering transactions.
+     * @param toAccountingDate   The end date (ISO 8601 format) for filtering transactions.
+     * @param format             The export format: ndjson, one JSON transaction per line, or csv with a header line.
+     * @param gzip               Whether the body is gzip compressed, announced with Content-Encoding: gzip.
+     * @return ResponseEntity<StreamingResponseBody> A response entity whose body writes the transactions as they are read.
+     * @implNote This endpoint is accessible via the HTTP GET method.
+     * The body is written on the MVC async executor, bounded by spring.mvc.async.request-timeout.
+     * Errors found before the first row, such as an invalid date range or format, are answered as usual.
+     */
+
+    @Operation(
+            summary = "EXPORT TRANSACTIONS",
+            description = "Endpoint to stream the stored account transactions of the creditor as NDJSON or CSV."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Transactions streamed successfully",
+                    content = {
+                            @Content(mediaType = "application/x-ndjson"),
+                            @Content(mediaType = "text/csv")
+                    }),
+            @ApiResponse(responseCode = "400", description = "Invalid date range or format",
+                    content = {
+                            @Content(
+                                    mediaType = MediaType.APPLICATION_XML_VALUE,
+                                    schema = @Schema(implementation = ErrorMessage.class)
+                            )
+                    }),
+            @ApiResponse(responseCode = "500", description = "Internal server error",
+                    content = {
+                            @Content(
+                                    mediaType = MediaType.APPLICATION_XML_VALUE,
+                                    schema = @Schema(implementation = ErrorMessage.class)
+                            )
+                    })
+    })
+    @GetMapping(path = "/{accountId}/transactions/export")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(
+            @PathVariable Long accountId,
+            @RequestParam String fromAccountingDate,
+            @RequestParam String toAccountingDate,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        LOG.info("GET API ENDPOINT REQUEST | Export Transactions - Account ID: {} - With Query Params: fromAccountingDate: {} toAccountingDate: {} format: {} gzip: {} - Requested By: {}",
+                accountId,
+                fromAccountingDate,
+                toAccountingDate,
+                format,
+                gzip,
+                Thread.currentThread().getName());
+        var export = accountService.exportTransactions(accountId, fromAccountingDate, toAccountingDate, format);
+        StreamingResponseBody body = outputStream -> {
+            if (!gzip) {
+                export.body().writeTo(outputStream);
+                return;
+            }
+            var gzipOutputStream = new GZIPOutputStream(outputStream, 64 * 1024);
+            export.body().writeTo(gzipOutputStream);
+            gzipOutputStream.finish();
+        };
+
+        var response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(export.format().mediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(export.fileName()).build().toString());
+        if (gzip)
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        return response.body(body);
     }
 }
@@ -0,0 +1,92 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.controller;
+
+import com.service.fabrickapi.model.rest.AccountBalanceRest;
+import com.service.fabrickapi.model.rest.TransactionRest;
+import com.service.fabrickapi.service.ReactiveAccountService;
+import io.swagger.v3.oas.annotations.Operation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Non-blocking balance and transactions endpoints, served under {@code /api/v1/reactive} next to
+ * {@link AccountController} when {@code fabrick.upstream.mode=reactive}. The endpoints return a {@code Mono}:
+ * the servlet request goes async and its thread goes back to the pool until the upstream answer arrives.
+ */
+@RestController
+@RequestMapping("/api/v1/reactive/account")
+@ConditionalOnProperty(prefix = "fabrick.upstream", name = "mode", havingValue = "reactive")
+public class ReactiveAccountController {
+    private final Logger LOG = LoggerFactory.getLogger(ReactiveAccountController.class);
+    private final ReactiveAccountService reactiveAccountService;
+
+    @Autowired
+    public ReactiveAccountController(ReactiveAccountService reactiveAccountService) {
+        this.reactiveAccountService = reactiveAccountService;
+    }
+
+    @Operation(
+            summary = "GET BALANCE",
+            description = "Endpoint to fetch current account balance of the creditor."
+    )
+    @GetMapping(path = "/{accountId}/balance",
+            produces = {MediaType.APPLICATION_XML_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public Mono<ResponseEntity<AccountBalanceRest>> getAccountBalance(@PathVariable Long accountId) {
+        LOG.info("GET API ENDPOINT REQUEST | Account Balance - Account ID: {} - Requested By: {}",
+                accountId,
+                Thread.currentThread().getName());
+        return reactiveAccountService.getAccountBalance(accountId).map(ResponseEntity::ok);
+    }
+
+    @Operation(
+            summary = "GET TRANSACTIONS",
+            description = "Endpoint to fetch account transactions of the creditor."
+    )
+    @GetMapping(path = "/{accountId}/transactions",
+            produces = {MediaType.APPLICATION_XML_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public Mono<ResponseEntity<List<TransactionRest>>> getAccountTransactions(
+            @PathVariable Long accountId,
+            @RequestParam String fromAccountingDate,
+            @RequestParam String toAccountingDate,
+            @RequestParam(required = false) Integer limit) {
+        LOG.info("GET API ENDPOINT REQUEST | Account Transactions - Account ID: {} - With Query Params: fromAccountingDate: {} toAccountingDate: {} limit: {} - Requested By: {}",
+                accountId,
+                fromAccountingDate,
+                toAccountingDate,
+                limit,
+                Thread.currentThread().getName());
+        return reactiveAccountService.getAccountTransactions(accountId, fromAccountingDate, toAccountingDate, limit)
+                .map(ResponseEntity::ok);
+    }
+}
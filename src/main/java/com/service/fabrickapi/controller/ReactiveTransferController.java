@@ -0,0 +1,71 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.controller;
+
+import com.service.fabrickapi.model.request.LoanTransferRequest;
+import com.service.fabrickapi.model.rest.LoanTransferRest;
+import com.service.fabrickapi.service.ReactiveTransferService;
+import io.swagger.v3.oas.annotations.Operation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking transfer endpoint, served under {@code /api/v1/reactive} next to {@link TransferController}
+ * when {@code fabrick.upstream.mode=reactive}.
+ */
+@RestController
+@RequestMapping("/api/v1/reactive/transfer")
+@ConditionalOnProperty(prefix = "fabrick.upstream", name = "mode", havingValue = "reactive")
+public class ReactiveTransferController {
+    private final Logger LOG = LoggerFactory.getLogger(ReactiveTransferController.class);
+    private final ReactiveTransferService reactiveTransferService;
+
+    @Autowired
+    public ReactiveTransferController(ReactiveTransferService reactiveTransferService) {
+        this.reactiveTransferService = reactiveTransferService;
+    }
+
+    @Operation(
+            summary = "TRANSFER CREDIT",
+            description = "Endpoint to make a loan."
+    )
+    @PostMapping(path = "/{accountId}",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE},
+            produces = {MediaType.APPLICATION_XML_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public Mono<ResponseEntity<LoanTransferRest>> transferLoan(@RequestBody LoanTransferRequest transferRequest,
+                                                               @PathVariable("accountId") Long accountId) {
+        LOG.info("POST API ENDPOINT REQUEST | Transfer Loan - Account ID: {}  - Request: {} - Requested By: {}",
+                accountId,
+                transferRequest.toString(),
+                Thread.currentThread().getName());
+        return reactiveTransferService.transferLoan(accountId, transferRequest).map(ResponseEntity::ok);
+    }
+}
@@ -63,6 +63,8 @@ public class TransferController {
      *
      * @param transferRequest The Transfer Request Object containing the details for the loan transfer.
      * @param accountId       The unique identifier of the account initiating the loan transfer.
+     * @param idempotencyKey  The optional Idempotency-Key header, unique per transfer: a transfer sent with one
+     *                        is retried after a transient upstream failure, and the key is forwarded to the Fabrick API.
      * @return ResponseEntity<String> A response entity containing the result of the loan transfer operation
      * returned as a JSON or XML object, depending on the requested media type.
      * @implNote This endpoint is accessible via the HTTP POST method.
@@ -103,12 +105,14 @@ public class TransferController {
             consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE},
             produces = {MediaType.APPLICATION_XML_VALUE, MediaType.APPLICATION_JSON_VALUE})
     public ResponseEntity<LoanTransferRest> transferLoan(@RequestBody LoanTransferRequest transferRequest,
-                                                         @PathVariable("accountId") Long accountId) {
-        LOG.info("POST API ENDPOINT REQUEST | Transfer Loan - Account ID: {}  - Request: {} - Requested By: {}",
+                                                         @PathVariable("accountId") Long accountId,
+                                                         @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey) {
+        LOG.info("POST API ENDPOINT REQUEST | Transfer Loan - Account ID: {}  - Request: {} - Idempotency Key: {} - Requested By: {}",
                 accountId,
                 transferRequest.toString(),
+                idempotencyKey,
                 Thread.currentThread().getName());
-        var returnValue = transferService.transferLoan(accountId, transferRequest);
+        var returnValue = transferService.transferLoan(accountId, transferRequest, idempotencyKey);
         return new ResponseEntity<>(returnValue, new HttpHeaders(), HttpStatus.OK);
     }
 
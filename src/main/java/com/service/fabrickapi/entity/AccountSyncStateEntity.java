@@ -0,0 +1,110 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * The accounting dates of an account whose transactions are all stored in the transactions table:
+ * every day from syncedFrom to the watermark, both inclusive.
+ */
+@Entity
+@Table(name = "account_sync_state")
+public class AccountSyncStateEntity {
+    @Id
+    @Column(name = "account_id")
+    Long accountId;
+
+    @Column(name = "synced_from", nullable = false)
+    LocalDate syncedFrom;
+
+    @Column(name = "watermark", nullable = false)
+    LocalDate watermark;
+
+    @Column(name = "updated_at", nullable = false)
+    Instant updatedAt;
+
+    public AccountSyncStateEntity() {
+    }
+
+    public AccountSyncStateEntity(Long accountId, LocalDate syncedFrom, LocalDate watermark) {
+        this.accountId = accountId;
+        this.syncedFrom = syncedFrom;
+        this.watermark = watermark;
+        this.updatedAt = Instant.now();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AccountSyncStateEntity that = (AccountSyncStateEntity) o;
+        return Objects.equals(accountId, that.accountId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(accountId);
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public void setAccountId(Long accountId) {
+        this.accountId = accountId;
+    }
+
+    public LocalDate getSyncedFrom() {
+        return syncedFrom;
+    }
+
+    public void setSyncedFrom(LocalDate syncedFrom) {
+        this.syncedFrom = syncedFrom;
+    }
+
+    public LocalDate getWatermark() {
+        return watermark;
+    }
+
+    public void setWatermark(LocalDate watermark) {
+        this.watermark = watermark;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -34,12 +34,21 @@ import java.util.Date;
 import java.util.Objects;
 
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = {
+        // serves the per-account accounting date range reads and the history pages in key order, without touching other accounts' rows
+        @Index(name = "idx_transactions_account_dates", columnList = "account_id, accounting_date, value_date, transaction_id")
+})
 public class TransactionEntity {
+    // pooled: one sequence round trip per 50 ids, keeping the sequence the former AUTO strategy created
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transactions_seq")
+    @SequenceGenerator(name = "transactions_seq", sequenceName = "transactions_seq", allocationSize = 50)
     Long id;
 
+    // nullable: rows stored before the account was recorded get it when fetched again
+    @Column(name = "account_id")
+    Long accountId;
+
     @Column(name = "transaction_id", unique = true, nullable = false, updatable = false)
     Long transactionId;
 
@@ -94,6 +103,14 @@ public class TransactionEntity {
         this.id = id;
     }
 
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public void setAccountId(Long accountId) {
+        this.accountId = accountId;
+    }
+
     public Long getTransactionId() {
         return transactionId;
     }
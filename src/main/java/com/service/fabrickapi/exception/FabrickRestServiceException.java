@@ -24,9 +24,24 @@
 
 package com.service.fabrickapi.exception;
 
+import com.service.fabrickapi.upstream.UpstreamFailure;
 
 public class FabrickRestServiceException extends RuntimeException {
+    private final UpstreamFailure failure;
+
     public FabrickRestServiceException(String message) {
+        this(message, null);
+    }
+
+    public FabrickRestServiceException(String message, UpstreamFailure failure) {
         super(message);
+        this.failure = failure;
+    }
+
+    /**
+     * @return UpstreamFailure Why the call of the Fabrick API failed, null if it was not classified.
+     */
+    public UpstreamFailure getFailure() {
+        return failure;
     }
 }
@@ -65,6 +65,15 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(errorMessage, new HttpHeaders(), getStatusCode(ex));
     }
 
+    @ExceptionHandler(UpstreamUnavailableException.class)
+    public ResponseEntity<?> handleUpstreamUnavailableException(UpstreamUnavailableException ex) {
+        ErrorMessage errorMessage = new ErrorMessage(ex.getLocalizedMessage(), new Date());
+        HttpHeaders headers = new HttpHeaders();
+        var retryAfter = ex.getRetryAfter();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter.toSeconds() + (retryAfter.toNanosPart() > 0 ? 1 : 0)));
+        return new ResponseEntity<>(errorMessage, headers, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<?> handleOtherExceptions(Exception ex) {
         ErrorMessage errorMessage = new ErrorMessage(ex.getLocalizedMessage(), new Date());
@@ -80,6 +89,10 @@ public class GlobalExceptionHandler {
             return HttpStatus.BAD_REQUEST;
         } else if (ex.getMessage().contains("404 Not Found")) {
             return HttpStatus.NOT_FOUND;
+        } else if (ex.getMessage().contains("504 Gateway Timeout")) {
+            return HttpStatus.GATEWAY_TIMEOUT;
+        } else if (ex.getMessage().contains("503 Service Unavailable")) {
+            return HttpStatus.SERVICE_UNAVAILABLE;
         } else {
             return HttpStatus.INTERNAL_SERVER_ERROR;
         }
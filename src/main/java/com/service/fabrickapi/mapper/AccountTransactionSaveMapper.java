@@ -27,44 +27,95 @@
 package com.service.fabrickapi.mapper;
 
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.service.fabrickapi.entity.TransactionEntity;
 import com.service.fabrickapi.model.rest.TransactionRest;
+import com.service.fabrickapi.persistence.PersistedTransactionFilter;
+import com.service.fabrickapi.persistence.PersistedTransactionFilter.Membership;
 import com.service.fabrickapi.repository.TransactionRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.function.Function;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.BiFunction;
 
 @Component
-public class AccountTransactionSaveMapper implements Function<TransactionRest, TransactionRest> {
+public class AccountTransactionSaveMapper implements BiFunction<Long, List<TransactionRest>, List<TransactionRest>> {
     private final Logger LOG = LoggerFactory.getLogger(AccountTransactionSaveMapper.class);
     private final TransactionRepository transactionRepository;
+    private final ObjectMapper objectMapper;
+    private final PersistedTransactionFilter persistedTransactionFilter;
 
     @Autowired
-    public AccountTransactionSaveMapper(TransactionRepository transactionRepository) {
+    public AccountTransactionSaveMapper(TransactionRepository transactionRepository, ObjectMapper objectMapper,
+                                        PersistedTransactionFilter persistedTransactionFilter) {
         this.transactionRepository = transactionRepository;
+        this.objectMapper = objectMapper;
+        this.persistedTransactionFilter = persistedTransactionFilter;
     }
 
+    /**
+     * Stores the transactions not stored yet in one batched insert-if-absent, instead of a lookup and a save per row.
+     * Ids the persisted filter knows are skipped; only those its Bloom filter cannot rule out are looked up,
+     * all in one query, so new transactions reach the insert without touching the database first.
+     * Stored rows not yet attributed to an account are attributed to this one.
+     *
+     * @param accountId        The ID of the account owner the transactions were fetched for.
+     * @param transactionRests The transactions fetched from the Fabrick API.
+     * @return List<TransactionRest> The same transactions.
+     */
     @Override
-    public TransactionRest apply(TransactionRest transactionRest) {
-        if (transactionRepository.findByTransactionId(transactionRest.transactionId()).isEmpty()) {
-            LOG.info("TRANSACTION REGISTRATION TO DB STARTED");
+    public List<TransactionRest> apply(Long accountId, List<TransactionRest> transactionRests) {
+        LOG.info("TRANSACTION REGISTRATION TO DB STARTED");
+        var possiblyStored = new HashSet<Long>();
+        var unknown = transactionRests.stream().filter(transactionRest -> {
+            var membership = persistedTransactionFilter.check(transactionRest.transactionId());
+            if (membership == Membership.MAYBE)
+                possiblyStored.add(transactionRest.transactionId());
+            return membership != Membership.KNOWN;
+        }).toList();
+        var stored = possiblyStored.isEmpty()
+                ? new HashSet<Long>()
+                : new HashSet<>(transactionRepository.findExistingTransactionIds(possiblyStored));
+        if (!stored.isEmpty() && accountId != null)
+            transactionRepository.assignAccount(accountId, stored);
+        stored.forEach(persistedTransactionFilter::add);
+        var fresh = unknown.stream()
+                .filter(transactionRest -> !stored.contains(transactionRest.transactionId()))
+                .toList();
+        if (!fresh.isEmpty()) {
+            transactionRepository.upsertAll(fresh.stream().map(transactionRest -> toEntity(accountId, transactionRest)).toList());
+            fresh.forEach(transactionRest -> persistedTransactionFilter.add(transactionRest.transactionId()));
+        }
+        LOG.info("{} OF {} TRANSACTIONS WERE NEW", fresh.size(), transactionRests.size());
+        LOG.info("TRANSACTION REGISTRATION ENDED");
+        return transactionRests;
+    }
 
-            var transactionEntity = new TransactionEntity();
-            transactionEntity.setTransactionId(transactionRest.transactionId());
-            transactionEntity.setOperationId(transactionRest.operationId());
-            transactionEntity.setAccountingDate(transactionRest.accountingDate());
-            transactionEntity.setValueDate(transactionRest.valueDate());
-            transactionEntity.setType(transactionRest.type().toString());
-            transactionEntity.setAmount(transactionRest.amount());
-            transactionEntity.setCurrency(transactionRest.currency());
-            transactionEntity.setDescription(transactionRest.description());
-            transactionRepository.save(transactionEntity);
+    private TransactionEntity toEntity(Long accountId, TransactionRest transactionRest) {
+        var transactionEntity = new TransactionEntity();
+        transactionEntity.setAccountId(accountId);
+        transactionEntity.setTransactionId(transactionRest.transactionId());
+        transactionEntity.setOperationId(transactionRest.operationId());
+        transactionEntity.setAccountingDate(transactionRest.accountingDate());
+        transactionEntity.setValueDate(transactionRest.valueDate());
+        transactionEntity.setType(toJson(transactionRest.type()));
+        transactionEntity.setAmount(transactionRest.amount());
+        transactionEntity.setCurrency(transactionRest.currency());
+        transactionEntity.setDescription(transactionRest.description());
+        return transactionEntity;
+    }
 
-            LOG.info("TRANSACTION REGISTRATION ENDED");
+    private String toJson(Object type) {
+        try {
+            return objectMapper.writeValueAsString(type);
+        } catch (JsonProcessingException e) {
+            LOG.error("FAILED TO CONVERT THE TRANSACTION TYPE TO JSON {}", type);
+            return String.valueOf(type);
         }
-        return transactionRest;
     }
 }
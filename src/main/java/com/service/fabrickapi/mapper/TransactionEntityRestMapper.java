@@ -0,0 +1,85 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.mapper;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.service.fabrickapi.entity.TransactionEntity;
+import com.service.fabrickapi.model.rest.TransactionRest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.function.Function;
+
+@Component
+public class TransactionEntityRestMapper implements Function<TransactionEntity, TransactionRest> {
+    private final Logger LOG = LoggerFactory.getLogger(TransactionEntityRestMapper.class);
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public TransactionEntityRestMapper(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Maps a stored transaction back to the shape the Fabrick API returned it in: the JSON type parsed,
+     * dates at UTC midnight as the API dates are parsed.
+     *
+     * @param transactionEntity The stored transaction.
+     * @return TransactionRest The transaction.
+     */
+    @Override
+    public TransactionRest apply(TransactionEntity transactionEntity) {
+        return new TransactionRest(
+                transactionEntity.getTransactionId(),
+                transactionEntity.getOperationId(),
+                utcDate(transactionEntity.getAccountingDate()),
+                utcDate(transactionEntity.getValueDate()),
+                fromJson(transactionEntity.getType()),
+                transactionEntity.getAmount(),
+                transactionEntity.getCurrency(),
+                transactionEntity.getDescription()
+        );
+    }
+
+    private Object fromJson(String type) {
+        try {
+            return type == null ? null : objectMapper.readValue(type, Object.class);
+        } catch (JsonProcessingException e) {
+            LOG.error("FAILED TO READ THE TRANSACTION TYPE FROM JSON {}", type);
+            return type;
+        }
+    }
+
+    private static Date utcDate(Date date) {
+        return date instanceof java.sql.Date sqlDate
+                ? Date.from(sqlDate.toLocalDate().atStartOfDay(ZoneOffset.UTC).toInstant())
+                : date;
+    }
+}
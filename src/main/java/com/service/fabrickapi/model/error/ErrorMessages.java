@@ -29,7 +29,9 @@ public enum ErrorMessages {
     RECORD_NOT_FOUND("404 Record Not Found"),
     INVALID_JSON_ERROR("500 Invalid json Error"),
     UNAUTHORIZED_ERROR("401 Unauthorized Error"),
-    BAD_REQUEST_ERROR("400 Bad Request");
+    BAD_REQUEST_ERROR("400 Bad Request"),
+    GATEWAY_TIMEOUT_ERROR("504 Gateway Timeout"),
+    SERVICE_UNAVAILABLE_ERROR("503 Service Unavailable");
 
     private String message;
 
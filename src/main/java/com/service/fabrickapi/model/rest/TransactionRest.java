@@ -30,6 +30,7 @@ import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.math.BigDecimal;
+import java.util.Comparator;
 import java.util.Date;
 
 public record TransactionRest(@JsonProperty("transactionId") Long transactionId,
@@ -43,4 +44,12 @@ public record TransactionRest(@JsonProperty("transactionId") Long transactionId,
                               Object type, @JsonProperty("amount") BigDecimal amount,
                               @JsonProperty("currency") String currency,
                               @JsonProperty("description") String description) {
+
+    /**
+     * Newest first by accounting date, then value date, then transaction id, so that equal dates keep a stable order.
+     */
+    public static final Comparator<TransactionRest> MOST_RECENT_FIRST = Comparator.comparing(TransactionRest::accountingDate)
+            .thenComparing(TransactionRest::valueDate)
+            .thenComparing(TransactionRest::transactionId)
+            .reversed();
 }
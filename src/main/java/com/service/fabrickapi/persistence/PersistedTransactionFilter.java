@@ -0,0 +1,204 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.persistence;
+
+import com.service.fabrickapi.configuration.PersistedFilterProperties;
+import com.service.fabrickapi.repository.TransactionRepository;
+import com.service.fabrickapi.shared.ConcurrentLongHashSet;
+import com.service.fabrickapi.shared.LongBloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Tells which transaction ids are already in the transactions table without asking the database.
+ * A Bloom filter, rebuilt from the table at startup and sized from its row count, holds every stored id;
+ * an exact set holds the recently stored ones. Ids in the exact set are known, ids the Bloom filter rejects
+ * are new, the others may be stored and are checked against the database. Until a rebuild completes the
+ * Bloom filter misses the stored ids, so every id not in the exact set may be stored. Lookups never lock.
+ */
+@Component
+public class PersistedTransactionFilter {
+    private final Logger LOG = LoggerFactory.getLogger(PersistedTransactionFilter.class);
+    private final TransactionRepository transactionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final PersistedFilterProperties persistedFilterProperties;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final AtomicLong insertions = new AtomicLong();
+    private final ReentrantLock rotation = new ReentrantLock();
+    private final Counter known;
+    private final Counter maybe;
+    private final Counter fresh;
+    private volatile LongBloomFilter bloomFilter;
+    private volatile LongBloomFilter nextBloomFilter;
+    private volatile long expectedInsertions;
+    private volatile ConcurrentLongHashSet recent;
+    private volatile ConcurrentLongHashSet previous;
+    private volatile boolean rebuilt;
+
+    /**
+     * Constructs a new instance of the PersistedTransactionFilter.
+     *
+     * @param transactionRepository     The repository the filter is rebuilt from.
+     * @param transactionManager        The transaction manager of the read-only rebuild transaction.
+     * @param persistedFilterProperties The false positive rate, minimum Bloom filter size and exact set capacity.
+     * @param meterRegistry             The registry of the fabrick.persisted-filter.* metrics.
+     */
+    @Autowired
+    public PersistedTransactionFilter(TransactionRepository transactionRepository,
+                                      PlatformTransactionManager transactionManager,
+                                      PersistedFilterProperties persistedFilterProperties,
+                                      MeterRegistry meterRegistry) {
+        this.transactionRepository = transactionRepository;
+        this.transactionTemplate = transactionManager == null ? null : new TransactionTemplate(transactionManager);
+        this.persistedFilterProperties = persistedFilterProperties;
+        this.expectedInsertions = persistedFilterProperties.minExpectedInsertions();
+        this.bloomFilter = new LongBloomFilter(expectedInsertions, persistedFilterProperties.falsePositiveRate());
+        this.recent = new ConcurrentLongHashSet(persistedFilterProperties.recentCapacity());
+        this.previous = new ConcurrentLongHashSet(1);
+        this.known = meterRegistry.counter("fabrick.persisted-filter.checks", "result", "known");
+        this.maybe = meterRegistry.counter("fabrick.persisted-filter.checks", "result", "maybe");
+        this.fresh = meterRegistry.counter("fabrick.persisted-filter.checks", "result", "new");
+        Gauge.builder("fabrick.persisted-filter.bloom.bits", this, filter -> filter.bloomFilter.bitCount())
+                .register(meterRegistry);
+        Gauge.builder("fabrick.persisted-filter.insertions", insertions, AtomicLong::get)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param transactionId The transaction id.
+     * @return boolean true if the id was recently stored, so it certainly is in the table.
+     */
+    public boolean isKnown(Long transactionId) {
+        return transactionId != null && isRecent(transactionId);
+    }
+
+    private boolean isRecent(long transactionId) {
+        return recent.contains(transactionId) || previous.contains(transactionId);
+    }
+
+    /**
+     * @param transactionId The transaction id.
+     * @return Membership KNOWN if certainly stored, NEW if certainly not, MAYBE if only the database can tell.
+     */
+    public Membership check(Long transactionId) {
+        if (transactionId == null)
+            return Membership.NEW;
+        if (isRecent(transactionId)) {
+            known.increment();
+            return Membership.KNOWN;
+        }
+        if (!rebuilt || bloomFilter.mightContain(transactionId)) {
+            maybe.increment();
+            return Membership.MAYBE;
+        }
+        fresh.increment();
+        return Membership.NEW;
+    }
+
+    /**
+     * Records an id now stored in the table.
+     *
+     * @param transactionId The transaction id.
+     */
+    public void add(Long transactionId) {
+        if (transactionId == null)
+            return;
+        bloomFilter.put(transactionId);
+        var next = nextBloomFilter;
+        if (next != null)
+            next.put(transactionId);
+        if (!recent.add(transactionId))
+            rotate(transactionId);
+        if (insertions.incrementAndGet() > expectedInsertions && rebuilding.compareAndSet(false, true)) {
+            LOG.warn("PERSISTED FILTER EXCEEDED {} INSERTIONS, RESIZING", expectedInsertions);
+            Thread.ofVirtual().name("persisted-filter-rebuild").start(this::rebuildNow);
+        }
+    }
+
+    /**
+     * Rebuilds the Bloom filter from the transactions table once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (rebuilding.compareAndSet(false, true))
+            rebuildNow();
+    }
+
+    private void rebuildNow() {
+        try {
+            long rows = transactionRepository.count();
+            long expected = Math.max(rows * 2, persistedFilterProperties.minExpectedInsertions());
+            var next = new LongBloomFilter(expected, persistedFilterProperties.falsePositiveRate());
+            nextBloomFilter = next;
+            transactionTemplate.execute(status -> {
+                try (var transactionIds = transactionRepository.streamAllTransactionIds()) {
+                    transactionIds.forEach(next::put);
+                }
+                return null;
+            });
+            bloomFilter = next;
+            expectedInsertions = expected;
+            insertions.set(rows);
+            rebuilt = true;
+            LOG.info("PERSISTED FILTER REBUILT FROM {} TRANSACTIONS, {} BITS AND {} HASHES",
+                    rows, next.bitCount(), next.hashCount());
+        } catch (RuntimeException e) {
+            LOG.error("FAILED TO REBUILD THE PERSISTED FILTER: {}", e.getMessage());
+        } finally {
+            nextBloomFilter = null;
+            rebuilding.set(false);
+        }
+    }
+
+    private void rotate(long transactionId) {
+        rotation.lock();
+        try {
+            if (recent.add(transactionId))
+                return;
+            previous = recent;
+            recent = new ConcurrentLongHashSet(persistedFilterProperties.recentCapacity());
+            recent.add(transactionId);
+        } finally {
+            rotation.unlock();
+        }
+    }
+
+    public enum Membership {
+        KNOWN, MAYBE, NEW
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.persistence;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.service.fabrickapi.entity.TransactionEntity;
+import com.service.fabrickapi.repository.TransactionRepository;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * Writes the stored transactions of an account range to a stream, oldest first, row by row: the rows come from
+ * a forward-only JDBC cursor fetching TransactionRepository.EXPORT_FETCH_SIZE rows at a time, each entity is
+ * detached once written and the output goes through a fixed buffer, so memory does not grow with the row count.
+ */
+@Component
+public class TransactionExporter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String CSV_HEADER = "transactionId,operationId,accountingDate,valueDate,type,amount,currency,description\n";
+    private final Logger LOG = LoggerFactory.getLogger(TransactionExporter.class);
+    private final TransactionRepository transactionRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader typeReader;
+
+    /**
+     * Constructs a new instance of the TransactionExporter.
+     *
+     * @param transactionRepository The repository streaming the rows.
+     * @param entityManager         The entity manager the written rows are detached from.
+     * @param transactionManager    The transaction manager of the read-only transaction holding the cursor open.
+     * @param objectMapper          The mapper whose factory writes the NDJSON rows.
+     */
+    @Autowired
+    public TransactionExporter(TransactionRepository transactionRepository,
+                               EntityManager entityManager,
+                               PlatformTransactionManager transactionManager,
+                               ObjectMapper objectMapper) {
+        this.transactionRepository = transactionRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.typeReader = objectMapper.readerFor(JsonNode.class).with(DeserializationFeature.FAIL_ON_TRAILING_TOKENS);
+    }
+
+    /**
+     * Writes the transactions of the account booked between the two accounting dates, both inclusive.
+     *
+     * @param accountId          The ID of the account owner.
+     * @param fromAccountingDate The first accounting date of the range.
+     * @param toAccountingDate   The last accounting date of the range.
+     * @param format             The output format.
+     * @param outputStream       The stream written to, flushed but not closed.
+     * @return long The number of transactions written.
+     * @throws IOException If writing to the stream fails, typically because the client went away.
+     */
+    public long export(Long accountId, LocalDate fromAccountingDate, LocalDate toAccountingDate,
+                       ExportFormat format, OutputStream outputStream) throws IOException {
+        var writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+        try {
+            var written = transactionTemplate.execute(status -> {
+                try (var transactionEntities = transactionRepository.streamByAccountIdAndAccountingDateBetween(accountId,
+                        java.sql.Date.valueOf(fromAccountingDate), java.sql.Date.valueOf(toAccountingDate))) {
+                    var rows = format == ExportFormat.CSV ? new CsvRows(writer) : new NdjsonRows(writer);
+                    var iterator = transactionEntities.iterator();
+                    long count = 0;
+                    while (iterator.hasNext()) {
+                        var transactionEntity = iterator.next();
+                        rows.write(transactionEntity);
+                        entityManager.detach(transactionEntity);
+                        count++;
+                    }
+                    rows.finish();
+                    return count;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+            LOG.info("EXPORTED {} TRANSACTIONS OF ACCOUNT {} FROM {} TO {} AS {}",
+                    written, accountId, fromAccountingDate, toAccountingDate, format);
+            return written == null ? 0 : written;
+        } catch (UncheckedIOException e) {
+            LOG.warn("EXPORT OF ACCOUNT {} FROM {} TO {} INTERRUPTED: {}", accountId, fromAccountingDate, toAccountingDate,
+                    e.getCause().getMessage());
+            throw e.getCause();
+        }
+    }
+
+    private static String isoDate(Date date) {
+        if (date == null)
+            return null;
+        return date instanceof java.sql.Date sqlDate
+                ? sqlDate.toLocalDate().toString()
+                : date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toString();
+    }
+
+    private interface Rows {
+        void write(TransactionEntity transactionEntity) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    /**
+     * One JSON object per line, shaped as TransactionRest. The type is stored as JSON and written as such, except
+     * for the rows stored before it was, which hold its Map.toString() form and get it as a JSON string.
+     */
+    private final class NdjsonRows implements Rows {
+        private final Writer writer;
+        private final JsonGenerator generator;
+        private boolean empty = true;
+
+        NdjsonRows(Writer writer) throws IOException {
+            this.writer = writer;
+            this.generator = objectMapper.getFactory().createGenerator(writer);
+            this.generator.setRootValueSeparator(new SerializedString("\n"));
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        }
+
+        @Override
+        public void write(TransactionEntity transactionEntity) throws IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("transactionId", transactionEntity.getTransactionId());
+            generator.writeNumberField("operationId", transactionEntity.getOperationId());
+            generator.writeStringField("accountingDate", isoDate(transactionEntity.getAccountingDate()));
+            generator.writeStringField("valueDate", isoDate(transactionEntity.getValueDate()));
+            generator.writeFieldName("type");
+            writeType(transactionEntity.getType());
+            generator.writeNumberField("amount", transactionEntity.getAmount());
+            generator.writeStringField("currency", transactionEntity.getCurrency());
+            generator.writeStringField("description", transactionEntity.getDescription());
+            generator.writeEndObject();
+            empty = false;
+        }
+
+        private void writeType(String type) throws IOException {
+            if (type == null) {
+                generator.writeNull();
+                return;
+            }
+            JsonNode node;
+            try {
+                node = typeReader.readTree(type);
+            } catch (JsonProcessingException e) {
+                node = null;
+            }
+            if (node == null || node.isMissingNode())
+                generator.writeString(type);
+            else
+                generator.writeTree(node);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.flush();
+            if (!empty)
+                writer.write('\n');
+        }
+    }
+
+    /**
+     * RFC 4180 CSV with a header line; fields holding a comma, quote or line break are quoted.
+     */
+    private static final class CsvRows implements Rows {
+        private final Writer writer;
+
+        CsvRows(Writer writer) throws IOException {
+            this.writer = writer;
+            writer.write(CSV_HEADER);
+        }
+
+        @Override
+        public void write(TransactionEntity transactionEntity) throws IOException {
+            writer.write(String.valueOf(transactionEntity.getTransactionId()));
+            writer.write(',');
+            writer.write(String.valueOf(transactionEntity.getOperationId()));
+            writer.write(',');
+            field(isoDate(transactionEntity.getAccountingDate()));
+            writer.write(',');
+            field(isoDate(transactionEntity.getValueDate()));
+            writer.write(',');
+            field(transactionEntity.getType() == null ? null : transactionEntity.getType().strip());
+            writer.write(',');
+            field(transactionEntity.getAmount() == null ? null : transactionEntity.getAmount().toPlainString());
+            writer.write(',');
+            field(transactionEntity.getCurrency());
+            writer.write(',');
+            field(transactionEntity.getDescription());
+            writer.write('\n');
+        }
+
+        @Override
+        public void finish() {
+        }
+
+        private void field(String value) throws IOException {
+            if (value == null)
+                return;
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+}
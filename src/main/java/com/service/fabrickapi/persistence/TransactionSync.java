@@ -0,0 +1,243 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.persistence;
+
+import com.service.fabrickapi.cache.TransactionRangeCache;
+import com.service.fabrickapi.configuration.ServiceExecutors;
+import com.service.fabrickapi.entity.AccountSyncStateEntity;
+import com.service.fabrickapi.mapper.TransactionEntityRestMapper;
+import com.service.fabrickapi.model.rest.TransactionRest;
+import com.service.fabrickapi.repository.AccountSyncStateRepository;
+import com.service.fabrickapi.repository.TransactionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+
+/**
+ * Incremental per-account transaction sync. Each account has a contiguous range of accounting dates whose
+ * transactions are all stored, up to its watermark; ranges inside it are read from the transactions table,
+ * and only the dates on either side of it are fetched from the Fabrick API. Fetches always extend the stored
+ * range without leaving a hole, and the range only grows once the fetched transactions are stored.
+ * Like the range cache, it never covers today, whose transactions can still change.
+ * The dates missing on both sides are fetched concurrently, and the stored range advanced, on the fabrick.io executor.
+ */
+@Component
+public class TransactionSync {
+    private final Logger LOG = LoggerFactory.getLogger(TransactionSync.class);
+    private final AccountSyncStateRepository accountSyncStateRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionEntityRestMapper transactionEntityRestMapper;
+    private final TransactionWriteBehind transactionWriteBehind;
+    private final Counter localDays;
+    private final Counter fetchedDays;
+    private final Executor io;
+    private final Clock clock;
+    private final ReentrantLock advancing = new ReentrantLock();
+
+    /**
+     * Constructs a new instance of the TransactionSync.
+     *
+     * @param accountSyncStateRepository  The repository of the per-account stored ranges.
+     * @param transactionRepository       The repository the stored ranges are read from.
+     * @param transactionEntityRestMapper The mapper of stored transactions to TransactionRest objects.
+     * @param transactionWriteBehind      The writer storing the fetched transactions.
+     * @param meterRegistry               The registry of the fabrick.sync.days metric.
+     * @param serviceExecutors            The executors whose io executor fetches and advances the stored ranges.
+     */
+    @Autowired
+    public TransactionSync(AccountSyncStateRepository accountSyncStateRepository,
+                           TransactionRepository transactionRepository,
+                           TransactionEntityRestMapper transactionEntityRestMapper,
+                           TransactionWriteBehind transactionWriteBehind,
+                           MeterRegistry meterRegistry,
+                           ServiceExecutors serviceExecutors) {
+        this(accountSyncStateRepository, transactionRepository, transactionEntityRestMapper, transactionWriteBehind,
+                meterRegistry, serviceExecutors.io(), Clock.systemDefaultZone());
+    }
+
+    TransactionSync(AccountSyncStateRepository accountSyncStateRepository,
+                    TransactionRepository transactionRepository,
+                    TransactionEntityRestMapper transactionEntityRestMapper,
+                    TransactionWriteBehind transactionWriteBehind,
+                    MeterRegistry meterRegistry,
+                    Executor io,
+                    Clock clock) {
+        this.accountSyncStateRepository = accountSyncStateRepository;
+        this.transactionRepository = transactionRepository;
+        this.transactionEntityRestMapper = transactionEntityRestMapper;
+        this.transactionWriteBehind = transactionWriteBehind;
+        this.localDays = meterRegistry.counter("fabrick.sync.days", "source", "local");
+        this.fetchedDays = meterRegistry.counter("fabrick.sync.days", "source", "upstream");
+        this.io = io;
+        this.clock = clock;
+    }
+
+    /**
+     * Retrieves the transactions of the account booked between the two accounting dates, both inclusive.
+     *
+     * @param accountId          The ID of the account owner.
+     * @param fromAccountingDate The first accounting date of the range.
+     * @param toAccountingDate   The last accounting date of the range.
+     * @param fetcher            Fetches the transactions of a range from the Fabrick API, with the same range semantics.
+     * @return List<TransactionRest> The transactions of the range, unordered.
+     */
+    public List<TransactionRest> getTransactions(Long accountId,
+                                                 LocalDate fromAccountingDate,
+                                                 LocalDate toAccountingDate,
+                                                 BiFunction<LocalDate, LocalDate, List<TransactionRest>> fetcher) {
+        var state = accountSyncStateRepository.findById(accountId).orElse(null);
+        var transactions = new ArrayList<TransactionRest>();
+        fetchMissing(accountId, fromAccountingDate, toAccountingDate, fetcher, state, transactions);
+        transactions.removeIf(transactionRest -> outside(transactionRest, fromAccountingDate, toAccountingDate));
+        if (state == null)
+            return transactions;
+
+        var localFrom = max(fromAccountingDate, state.getSyncedFrom());
+        var localTo = min(toAccountingDate, state.getWatermark());
+        if (!localFrom.isAfter(localTo)) {
+            LOG.debug("READING TRANSACTIONS OF ACCOUNT {} FROM {} TO {} FROM THE DB", accountId, localFrom, localTo);
+            transactionRepository.findByAccountIdAndAccountingDateBetween(accountId,
+                            java.sql.Date.valueOf(localFrom), java.sql.Date.valueOf(localTo))
+                    .stream()
+                    .map(transactionEntityRestMapper)
+                    .forEach(transactions::add);
+            localDays.increment(localFrom.datesUntil(localTo.plusDays(1)).count());
+        }
+        return transactions;
+    }
+
+    /**
+     * Fetches and stores the transactions of the range the transactions table does not hold yet, for readers
+     * going to the table directly.
+     *
+     * @param accountId          The ID of the account owner.
+     * @param fromAccountingDate The first accounting date of the range.
+     * @param toAccountingDate   The last accounting date of the range.
+     * @param fetcher            Fetches the transactions of a range from the Fabrick API, with the same range semantics.
+     * @return CompletableFuture<Void> Completed once the whole range is stored, failed if storing failed.
+     */
+    public CompletableFuture<Void> sync(Long accountId,
+                                        LocalDate fromAccountingDate,
+                                        LocalDate toAccountingDate,
+                                        BiFunction<LocalDate, LocalDate, List<TransactionRest>> fetcher) {
+        var state = accountSyncStateRepository.findById(accountId).orElse(null);
+        return fetchMissing(accountId, fromAccountingDate, toAccountingDate, fetcher, state, new ArrayList<>());
+    }
+
+    private CompletableFuture<Void> fetchMissing(Long accountId, LocalDate from, LocalDate to,
+                                                 BiFunction<LocalDate, LocalDate, List<TransactionRest>> fetcher,
+                                                 AccountSyncStateEntity state, List<TransactionRest> transactions) {
+        var missing = new ArrayList<LocalDate[]>();
+        if (state == null) {
+            LOG.info("NO TRANSACTIONS OF ACCOUNT {} STORED, FETCHING FROM {} TO {}", accountId, from, to);
+            missing.add(new LocalDate[]{from, to});
+        } else {
+            if (from.isBefore(state.getSyncedFrom()))
+                missing.add(new LocalDate[]{from, state.getSyncedFrom().minusDays(1)});
+            if (to.isAfter(state.getWatermark()))
+                missing.add(new LocalDate[]{state.getWatermark().plusDays(1), to});
+        }
+
+        var fetched = ServiceExecutors.invokeAll(missing, range -> fetcher.apply(range[0], range[1]), io);
+        var stored = new ArrayList<CompletableFuture<Void>>();
+        for (int i = 0; i < missing.size(); i++) {
+            transactions.addAll(fetched.get(i));
+            stored.add(store(accountId, missing.get(i)[0], missing.get(i)[1], fetched.get(i)));
+        }
+        return CompletableFuture.allOf(stored.toArray(CompletableFuture[]::new));
+    }
+
+    private CompletableFuture<Void> store(Long accountId, LocalDate from, LocalDate to, List<TransactionRest> fetched) {
+        fetchedDays.increment(from.datesUntil(to.plusDays(1)).count());
+        var yesterday = LocalDate.now(clock).minusDays(1);
+        var storedTo = min(to, yesterday);
+        // advanced off the writer thread, which keeps draining the queue meanwhile
+        var stored = transactionWriteBehind.enqueue(accountId, fetched)
+                .thenRunAsync(() -> {
+                    if (!from.isAfter(storedTo))
+                        advance(accountId, from, storedTo);
+                }, io);
+        stored.exceptionally(e -> {
+            LOG.warn("TRANSACTIONS OF ACCOUNT {} FROM {} TO {} NOT STORED, WATERMARK KEPT", accountId, from, to);
+            return null;
+        });
+        return stored;
+    }
+
+    /**
+     * Extends the stored range of the account with the dates just stored, if they touch it.
+     * Serialized by a lock rather than a monitor: it reads and writes the database, and a virtual thread blocked
+     * on I/O inside a monitor would pin its carrier.
+     */
+    void advance(Long accountId, LocalDate from, LocalDate to) {
+        advancing.lock();
+        try {
+            advanceLocked(accountId, from, to);
+        } finally {
+            advancing.unlock();
+        }
+    }
+
+    private void advanceLocked(Long accountId, LocalDate from, LocalDate to) {
+        var state = accountSyncStateRepository.findById(accountId)
+                .orElseGet(() -> new AccountSyncStateEntity(accountId, from, to));
+        if (from.isAfter(state.getWatermark().plusDays(1)) || to.isBefore(state.getSyncedFrom().minusDays(1))) {
+            LOG.debug("STORED RANGE {} TO {} OF ACCOUNT {} DOES NOT TOUCH {} TO {}",
+                    from, to, accountId, state.getSyncedFrom(), state.getWatermark());
+            return;
+        }
+        state.setSyncedFrom(min(state.getSyncedFrom(), from));
+        state.setWatermark(max(state.getWatermark(), to));
+        state.setUpdatedAt(Instant.now(clock));
+        accountSyncStateRepository.save(state);
+        LOG.info("ACCOUNT {} TRANSACTIONS STORED FROM {} TO {}", accountId, state.getSyncedFrom(), state.getWatermark());
+    }
+
+    private static boolean outside(TransactionRest transactionRest, LocalDate from, LocalDate to) {
+        var accountingDate = TransactionRangeCache.accountingDate(transactionRest);
+        return accountingDate != null && (accountingDate.isBefore(from) || accountingDate.isAfter(to));
+    }
+
+    private static LocalDate min(LocalDate a, LocalDate b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    private static LocalDate max(LocalDate a, LocalDate b) {
+        return a.isAfter(b) ? a : b;
+    }
+}
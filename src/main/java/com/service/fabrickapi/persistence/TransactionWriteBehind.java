@@ -0,0 +1,254 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.persistence;
+
+import com.service.fabrickapi.configuration.WriteBehindProperties;
+import com.service.fabrickapi.mapper.AccountTransactionSaveMapper;
+import com.service.fabrickapi.model.rest.TransactionRest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Write-behind persistence of fetched transactions: the read path enqueues them on a bounded queue and returns,
+ * a background writer drains the queue in batches through the {@link AccountTransactionSaveMapper}.
+ * When the queue stays full for the offer timeout the caller writes the rest itself, so nothing is dropped.
+ * A failed batch is written again one transaction at a time, so only the transactions that still fail are lost.
+ * Stopping the application flushes what is still queued, on the stopping thread if the writer does not finish in time.
+ */
+@Component
+public class TransactionWriteBehind implements SmartLifecycle {
+    private final Logger LOG = LoggerFactory.getLogger(TransactionWriteBehind.class);
+    private final AccountTransactionSaveMapper accountTransactionSaveMapper;
+    private final WriteBehindProperties writeBehindProperties;
+    private final PersistedTransactionFilter persistedTransactionFilter;
+    private final BlockingQueue<Pending> queue;
+    private final Timer lag;
+    private final Counter written;
+    private final Counter callerRuns;
+    private final Counter failures;
+    private volatile boolean running;
+    private Thread writer;
+
+    /**
+     * Constructs a new instance of the TransactionWriteBehind.
+     *
+     * @param accountTransactionSaveMapper The mapper storing a batch of transactions.
+     * @param writeBehindProperties        The queue capacity, batch size, offer and shutdown timeouts.
+     * @param persistedTransactionFilter   The filter of the transactions already stored, which are not queued.
+     * @param meterRegistry                The registry of the fabrick.write-behind.* metrics.
+     */
+    @Autowired
+    public TransactionWriteBehind(AccountTransactionSaveMapper accountTransactionSaveMapper,
+                                  WriteBehindProperties writeBehindProperties,
+                                  PersistedTransactionFilter persistedTransactionFilter,
+                                  MeterRegistry meterRegistry) {
+        this.accountTransactionSaveMapper = accountTransactionSaveMapper;
+        this.writeBehindProperties = writeBehindProperties;
+        this.persistedTransactionFilter = persistedTransactionFilter;
+        this.queue = new ArrayBlockingQueue<>(writeBehindProperties.capacity());
+        this.lag = Timer.builder("fabrick.write-behind.lag")
+                .description("Time from enqueue to write of a transaction")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.written = meterRegistry.counter("fabrick.write-behind.written");
+        this.callerRuns = meterRegistry.counter("fabrick.write-behind.caller.runs");
+        this.failures = meterRegistry.counter("fabrick.write-behind.failures");
+        Gauge.builder("fabrick.write-behind.queue.depth", queue, BlockingQueue::size)
+                .description("Transactions waiting to be written")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Hands the transactions to the writer. Returns once they are queued, or once the caller wrote those
+     * the full queue did not take; writes them right away when write-behind is disabled or stopped.
+     * Transactions recently stored are dropped before they take a queue slot.
+     *
+     * @param accountId The ID of the account owner the transactions were fetched for.
+     * @param fetched   The transactions fetched from the Fabrick API.
+     * @return CompletableFuture<Void> Completed once all the transactions are stored, failed if a write failed.
+     */
+    public CompletableFuture<Void> enqueue(Long accountId, List<TransactionRest> fetched) {
+        var transactionRests = fetched.stream()
+                .filter(transactionRest -> !persistedTransactionFilter.isKnown(transactionRest.transactionId()))
+                .toList();
+        if (transactionRests.isEmpty())
+            return CompletableFuture.completedFuture(null);
+        var ticket = new Ticket(transactionRests.size());
+        if (!writeBehindProperties.enabled() || !running) {
+            write(accountId, transactionRests, ticket);
+            return ticket.future;
+        }
+        var now = System.nanoTime();
+        for (int i = 0; i < transactionRests.size(); i++) {
+            if (!offer(new Pending(accountId, transactionRests.get(i), now, ticket))) {
+                var rest = transactionRests.subList(i, transactionRests.size());
+                LOG.warn("WRITE-BEHIND QUEUE FULL, WRITING {} TRANSACTIONS ON THE CALLER THREAD", rest.size());
+                callerRuns.increment();
+                write(accountId, rest, ticket);
+                break;
+            }
+        }
+        if (!running)
+            flush();
+        return ticket.future;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (!writeBehindProperties.enabled())
+            return;
+        writer = Thread.ofPlatform().name("transactions-writer").daemon().start(this::drain);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (writer == null)
+            return;
+        try {
+            writer.join(writeBehindProperties.shutdownTimeout().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty())
+            LOG.warn("WRITE-BEHIND WRITER DID NOT FINISH, WRITING {} TRANSACTIONS ON THE STOPPING THREAD", queue.size());
+        flush();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private boolean offer(Pending pending) {
+        try {
+            return queue.offer(pending, writeBehindProperties.offerTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void drain() {
+        var batch = new ArrayList<Pending>(writeBehindProperties.batchSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                var first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+                batch.add(first);
+                queue.drainTo(batch, writeBehindProperties.batchSize() - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+        LOG.info("WRITE-BEHIND QUEUE FLUSHED");
+    }
+
+    /**
+     * Writes what is queued on the calling thread, for the transactions queued once the writer has stopped.
+     */
+    private void flush() {
+        var batch = new ArrayList<Pending>(writeBehindProperties.batchSize());
+        while (queue.drainTo(batch, writeBehindProperties.batchSize()) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        var byAccount = new LinkedHashMap<Long, List<Pending>>();
+        batch.forEach(pending -> byAccount.computeIfAbsent(pending.accountId(), id -> new ArrayList<>()).add(pending));
+        byAccount.forEach((accountId, pendings) -> {
+            if (write(accountId, pendings.stream().map(Pending::transactionRest).toList()) == null) {
+                pendings.forEach(pending -> pending.ticket().done(1, null));
+                return;
+            }
+            LOG.warn("WRITING {} TRANSACTIONS OF {} ONE BY ONE", pendings.size(), accountId);
+            pendings.forEach(pending -> pending.ticket().done(1, write(accountId, List.of(pending.transactionRest()))));
+        });
+        var now = System.nanoTime();
+        batch.forEach(pending -> lag.record(now - pending.enqueuedAt(), TimeUnit.NANOSECONDS));
+    }
+
+    private void write(Long accountId, List<TransactionRest> transactionRests, Ticket ticket) {
+        ticket.done(transactionRests.size(), write(accountId, transactionRests));
+    }
+
+    private RuntimeException write(Long accountId, List<TransactionRest> transactionRests) {
+        try {
+            accountTransactionSaveMapper.apply(accountId, transactionRests);
+            written.increment(transactionRests.size());
+            return null;
+        } catch (RuntimeException e) {
+            failures.increment();
+            LOG.error("FAILED TO WRITE {} TRANSACTIONS: {}", transactionRests.size(), e.getMessage());
+            return e;
+        }
+    }
+
+    private record Pending(Long accountId, TransactionRest transactionRest, long enqueuedAt, Ticket ticket) {
+    }
+
+    /**
+     * Completes the future of one enqueue call once all its transactions are written, or fails it on the first failed write.
+     */
+    private static final class Ticket {
+        private final AtomicInteger remaining;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Ticket(int transactions) {
+            this.remaining = new AtomicInteger(transactions);
+        }
+
+        void done(int transactions, RuntimeException failure) {
+            if (failure != null)
+                future.completeExceptionally(failure);
+            else if (remaining.addAndGet(-transactions) == 0)
+                future.complete(null);
+        }
+    }
+}
@@ -28,19 +28,87 @@ package com.service.fabrickapi.repository;
 
 
 import com.service.fabrickapi.entity.TransactionEntity;
+import jakarta.persistence.QueryHint;
 import org.hibernate.annotations.processing.SQL;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface TransactionRepository extends CrudRepository<TransactionEntity, Long> {
+public interface TransactionRepository extends CrudRepository<TransactionEntity, Long>, TransactionRepositoryCustom {
+    int EXPORT_FETCH_SIZE = 1000;
+
     @Query("SELECT t FROM TransactionEntity t WHERE t.transactionId = :transactionId")
     Optional<TransactionEntity> findByTransactionId(@Param("transactionId") long transactionId);
 
+    @Query("SELECT t.transactionId FROM TransactionEntity t WHERE t.transactionId IN :transactionIds")
+    List<Long> findExistingTransactionIds(@Param("transactionIds") Collection<Long> transactionIds);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE TransactionEntity t SET t.accountId = :accountId WHERE t.transactionId IN :transactionIds AND t.accountId IS NULL")
+    int assignAccount(@Param("accountId") Long accountId, @Param("transactionIds") Collection<Long> transactionIds);
+
+    List<TransactionEntity> findByAccountIdAndAccountingDateBetween(Long accountId, Date fromAccountingDate, Date toAccountingDate);
+
+    List<TransactionEntity> findByAccountIdAndAccountingDateBetweenOrderByAccountingDateDescValueDateDescTransactionIdDesc(
+            Long accountId, Date fromAccountingDate, Date toAccountingDate, Limit limit);
+
+    /**
+     * The page after the given (accounting date, value date, transaction id) key, newest first: a seek on the
+     * account's composite index, as cheap for deep pages as for the first one.
+     */
+    @Query("""
+            SELECT t FROM TransactionEntity t
+            WHERE t.accountId = :accountId AND t.accountingDate BETWEEN :from AND :to
+              AND (t.accountingDate < :accountingDate
+                   OR (t.accountingDate = :accountingDate AND (t.valueDate < :valueDate
+                       OR (t.valueDate = :valueDate AND t.transactionId < :transactionId))))
+            ORDER BY t.accountingDate DESC, t.valueDate DESC, t.transactionId DESC
+            """)
+    List<TransactionEntity> findPageAfter(@Param("accountId") Long accountId,
+                                          @Param("from") Date fromAccountingDate,
+                                          @Param("to") Date toAccountingDate,
+                                          @Param("accountingDate") Date accountingDate,
+                                          @Param("valueDate") Date valueDate,
+                                          @Param("transactionId") Long transactionId,
+                                          Limit limit);
+
+    long countByAccountIdAndAccountingDateBetween(Long accountId, Date fromAccountingDate, Date toAccountingDate);
+
+    @Query("SELECT t.transactionId FROM TransactionEntity t")
+    Stream<Long> streamAllTransactionIds();
+
+    /**
+     * The account's transactions of the range, oldest first, read through a forward-only cursor fetching
+     * EXPORT_FETCH_SIZE rows per round trip; the stream must be consumed and closed inside a transaction.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("""
+            SELECT t FROM TransactionEntity t
+            WHERE t.accountId = :accountId AND t.accountingDate BETWEEN :from AND :to
+            ORDER BY t.accountingDate, t.valueDate, t.transactionId
+            """)
+    Stream<TransactionEntity> streamByAccountIdAndAccountingDateBetween(@Param("accountId") Long accountId,
+                                                                         @Param("from") Date fromAccountingDate,
+                                                                         @Param("to") Date toAccountingDate);
+
     @SQL("DELETE FROM transactions t WHERE t.transaction_id = :transactionId")
     Integer deleteByTransactionId(@Param("transactionId") long transactionId);
 }
@@ -0,0 +1,127 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.repository;
+
+import com.service.fabrickapi.entity.TransactionEntity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * Native batched insert-if-absent of transactions, conflicting on either unique key, transaction_id or operation_id:
+ * INSERT IGNORE on MySQL/MariaDB, MERGE ... WHEN NOT MATCHED on H2, INSERT ... ON CONFLICT DO NOTHING elsewhere.
+ * Ids come from the entity's pooled sequence, so only one sequence call is made per allocation.
+ */
+public class TransactionRepositoryCustomImpl implements TransactionRepositoryCustom {
+    private static final String COLUMNS = "id, account_id, transaction_id, operation_id, accounting_date, value_date, type, amount, currency, description";
+    private static final String VALUES = "?, ?, ?, ?, ?, ?, ?, ?, ?, ?";
+    private final Logger LOG = LoggerFactory.getLogger(TransactionRepositoryCustomImpl.class);
+    @PersistenceContext
+    private EntityManager entityManager;
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize;
+
+    @Override
+    @Transactional
+    public int upsertAll(List<TransactionEntity> transactionEntities) {
+        if (transactionEntities.isEmpty())
+            return 0;
+
+        var session = entityManager.unwrap(SessionImplementor.class);
+        var generator = (BeforeExecutionGenerator) session.getFactory().getMappingMetamodel()
+                .getEntityDescriptor(TransactionEntity.class).getGenerator();
+        for (var transactionEntity : transactionEntities) {
+            if (transactionEntity.getId() == null)
+                transactionEntity.setId((Long) generator.generate(session, transactionEntity, null, EventType.INSERT));
+        }
+
+        int[] inserted = {0};
+        session.doWork(connection -> {
+            try (var statement = connection.prepareStatement(upsertSql(connection))) {
+                int pending = 0;
+                for (var transactionEntity : transactionEntities) {
+                    bind(statement, transactionEntity);
+                    statement.addBatch();
+                    if (++pending == batchSize) {
+                        inserted[0] += count(statement.executeBatch());
+                        pending = 0;
+                    }
+                }
+                if (pending > 0)
+                    inserted[0] += count(statement.executeBatch());
+            }
+        });
+        LOG.info("{} OF {} TRANSACTIONS INSERTED", inserted[0], transactionEntities.size());
+        return inserted[0];
+    }
+
+    private static String upsertSql(Connection connection) throws SQLException {
+        var product = connection.getMetaData().getDatabaseProductName().toLowerCase();
+        if (product.contains("mysql") || product.contains("mariadb"))
+            return "INSERT IGNORE INTO transactions (" + COLUMNS + ") VALUES (" + VALUES + ")";
+        if (product.contains("h2"))
+            return "MERGE INTO transactions t USING (VALUES (" + VALUES + ")) AS s(" + COLUMNS + ")"
+                    + " ON t.transaction_id = s.transaction_id OR t.operation_id = s.operation_id"
+                    + " WHEN NOT MATCHED THEN INSERT (" + COLUMNS + ") VALUES (s." + COLUMNS.replace(", ", ", s.") + ")";
+        return "INSERT INTO transactions (" + COLUMNS + ") VALUES (" + VALUES + ") ON CONFLICT DO NOTHING";
+    }
+
+    private static void bind(PreparedStatement statement, TransactionEntity transactionEntity) throws SQLException {
+        statement.setLong(1, transactionEntity.getId());
+        statement.setObject(2, transactionEntity.getAccountId(), Types.BIGINT);
+        statement.setLong(3, transactionEntity.getTransactionId());
+        statement.setLong(4, transactionEntity.getOperationId());
+        statement.setDate(5, new java.sql.Date(transactionEntity.getAccountingDate().getTime()));
+        statement.setDate(6, new java.sql.Date(transactionEntity.getValueDate().getTime()));
+        statement.setString(7, transactionEntity.getType());
+        statement.setBigDecimal(8, transactionEntity.getAmount());
+        statement.setString(9, transactionEntity.getCurrency());
+        statement.setString(10, transactionEntity.getDescription());
+    }
+
+    private static int count(int[] updateCounts) {
+        int count = 0;
+        for (int updateCount : updateCounts) {
+            if (updateCount > 0)
+                count += updateCount;
+            else if (updateCount == Statement.SUCCESS_NO_INFO)
+                count++;
+        }
+        return count;
+    }
+}
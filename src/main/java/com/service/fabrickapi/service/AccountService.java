@@ -26,6 +26,8 @@ package com.service.fabrickapi.service;
 
 
 import com.service.fabrickapi.model.rest.AccountBalanceRest;
+import com.service.fabrickapi.model.rest.AccountBalanceResultRest;
+import com.service.fabrickapi.model.rest.TransactionPageRest;
 import com.service.fabrickapi.model.rest.TransactionRest;
 
 import java.util.List;
@@ -33,5 +35,12 @@ import java.util.List;
 public interface AccountService {
     AccountBalanceRest getAccountBalance(Long accountId);
 
-    List<TransactionRest> getAccountTransactions(Long accountId, String fromAccountingDate, String toAccountingDate);
+    List<AccountBalanceResultRest> getAccountBalances(List<Long> accountIds);
+
+    List<TransactionRest> getAccountTransactions(Long accountId, String fromAccountingDate, String toAccountingDate, Integer limit);
+
+    TransactionPageRest getTransactionHistory(Long accountId, String fromAccountingDate, String toAccountingDate,
+                                              Integer pageSize, String cursor);
+
+    TransactionExport exportTransactions(Long accountId, String fromAccountingDate, String toAccountingDate, String format);
 }
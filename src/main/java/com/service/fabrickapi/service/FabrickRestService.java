@@ -37,5 +37,5 @@ public interface FabrickRestService {
 
     Optional<List<TransactionDTO>> getAccountTransactions(Long accountId, String fromAccountingDate, String toAccountingDate);
 
-    Optional<LoanTransferDTO> executeTransfer(Long accountId, LoanTransferRequest transferRequest);
+    Optional<LoanTransferDTO> executeTransfer(Long accountId, LoanTransferRequest transferRequest, String idempotencyKey);
 }
@@ -0,0 +1,41 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.service;
+
+import com.service.fabrickapi.model.dto.AccountBalanceDTO;
+import com.service.fabrickapi.model.dto.LoanTransferDTO;
+import com.service.fabrickapi.model.dto.TransactionDTO;
+import com.service.fabrickapi.model.request.LoanTransferRequest;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+public interface ReactiveFabrickRestService {
+    Mono<AccountBalanceDTO> getAccountBalance(Long accountId);
+
+    Mono<List<TransactionDTO>> getAccountTransactions(Long accountId, String fromAccountingDate, String toAccountingDate);
+
+    Mono<LoanTransferDTO> executeTransfer(Long accountId, LoanTransferRequest transferRequest);
+}
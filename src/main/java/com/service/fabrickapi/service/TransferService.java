@@ -28,5 +28,5 @@ import com.service.fabrickapi.model.request.LoanTransferRequest;
 import com.service.fabrickapi.model.rest.LoanTransferRest;
 
 public interface TransferService {
-    LoanTransferRest transferLoan(Long accountId, LoanTransferRequest transferRequest);
+    LoanTransferRest transferLoan(Long accountId, LoanTransferRequest transferRequest, String idempotencyKey);
 }
@@ -0,0 +1,94 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.service.implementation;
+
+import com.service.fabrickapi.configuration.OverviewProperties;
+import com.service.fabrickapi.exception.AccountServiceException;
+import com.service.fabrickapi.model.rest.AccountOverviewRest;
+import com.service.fabrickapi.service.AccountOverviewService;
+import com.service.fabrickapi.service.AccountService;
+import com.service.fabrickapi.shared.FailFastScope;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeoutException;
+
+import static com.service.fabrickapi.model.error.ErrorMessages.GATEWAY_TIMEOUT_ERROR;
+import static com.service.fabrickapi.model.error.ErrorMessages.INTERNAL_SERVER_ERROR;
+
+@Service
+public class AccountOverviewServiceImpl implements AccountOverviewService {
+    private final Logger LOG = LoggerFactory.getLogger(AccountOverviewServiceImpl.class);
+    private final AccountService accountService;
+    private final OverviewProperties overviewProperties;
+
+    /**
+     * Constructs a new instance of the AccountOverviewServiceImpl.
+     *
+     * @param accountService     The AccountService instance, through its cache proxy, fetching the balance and transactions.
+     * @param overviewProperties The default range and the deadline of the overview.
+     */
+    @Autowired
+    public AccountOverviewServiceImpl(AccountService accountService, OverviewProperties overviewProperties) {
+        this.accountService = accountService;
+        this.overviewProperties = overviewProperties;
+    }
+
+    /**
+     * Retrieves the balance and the most recent transactions of the account owner in one call.
+     *
+     * @param accountId          The ID of the account owner.
+     * @param fromAccountingDate The start date (ISO 8601 format) of the transactions, fabrick.overview.days before today when null.
+     * @param toAccountingDate   The end date (ISO 8601 format) of the transactions, today when null.
+     * @param limit              The number of transactions returned, as for getAccountTransactions.
+     * @return AccountOverviewRest The balance and the transactions, newest first.
+     * @implNote The balance and the transactions are fetched concurrently, each on its own virtual thread, so the
+     * overview takes as long as the slower of the two. Both share the fabrick.overview.timeout deadline; if either
+     * fails, or the deadline passes, the other one is interrupted and the overview fails: with the error of the
+     * failed call, or a 504 past the deadline.
+     */
+    @Override
+    public AccountOverviewRest getAccountOverview(Long accountId, String fromAccountingDate, String toAccountingDate, Integer limit) {
+        var today = LocalDate.now();
+        var from = fromAccountingDate != null ? fromAccountingDate : today.minusDays(overviewProperties.days()).toString();
+        var to = toAccountingDate != null ? toAccountingDate : today.toString();
+
+        try (var scope = new FailFastScope("fabrick-overview-")) {
+            var balance = scope.fork(() -> accountService.getAccountBalance(accountId));
+            var transactions = scope.fork(() -> accountService.getAccountTransactions(accountId, from, to, limit));
+            scope.join(overviewProperties.timeout());
+            return new AccountOverviewRest(balance.get(), transactions.get());
+        } catch (TimeoutException e) {
+            LOG.error("OVERVIEW OF ACCOUNT {} NOT READY WITHIN {}", accountId, overviewProperties.timeout());
+            throw new AccountServiceException(GATEWAY_TIMEOUT_ERROR.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AccountServiceException(INTERNAL_SERVER_ERROR.getMessage());
+        }
+    }
+}
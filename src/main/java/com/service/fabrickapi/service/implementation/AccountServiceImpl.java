@@ -26,23 +26,46 @@
 
 package com.service.fabrickapi.service.implementation;
 
+import com.service.fabrickapi.cache.AccountBalanceBatchLoader;
+import com.service.fabrickapi.cache.TransactionRangeCache;
+import com.service.fabrickapi.configuration.HistoryProperties;
+import com.service.fabrickapi.configuration.ServiceExecutors;
+import com.service.fabrickapi.configuration.TransactionsProperties;
+import com.service.fabrickapi.entity.TransactionEntity;
 import com.service.fabrickapi.exception.AccountServiceException;
 import com.service.fabrickapi.mapper.AccountBalancerRestMapper;
-import com.service.fabrickapi.mapper.AccountTransactionSaveMapper;
+import com.service.fabrickapi.mapper.TransactionEntityRestMapper;
 import com.service.fabrickapi.mapper.TransactionRestMapper;
 import com.service.fabrickapi.model.rest.AccountBalanceRest;
+import com.service.fabrickapi.model.rest.AccountBalanceResultRest;
+import com.service.fabrickapi.model.rest.TransactionPageRest;
 import com.service.fabrickapi.model.rest.TransactionRest;
+import com.service.fabrickapi.persistence.ExportFormat;
+import com.service.fabrickapi.persistence.TransactionExporter;
+import com.service.fabrickapi.persistence.TransactionSync;
+import com.service.fabrickapi.repository.TransactionRepository;
 import com.service.fabrickapi.service.AccountService;
 import com.service.fabrickapi.service.FabrickRestService;
+import com.service.fabrickapi.service.TransactionExport;
+import com.service.fabrickapi.shared.TopK;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
-import java.util.Comparator;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import static com.service.fabrickapi.model.error.ErrorMessages.BAD_REQUEST_ERROR;
+import static com.service.fabrickapi.model.error.ErrorMessages.INTERNAL_SERVER_ERROR;
 import static com.service.fabrickapi.model.error.ErrorMessages.RECORD_NOT_FOUND;
 
 @Service
@@ -51,7 +74,15 @@ public class AccountServiceImpl implements AccountService {
     private final FabrickRestService fabrickRestService;
     private final AccountBalancerRestMapper accountBalancerRestMapper;
     private final TransactionRestMapper transactionRestMapper;
-    private final AccountTransactionSaveMapper accountTransactionSaveMapper;
+    private final TransactionSync transactionSync;
+    private final TransactionRangeCache transactionRangeCache;
+    private final TransactionRepository transactionRepository;
+    private final TransactionEntityRestMapper transactionEntityRestMapper;
+    private final HistoryProperties historyProperties;
+    private final TransactionExporter transactionExporter;
+    private final TransactionsProperties transactionsProperties;
+    private final ServiceExecutors serviceExecutors;
+    private final AccountBalanceBatchLoader accountBalanceBatchLoader;
 
     /**
      * Constructs a new instance of the AccountServiceImpl.
@@ -59,7 +90,15 @@ public class AccountServiceImpl implements AccountService {
      * @param fabrickRestService        The FabrickRestService instance to use for making REST API calls.
      * @param accountBalancerRestMapper The AccountBalancerRestMapper instance to use for mapping AccountBalanceDTO objects to AccountBalanceRest objects.
      * @param transactionRestMapper     The TransactionRestMapper instance to use for mapping TransactionDTO objects to TransactionRest objects.
-     * @param accountTransactionSaveMapper The AccountTransactionSaveMapper instance to use for mapping AccountTransactionSave objects to TransactionRest objects.
+     * @param transactionSync           The TransactionSync instance reading stored date ranges and storing the fetched ones.
+     * @param transactionRangeCache     The TransactionRangeCache instance answering already loaded date ranges.
+     * @param transactionRepository     The TransactionRepository instance the transaction history is paged from.
+     * @param transactionEntityRestMapper The TransactionEntityRestMapper instance mapping stored transactions to TransactionRest objects.
+     * @param historyProperties         The page sizes and sync timeout of the transaction history.
+     * @param transactionExporter       The TransactionExporter instance streaming stored transactions as NDJSON or CSV.
+     * @param transactionsProperties    The default and maximum number of transactions returned by getAccountTransactions.
+     * @param serviceExecutors          The executors whose cpu executor ranks long transaction lists in chunks.
+     * @param accountBalanceBatchLoader The AccountBalanceBatchLoader instance resolving the balances of many accounts at once.
      * @implNote The AccountServiceImpl constructor is annotated with @Autowired to inject the FabrickRestService,
      * AccountBalancerRestMapper, and TransactionRestMapper instances.
      * This allows the AccountServiceImpl to access the FabrickRestService and
@@ -69,11 +108,27 @@ public class AccountServiceImpl implements AccountService {
     public AccountServiceImpl(FabrickRestService fabrickRestService,
                               AccountBalancerRestMapper accountBalancerRestMapper,
                               TransactionRestMapper transactionRestMapper,
-                              AccountTransactionSaveMapper accountTransactionSaveMapper) {
+                              TransactionSync transactionSync,
+                              TransactionRangeCache transactionRangeCache,
+                              TransactionRepository transactionRepository,
+                              TransactionEntityRestMapper transactionEntityRestMapper,
+                              HistoryProperties historyProperties,
+                              TransactionExporter transactionExporter,
+                              TransactionsProperties transactionsProperties,
+                              ServiceExecutors serviceExecutors,
+                              AccountBalanceBatchLoader accountBalanceBatchLoader) {
         this.fabrickRestService = fabrickRestService;
         this.accountBalancerRestMapper = accountBalancerRestMapper;
         this.transactionRestMapper = transactionRestMapper;
-        this.accountTransactionSaveMapper = accountTransactionSaveMapper;
+        this.transactionSync = transactionSync;
+        this.transactionRangeCache = transactionRangeCache;
+        this.transactionRepository = transactionRepository;
+        this.transactionEntityRestMapper = transactionEntityRestMapper;
+        this.historyProperties = historyProperties;
+        this.transactionExporter = transactionExporter;
+        this.transactionsProperties = transactionsProperties;
+        this.serviceExecutors = serviceExecutors;
+        this.accountBalanceBatchLoader = accountBalanceBatchLoader;
     }
 
     /**
@@ -85,8 +140,42 @@ public class AccountServiceImpl implements AccountService {
      * If the account owner has a balance in the requested currency, the balance is returned as the actual balance.
      */
     @Override
-    @Cacheable(key = "accountId", value = "account")
+    @Cacheable(key = "#accountId", value = "account")
     public AccountBalanceRest getAccountBalance(Long accountId) {
+        return loadAccountBalance(accountId);
+    }
+
+    /**
+     * Retrieves the balances of several account owners at once.
+     *
+     * @param accountIds The IDs of the account owners, at most fabrick.balances.max-accounts once duplicates are removed.
+     * @return List<AccountBalanceResultRest> The balance or the error of each account, in the order of the IDs.
+     * @implNote Balances in the account cache are answered locally and the others fetched from the Fabrick API,
+     * at most fabrick.balances.max-concurrency at once, all within fabrick.balances.timeout.
+     * An account failing, or not answered in time, carries its own error instead of failing the others.
+     */
+    @Override
+    public List<AccountBalanceResultRest> getAccountBalances(List<Long> accountIds) {
+        if (accountIds == null || accountIds.isEmpty() || accountIds.stream().anyMatch(Objects::isNull)) {
+            LOG.error("NO ACCOUNT IDS TO FETCH THE BALANCES OF");
+            throw new AccountServiceException(BAD_REQUEST_ERROR.getMessage());
+        }
+        var distinct = List.copyOf(new LinkedHashSet<>(accountIds));
+        if (distinct.size() > accountBalanceBatchLoader.maxAccounts()) {
+            LOG.error("TOO MANY ACCOUNTS {}, AT MOST {}", distinct.size(), accountBalanceBatchLoader.maxAccounts());
+            throw new AccountServiceException(BAD_REQUEST_ERROR.getMessage());
+        }
+        return accountBalanceBatchLoader.getAccountBalances(distinct);
+    }
+
+    /**
+     * Retrieves the balance of the account owner from the Fabrick API, bypassing the account cache.
+     * Used by the AccountBalanceLoader to load and refresh the cache entries.
+     *
+     * @param accountId The ID of the account owner.
+     * @return AccountBalanceRest The account owner's balance, returned as a AccountBalanceRest class object.
+     */
+    public AccountBalanceRest loadAccountBalance(Long accountId) {
         return fabrickRestService
                 .getAccountBalance(accountId)
                 .map(accountBalancerRestMapper)
@@ -102,8 +191,9 @@ public class AccountServiceImpl implements AccountService {
      * @param accountId          The ID of the account owner.
      * @param fromAccountingDate The start date (ISO 8601 format) for filtering transactions.
      * @param toAccountingDate   The end date (ISO 8601 format) for filtering transactions.
-     * @return List<TransactionRest> A list of transactions for the account owner, ordered by date.
-     * @implNote The list is limited to 100 transactions.
+     * @param limit              The number of transactions returned, the configured default when null, at most the configured maximum.
+     * @return List<TransactionRest> The most recent transactions of the range, newest first.
+     * @implNote The list is limited to fabrick.transactions.default-limit (30) transactions unless a limit is given.
      * If the list is empty, the account owner has no transactions in the requested date range.
      * If the list is not empty, the account owner has transactions in the requested date range.
      * Each TransactionDTO object in the list includes details such as:
@@ -118,21 +208,160 @@ public class AccountServiceImpl implements AccountService {
      * - isBooked: Whether the transaction is booked.
      * - isPending: Whether the transaction is pending.
      * - isCashAdvance: Whether the transaction is a cash advance.
+     * Ranges already loaded for the account are answered by the TransactionRangeCache, only the missing gaps
+     * are requested from the TransactionSync, which reads the dates already stored from the database and fetches
+     * only the others from the Fabrick API. Storing them happens there, apart from the ranking: the most recent
+     * transactions are selected by a TopK heap of the limit size, without sorting the whole range; ranges longer
+     * than fabrick.executors.cpu.chunk-size are ranked in chunks on the fabrick.cpu executor.
      */
     @Override
-    @Cacheable(key = "accountId", value = "transactions")
-    public List<TransactionRest> getAccountTransactions(Long accountId, String fromAccountingDate, String toAccountingDate) {
-            return fabrickRestService
-                    .getAccountTransactions(accountId, fromAccountingDate, toAccountingDate)
-                    .orElseThrow(() -> new AccountServiceException(RECORD_NOT_FOUND.getMessage()))
-                    .parallelStream()
-                    .peek(transactionDTO -> LOG.info("MAPPING TRANSACTION DTO OBJECT {}", transactionDTO))
-                    .map(transactionRestMapper)
-                    .peek(transactionRest -> LOG.info("RETURNING TRANSACTION REST OBJECT {}", transactionRest))
-                    .map(accountTransactionSaveMapper)
-                    .sorted(Comparator.comparing(TransactionRest::accountingDate).thenComparing(TransactionRest::valueDate).reversed())
-                    .limit(30)
-                    .toList();
+    public List<TransactionRest> getAccountTransactions(Long accountId, String fromAccountingDate, String toAccountingDate, Integer limit) {
+        var from = parseAccountingDate(fromAccountingDate);
+        var to = parseAccountingDate(toAccountingDate);
+        checkRange(from, to);
+        var k = checkLimit(limit);
+
+        var transactions = transactionRangeCache
+                .getTransactions(accountId, from, to, (gapFrom, gapTo) -> transactionSync.getTransactions(accountId, gapFrom, gapTo,
+                        (fetchFrom, fetchTo) -> fetchTransactions(accountId, fetchFrom, fetchTo)));
+        return ServiceExecutors.join(TopK.first(transactions, k, TransactionRest.MOST_RECENT_FIRST,
+                serviceExecutors.cpuChunkSize(), serviceExecutors.cpu()));
+    }
+
+    /**
+     * Retrieves one page of the account's transaction history within a date range, newest first, from the
+     * transactions table. Pages are ordered by accounting date, value date and transaction id, and each page
+     * seeks past the key of the previous one, so deep pages cost the same as the first.
+     *
+     * @param accountId          The ID of the account owner.
+     * @param fromAccountingDate The start date (ISO 8601 format) for filtering transactions.
+     * @param toAccountingDate   The end date (ISO 8601 format) for filtering transactions.
+     * @param pageSize           The transactions per page, the configured default when null, at most the configured maximum.
+     * @param cursor             The nextCursor of the previous page, null for the first page.
+     * @return TransactionPageRest The page and the cursor of the next one, null on the last page.
+     * @implNote The first page makes sure the range is stored, fetching what the TransactionSync does not hold
+     * from the Fabrick API and waiting up to the sync timeout for it to be written; later pages read the table only.
+     */
+    @Override
+    public TransactionPageRest getTransactionHistory(Long accountId, String fromAccountingDate, String toAccountingDate,
+                                                     Integer pageSize, String cursor) {
+        var from = parseAccountingDate(fromAccountingDate);
+        var to = parseAccountingDate(toAccountingDate);
+        checkRange(from, to);
+        var size = pageSize == null ? historyProperties.defaultPageSize() : pageSize;
+        if (size < 1) {
+            LOG.error("INVALID PAGE SIZE {}", size);
+            throw new AccountServiceException(BAD_REQUEST_ERROR.getMessage());
+        }
+        size = Math.min(size, historyProperties.maxPageSize());
+
+        // one more row than the page tells whether there is a next page
+        var limit = Limit.of(size + 1);
+        List<TransactionEntity> transactionEntities;
+        if (cursor == null) {
+            awaitSync(accountId, from, to);
+            transactionEntities = transactionRepository
+                    .findByAccountIdAndAccountingDateBetweenOrderByAccountingDateDescValueDateDescTransactionIdDesc(
+                            accountId, java.sql.Date.valueOf(from), java.sql.Date.valueOf(to), limit);
+        } else {
+            var after = decodeCursor(cursor);
+            transactionEntities = transactionRepository.findPageAfter(accountId,
+                    java.sql.Date.valueOf(from), java.sql.Date.valueOf(to),
+                    java.sql.Date.valueOf(after.accountingDate()), java.sql.Date.valueOf(after.valueDate()),
+                    after.transactionId(), limit);
+        }
+
+        var page = transactionEntities.size() > size ? transactionEntities.subList(0, size) : transactionEntities;
+        var nextCursor = transactionEntities.size() > size ? HistoryCursor.after(page.getLast()).encode() : null;
+        return new TransactionPageRest(page.stream().map(transactionEntityRestMapper).toList(), nextCursor);
+    }
+
+    /**
+     * Prepares the export of the account's transactions within a date range, oldest first, from the transactions
+     * table. The arguments are checked and the range synced before anything is written, so errors still get their
+     * status code; the rows themselves are only read while the returned body writes them.
+     *
+     * @param accountId          The ID of the account owner.
+     * @param fromAccountingDate The start date (ISO 8601 format) for filtering transactions.
+     * @param toAccountingDate   The end date (ISO 8601 format) for filtering transactions.
+     * @param format             The export format, ndjson or csv.
+     * @return TransactionExport The format, file name and body of the export.
+     * @implNote Like the first history page, the range is fetched from the Fabrick API where the TransactionSync
+     * does not hold it, waiting up to the sync timeout for it to be written.
+     */
+    @Override
+    public TransactionExport exportTransactions(Long accountId, String fromAccountingDate, String toAccountingDate, String format) {
+        var from = parseAccountingDate(fromAccountingDate);
+        var to = parseAccountingDate(toAccountingDate);
+        checkRange(from, to);
+        var exportFormat = ExportFormat.parse(format).orElseThrow(() -> {
+            LOG.error("INVALID EXPORT FORMAT {}", format);
+            return new AccountServiceException(BAD_REQUEST_ERROR.getMessage());
+        });
+
+        awaitSync(accountId, from, to);
+        var fileName = "transactions-%d-%s-%s.%s".formatted(accountId, from, to, exportFormat.extension());
+        return new TransactionExport(exportFormat, fileName,
+                outputStream -> transactionExporter.export(accountId, from, to, exportFormat, outputStream));
+    }
+
+    private void awaitSync(Long accountId, LocalDate from, LocalDate to) {
+        var stored = transactionSync.sync(accountId, from, to,
+                (fetchFrom, fetchTo) -> fetchTransactions(accountId, fetchFrom, fetchTo));
+        try {
+            stored.get(historyProperties.syncTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            LOG.warn("TRANSACTIONS OF ACCOUNT {} FROM {} TO {} NOT STORED YET, PAGING WHAT IS STORED: {}",
+                    accountId, from, to, e.toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AccountServiceException(INTERNAL_SERVER_ERROR.getMessage());
+        }
+    }
+
+    private HistoryCursor decodeCursor(String cursor) {
+        try {
+            return HistoryCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            LOG.error("INVALID HISTORY CURSOR {}", cursor);
+            throw new AccountServiceException(BAD_REQUEST_ERROR.getMessage());
+        }
+    }
+
+    private int checkLimit(Integer limit) {
+        var k = limit == null ? transactionsProperties.defaultLimit() : limit;
+        if (k < 1) {
+            LOG.error("INVALID TRANSACTIONS LIMIT {}", k);
+            throw new AccountServiceException(BAD_REQUEST_ERROR.getMessage());
+        }
+        return Math.min(k, transactionsProperties.maxLimit());
+    }
+
+    private void checkRange(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            LOG.error("FROM ACCOUNTING DATE {} IS AFTER TO ACCOUNTING DATE {}", from, to);
+            throw new AccountServiceException(BAD_REQUEST_ERROR.getMessage());
+        }
+    }
+
+    private List<TransactionRest> fetchTransactions(Long accountId, LocalDate fromAccountingDate, LocalDate toAccountingDate) {
+        return fabrickRestService
+                .getAccountTransactions(accountId, fromAccountingDate.toString(), toAccountingDate.toString())
+                .orElseThrow(() -> new AccountServiceException(RECORD_NOT_FOUND.getMessage()))
+                .stream()
+                .peek(transactionDTO -> LOG.info("MAPPING TRANSACTION DTO OBJECT {}", transactionDTO))
+                .map(transactionRestMapper)
+                .peek(transactionRest -> LOG.info("RETURNING TRANSACTION REST OBJECT {}", transactionRest))
+                .toList();
+    }
+
+    private LocalDate parseAccountingDate(String accountingDate) {
+        try {
+            return LocalDate.parse(accountingDate);
+        } catch (DateTimeParseException e) {
+            LOG.error("INVALID ACCOUNTING DATE {}", accountingDate);
+            throw new AccountServiceException(BAD_REQUEST_ERROR.getMessage());
+        }
     }
 
 }
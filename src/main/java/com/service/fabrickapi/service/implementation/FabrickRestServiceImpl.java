@@ -34,36 +34,56 @@ import com.service.fabrickapi.model.dto.TransactionDTO;
 import com.service.fabrickapi.model.request.LoanTransferRequest;
 import com.service.fabrickapi.service.FabrickRestService;
 import com.service.fabrickapi.shared.Utils;
+import com.service.fabrickapi.upstream.AdaptiveLimiter;
+import com.service.fabrickapi.upstream.UpstreamFailure;
+import com.service.fabrickapi.upstream.UpstreamGuards;
+import com.service.fabrickapi.upstream.UpstreamHedging;
+import com.service.fabrickapi.upstream.UpstreamOperation;
+import com.service.fabrickapi.upstream.UpstreamRetry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestClientException;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 
 @Service
 public class FabrickRestServiceImpl implements FabrickRestService {
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
     private final Logger LOG = LoggerFactory.getLogger(FabrickRestServiceImpl.class);
     private final Credentials credentials;
     private final Utils utils;
+    private final UpstreamGuards upstreamGuards;
+    private final UpstreamRetry upstreamRetry;
+    private final UpstreamHedging upstreamHedging;
+    private final AdaptiveLimiter adaptiveLimiter;
 
     /**
      * Constructs a new instance of the FabrickRestServiceImpl.
      *
-     * @param credentials The credentials for accessing the Fabrick API.
-     * @param utils       The utility class for handling common operations.
+     * @param credentials     The credentials for accessing the Fabrick API.
+     * @param utils           The utility class for handling common operations.
+     * @param upstreamGuards  The circuit breaker and bulkhead of each Fabrick API operation.
+     * @param upstreamRetry   The retries of the Fabrick API calls failing for a reason that may not last.
+     * @param upstreamHedging The hedging of the balance and transactions reads.
+     * @param adaptiveLimiter The adaptive limit of the calls of each Fabrick API operation in flight at once.
      */
     @Autowired
-    public FabrickRestServiceImpl(Credentials credentials, Utils utils) {
+    public FabrickRestServiceImpl(Credentials credentials, Utils utils, UpstreamGuards upstreamGuards,
+                                  UpstreamRetry upstreamRetry, UpstreamHedging upstreamHedging, AdaptiveLimiter adaptiveLimiter) {
         this.credentials = credentials;
         this.utils = utils;
+        this.upstreamGuards = upstreamGuards;
+        this.upstreamRetry = upstreamRetry;
+        this.upstreamHedging = upstreamHedging;
+        this.adaptiveLimiter = adaptiveLimiter;
     }
 
     /**
@@ -71,25 +91,24 @@ public class FabrickRestServiceImpl implements FabrickRestService {
      *
      * @param accountId The ID of the account owner.
      * @return Optional<AccountBalanceDTO> The account balance in the requested currency.
-     * @throws FabrickRestServiceException If an error occurs during the account balance retrieval.
+     * @throws FabrickRestServiceException If an error occurs during the account balance retrieval, or the call is rejected by its guard.
      */
     @Override
     public Optional<AccountBalanceDTO> getAccountBalance(Long accountId) {
-        try {
-            HttpHeaders headers = utils.headers();
-            HttpEntity<?> entity = new HttpEntity<>(headers);
-            String uri = utils.buildUrl(credentials.balanceURL(), accountId);
-
-            LOG.info("FETCHING ACCOUNT BALANCE FOR {}", accountId);
-
-            ResponseEntity<String> response = utils.getStringResponseEntity(uri, entity, HttpMethod.GET);
-
-            return Optional.ofNullable(utils.fromJson(response.getBody(), AccountBalanceDTO.class));
-        } catch (Exception e) {
-            LOG.error("CANNOT FETCH ACCOUNT BALANCE FOR {}", accountId);
-            throw new FabrickRestServiceException(e.getMessage());
-        }
-
+        return read(UpstreamOperation.BALANCE, () -> {
+            try {
+                HttpHeaders headers = utils.headers();
+                HttpEntity<?> entity = new HttpEntity<>(headers);
+                String uri = utils.buildUrl(credentials.balanceURL(), accountId);
+
+                LOG.info("FETCHING ACCOUNT BALANCE FOR {}", accountId);
+
+                return Optional.ofNullable(utils.getPayload(uri, entity, HttpMethod.GET, AccountBalanceDTO.class));
+            } catch (Exception e) {
+                LOG.error("CANNOT FETCH ACCOUNT BALANCE FOR {}", accountId);
+                throw new FabrickRestServiceException(e.getMessage(), UpstreamFailure.of(e));
+            }
+        });
     }
 
 
@@ -104,26 +123,24 @@ public class FabrickRestServiceImpl implements FabrickRestService {
      */
     @Override
     public Optional<List<TransactionDTO>> getAccountTransactions(Long accountId, String fromAccountingDate, String toAccountingDate) {
-        try {
-            var headers = utils.headers();
-            var entity = new HttpEntity<>(headers);
-            String uri = utils.buildUrlWithQueryParams(credentials.transactionsURL(), accountId, fromAccountingDate, toAccountingDate);
-
-            LOG.info("FETCHING TRANSACTIONS FOR  {} - FROM {} UNTIL {}",
-                    accountId,
-                    fromAccountingDate,
-                    toAccountingDate);
-
-            var response = utils.getStringResponseEntity(uri, entity, HttpMethod.GET);
-
-            String responseBody = response.getBody();
-
-            return Optional.ofNullable(utils.fromJson(responseBody, List.class, TransactionDTO.class));
-
-        } catch (RestClientException e) {
-            LOG.error("CANNOT FETCH TRANSACTIONS FOR {}", accountId);
-            throw new FabrickRestServiceException(e.getMessage());
-        }
+        return read(UpstreamOperation.TRANSACTIONS, () -> {
+            try {
+                var headers = utils.headers();
+                var entity = new HttpEntity<>(headers);
+                String uri = utils.buildUrlWithQueryParams(credentials.transactionsURL(), accountId, fromAccountingDate, toAccountingDate);
+
+                LOG.info("FETCHING TRANSACTIONS FOR  {} - FROM {} UNTIL {}",
+                        accountId,
+                        fromAccountingDate,
+                        toAccountingDate);
+
+                return Optional.ofNullable(utils.getPayloadList(uri, entity, HttpMethod.GET, TransactionDTO.class));
+
+            } catch (RestClientException e) {
+                LOG.error("CANNOT FETCH TRANSACTIONS FOR {}", accountId);
+                throw new FabrickRestServiceException(e.getMessage(), UpstreamFailure.of(e));
+            }
+        });
     }
 
 
@@ -132,36 +149,61 @@ public class FabrickRestServiceImpl implements FabrickRestService {
      *
      * @param accountId       The ID of the account initiating the transfer.
      * @param transferRequest The Transfer Request Object containing transfer details.
+     * @param idempotencyKey  The key the Fabrick API deduplicates the transfer by, null if the caller sent none.
      * @return Optional<LoanTransferDTO> The result of the transfer operation returned as an Optional LoanTransferDTO class object.
      * @throws FabrickRestServiceException If an error occurs during the transfer execution.
      */
     @Override
-    public Optional<LoanTransferDTO> executeTransfer(Long accountId, LoanTransferRequest transferRequest) {
-        try {
-            var headers = utils.headers();
-            String jsonRequest = utils.toJson(transferRequest);
-
-            LOG.info("JSON REQUEST OBJECT {} ", jsonRequest);
-
-            var entity = new HttpEntity<>(jsonRequest, headers);
-            String uri = utils.buildUrl(credentials.transfersURL(), accountId);
-
-            LOG.info("EXECUTING TRANSFER FROM REQUESTER {} FOR {} {}",
-                    transferRequest.creditorDTO().name(),
-                    transferRequest.amount(),
-                    transferRequest.currency());
-
-            var response = utils.getStringResponseEntity(uri, entity, HttpMethod.POST);
-
-            return Optional.ofNullable(utils.fromJson(response.getBody(), LoanTransferDTO.class));
+    public Optional<LoanTransferDTO> executeTransfer(Long accountId, LoanTransferRequest transferRequest, String idempotencyKey) {
+        return call(UpstreamOperation.TRANSFERS, idempotencyKey != null, () -> {
+            try {
+                var headers = utils.headers();
+                if (idempotencyKey != null)
+                    headers.set(IDEMPOTENCY_KEY, idempotencyKey);
+                String jsonRequest = utils.toJson(transferRequest);
+
+                LOG.info("JSON REQUEST OBJECT {} ", jsonRequest);
+
+                var entity = new HttpEntity<>(jsonRequest, headers);
+                String uri = utils.buildUrl(credentials.transfersURL(), accountId);
+
+                LOG.info("EXECUTING TRANSFER FROM REQUESTER {} FOR {} {}",
+                        transferRequest.creditorDTO().name(),
+                        transferRequest.amount(),
+                        transferRequest.currency());
+
+                return Optional.ofNullable(utils.getPayload(uri, entity, HttpMethod.POST, LoanTransferDTO.class));
+
+            } catch (Exception e) {
+                LOG.error("CANNOT EXECUTE TRANSFER - REQUESTER: {} - AMOUNT : {} {}", transferRequest.creditorDTO().name(),
+                        transferRequest.amount(),
+                        transferRequest.currency());
+                throw new FabrickRestServiceException(e.getMessage(), UpstreamFailure.of(e));
+            }
+        });
+    }
 
-        } catch (Exception e) {
-            LOG.error("CANNOT EXECUTE TRANSFER - REQUESTER: {} - AMOUNT : {} {}", transferRequest.creditorDTO().name(),
-                    transferRequest.amount(),
-                    transferRequest.currency());
-            throw new FabrickRestServiceException(e.getMessage());
-        }
+    /**
+     * Makes a call of the Fabrick API through its circuit breaker, bulkhead and adaptive limit, retrying it if it is idempotent.
+     * Retries go around the guard, so that every attempt counts against the circuit and an open circuit stops them.
+     */
+    private <T> T call(UpstreamOperation operation, boolean idempotent, Supplier<T> call) {
+        return upstreamRetry.call(operation, idempotent, () -> guard(operation, call));
+    }
 
+    /**
+     * Makes a read of the Fabrick API through its circuit breaker, bulkhead and adaptive limit, hedging it, and retrying it.
+     * Each hedged attempt goes through the guard, and a retry hedges again.
+     */
+    private <T> T read(UpstreamOperation operation, Supplier<T> call) {
+        return upstreamRetry.call(operation, true, () -> upstreamHedging.call(operation, () -> guard(operation, call)));
+    }
 
+    /**
+     * The adaptive limit goes under the guard, so that only the calls the circuit lets through wait for it,
+     * and a call it rejects is not recorded by the circuit.
+     */
+    private <T> T guard(UpstreamOperation operation, Supplier<T> call) {
+        return upstreamGuards.call(operation, () -> adaptiveLimiter.call(operation, call));
     }
 }
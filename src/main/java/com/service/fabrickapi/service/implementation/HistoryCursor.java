@@ -0,0 +1,72 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.service.implementation;
+
+import com.service.fabrickapi.entity.TransactionEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Opaque history cursor: the (accounting date, value date, transaction id) key of the last transaction of a page,
+ * Base64url encoded so clients do not build or rely on it.
+ */
+record HistoryCursor(LocalDate accountingDate, LocalDate valueDate, Long transactionId) {
+
+    static HistoryCursor after(TransactionEntity transactionEntity) {
+        return new HistoryCursor(localDate(transactionEntity.getAccountingDate()),
+                localDate(transactionEntity.getValueDate()), transactionEntity.getTransactionId());
+    }
+
+    /**
+     * @param cursor The cursor returned with the previous page.
+     * @return HistoryCursor The key the next page starts after.
+     * @throws IllegalArgumentException If the cursor was not issued by this service.
+     */
+    static HistoryCursor decode(String cursor) {
+        try {
+            var parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            if (parts.length != 3)
+                throw new IllegalArgumentException("malformed cursor");
+            return new HistoryCursor(LocalDate.parse(parts[0]), LocalDate.parse(parts[1]), Long.valueOf(parts[2]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("invalid cursor " + cursor, e);
+        }
+    }
+
+    String encode() {
+        var key = accountingDate + "|" + valueDate + "|" + transactionId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static LocalDate localDate(Date date) {
+        return date instanceof java.sql.Date sqlDate
+                ? sqlDate.toLocalDate()
+                : date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.service.implementation;
+
+import com.service.fabrickapi.configuration.ServiceExecutors;
+import com.service.fabrickapi.configuration.TransactionsProperties;
+import com.service.fabrickapi.exception.AccountServiceException;
+import com.service.fabrickapi.mapper.AccountBalancerRestMapper;
+import com.service.fabrickapi.mapper.TransactionRestMapper;
+import com.service.fabrickapi.model.rest.AccountBalanceRest;
+import com.service.fabrickapi.model.rest.TransactionRest;
+import com.service.fabrickapi.persistence.TransactionWriteBehind;
+import com.service.fabrickapi.service.ReactiveAccountService;
+import com.service.fabrickapi.service.ReactiveFabrickRestService;
+import com.service.fabrickapi.shared.TopK;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+
+import static com.service.fabrickapi.model.error.ErrorMessages.BAD_REQUEST_ERROR;
+import static com.service.fabrickapi.model.error.ErrorMessages.RECORD_NOT_FOUND;
+
+@Service
+@ConditionalOnProperty(prefix = "fabrick.upstream", name = "mode", havingValue = "reactive")
+public class ReactiveAccountServiceImpl implements ReactiveAccountService {
+    private final Logger LOG = LoggerFactory.getLogger(ReactiveAccountService.class);
+    private final ReactiveFabrickRestService reactiveFabrickRestService;
+    private final AccountBalancerRestMapper accountBalancerRestMapper;
+    private final TransactionRestMapper transactionRestMapper;
+    private final TransactionWriteBehind transactionWriteBehind;
+    private final TransactionsProperties transactionsProperties;
+    private final ServiceExecutors serviceExecutors;
+    private final Scheduler io;
+
+    /**
+     * Constructs a new instance of the ReactiveAccountServiceImpl.
+     *
+     * @param reactiveFabrickRestService   The non-blocking client of the Fabrick API.
+     * @param accountBalancerRestMapper    The mapper from AccountBalanceDTO to AccountBalanceRest.
+     * @param transactionRestMapper        The mapper from TransactionDTO to TransactionRest.
+     * @param transactionWriteBehind The write-behind queue persisting the fetched TransactionRest objects.
+     * @param transactionsProperties The default and maximum number of transactions returned.
+     * @param serviceExecutors       The executors of the write-behind hand-off (io) and of the ranking of long lists (cpu).
+     */
+    @Autowired
+    public ReactiveAccountServiceImpl(ReactiveFabrickRestService reactiveFabrickRestService,
+                                      AccountBalancerRestMapper accountBalancerRestMapper,
+                                      TransactionRestMapper transactionRestMapper,
+                                      TransactionWriteBehind transactionWriteBehind,
+                                      TransactionsProperties transactionsProperties,
+                                      ServiceExecutors serviceExecutors) {
+        this.reactiveFabrickRestService = reactiveFabrickRestService;
+        this.accountBalancerRestMapper = accountBalancerRestMapper;
+        this.transactionRestMapper = transactionRestMapper;
+        this.transactionWriteBehind = transactionWriteBehind;
+        this.transactionsProperties = transactionsProperties;
+        this.serviceExecutors = serviceExecutors;
+        this.io = Schedulers.fromExecutorService(serviceExecutors.io(), ServiceExecutors.IO);
+    }
+
+    /**
+     * Retrieves the balance of the account owner.
+     *
+     * @param accountId The ID of the account owner.
+     * @return Mono<AccountBalanceRest> The account owner's balance, or an AccountServiceException if none was returned.
+     */
+    @Override
+    public Mono<AccountBalanceRest> getAccountBalance(Long accountId) {
+        return reactiveFabrickRestService
+                .getAccountBalance(accountId)
+                .map(accountBalancerRestMapper)
+                .switchIfEmpty(Mono.error(() -> {
+                    LOG.error("ACCOUNT BALANCE DTO OBJECT IS NULL");
+                    return new AccountServiceException(RECORD_NOT_FOUND.getMessage());
+                }));
+    }
+
+    /**
+     * Retrieves the most recent transactions for the account owner within a specified date range.
+     *
+     * @param accountId          The ID of the account owner.
+     * @param fromAccountingDate The start date (ISO 8601 format) for filtering transactions.
+     * @param toAccountingDate   The end date (ISO 8601 format) for filtering transactions.
+     * @param limit              The number of transactions returned, the configured default when null, at most the configured maximum.
+     * @return Mono<List < TransactionRest>> The transactions, ordered by accounting and value date, most recent first.
+     * @implNote The transactions are handed to the write-behind queue, whose offer can block while the queue is full,
+     * so it runs on the fabrick.io executor and never on a Netty event loop. The ranking stays apart from it:
+     * a TopK heap of the limit size selects the most recent transactions without sorting them all, in chunks on
+     * the fabrick.cpu executor for lists longer than fabrick.executors.cpu.chunk-size.
+     */
+    @Override
+    public Mono<List<TransactionRest>> getAccountTransactions(Long accountId, String fromAccountingDate, String toAccountingDate, Integer limit) {
+        var k = limit == null ? transactionsProperties.defaultLimit() : limit;
+        if (k < 1) {
+            LOG.error("INVALID TRANSACTIONS LIMIT {}", k);
+            return Mono.error(new AccountServiceException(BAD_REQUEST_ERROR.getMessage()));
+        }
+        var top = Math.min(k, transactionsProperties.maxLimit());
+
+        return reactiveFabrickRestService
+                .getAccountTransactions(accountId, fromAccountingDate, toAccountingDate)
+                .switchIfEmpty(Mono.error(() -> new AccountServiceException(RECORD_NOT_FOUND.getMessage())))
+                .map(transactionDTOs -> transactionDTOs.stream().map(transactionRestMapper).toList())
+                .flatMap(transactionRests -> Mono
+                        .fromRunnable(() -> transactionWriteBehind.enqueue(accountId, transactionRests))
+                        .subscribeOn(io)
+                        .then(Mono.fromFuture(() -> TopK.first(transactionRests, top, TransactionRest.MOST_RECENT_FIRST,
+                                serviceExecutors.cpuChunkSize(), serviceExecutors.cpu()))));
+    }
+}
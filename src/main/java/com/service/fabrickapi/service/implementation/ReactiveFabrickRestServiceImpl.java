@@ -0,0 +1,171 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.service.implementation;
+
+import com.service.fabrickapi.configuration.Credentials;
+import com.service.fabrickapi.configuration.UpstreamProperties;
+import com.service.fabrickapi.exception.FabrickRestServiceException;
+import com.service.fabrickapi.model.dto.AccountBalanceDTO;
+import com.service.fabrickapi.model.dto.LoanTransferDTO;
+import com.service.fabrickapi.model.dto.TransactionDTO;
+import com.service.fabrickapi.model.request.LoanTransferRequest;
+import com.service.fabrickapi.service.ReactiveFabrickRestService;
+import com.service.fabrickapi.shared.Utils;
+import io.netty.channel.ChannelOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.URI;
+import java.util.List;
+
+
+@Service
+@ConditionalOnProperty(prefix = "fabrick.upstream", name = "mode", havingValue = "reactive")
+public class ReactiveFabrickRestServiceImpl implements ReactiveFabrickRestService {
+    private final Logger LOG = LoggerFactory.getLogger(ReactiveFabrickRestServiceImpl.class);
+    private final Credentials credentials;
+    private final Utils utils;
+    private final WebClient webClient;
+
+    /**
+     * Constructs a new instance of the ReactiveFabrickRestServiceImpl.
+     *
+     * @param credentials        The credentials for accessing the Fabrick API.
+     * @param utils              The utility class for handling common operations.
+     * @param webClientBuilder   The WebClient builder configured by Spring Boot.
+     * @param upstreamProperties The upstream pool and timeout settings.
+     * @implNote The WebClient runs on Reactor Netty: upstream calls are multiplexed over a few event-loop
+     * threads, so in-flight calls are bounded by the connection pool and not by the number of threads.
+     */
+    @Autowired
+    public ReactiveFabrickRestServiceImpl(Credentials credentials, Utils utils, WebClient.Builder webClientBuilder,
+                                          UpstreamProperties upstreamProperties) {
+        this.credentials = credentials;
+        this.utils = utils;
+
+        var connectionProvider = ConnectionProvider.builder("fabrick")
+                .maxConnections(upstreamProperties.maxConnectionsPerRoute())
+                .pendingAcquireMaxCount(-1)
+                .pendingAcquireTimeout(upstreamProperties.connectionRequestTimeout())
+                .maxIdleTime(upstreamProperties.idleEviction())
+                .maxLifeTime(upstreamProperties.connectionTimeToLive())
+                .evictInBackground(upstreamProperties.idleEviction())
+                .build();
+        var httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) upstreamProperties.connectTimeout().toMillis())
+                .responseTimeout(upstreamProperties.readTimeout());
+        this.webClient = webClientBuilder.clientConnector(new ReactorClientHttpConnector(httpClient)).build();
+    }
+
+    /**
+     * Retrieves the account balance for the specified account owner without blocking the caller.
+     *
+     * @param accountId The ID of the account owner.
+     * @return Mono<AccountBalanceDTO> The account balance, empty if the payload is null.
+     */
+    @Override
+    public Mono<AccountBalanceDTO> getAccountBalance(Long accountId) {
+        String uri = utils.buildUrl(credentials.balanceURL(), accountId);
+
+        LOG.info("FETCHING ACCOUNT BALANCE FOR {}", accountId);
+
+        return exchange(uri, HttpMethod.GET, null)
+                .mapNotNull(body -> utils.fromJson(body, AccountBalanceDTO.class))
+                .onErrorMap(e -> !(e instanceof FabrickRestServiceException), e -> {
+                    LOG.error("CANNOT FETCH ACCOUNT BALANCE FOR {}", accountId);
+                    return new FabrickRestServiceException(e.getMessage());
+                });
+    }
+
+    /**
+     * Retrieves a list of transactions for the specified account owner within a date range without blocking the caller.
+     *
+     * @param accountId          The ID of the account owner.
+     * @param fromAccountingDate The start date for filtering transactions (ISO 8601 format).
+     * @param toAccountingDate   The end date for filtering transactions (ISO 8601 format).
+     * @return Mono<List < TransactionDTO>> A list of transactions, empty if the payload is null.
+     */
+    @Override
+    public Mono<List<TransactionDTO>> getAccountTransactions(Long accountId, String fromAccountingDate, String toAccountingDate) {
+        String uri = utils.buildUrlWithQueryParams(credentials.transactionsURL(), accountId, fromAccountingDate, toAccountingDate);
+
+        LOG.info("FETCHING TRANSACTIONS FOR  {} - FROM {} UNTIL {}",
+                accountId,
+                fromAccountingDate,
+                toAccountingDate);
+
+        return exchange(uri, HttpMethod.GET, null)
+                .<List<TransactionDTO>>mapNotNull(body -> utils.fromJson(body, List.class, TransactionDTO.class))
+                .onErrorMap(e -> !(e instanceof FabrickRestServiceException), e -> {
+                    LOG.error("CANNOT FETCH TRANSACTIONS FOR {}", accountId);
+                    return new FabrickRestServiceException(e.getMessage());
+                });
+    }
+
+    /**
+     * Executes a fund transfer based on the provided transfer request without blocking the caller.
+     *
+     * @param accountId       The ID of the account initiating the transfer.
+     * @param transferRequest The Transfer Request Object containing transfer details.
+     * @return Mono<LoanTransferDTO> The result of the transfer operation, empty if the payload is null.
+     */
+    @Override
+    public Mono<LoanTransferDTO> executeTransfer(Long accountId, LoanTransferRequest transferRequest) {
+        String jsonRequest = utils.toJson(transferRequest);
+        String uri = utils.buildUrl(credentials.transfersURL(), accountId);
+
+        LOG.info("EXECUTING TRANSFER FROM REQUESTER {} FOR {} {}",
+                transferRequest.creditorDTO().name(),
+                transferRequest.amount(),
+                transferRequest.currency());
+
+        return exchange(uri, HttpMethod.POST, jsonRequest)
+                .mapNotNull(body -> utils.fromJson(body, LoanTransferDTO.class))
+                .onErrorMap(e -> !(e instanceof FabrickRestServiceException), e -> {
+                    LOG.error("CANNOT EXECUTE TRANSFER - REQUESTER: {} - AMOUNT : {} {}", transferRequest.creditorDTO().name(),
+                            transferRequest.amount(),
+                            transferRequest.currency());
+                    return new FabrickRestServiceException(e.getMessage());
+                });
+    }
+
+    private Mono<String> exchange(String uri, HttpMethod httpMethod, String body) {
+        var request = webClient.method(httpMethod)
+                .uri(URI.create(uri))
+                .headers(headers -> headers.addAll(utils.headers()));
+        if (body != null)
+            request.bodyValue(body);
+        return request.retrieve().bodyToMono(String.class);
+    }
+}
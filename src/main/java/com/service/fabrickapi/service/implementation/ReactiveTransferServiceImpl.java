@@ -0,0 +1,72 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.service.implementation;
+
+import com.service.fabrickapi.exception.TransferServiceException;
+import com.service.fabrickapi.mapper.LoanTransferRestMapper;
+import com.service.fabrickapi.model.error.ErrorMessages;
+import com.service.fabrickapi.model.request.LoanTransferRequest;
+import com.service.fabrickapi.model.rest.LoanTransferRest;
+import com.service.fabrickapi.service.ReactiveFabrickRestService;
+import com.service.fabrickapi.service.ReactiveTransferService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+@Service
+@ConditionalOnProperty(prefix = "fabrick.upstream", name = "mode", havingValue = "reactive")
+public class ReactiveTransferServiceImpl implements ReactiveTransferService {
+    private final Logger LOG = LoggerFactory.getLogger(ReactiveTransferService.class);
+    private final ReactiveFabrickRestService reactiveFabrickRestService;
+    private final LoanTransferRestMapper loanTransferRestMapper;
+
+    @Autowired
+    public ReactiveTransferServiceImpl(ReactiveFabrickRestService reactiveFabrickRestService,
+                                       LoanTransferRestMapper loanTransferRestMapper) {
+        this.reactiveFabrickRestService = reactiveFabrickRestService;
+        this.loanTransferRestMapper = loanTransferRestMapper;
+    }
+
+    /**
+     * Transfers a loan to the specified creditor account.
+     *
+     * @param accountId       The ID of the creditor account.
+     * @param transferRequest The Transfer Request Object containing details for the loan transfer.
+     * @return Mono<LoanTransferRest> The result of the loan transfer, or a TransferServiceException if none was returned.
+     */
+    @Override
+    public Mono<LoanTransferRest> transferLoan(Long accountId, LoanTransferRequest transferRequest) {
+        return reactiveFabrickRestService
+                .executeTransfer(accountId, transferRequest)
+                .map(loanTransferRestMapper)
+                .switchIfEmpty(Mono.error(() -> {
+                    LOG.error("LOAN TRANSFER REST OBJECT IS NULL");
+                    return new TransferServiceException(ErrorMessages.INTERNAL_SERVER_ERROR.getMessage());
+                }));
+    }
+}
@@ -36,7 +36,7 @@ import com.service.fabrickapi.service.TransferService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -65,14 +65,17 @@ public class TransferServiceImpl implements TransferService {
      *
      * @param accountId       The ID of the creditor account.
      * @param transferRequest The Transfer Request Object containing details for the loan transfer.
+     * @param idempotencyKey  The key the transfer is deduplicated by, null if the caller sent none.
      * @return LoanTransferRest   The result of the loan transfer operation returned as a LoanTransferRest class object.
      * @implNote This method delegates the loan transfer operation to the Fabrick REST service.
+     * The cached balance of the account is evicted, as the transfer changes it.
+     * A transfer is retried after a transient upstream failure only if it has an idempotency key.
      */
     @Override
-    @CachePut(key = "#accountId", value = "transactions")
-    public LoanTransferRest transferLoan(Long accountId, LoanTransferRequest transferRequest) {
+    @CacheEvict(key = "#accountId", value = "account")
+    public LoanTransferRest transferLoan(Long accountId, LoanTransferRequest transferRequest, String idempotencyKey) {
         return fabrickRestService
-                .executeTransfer(accountId, transferRequest)
+                .executeTransfer(accountId, transferRequest, idempotencyKey)
                 .map(loanTransferRestMapper)
                 .orElseThrow(() -> {
                     LOG.error("LOAN TRANSFER REST OBJECT IS NULL");
@@ -0,0 +1,100 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.shared;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-capacity open-addressing set of primitive longs with linear probing, 8 bytes per slot and no boxing.
+ * Lookups never lock and insertions claim slots with compare-and-set. It accepts keys until half of its slots
+ * are used, then refuses them: callers replace a full set instead of growing it.
+ */
+public class ConcurrentLongHashSet {
+    private static final long EMPTY = 0;
+    private final AtomicLongArray slots;
+    private final int mask;
+    private final int maxSize;
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile boolean containsEmptyKey;
+
+    /**
+     * @param maxSize The number of keys accepted, twice as many slots (rounded to a power of two) are allocated.
+     */
+    public ConcurrentLongHashSet(int maxSize) {
+        int capacity = Integer.highestOneBit(Math.max(2, maxSize) * 2 - 1) << 1;
+        this.slots = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return boolean true if the key is in the set after the call, false if the set is full and the key was not added.
+     */
+    public boolean add(long key) {
+        if (key == EMPTY) {
+            containsEmptyKey = true;
+            return true;
+        }
+        int index = (int) LongBloomFilter.mix(key) & mask;
+        while (true) {
+            long current = slots.get(index);
+            if (current == key)
+                return true;
+            if (current == EMPTY) {
+                if (size.get() >= maxSize)
+                    return false;
+                if (slots.compareAndSet(index, EMPTY, key)) {
+                    size.incrementAndGet();
+                    return true;
+                }
+                continue;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    public boolean contains(long key) {
+        if (key == EMPTY)
+            return containsEmptyKey;
+        int index = (int) LongBloomFilter.mix(key) & mask;
+        while (true) {
+            long current = slots.get(index);
+            if (current == key)
+                return true;
+            if (current == EMPTY)
+                return false;
+            index = (index + 1) & mask;
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public int capacity() {
+        return slots.length();
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.shared;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Runs a few subtasks concurrently, each on its own virtual thread, as one unit of work: the first subtask to fail,
+ * or the deadline passing, interrupts the others. The semantics of Java 21's StructuredTaskScope.ShutdownOnFailure,
+ * a preview API, without enabling preview features.
+ * Used in a try-with-resources block by one thread: fork the subtasks, join, then read their results.
+ * Closing the scope interrupts the subtasks still running, without waiting for them.
+ */
+public final class FailFastScope implements AutoCloseable {
+    private final ExecutorService threads;
+    private final CompletableFuture<Void> failure = new CompletableFuture<>();
+    private final List<CompletableFuture<?>> subtasks = new ArrayList<>();
+
+    /**
+     * @param name The name prefix of the subtask threads.
+     */
+    public FailFastScope(String name) {
+        this.threads = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name, 0).factory());
+    }
+
+    /**
+     * Starts the subtask on a new virtual thread.
+     *
+     * @param task The subtask.
+     * @return Supplier<T> Its result, only to be read once join returned; it rethrows the exception the subtask threw.
+     */
+    public <T> Supplier<T> fork(Callable<? extends T> task) {
+        var result = new CompletableFuture<T>();
+        subtasks.add(result);
+        threads.execute(() -> {
+            try {
+                result.complete(task.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+                if (failure.completeExceptionally(e))
+                    threads.shutdownNow();
+            }
+        });
+        return () -> {
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                throw unwrap(e.getCause());
+            }
+        };
+    }
+
+    /**
+     * Waits until every subtask forked so far succeeded, one failed or the timeout elapsed,
+     * interrupting the others in the last two cases.
+     *
+     * @param timeout The time left to the deadline.
+     * @throws TimeoutException     If the subtasks did not all complete in time.
+     * @throws InterruptedException If the waiting thread was interrupted.
+     * @throws RuntimeException     The exception the first failed subtask threw, as is if unchecked.
+     */
+    public void join(Duration timeout) throws TimeoutException, InterruptedException {
+        var succeeded = CompletableFuture.allOf(subtasks.toArray(CompletableFuture[]::new));
+        try {
+            // failure first: once both are complete, anyOf takes the first one, not the interruption of a sibling
+            CompletableFuture.anyOf(failure, succeeded).get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | InterruptedException e) {
+            threads.shutdownNow();
+            throw e;
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        threads.shutdownNow();
+    }
+
+    private static RuntimeException unwrap(Throwable cause) {
+        while (cause instanceof CompletionException && cause.getCause() != null)
+            cause = cause.getCause();
+        if (cause instanceof RuntimeException runtimeException)
+            return runtimeException;
+        if (cause instanceof Error error)
+            throw error;
+        return new CompletionException(cause);
+    }
+}
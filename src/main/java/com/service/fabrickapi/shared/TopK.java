@@ -0,0 +1,123 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.shared;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collector;
+
+/**
+ * Collects the first k elements of a stream in a given order through a heap holding at most k of them:
+ * O(n log k) time and O(k) memory, where sorted().limit(k) sorts and buffers the whole stream.
+ */
+public final class TopK {
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+
+    private TopK() {
+    }
+
+    /**
+     * @param k     The number of elements to keep.
+     * @param order The order of the result; the k elements coming first in it are kept.
+     * @return Collector The collector returning the kept elements sorted in that order; elements equal in
+     * the order may be kept in any encounter order, so ties are best broken by the comparator itself.
+     */
+    public static <T> Collector<T, ?, List<T>> first(int k, Comparator<? super T> order) {
+        if (k < 0)
+            throw new IllegalArgumentException("k must not be negative: " + k);
+        return Collector.of(() -> new Heap<T>(k, order), Heap::offer, Heap::merge, Heap::toSortedList);
+    }
+
+    /**
+     * Ranks a list in chunks of chunkSize elements, one task per chunk on the executor, and merges their heaps.
+     *
+     * @param elements  The elements to rank.
+     * @param k         The number of elements to keep.
+     * @param order     The order of the result; the k elements coming first in it are kept.
+     * @param chunkSize The elements ranked by one task; a list of up to chunkSize elements is ranked by the calling thread.
+     * @param executor  The executor of the chunk tasks.
+     * @return CompletableFuture<List<T>> The kept elements sorted in that order.
+     */
+    public static <T> CompletableFuture<List<T>> first(List<T> elements, int k, Comparator<? super T> order,
+                                                       int chunkSize, Executor executor) {
+        if (chunkSize < 1)
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        if (elements.size() <= chunkSize)
+            return CompletableFuture.completedFuture(elements.stream().collect(first(k, order)));
+
+        var chunks = new ArrayList<CompletableFuture<Heap<T>>>();
+        for (int start = 0; start < elements.size(); start += chunkSize) {
+            var chunk = elements.subList(start, Math.min(start + chunkSize, elements.size()));
+            chunks.add(CompletableFuture.supplyAsync(() -> {
+                var heap = new Heap<T>(k, order);
+                chunk.forEach(heap::offer);
+                return heap;
+            }, executor));
+        }
+        return CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new))
+                .thenApply(done -> chunks.stream()
+                        .map(CompletableFuture::join)
+                        .reduce(Heap::merge)
+                        .orElseThrow()
+                        .toSortedList());
+    }
+
+    private static final class Heap<T> {
+        private final int k;
+        private final Comparator<? super T> order;
+        // the head is the last kept element in the order, the first to be replaced
+        private final PriorityQueue<T> queue;
+
+        Heap(int k, Comparator<? super T> order) {
+            this.k = k;
+            this.order = order;
+            this.queue = new PriorityQueue<>(Math.min(k, MAX_INITIAL_CAPACITY) + 1, order.reversed());
+        }
+
+        void offer(T element) {
+            if (queue.size() < k) {
+                queue.add(element);
+            } else if (k > 0 && order.compare(element, queue.peek()) < 0) {
+                queue.poll();
+                queue.add(element);
+            }
+        }
+
+        Heap<T> merge(Heap<T> other) {
+            other.queue.forEach(this::offer);
+            return this;
+        }
+
+        List<T> toSortedList() {
+            var elements = new ArrayList<>(queue);
+            elements.sort(order);
+            return elements;
+        }
+    }
+}
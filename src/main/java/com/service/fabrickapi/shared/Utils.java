@@ -24,26 +24,37 @@
 
 package com.service.fabrickapi.shared;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JavaType;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.service.fabrickapi.configuration.Credentials;
 import com.service.fabrickapi.exception.AccountServiceException;
 import com.service.fabrickapi.exception.FabrickRestServiceException;
+import com.service.fabrickapi.model.dto.AccountBalanceDTO;
+import com.service.fabrickapi.model.dto.LoanTransferDTO;
+import com.service.fabrickapi.model.dto.TransactionDTO;
 import com.service.fabrickapi.model.error.ErrorMessages;
+import com.service.fabrickapi.upstream.UpstreamFailure;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.*;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.function.Function;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.service.fabrickapi.model.error.ErrorMessages.INVALID_JSON_ERROR;
 
@@ -53,6 +64,7 @@ public class Utils {
     private final Credentials credentials;
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
+    private final Map<JavaType, ObjectReader> payloadReaders = new ConcurrentHashMap<>();
 
 
     /**
@@ -61,6 +73,8 @@ public class Utils {
      * @param restTemplate The RestTemplate used for making HTTP requests.
      * @param credentials  The credentials object containing the API key and authentication schema.
      * @param objectMapper The ObjectMapper used for parsing JSON responses.
+     * @implNote The readers of the Fabrick payloads are built once here, so that decoding a response
+     * never has to resolve the deserializers again.
      */
 
     @Autowired
@@ -68,6 +82,10 @@ public class Utils {
         this.credentials = credentials;
         this.restTemplate = restTemplate;
         this.objectMapper = objectMapper;
+
+        payloadReader(objectMapper.constructType(AccountBalanceDTO.class));
+        payloadReader(objectMapper.constructType(LoanTransferDTO.class));
+        payloadReader(objectMapper.getTypeFactory().constructCollectionType(List.class, TransactionDTO.class));
     }
 
 
@@ -123,20 +141,52 @@ public class Utils {
      * @throws RestClientException If an error occurs during the request.
      */
     public ResponseEntity<String> getStringResponseEntity(String uri, HttpEntity<?> entity, HttpMethod httpMethod) {
-        try {
-            ResponseEntity<String> exchange = restTemplate.exchange(
-                    uri,
-                    httpMethod,
-                    entity,
-                    String.class
-            );
+        ResponseEntity<String> exchange = execute(uri, entity, httpMethod, restTemplate.responseEntityExtractor(String.class));
+
+        LOG.debug(exchange.getBody());
+        return exchange;
+    }
 
-            LOG.info(exchange.getBody());
-            return exchange;
+    /**
+     * Calls the API and binds the {@code payload} of the response while it is being read.
+     *
+     * @param uri        The path to the API
+     * @param entity     The Header and Body of the request
+     * @param httpMethod The HTTP method of the request
+     * @param clazz      The class of the payload.
+     * @param <K>        The type of the payload.
+     * @return K The payload, null if the payload is null.
+     * @throws RestClientException If an error occurs during the request.
+     */
+    public <K> K getPayload(String uri, HttpEntity<?> entity, HttpMethod httpMethod, Class<K> clazz) {
+        return execute(uri, entity, httpMethod, response -> fromJson(response.getBody(), clazz));
+    }
 
+    /**
+     * Calls the API and binds the {@code payload.list} of the response while it is being read.
+     *
+     * @param uri          The path to the API
+     * @param entity       The Header and Body of the request
+     * @param httpMethod   The HTTP method of the request
+     * @param elementClass The class of the elements in the list.
+     * @param <K>          The type of the elements in the list.
+     * @return List<K> The payload list, null if the list is null.
+     * @throws RestClientException If an error occurs during the request.
+     */
+    public <K> List<K> getPayloadList(String uri, HttpEntity<?> entity, HttpMethod httpMethod, Class<K> elementClass) {
+        return execute(uri, entity, httpMethod, response -> fromJsonList(response.getBody(), elementClass));
+    }
+
+    /**
+     * Makes the call, logging its failure unless it was cancelled, as the slower attempt of a hedged read is.
+     */
+    private <T> T execute(String uri, HttpEntity<?> entity, HttpMethod httpMethod, ResponseExtractor<T> responseExtractor) {
+        try {
+            return restTemplate.execute(uri, httpMethod, restTemplate.httpEntityCallback(entity), responseExtractor);
         } catch (RestClientException e) {
-            LOG.error("FAILED TO MAKE THE REST API CALL");
-            throw new RestClientException(e.getMessage());
+            if (UpstreamFailure.of(e) != UpstreamFailure.CANCELLED)
+                LOG.error("FAILED TO MAKE THE REST API CALL");
+            throw e;
         }
     }
 
@@ -168,15 +218,9 @@ public class Utils {
      * @throws FabrickRestServiceException If an error occurs during JSON conversion.
      */
     public <K> K fromJson(String jsonString, Class<K> clazz) {
-        try {
-            JsonNode jsonNode = objectMapper.readTree(jsonString);
-            JsonNode payloadNode = jsonNode.path("payload");
-
-            if (payloadNode.isMissingNode())
-                throw new AccountServiceException(INVALID_JSON_ERROR.getMessage());
-
-            return objectMapper.readValue(payloadNode.toString(), clazz);
-        } catch (JsonProcessingException e) {
+        try (JsonParser parser = objectMapper.createParser(jsonString)) {
+            return readPayload(parser, payloadReader(objectMapper.constructType(clazz)), "payload");
+        } catch (IOException e) {
             LOG.error("FAILED TO CONVERT THE JSON OBJECT TO CLASS OBJECT");
             throw new FabrickRestServiceException(ErrorMessages.INVALID_JSON_ERROR.getMessage());
         }
@@ -194,21 +238,87 @@ public class Utils {
      * @throws AccountServiceException If an error occurs during JSON conversion.
      */
     public <K> K fromJson(String json, Class<? extends Collection> collectionClass, Class<?> elementClass) {
-        try {
-            JsonNode jsonNode = objectMapper.readTree(json);
-
-            JsonNode payloadNode = jsonNode.path("payload").path("list");
-            if (payloadNode.isMissingNode())
-                throw new AccountServiceException(INVALID_JSON_ERROR.getMessage());
+        try (JsonParser parser = objectMapper.createParser(json)) {
+            JavaType type = objectMapper.getTypeFactory().constructCollectionType(collectionClass, elementClass);
+            return readPayload(parser, payloadReader(type), "payload", "list");
+        } catch (IOException e) {
+            LOG.error("FAILED TO CONVERT THE JSON OBJECT TO LIST CLASS OBJECT");
+            throw new FabrickRestServiceException(ErrorMessages.INVALID_JSON_ERROR.getMessage());
+        }
+    }
 
-            JavaType type = new ObjectMapper().getTypeFactory().constructCollectionType(collectionClass, elementClass);
-            return new ObjectMapper().readValue(payloadNode.toString(), type);
+    /**
+     * Reads the {@code payload} of a response body straight from the stream, without building a tree or a String.
+     *
+     * @param body  The response body.
+     * @param clazz The class of the payload.
+     * @param <K>   The type of the payload.
+     * @return K The payload, null if the payload is null.
+     * @throws IOException                 If the body cannot be read.
+     * @throws FabrickRestServiceException If the body is not valid JSON.
+     */
+    public <K> K fromJson(InputStream body, Class<K> clazz) throws IOException {
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            return readPayload(parser, payloadReader(objectMapper.constructType(clazz)), "payload");
+        } catch (JsonProcessingException e) {
+            LOG.error("FAILED TO CONVERT THE JSON OBJECT TO CLASS OBJECT");
+            throw new FabrickRestServiceException(ErrorMessages.INVALID_JSON_ERROR.getMessage());
+        }
+    }
 
+    /**
+     * Reads the {@code payload.list} of a response body straight from the stream, without building a tree or a String.
+     *
+     * @param body         The response body.
+     * @param elementClass The class of the elements in the list.
+     * @param <K>          The type of the elements in the list.
+     * @return List<K> The payload list, null if the list is null.
+     * @throws IOException                 If the body cannot be read.
+     * @throws FabrickRestServiceException If the body is not valid JSON.
+     */
+    public <K> List<K> fromJsonList(InputStream body, Class<K> elementClass) throws IOException {
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            JavaType type = objectMapper.getTypeFactory().constructCollectionType(List.class, elementClass);
+            return readPayload(parser, payloadReader(type), "payload", "list");
         } catch (JsonProcessingException e) {
             LOG.error("FAILED TO CONVERT THE JSON OBJECT TO LIST CLASS OBJECT");
             throw new FabrickRestServiceException(ErrorMessages.INVALID_JSON_ERROR.getMessage());
         }
     }
 
+    private ObjectReader payloadReader(JavaType type) {
+        return payloadReaders.computeIfAbsent(type, objectMapper::readerFor);
+    }
+
+    /**
+     * Moves the parser down the given field path and binds the value found there.
+     * Sibling fields met on the way are skipped without being materialized.
+     *
+     * @throws AccountServiceException If a field of the path is missing.
+     */
+    private <K> K readPayload(JsonParser parser, ObjectReader reader, String... path) throws IOException {
+        parser.nextToken();
+        for (String field : path) {
+            if (!seekField(parser, field))
+                throw new AccountServiceException(INVALID_JSON_ERROR.getMessage());
+        }
+        if (parser.currentToken() == JsonToken.VALUE_NULL)
+            return null;
+        return reader.readValue(parser);
+    }
+
+    private static boolean seekField(JsonParser parser, String field) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT)
+            return false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            parser.nextToken();
+            if (field.equals(name))
+                return true;
+            parser.skipChildren();
+        }
+        return false;
+    }
+
 
 }
@@ -0,0 +1,108 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.shared;
+
+import com.service.fabrickapi.configuration.VirtualThreadProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Reports virtual threads pinned to their carrier for longer than {@code fabrick.virtual-threads.pinned-threshold},
+ * which happens when they block inside a synchronized block or a native frame. Streams the JFR
+ * jdk.VirtualThreadPinned event in process, logs where it happened and records it in the
+ * fabrick.virtual-threads.pinned timer, tagged with the first application frame of the pinned stack.
+ * Only active with {@code spring.threads.virtual.enabled=true}.
+ */
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadPinningMonitor implements AutoCloseable {
+    static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final String APPLICATION_PACKAGE = "com.service.fabrickapi.";
+    private final Logger LOG = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+    private final MeterRegistry meterRegistry;
+    private final RecordingStream recordingStream;
+
+    /**
+     * Constructs a new instance of the VirtualThreadPinningMonitor and starts streaming the pinning events.
+     *
+     * @param virtualThreadProperties The shortest pinning reported.
+     * @param meterRegistry           The registry of the fabrick.virtual-threads.pinned metric.
+     */
+    @Autowired
+    public VirtualThreadPinningMonitor(VirtualThreadProperties virtualThreadProperties, MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.recordingStream = new RecordingStream();
+        recordingStream.enable(PINNED_EVENT).withThreshold(virtualThreadProperties.pinnedThreshold()).withStackTrace();
+        recordingStream.onEvent(PINNED_EVENT, this::pinned);
+        recordingStream.startAsync();
+        LOG.info("REPORTING VIRTUAL THREADS PINNED FOR MORE THAN {} MS", virtualThreadProperties.pinnedThreshold().toMillis());
+    }
+
+    void pinned(RecordedEvent event) {
+        var site = site(event.getStackTrace());
+        Duration duration = event.getDuration();
+        Timer.builder("fabrick.virtual-threads.pinned")
+                .tag("site", site)
+                .description("Time virtual threads spent pinned to their carrier thread")
+                .register(meterRegistry)
+                .record(duration);
+        LOG.warn("VIRTUAL THREAD PINNED FOR {} MS AT {}", duration.toMillis(), site);
+    }
+
+    /**
+     * @param stackTrace The stack of the pinned virtual thread, innermost frame first.
+     * @return String Class and method of the innermost application frame, else of the innermost frame.
+     */
+    static String site(RecordedStackTrace stackTrace) {
+        if (stackTrace == null || stackTrace.getFrames().isEmpty())
+            return "unknown";
+        return stackTrace.getFrames().stream()
+                .filter(RecordedFrame::isJavaFrame)
+                .filter(frame -> frame.getMethod().getType().getName().startsWith(APPLICATION_PACKAGE))
+                .findFirst()
+                .or(() -> stackTrace.getFrames().stream().findFirst())
+                .map(frame -> frame.getMethod().getType().getName() + "." + frame.getMethod().getName())
+                .orElse("unknown");
+    }
+
+    @PreDestroy
+    @Override
+    public void close() {
+        recordingStream.close();
+    }
+}
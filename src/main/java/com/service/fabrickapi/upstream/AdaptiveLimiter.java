@@ -0,0 +1,266 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.upstream;
+
+import com.service.fabrickapi.configuration.LimiterProperties;
+import com.service.fabrickapi.exception.FabrickRestServiceException;
+import com.service.fabrickapi.exception.UpstreamUnavailableException;
+import com.service.fabrickapi.model.error.ErrorMessages;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Limit of the calls of each Fabrick API operation in flight at once, tuned from their round trip times, Vegas style.
+ * Each operation has a limit and a no-load round trip time of its own, so that a slow transactions read
+ * does not pass for a queue in front of the balance reads.
+ * The no-load round trip time is the shortest one seen. A call taking rtt while limit calls are allowed tells that
+ * about limit * (1 - noLoadRtt / rtt) of them are queued at the upstream: the limit grows by log10(limit) while
+ * fewer than 3 * log10(limit) are queued, and shrinks by as much when more than 6 * log10(limit) are.
+ * A call timing out, or finding the upstream overloaded or unreachable, multiplies the limit by backoff-ratio.
+ * The limit only grows while at least half of it is used, so that a quiet period does not inflate it.
+ * Every probe-interval calls the no-load round trip time becomes the shortest one of the last interval,
+ * following an upstream that got slower or faster for good.
+ * A call beyond the limit waits up to max-wait for a call to complete, then is rejected with UpstreamUnavailableException.
+ */
+@Component
+public class AdaptiveLimiter {
+    private static final Duration RETRY_AFTER = Duration.ofSeconds(1);
+
+    private final LimiterProperties limiterProperties;
+    private final Map<UpstreamOperation, Limit> limits = new EnumMap<>(UpstreamOperation.class);
+    private final LongSupplier nanoTime;
+
+    /**
+     * Constructs a new instance of the AdaptiveLimiter.
+     *
+     * @param limiterProperties The bounds, wait and backoff of the limits.
+     * @param meterRegistry     The registry of the fabrick.upstream.limit metrics.
+     */
+    @Autowired
+    public AdaptiveLimiter(LimiterProperties limiterProperties, MeterRegistry meterRegistry) {
+        this(limiterProperties, meterRegistry, System::nanoTime);
+    }
+
+    AdaptiveLimiter(LimiterProperties limiterProperties, MeterRegistry meterRegistry, LongSupplier nanoTime) {
+        this.limiterProperties = limiterProperties;
+        this.nanoTime = nanoTime;
+        if (!limiterProperties.enabled())
+            return;
+        for (var operation : UpstreamOperation.values())
+            limits.put(operation, new Limit(operation, meterRegistry));
+    }
+
+    /**
+     * Limiter letting every call through, for callers built outside the application context.
+     */
+    public static AdaptiveLimiter disabled() {
+        return new AdaptiveLimiter(new LimiterProperties(false, 1, 1, 1, Duration.ZERO, 1, 1), new SimpleMeterRegistry());
+    }
+
+    /**
+     * Makes the call of the operation once its limit lets it through, and adjusts the limit to its round trip time.
+     * A call failing for a reason that may not last, such as a timeout or a 503, tells the limit the upstream is overloaded;
+     * a call cancelled, or ended by an Error, is counted out without telling it anything.
+     *
+     * @param operation The upstream operation.
+     * @param call      The call of the Fabrick API.
+     * @param <T>       The type of the result.
+     * @return T The result of the call.
+     * @throws UpstreamUnavailableException If the calls of the operation in flight stayed at its limit for max-wait.
+     */
+    public <T> T call(UpstreamOperation operation, Supplier<T> call) {
+        var limit = limits.get(operation);
+        if (limit == null)
+            return call.get();
+        var start = limit.acquire();
+        var failure = UpstreamFailure.CANCELLED;
+        try {
+            var result = call.get();
+            failure = null;
+            return result;
+        } catch (RuntimeException e) {
+            failure = UpstreamFailure.of(e);
+            throw e;
+        } finally {
+            limit.release(start, failure != null && failure.retryable(), failure == UpstreamFailure.CANCELLED);
+        }
+    }
+
+    /**
+     * Waits up to max-wait for the calls of the operation in flight to drop under its limit, then counts the call in.
+     *
+     * @return long The start of the call, to release it with.
+     */
+    long acquire(UpstreamOperation operation) {
+        return limits.get(operation).acquire();
+    }
+
+    /**
+     * Counts a completed call of the operation out and adjusts its limit to the round trip time of the call.
+     */
+    void release(UpstreamOperation operation, long start, boolean dropped) {
+        limits.get(operation).release(start, dropped, false);
+    }
+
+    /**
+     * @return int The calls of the operation allowed in flight at once.
+     */
+    int limit(UpstreamOperation operation) {
+        return limits.get(operation).limit();
+    }
+
+    /**
+     * @return Duration The shortest round trip time of the operation seen since the last probe, zero before any call completed.
+     */
+    Duration noLoadRtt(UpstreamOperation operation) {
+        return limits.get(operation).noLoadRtt();
+    }
+
+    private final class Limit {
+        final UpstreamOperation operation;
+        final ReentrantLock lock = new ReentrantLock();
+        final Condition released = lock.newCondition();
+        final Counter rejections;
+        double limit = limiterProperties.initialLimit();
+        int inFlight;
+        long noLoadRtt = Long.MAX_VALUE;
+        long intervalRtt = Long.MAX_VALUE;
+        long samples;
+
+        Limit(UpstreamOperation operation, MeterRegistry meterRegistry) {
+            var tag = operation.name().toLowerCase();
+            this.operation = operation;
+            this.rejections = Counter.builder("fabrick.upstream.limit.rejected")
+                    .description("Calls of the operation rejected as its calls in flight stayed at the limit for max-wait")
+                    .tag("operation", tag)
+                    .register(meterRegistry);
+            Gauge.builder("fabrick.upstream.limit", this, Limit::limit)
+                    .description("Calls of the operation allowed in flight at once")
+                    .tag("operation", tag)
+                    .register(meterRegistry);
+            Gauge.builder("fabrick.upstream.limit.inflight", this, Limit::inFlight)
+                    .description("Calls of the operation in flight")
+                    .tag("operation", tag)
+                    .register(meterRegistry);
+            Gauge.builder("fabrick.upstream.limit.no.load.rtt", this, limit -> limit.noLoadRtt().toNanos() / 1e6)
+                    .description("Shortest round trip time of the operation seen since the last probe, in milliseconds")
+                    .tag("operation", tag)
+                    .register(meterRegistry);
+        }
+
+        long acquire() {
+            lock.lock();
+            try {
+                var wait = limiterProperties.maxWait().toNanos();
+                while (inFlight >= (int) limit) {
+                    if (wait <= 0) {
+                        rejections.increment();
+                        throw new UpstreamUnavailableException(ErrorMessages.SERVICE_UNAVAILABLE_ERROR.getMessage()
+                                + " - CONCURRENCY LIMIT " + (int) limit + " OF " + operation + " REACHED", RETRY_AFTER);
+                    }
+                    wait = released.awaitNanos(wait);
+                }
+                inFlight++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new FabrickRestServiceException(ErrorMessages.INTERNAL_SERVER_ERROR.getMessage());
+            } finally {
+                lock.unlock();
+            }
+            return nanoTime.getAsLong();
+        }
+
+        void release(long start, boolean dropped, boolean cancelled) {
+            var rtt = nanoTime.getAsLong() - start;
+            lock.lock();
+            try {
+                var used = inFlight;
+                inFlight--;
+                released.signal();
+                if (cancelled)
+                    return;
+                if (dropped) {
+                    limit = Math.max(limiterProperties.minLimit(), limit * limiterProperties.backoffRatio());
+                    return;
+                }
+                intervalRtt = Math.min(intervalRtt, Math.max(rtt, 1));
+                noLoadRtt = Math.min(noLoadRtt, intervalRtt);
+                if (++samples % limiterProperties.probeInterval() == 0) {
+                    noLoadRtt = intervalRtt;
+                    intervalRtt = Long.MAX_VALUE;
+                }
+                var step = Math.max(1, Math.log10(limit));
+                var queued = limit * (1 - (double) noLoadRtt / Math.max(rtt, 1));
+                if (queued < 3 * step && used * 2 >= limit)
+                    limit = Math.min(limiterProperties.maxLimit(), limit + step);
+                else if (queued > 6 * step)
+                    limit = Math.max(limiterProperties.minLimit(), limit - step);
+                if (inFlight < (int) limit)
+                    released.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int limit() {
+            lock.lock();
+            try {
+                return (int) limit;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int inFlight() {
+            lock.lock();
+            try {
+                return inFlight;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Duration noLoadRtt() {
+            lock.lock();
+            try {
+                return noLoadRtt == Long.MAX_VALUE ? Duration.ZERO : Duration.ofNanos(noLoadRtt);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
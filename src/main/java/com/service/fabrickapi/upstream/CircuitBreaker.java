@@ -0,0 +1,250 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.upstream;
+
+import com.service.fabrickapi.configuration.ResilienceProperties;
+import com.service.fabrickapi.exception.UpstreamUnavailableException;
+import com.service.fabrickapi.model.error.ErrorMessages;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Count-based circuit breaker of one upstream operation.
+ * Closed, it records the outcome of the last window-size calls and opens once at least minimum-calls of them
+ * show a failure rate or a slow-call rate at its threshold. Open, it rejects every call for open-duration, then
+ * half-opens and lets half-open-calls trial calls through: their rates close the circuit again or reopen it.
+ * Outcomes of calls permitted before the last transition are ignored.
+ */
+public class CircuitBreaker {
+    private static final int FAILURE = 1;
+    private static final int SLOW = 2;
+    private static final int HISTORY = 16;
+    private static final Duration HALF_OPEN_RETRY_AFTER = Duration.ofSeconds(1);
+
+    private final String name;
+    private final ResilienceProperties.Guard guard;
+    private final LongSupplier nanoTime;
+    private final Consumer<Transition> onTransition;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final byte[] window;
+    private final Deque<Transition> transitions = new ArrayDeque<>();
+    private State state = State.CLOSED;
+    private long generation;
+    private long openedAt;
+    private int next;
+    private int calls;
+    private int failures;
+    private int slowCalls;
+    private int trialPermits;
+
+    /**
+     * Constructs a new, closed, instance of the CircuitBreaker.
+     *
+     * @param name         The name of the guarded operation, used in rejection messages.
+     * @param guard        The window, thresholds and open duration.
+     * @param nanoTime     The clock timing the open duration.
+     * @param onTransition Notified of every state transition, under the breaker lock.
+     */
+    public CircuitBreaker(String name, ResilienceProperties.Guard guard, LongSupplier nanoTime, Consumer<Transition> onTransition) {
+        this.name = name;
+        this.guard = guard;
+        this.nanoTime = nanoTime;
+        this.onTransition = onTransition;
+        this.window = new byte[guard.windowSize()];
+    }
+
+    /**
+     * Asks to make a call, half-opening the circuit if its open duration is over.
+     *
+     * @return long The permit to record the outcome of the call with.
+     * @throws UpstreamUnavailableException If the circuit is open, or half-open with all trial calls taken.
+     */
+    public long acquire() {
+        lock.lock();
+        try {
+            if (state == State.OPEN) {
+                var left = guard.openDuration().toNanos() - (nanoTime.getAsLong() - openedAt);
+                if (left > 0)
+                    throw rejected("OPEN", Duration.ofNanos(left));
+                transition(State.HALF_OPEN);
+            }
+            if (state == State.HALF_OPEN) {
+                if (trialPermits >= guard.halfOpenCalls())
+                    throw rejected("HALF OPEN", HALF_OPEN_RETRY_AFTER);
+                trialPermits++;
+            }
+            return generation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gives back a permit whose call was not made.
+     *
+     * @param permit The permit returned by {@link #acquire()}.
+     */
+    public void release(long permit) {
+        lock.lock();
+        try {
+            if (permit == generation && state == State.HALF_OPEN)
+                trialPermits--;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records the outcome of a permitted call.
+     *
+     * @param permit  The permit returned by {@link #acquire()}.
+     * @param nanos   How long the call took.
+     * @param failure Whether the call failed.
+     */
+    public void record(long permit, long nanos, boolean failure) {
+        var outcome = (failure ? FAILURE : 0) | (nanos > guard.slowCallDuration().toNanos() ? SLOW : 0);
+        lock.lock();
+        try {
+            if (permit != generation || state == State.OPEN)
+                return;
+            if (state == State.CLOSED) {
+                if (calls == window.length)
+                    forget(window[next]);
+                else
+                    calls++;
+                window[next] = (byte) outcome;
+                next = (next + 1) % window.length;
+                count(outcome);
+                if (calls >= guard.minimumCalls() && exceeded())
+                    transition(State.OPEN);
+            } else {
+                calls++;
+                count(outcome);
+                if (calls >= guard.halfOpenCalls())
+                    transition(exceeded() ? State.OPEN : State.CLOSED);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return CircuitBreaker.Snapshot The state, the rates and the recent transitions of the circuit.
+     */
+    public Snapshot snapshot() {
+        lock.lock();
+        try {
+            var measured = state == State.CLOSED ? calls >= guard.minimumCalls() : calls > 0;
+            return new Snapshot(state, calls,
+                    measured ? rate(failures) : -1,
+                    measured ? rate(slowCalls) : -1,
+                    List.copyOf(transitions));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return CircuitBreaker.State The current state, without half-opening an open circuit whose duration is over.
+     */
+    public State state() {
+        lock.lock();
+        try {
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean exceeded() {
+        return rate(failures) >= guard.failureRateThreshold() || rate(slowCalls) >= guard.slowCallRateThreshold();
+    }
+
+    private float rate(int count) {
+        return calls == 0 ? 0 : count * 100f / calls;
+    }
+
+    private void count(int outcome) {
+        if ((outcome & FAILURE) != 0)
+            failures++;
+        if ((outcome & SLOW) != 0)
+            slowCalls++;
+    }
+
+    private void forget(int outcome) {
+        if ((outcome & FAILURE) != 0)
+            failures--;
+        if ((outcome & SLOW) != 0)
+            slowCalls--;
+    }
+
+    private void transition(State to) {
+        var transition = new Transition(state, to, new Date());
+        state = to;
+        generation++;
+        next = 0;
+        calls = 0;
+        failures = 0;
+        slowCalls = 0;
+        trialPermits = 0;
+        if (to == State.OPEN)
+            openedAt = nanoTime.getAsLong();
+        if (transitions.size() == HISTORY)
+            transitions.removeFirst();
+        transitions.addLast(transition);
+        onTransition.accept(transition);
+    }
+
+    private UpstreamUnavailableException rejected(String state, Duration retryAfter) {
+        return new UpstreamUnavailableException(ErrorMessages.SERVICE_UNAVAILABLE_ERROR.getMessage()
+                + " - CIRCUIT " + name + " " + state, retryAfter);
+    }
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    public record Transition(State from, State to, Date at) {
+    }
+
+    /**
+     * @param state        The current state.
+     * @param calls        The outcomes recorded in the current state.
+     * @param failureRate  The percentage of failed calls, -1 until enough calls are recorded.
+     * @param slowCallRate The percentage of slow calls, -1 until enough calls are recorded.
+     * @param transitions  The most recent transitions, oldest first.
+     */
+    public record Snapshot(State state, int calls, float failureRate, float slowCallRate, List<Transition> transitions) {
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.upstream;
+
+import com.service.fabrickapi.configuration.CoalescingProperties;
+import com.service.fabrickapi.exception.FabrickRestServiceException;
+import com.service.fabrickapi.model.dto.AccountBalanceDTO;
+import com.service.fabrickapi.model.dto.LoanTransferDTO;
+import com.service.fabrickapi.model.dto.TransactionDTO;
+import com.service.fabrickapi.model.error.ErrorMessages;
+import com.service.fabrickapi.model.request.LoanTransferRequest;
+import com.service.fabrickapi.service.FabrickRestService;
+import com.service.fabrickapi.service.implementation.FabrickRestServiceImpl;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight front of {@link FabrickRestServiceImpl}: concurrent identical reads (same operation,
+ * account and date range) share the one upstream call already in flight instead of each firing their own.
+ * Only in-flight calls are shared, nothing is kept once the call completes, so no stale data is served.
+ * Transfers are never coalesced.
+ * Waiters share the failure of the leader, unless the leader was cancelled: its thread was interrupted, as
+ * past the deadline of an overview, which says nothing about the upstream. They then call again, one of them leading.
+ */
+@Primary
+@Service
+@ConditionalOnProperty(prefix = "fabrick.coalescing", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class CoalescingFabrickRestService implements FabrickRestService {
+    private final Logger LOG = LoggerFactory.getLogger(CoalescingFabrickRestService.class);
+    private final FabrickRestService fabrickRestService;
+    private final int maxWaiters;
+    private final Duration maxWait;
+    private final Map<RequestKey, InFlight<?>> inFlight = new ConcurrentHashMap<>();
+    private final Counter leaders;
+    private final Counter collapsed;
+    private final Counter overflows;
+
+    /**
+     * Constructs a new instance of the CoalescingFabrickRestService.
+     *
+     * @param fabrickRestService   The service actually calling the Fabrick API.
+     * @param coalescingProperties The maximum number of callers allowed to wait on one in-flight call, and their wait.
+     * @param meterRegistry        The registry of the fabrick.coalescing.* metrics.
+     */
+    @Autowired
+    public CoalescingFabrickRestService(FabrickRestServiceImpl fabrickRestService,
+                                        CoalescingProperties coalescingProperties,
+                                        MeterRegistry meterRegistry) {
+        this((FabrickRestService) fabrickRestService, coalescingProperties, meterRegistry);
+    }
+
+    CoalescingFabrickRestService(FabrickRestService fabrickRestService,
+                                 CoalescingProperties coalescingProperties,
+                                 MeterRegistry meterRegistry) {
+        this.fabrickRestService = fabrickRestService;
+        this.maxWaiters = coalescingProperties.maxWaiters();
+        this.maxWait = coalescingProperties.maxWait();
+        this.leaders = meterRegistry.counter("fabrick.coalescing.calls", "outcome", "leader");
+        this.collapsed = meterRegistry.counter("fabrick.coalescing.calls", "outcome", "collapsed");
+        this.overflows = meterRegistry.counter("fabrick.coalescing.calls", "outcome", "overflow");
+        Gauge.builder("fabrick.coalescing.inflight", inFlight, Map::size)
+                .description("Distinct upstream reads currently in flight")
+                .register(meterRegistry);
+        Gauge.builder("fabrick.coalescing.collapse.ratio", this, CoalescingFabrickRestService::collapseRatio)
+                .description("Share of reads served by joining a call already in flight")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Optional<AccountBalanceDTO> getAccountBalance(Long accountId) {
+        return coalesce(new RequestKey("balance", accountId, null, null),
+                () -> fabrickRestService.getAccountBalance(accountId));
+    }
+
+    @Override
+    public Optional<List<TransactionDTO>> getAccountTransactions(Long accountId, String fromAccountingDate, String toAccountingDate) {
+        return coalesce(new RequestKey("transactions", accountId, fromAccountingDate, toAccountingDate),
+                () -> fabrickRestService.getAccountTransactions(accountId, fromAccountingDate, toAccountingDate));
+    }
+
+    @Override
+    public Optional<LoanTransferDTO> executeTransfer(Long accountId, LoanTransferRequest transferRequest, String idempotencyKey) {
+        return fabrickRestService.executeTransfer(accountId, transferRequest, idempotencyKey);
+    }
+
+    double collapseRatio() {
+        double total = leaders.count() + collapsed.count() + overflows.count();
+        return total == 0 ? 0 : collapsed.count() / total;
+    }
+
+    /**
+     * Runs the call as the leader if no identical call is in flight, joins the in-flight one otherwise.
+     * A caller finding {@code maxWaiters} callers still waiting makes its own call instead of piling up.
+     * The in-flight call is removed before it is completed, whatever the leader throws, so that no caller joins a
+     * call that will never complete.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T coalesce(RequestKey key, Supplier<T> call) {
+        var created = new InFlight<T>();
+        var existing = (InFlight<T>) inFlight.putIfAbsent(key, created);
+
+        if (existing == null) {
+            leaders.increment();
+            T result;
+            try {
+                result = call.get();
+            } catch (Throwable e) {
+                created.cancelled = UpstreamFailure.of(e) == UpstreamFailure.CANCELLED;
+                inFlight.remove(key, created);
+                created.future.completeExceptionally(e);
+                throw e;
+            }
+            inFlight.remove(key, created);
+            created.future.complete(result);
+            return result;
+        }
+
+        if (existing.waiters.incrementAndGet() > maxWaiters) {
+            existing.waiters.decrementAndGet();
+            overflows.increment();
+            LOG.warn("COALESCING WAITERS LIMIT REACHED FOR {}", key);
+            return call.get();
+        }
+
+        collapsed.increment();
+        try {
+            return existing.future.get(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            if (existing.cancelled) {
+                LOG.info("COALESCED CALL {} CANCELLED, CALLING AGAIN", key);
+                return coalesce(key, call);
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException)
+                throw runtimeException;
+            if (e.getCause() instanceof Error error)
+                throw error;
+            throw new FabrickRestServiceException(e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            LOG.error("COALESCED CALL {} NOT COMPLETED WITHIN {}", key, maxWait);
+            throw new FabrickRestServiceException(ErrorMessages.GATEWAY_TIMEOUT_ERROR.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FabrickRestServiceException(ErrorMessages.INTERNAL_SERVER_ERROR.getMessage());
+        } finally {
+            existing.waiters.decrementAndGet();
+        }
+    }
+
+    private record RequestKey(String operation, Long accountId, String fromAccountingDate, String toAccountingDate) {
+    }
+
+    private static final class InFlight<T> {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final AtomicInteger waiters = new AtomicInteger();
+        volatile boolean cancelled;
+    }
+}
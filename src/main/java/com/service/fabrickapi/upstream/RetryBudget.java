@@ -0,0 +1,83 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.upstream;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket bounding the retries, or the hedges, of one upstream operation to a share of its calls.
+ * Every call deposits ratio tokens, every retry withdraws one, so that while the Fabrick API fails every call,
+ * retries add at most ratio extra calls per call once the capacity the bucket starts with is spent,
+ * instead of multiplying the load of an upstream that is already failing by the max attempts.
+ * Tokens are counted in thousandths in one atomic, so that deposits and withdrawals never lock.
+ */
+public class RetryBudget {
+    private static final long SCALE = 1000;
+
+    private final long deposit;
+    private final long capacity;
+    private final AtomicLong tokens;
+
+    /**
+     * Constructs a new, full, instance of the RetryBudget.
+     *
+     * @param ratio    The tokens each call deposits.
+     * @param capacity The tokens the bucket holds at most.
+     */
+    public RetryBudget(double ratio, int capacity) {
+        this.deposit = Math.round(ratio * SCALE);
+        this.capacity = capacity * SCALE;
+        this.tokens = new AtomicLong(this.capacity);
+    }
+
+    /**
+     * Deposits the tokens of a call.
+     */
+    public void deposit() {
+        tokens.accumulateAndGet(deposit, (current, added) -> Math.min(capacity, current + added));
+    }
+
+    /**
+     * Withdraws the token of a retry, if the bucket holds one.
+     *
+     * @return boolean Whether the retry may be made.
+     */
+    public boolean tryWithdraw() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current < SCALE)
+                return false;
+        } while (!tokens.compareAndSet(current, current - SCALE));
+        return true;
+    }
+
+    /**
+     * @return double The tokens in the bucket.
+     */
+    public double tokens() {
+        return (double) tokens.get() / SCALE;
+    }
+}
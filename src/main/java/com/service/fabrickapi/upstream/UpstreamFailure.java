@@ -0,0 +1,157 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.upstream;
+
+import com.service.fabrickapi.exception.FabrickRestServiceException;
+import com.service.fabrickapi.exception.UpstreamUnavailableException;
+import org.apache.hc.client5.http.ConnectTimeoutException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.regex.Pattern;
+
+/**
+ * Why a call of the Fabrick API failed, deciding whether it may be retried and whether it counts against its circuit.
+ */
+public enum UpstreamFailure {
+    /**
+     * The Fabrick API answered with a 4xx status other than 429: the request is wrong, the upstream is up.
+     */
+    CLIENT_ERROR(false, false),
+    /**
+     * The Fabrick API answered with 429 Too Many Requests.
+     */
+    THROTTLED(true, true),
+    /**
+     * The Fabrick API or a gateway in front of it answered with 502, 503 or 504.
+     */
+    UNAVAILABLE(true, true),
+    /**
+     * The Fabrick API answered with another 5xx status.
+     */
+    SERVER_ERROR(false, true),
+    /**
+     * No connection could be made, so the request was never sent.
+     */
+    CONNECT_FAILED(true, true),
+    /**
+     * The response did not arrive within the read timeout, the request may have been processed.
+     */
+    TIMEOUT(true, true),
+    /**
+     * The connection failed while the request or the response was in flight, the request may have been processed.
+     */
+    IO_ERROR(true, true),
+    /**
+     * The response could not be read as a Fabrick payload.
+     */
+    INVALID_RESPONSE(false, true),
+    /**
+     * The call was rejected by its circuit breaker or bulkhead without being made.
+     */
+    REJECTED(false, false),
+    /**
+     * The thread making the call was interrupted, as a hedged read whose other attempt answered first is.
+     */
+    CANCELLED(false, false);
+
+    private static final Pattern STATUS = Pattern.compile("^(\\d{3}) ");
+
+    private final boolean retryable;
+    private final boolean upstreamFailure;
+
+    UpstreamFailure(boolean retryable, boolean upstreamFailure) {
+        this.retryable = retryable;
+        this.upstreamFailure = upstreamFailure;
+    }
+
+    /**
+     * Classifies a failed call by the status of the response, else by the I/O error behind it.
+     * An exception carrying only a message is classified by the status its message starts with, if any.
+     * Any exception thrown on an interrupted thread is a cancellation, as interrupting a call closes its connection.
+     *
+     * @param e The exception thrown by the call.
+     * @return UpstreamFailure Why the call failed, INVALID_RESPONSE when nothing tells.
+     */
+    public static UpstreamFailure of(Throwable e) {
+        if (e instanceof UpstreamUnavailableException)
+            return REJECTED;
+        if (Thread.currentThread().isInterrupted())
+            return CANCELLED;
+        if (e instanceof FabrickRestServiceException fabrickRestServiceException && fabrickRestServiceException.getFailure() != null)
+            return fabrickRestServiceException.getFailure();
+        if (e instanceof RestClientResponseException responseException)
+            return ofStatus(responseException.getStatusCode().value());
+        if (e instanceof ResourceAccessException || e instanceof IOException)
+            return ofIoError(e);
+        var status = e.getMessage() == null ? null : STATUS.matcher(e.getMessage());
+        return status != null && status.find() ? ofStatus(Integer.parseInt(status.group(1))) : INVALID_RESPONSE;
+    }
+
+    static UpstreamFailure ofStatus(int status) {
+        if (status == 429)
+            return THROTTLED;
+        if (status == 502 || status == 503 || status == 504)
+            return UNAVAILABLE;
+        if (status >= 500)
+            return SERVER_ERROR;
+        if (status >= 400)
+            return CLIENT_ERROR;
+        return INVALID_RESPONSE;
+    }
+
+    private static UpstreamFailure ofIoError(Throwable e) {
+        for (var cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException || cause instanceof UnknownHostException
+                    || cause instanceof NoRouteToHostException || cause instanceof ConnectTimeoutException
+                    || cause instanceof HttpConnectTimeoutException)
+                return CONNECT_FAILED;
+            if (cause instanceof SocketTimeoutException || cause instanceof HttpTimeoutException)
+                return TIMEOUT;
+        }
+        return IO_ERROR;
+    }
+
+    /**
+     * @return boolean Whether the same call may succeed if made again.
+     */
+    public boolean retryable() {
+        return retryable;
+    }
+
+    /**
+     * @return boolean Whether the failure tells the Fabrick API is failing, so that it counts against its circuit.
+     */
+    public boolean upstreamFailure() {
+        return upstreamFailure;
+    }
+}
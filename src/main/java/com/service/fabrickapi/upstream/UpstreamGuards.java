@@ -0,0 +1,225 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.upstream;
+
+import com.service.fabrickapi.configuration.ResilienceProperties;
+import com.service.fabrickapi.exception.FabrickRestServiceException;
+import com.service.fabrickapi.exception.UpstreamUnavailableException;
+import com.service.fabrickapi.model.error.ErrorMessages;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker and semaphore bulkhead of each upstream operation, so that a slow or failing Fabrick API
+ * fails its callers fast instead of holding a request thread for the whole read timeout.
+ * A call first asks its circuit, which rejects it while open, then takes a bulkhead slot, waiting at most max-wait,
+ * so that one operation cannot hold every request thread. A rejected call throws UpstreamUnavailableException.
+ * A call throwing counts as failed unless its UpstreamFailure tells the Fabrick API is up, as for a 4xx status.
+ * A call cancelled, rejected by the adaptive limiter before reaching the Fabrick API, or ended by an Error,
+ * is not recorded, as its duration and outcome tell nothing about the Fabrick API.
+ * State transitions and outcomes are published as fabrick.upstream.* metrics and by the upstreamguards endpoint.
+ */
+@Component
+public class UpstreamGuards {
+    private static final Duration BULKHEAD_RETRY_AFTER = Duration.ofSeconds(1);
+
+    private final Logger LOG = LoggerFactory.getLogger(UpstreamGuards.class);
+    private final boolean enabled;
+    private final Map<UpstreamOperation, Guard> guards = new EnumMap<>(UpstreamOperation.class);
+    private final LongSupplier nanoTime;
+
+    /**
+     * Constructs a new instance of the UpstreamGuards.
+     *
+     * @param resilienceProperties The circuit breaker and bulkhead of each operation.
+     * @param meterRegistry        The registry of the fabrick.upstream.* metrics.
+     */
+    @Autowired
+    public UpstreamGuards(ResilienceProperties resilienceProperties, MeterRegistry meterRegistry) {
+        this(resilienceProperties, meterRegistry, System::nanoTime);
+    }
+
+    UpstreamGuards(ResilienceProperties resilienceProperties, MeterRegistry meterRegistry, LongSupplier nanoTime) {
+        this.enabled = resilienceProperties.enabled();
+        this.nanoTime = nanoTime;
+        if (!enabled)
+            return;
+        guards.put(UpstreamOperation.BALANCE, new Guard(UpstreamOperation.BALANCE, resilienceProperties.balance(), meterRegistry));
+        guards.put(UpstreamOperation.TRANSACTIONS, new Guard(UpstreamOperation.TRANSACTIONS, resilienceProperties.transactions(), meterRegistry));
+        guards.put(UpstreamOperation.TRANSFERS, new Guard(UpstreamOperation.TRANSFERS, resilienceProperties.transfers(), meterRegistry));
+    }
+
+    /**
+     * Guards that let every call through, for callers built outside the application context.
+     */
+    public static UpstreamGuards disabled() {
+        return new UpstreamGuards(new ResilienceProperties(false, null, null, null), new SimpleMeterRegistry());
+    }
+
+    /**
+     * Makes the call of the operation if its circuit and bulkhead let it through, recording its outcome.
+     *
+     * @param operation The upstream operation.
+     * @param call      The call of the Fabrick API.
+     * @param <T>       The type of the result.
+     * @return T The result of the call.
+     * @throws UpstreamUnavailableException If the circuit is open or no bulkhead slot freed up within max-wait.
+     */
+    public <T> T call(UpstreamOperation operation, Supplier<T> call) {
+        if (!enabled)
+            return call.get();
+        var guard = guards.get(operation);
+        var permit = acquire(guard);
+        var start = nanoTime.getAsLong();
+        var recorded = false;
+        try {
+            var result = call.get();
+            guard.record(permit, nanoTime.getAsLong() - start, false);
+            recorded = true;
+            return result;
+        } catch (RuntimeException e) {
+            var failure = UpstreamFailure.of(e);
+            if (failure == UpstreamFailure.CANCELLED || failure == UpstreamFailure.REJECTED) {
+                (failure == UpstreamFailure.CANCELLED ? guard.cancelled : guard.limited).increment();
+            } else {
+                guard.record(permit, nanoTime.getAsLong() - start, failure.upstreamFailure());
+                recorded = true;
+            }
+            throw e;
+        } finally {
+            // a call cancelled, rejected or ended by an Error hands its half-open trial permit back unrecorded
+            if (!recorded)
+                guard.breaker.release(permit);
+            guard.bulkhead.release();
+        }
+    }
+
+    /**
+     * @return Map<UpstreamOperation, GuardReport> The circuit and bulkhead of each operation, empty when disabled.
+     */
+    public Map<UpstreamOperation, GuardReport> report() {
+        var report = new EnumMap<UpstreamOperation, GuardReport>(UpstreamOperation.class);
+        guards.forEach((operation, guard) -> report.put(operation, new GuardReport(guard.breaker.snapshot(),
+                guard.bulkhead.availablePermits(), guard.spec.maxConcurrentCalls())));
+        return report;
+    }
+
+    private long acquire(Guard guard) {
+        long permit;
+        try {
+            permit = guard.breaker.acquire();
+        } catch (UpstreamUnavailableException e) {
+            guard.notPermitted.increment();
+            throw e;
+        }
+        try {
+            if (guard.bulkhead.tryAcquire(guard.spec.maxWait().toNanos(), TimeUnit.NANOSECONDS))
+                return permit;
+        } catch (InterruptedException e) {
+            guard.breaker.release(permit);
+            Thread.currentThread().interrupt();
+            throw new FabrickRestServiceException(ErrorMessages.INTERNAL_SERVER_ERROR.getMessage());
+        }
+        guard.breaker.release(permit);
+        guard.bulkheadFull.increment();
+        throw new UpstreamUnavailableException(ErrorMessages.SERVICE_UNAVAILABLE_ERROR.getMessage()
+                + " - BULKHEAD " + guard.operation + " FULL", BULKHEAD_RETRY_AFTER);
+    }
+
+    /**
+     * @param circuit            The state, rates and recent transitions of the circuit.
+     * @param availableCalls     The free bulkhead slots.
+     * @param maxConcurrentCalls The bulkhead slots.
+     */
+    public record GuardReport(CircuitBreaker.Snapshot circuit, int availableCalls, int maxConcurrentCalls) {
+    }
+
+    private final class Guard {
+        final UpstreamOperation operation;
+        final ResilienceProperties.Guard spec;
+        final CircuitBreaker breaker;
+        final Semaphore bulkhead;
+        final Counter successes;
+        final Counter failures;
+        final Counter notPermitted;
+        final Counter bulkheadFull;
+        final Counter cancelled;
+        final Counter limited;
+
+        Guard(UpstreamOperation operation, ResilienceProperties.Guard spec, MeterRegistry meterRegistry) {
+            var tag = operation.name().toLowerCase();
+            this.operation = operation;
+            this.spec = spec;
+            this.bulkhead = new Semaphore(spec.maxConcurrentCalls());
+            this.breaker = new CircuitBreaker(operation.name(), spec, nanoTime, transition -> {
+                LOG.warn("CIRCUIT {} {} -> {}", operation, transition.from(), transition.to());
+                meterRegistry.counter("fabrick.upstream.circuit.transitions", "operation", tag,
+                        "from", transition.from().name().toLowerCase(), "to", transition.to().name().toLowerCase()).increment();
+            });
+            this.successes = meterRegistry.counter("fabrick.upstream.calls", "operation", tag, "outcome", "success");
+            this.failures = meterRegistry.counter("fabrick.upstream.calls", "operation", tag, "outcome", "failure");
+            this.notPermitted = meterRegistry.counter("fabrick.upstream.calls", "operation", tag, "outcome", "not_permitted");
+            this.bulkheadFull = meterRegistry.counter("fabrick.upstream.calls", "operation", tag, "outcome", "bulkhead_full");
+            this.cancelled = meterRegistry.counter("fabrick.upstream.calls", "operation", tag, "outcome", "cancelled");
+            this.limited = meterRegistry.counter("fabrick.upstream.calls", "operation", tag, "outcome", "limited");
+            for (var state : CircuitBreaker.State.values())
+                Gauge.builder("fabrick.upstream.circuit.state", breaker, b -> b.state() == state ? 1 : 0)
+                        .description("1 for the current state of the circuit of the operation")
+                        .tags("operation", tag, "state", state.name().toLowerCase())
+                        .register(meterRegistry);
+            Gauge.builder("fabrick.upstream.circuit.failure.rate", breaker, b -> b.snapshot().failureRate())
+                    .description("Percentage of failed calls in the circuit window, -1 until it has enough calls")
+                    .tag("operation", tag)
+                    .register(meterRegistry);
+            Gauge.builder("fabrick.upstream.circuit.slow.call.rate", breaker, b -> b.snapshot().slowCallRate())
+                    .description("Percentage of slow calls in the circuit window, -1 until it has enough calls")
+                    .tag("operation", tag)
+                    .register(meterRegistry);
+            Gauge.builder("fabrick.upstream.bulkhead.available", bulkhead, Semaphore::availablePermits)
+                    .description("Calls of the operation that can start without waiting")
+                    .tag("operation", tag)
+                    .register(meterRegistry);
+        }
+
+        void record(long permit, long nanos, boolean failure) {
+            breaker.record(permit, nanos, failure);
+            (failure ? failures : successes).increment();
+        }
+    }
+}
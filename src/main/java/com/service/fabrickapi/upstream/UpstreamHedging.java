@@ -0,0 +1,284 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.upstream;
+
+import com.service.fabrickapi.configuration.HedgeProperties;
+import com.service.fabrickapi.exception.FabrickRestServiceException;
+import com.service.fabrickapi.model.error.ErrorMessages;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Hedges the balance and transactions reads of the Fabrick API, so that an occasional slow response does not set the p99.
+ * A read still unanswered after the hedge delay is sent a second time, and the first of the two attempts to succeed
+ * answers: the other one is cancelled by interrupting its virtual thread, which closes its connection.
+ * The hedge delay of each operation is a percentile of its recent read latencies, kept between min-delay and max-delay.
+ * Hedges of each operation are bounded by a {@link RetryBudget} of their own, so that a slow upstream gets at most
+ * budget-ratio extra reads per read instead of twice the load.
+ * Reads are hedged around their circuit breaker, so that both attempts count against the circuit and take a bulkhead slot.
+ */
+@Component
+public class UpstreamHedging {
+    private final Logger LOG = LoggerFactory.getLogger(UpstreamHedging.class);
+    private final HedgeProperties hedgeProperties;
+    private final Map<UpstreamOperation, Hedge> hedges = new EnumMap<>(UpstreamOperation.class);
+    private final LongSupplier nanoTime;
+    private final ExecutorService threads = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("fabrick-hedge-", 0).factory());
+
+    /**
+     * Constructs a new instance of the UpstreamHedging.
+     *
+     * @param hedgeProperties The hedge delay and budget of the reads.
+     * @param meterRegistry   The registry of the fabrick.upstream.hedge.* metrics.
+     */
+    @Autowired
+    public UpstreamHedging(HedgeProperties hedgeProperties, MeterRegistry meterRegistry) {
+        this(hedgeProperties, meterRegistry, System::nanoTime);
+    }
+
+    UpstreamHedging(HedgeProperties hedgeProperties, MeterRegistry meterRegistry, LongSupplier nanoTime) {
+        this.hedgeProperties = hedgeProperties;
+        this.nanoTime = nanoTime;
+        if (!hedgeProperties.enabled())
+            return;
+        hedges.put(UpstreamOperation.BALANCE, new Hedge(UpstreamOperation.BALANCE, meterRegistry));
+        hedges.put(UpstreamOperation.TRANSACTIONS, new Hedge(UpstreamOperation.TRANSACTIONS, meterRegistry));
+    }
+
+    /**
+     * Hedging that makes every call once, for callers built outside the application context.
+     */
+    public static UpstreamHedging disabled() {
+        return new UpstreamHedging(new HedgeProperties(false, 0, Duration.ZERO, Duration.ZERO, 0, 0, 0, 0),
+                new SimpleMeterRegistry());
+    }
+
+    /**
+     * Makes the read, sending it a second time if it is still unanswered after the hedge delay and the budget allows.
+     * Until minimum-calls reads of the operation are measured, the read is made once, on the calling thread.
+     *
+     * @param operation The upstream operation, calls of operations other than the reads are made once.
+     * @param call      The call of the Fabrick API, idempotent.
+     * @param <T>       The type of the result.
+     * @return T The result of the first attempt to succeed.
+     * @throws RuntimeException The failure of the last attempt to fail, when none succeeded.
+     */
+    public <T> T call(UpstreamOperation operation, Supplier<T> call) {
+        var hedge = hedges.get(operation);
+        if (hedge == null)
+            return call.get();
+        hedge.budget.deposit();
+        var start = nanoTime.getAsLong();
+        var delay = hedge.latencies.percentile();
+        if (delay < 0) {
+            var result = call.get();
+            hedge.notHedged.increment();
+            hedge.latencies.record(nanoTime.getAsLong() - start);
+            return result;
+        }
+
+        var race = new Race<>(call);
+        var primary = race.start(false);
+        Future<?> secondary = null;
+        try {
+            try {
+                var winner = race.result.get(delay, TimeUnit.NANOSECONDS);
+                hedge.notHedged.increment();
+                hedge.latencies.record(nanoTime.getAsLong() - start);
+                return winner.value();
+            } catch (TimeoutException e) {
+                if (!hedge.budget.tryWithdraw()) {
+                    hedge.budgetExhausted.increment();
+                    LOG.debug("HEDGE BUDGET OF {} EXHAUSTED, NOT HEDGING", operation);
+                    var winner = race.result.get();
+                    hedge.latencies.record(nanoTime.getAsLong() - start);
+                    return winner.value();
+                }
+                hedge.hedged.increment();
+                LOG.debug("HEDGING {} AFTER {} MS", operation, TimeUnit.NANOSECONDS.toMillis(delay));
+                secondary = race.start(true);
+                var winner = race.result.get();
+                hedge.latencies.record(nanoTime.getAsLong() - start);
+                (winner.hedge() ? hedge.hedgeWins : hedge.primaryWins).increment();
+                return winner.value();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException)
+                throw runtimeException;
+            if (e.getCause() instanceof Error error)
+                throw error;
+            throw new CompletionException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FabrickRestServiceException(ErrorMessages.INTERNAL_SERVER_ERROR.getMessage());
+        } finally {
+            primary.cancel(true);
+            if (secondary != null)
+                secondary.cancel(true);
+        }
+    }
+
+    /**
+     * @return Duration The hedge delay of the operation, null while it is not measured yet or not hedged.
+     */
+    Duration delay(UpstreamOperation operation) {
+        var hedge = hedges.get(operation);
+        var delay = hedge == null ? -1 : hedge.latencies.percentile();
+        return delay < 0 ? null : Duration.ofNanos(delay);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        threads.shutdownNow();
+    }
+
+    private record Winner<T>(T value, boolean hedge) {
+    }
+
+    /**
+     * The attempts of one read: the first to succeed completes the result, the last to fail completes it
+     * exceptionally if none succeeded.
+     */
+    private final class Race<T> {
+        final CompletableFuture<Winner<T>> result = new CompletableFuture<>();
+        final AtomicInteger running = new AtomicInteger();
+        final Supplier<T> call;
+
+        Race(Supplier<T> call) {
+            this.call = call;
+        }
+
+        Future<?> start(boolean hedge) {
+            running.incrementAndGet();
+            return threads.submit(() -> {
+                try {
+                    result.complete(new Winner<>(call.get(), hedge));
+                } catch (Throwable e) {
+                    if (running.decrementAndGet() == 0)
+                        result.completeExceptionally(e);
+                }
+            });
+        }
+    }
+
+    private final class Hedge {
+        final LatencyWindow latencies = new LatencyWindow(hedgeProperties);
+        final RetryBudget budget = new RetryBudget(hedgeProperties.budgetRatio(), hedgeProperties.budgetCapacity());
+        final Counter notHedged;
+        final Counter hedged;
+        final Counter budgetExhausted;
+        final Counter primaryWins;
+        final Counter hedgeWins;
+
+        Hedge(UpstreamOperation operation, MeterRegistry meterRegistry) {
+            var tag = operation.name().toLowerCase();
+            this.notHedged = meterRegistry.counter("fabrick.upstream.hedge.calls", "operation", tag, "outcome", "not_hedged");
+            this.hedged = meterRegistry.counter("fabrick.upstream.hedge.calls", "operation", tag, "outcome", "hedged");
+            this.budgetExhausted = meterRegistry.counter("fabrick.upstream.hedge.calls", "operation", tag, "outcome", "budget_exhausted");
+            this.primaryWins = meterRegistry.counter("fabrick.upstream.hedge.wins", "operation", tag, "winner", "primary");
+            this.hedgeWins = meterRegistry.counter("fabrick.upstream.hedge.wins", "operation", tag, "winner", "hedge");
+            Gauge.builder("fabrick.upstream.hedge.delay", latencies, window -> window.percentile() < 0 ? -1 : window.percentile() / 1e6)
+                    .description("Time a read of the operation waits before it is hedged, -1 until it is measured")
+                    .baseUnit("milliseconds")
+                    .tag("operation", tag)
+                    .register(meterRegistry);
+            Gauge.builder("fabrick.upstream.hedge.budget", budget, RetryBudget::tokens)
+                    .description("Hedges of the operation the budget allows right now")
+                    .tag("operation", tag)
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * The last window-size read latencies of an operation, and their percentile, sorted again every twentieth of the window.
+     */
+    private static final class LatencyWindow {
+        private final HedgeProperties hedgeProperties;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final long[] window;
+        private final int sortEvery;
+        private int next;
+        private int count;
+        private long samples;
+        private volatile long percentile = -1;
+
+        LatencyWindow(HedgeProperties hedgeProperties) {
+            this.hedgeProperties = hedgeProperties;
+            this.window = new long[hedgeProperties.windowSize()];
+            this.sortEvery = Math.max(1, window.length / 20);
+        }
+
+        void record(long nanos) {
+            lock.lock();
+            try {
+                window[next] = nanos;
+                next = (next + 1) % window.length;
+                count = Math.min(count + 1, window.length);
+                if (++samples < hedgeProperties.minimumCalls() || samples % sortEvery != 0 && percentile >= 0)
+                    return;
+                var sorted = Arrays.copyOf(window, count);
+                Arrays.sort(sorted);
+                var index = (int) Math.ceil(hedgeProperties.percentile() / 100 * count) - 1;
+                var latency = sorted[Math.max(0, Math.min(count - 1, index))];
+                percentile = Math.max(hedgeProperties.minDelay().toNanos(),
+                        Math.min(hedgeProperties.maxDelay().toNanos(), latency));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return long The percentile, in nanoseconds, -1 until minimum-calls latencies are recorded.
+         */
+        long percentile() {
+            return percentile;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.upstream;
+
+import com.service.fabrickapi.configuration.UpstreamProperties;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.pool.PoolStats;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+@Component
+@Endpoint(id = "upstreampool")
+public class UpstreamPoolEndpoint {
+    private final UpstreamProperties upstreamProperties;
+    private final ObjectProvider<PoolingHttpClientConnectionManager> upstreamConnectionManager;
+
+    @Autowired
+    public UpstreamPoolEndpoint(UpstreamProperties upstreamProperties,
+                                ObjectProvider<PoolingHttpClientConnectionManager> upstreamConnectionManager) {
+        this.upstreamProperties = upstreamProperties;
+        this.upstreamConnectionManager = upstreamConnectionManager;
+    }
+
+    /**
+     * Snapshot of the upstream connection pool, in total and per route.
+     *
+     * @return UpstreamPoolReport The active transport and, for the pooled transport, the pool statistics.
+     */
+    @ReadOperation
+    public UpstreamPoolReport pool() {
+        var connectionManager = upstreamConnectionManager.getIfAvailable();
+        if (connectionManager == null)
+            return new UpstreamPoolReport(upstreamProperties.transport(), null, Map.of());
+
+        Map<String, Stats> routes = new TreeMap<>();
+        for (HttpRoute route : connectionManager.getRoutes())
+            routes.put(route.getTargetHost().toURI(), Stats.of(connectionManager.getStats(route)));
+
+        return new UpstreamPoolReport(upstreamProperties.transport(), Stats.of(connectionManager.getTotalStats()), routes);
+    }
+
+    public record UpstreamPoolReport(UpstreamTransport transport, Stats total, Map<String, Stats> routes) {
+    }
+
+    public record Stats(int leased, int available, int pending, int max) {
+        static Stats of(PoolStats poolStats) {
+            return new Stats(poolStats.getLeased(), poolStats.getAvailable(), poolStats.getPending(), poolStats.getMax());
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.upstream;
+
+import com.service.fabrickapi.configuration.RetryProperties;
+import com.service.fabrickapi.exception.FabrickRestServiceException;
+import com.service.fabrickapi.model.error.ErrorMessages;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongBinaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Retries the calls of the Fabrick API that failed for a reason that may not last, see {@link UpstreamFailure}.
+ * Only idempotent calls are retried: the reads, and the transfers sent with an idempotency key.
+ * Waits before each retry follow the decorrelated jitter backoff, a random duration between the initial backoff and
+ * three times the previous wait, capped at max-backoff, so that the callers of a failed upstream do not retry in step.
+ * Retries of each operation are bounded by its {@link RetryBudget}, so that they cannot amplify an outage.
+ * Calls are retried around their circuit breaker, so that every attempt counts against the circuit
+ * and an open circuit stops the retries.
+ */
+@Component
+public class UpstreamRetry {
+    private final Logger LOG = LoggerFactory.getLogger(UpstreamRetry.class);
+    private final RetryProperties retryProperties;
+    private final MeterRegistry meterRegistry;
+    private final Sleeper sleeper;
+    private final LongBinaryOperator random;
+    private final Map<UpstreamOperation, RetryBudget> budgets = new EnumMap<>(UpstreamOperation.class);
+
+    /**
+     * Constructs a new instance of the UpstreamRetry.
+     *
+     * @param retryProperties The attempts, backoff and budget of the retries.
+     * @param meterRegistry   The registry of the fabrick.upstream.retries metrics.
+     */
+    @Autowired
+    public UpstreamRetry(RetryProperties retryProperties, MeterRegistry meterRegistry) {
+        this(retryProperties, meterRegistry, duration -> Thread.sleep(duration),
+                (origin, bound) -> ThreadLocalRandom.current().nextLong(origin, bound));
+    }
+
+    UpstreamRetry(RetryProperties retryProperties, MeterRegistry meterRegistry, Sleeper sleeper, LongBinaryOperator random) {
+        this.retryProperties = retryProperties;
+        this.meterRegistry = meterRegistry;
+        this.sleeper = sleeper;
+        this.random = random;
+        for (var operation : UpstreamOperation.values()) {
+            var budget = new RetryBudget(retryProperties.budgetRatio(), retryProperties.budgetCapacity());
+            budgets.put(operation, budget);
+            Gauge.builder("fabrick.upstream.retry.budget", budget, RetryBudget::tokens)
+                    .description("Retries of the operation the budget allows right now")
+                    .tag("operation", operation.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Retry that makes every call once, for callers built outside the application context.
+     */
+    public static UpstreamRetry disabled() {
+        return new UpstreamRetry(new RetryProperties(false, 1, Duration.ZERO, Duration.ZERO, 0, 0), new SimpleMeterRegistry());
+    }
+
+    /**
+     * Makes the call, retrying it while it fails for a retryable reason, attempts are left and the budget allows.
+     *
+     * @param operation  The upstream operation.
+     * @param idempotent Whether making the call more than once has the effect of making it once.
+     * @param call       The call of the Fabrick API.
+     * @param <T>        The type of the result.
+     * @return T The result of the first successful attempt.
+     * @throws RuntimeException The failure of the last attempt.
+     */
+    public <T> T call(UpstreamOperation operation, boolean idempotent, Supplier<T> call) {
+        if (!retryProperties.enabled())
+            return call.get();
+        var budget = budgets.get(operation);
+        budget.deposit();
+        var backoff = retryProperties.initialBackoff().toMillis();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.get();
+            } catch (RuntimeException e) {
+                var failure = UpstreamFailure.of(e);
+                if (!idempotent || !failure.retryable())
+                    throw e;
+                if (attempt >= retryProperties.maxAttempts()) {
+                    count(operation, failure, "attempts_exhausted");
+                    throw e;
+                }
+                if (!budget.tryWithdraw()) {
+                    count(operation, failure, "budget_exhausted");
+                    LOG.warn("RETRY BUDGET OF {} EXHAUSTED, NOT RETRYING {}", operation, failure);
+                    throw e;
+                }
+                backoff = nextBackoff(backoff);
+                count(operation, failure, "retried");
+                LOG.warn("RETRYING {} AFTER {} IN {} MS - ATTEMPT {} OF {}",
+                        operation, failure, backoff, attempt + 1, retryProperties.maxAttempts());
+                sleep(backoff);
+            }
+        }
+    }
+
+    long nextBackoff(long previous) {
+        var initial = retryProperties.initialBackoff().toMillis();
+        var bound = Math.max(initial, previous * 3) + 1;
+        return Math.min(retryProperties.maxBackoff().toMillis(), random.applyAsLong(initial, bound));
+    }
+
+    private void sleep(long millis) {
+        try {
+            sleeper.sleep(Duration.ofMillis(millis));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FabrickRestServiceException(ErrorMessages.INTERNAL_SERVER_ERROR.getMessage());
+        }
+    }
+
+    private void count(UpstreamOperation operation, UpstreamFailure failure, String outcome) {
+        meterRegistry.counter("fabrick.upstream.retries", "operation", operation.name().toLowerCase(),
+                "failure", failure.name().toLowerCase(), "outcome", outcome).increment();
+    }
+
+    @FunctionalInterface
+    interface Sleeper {
+        void sleep(Duration duration) throws InterruptedException;
+    }
+}
@@ -0,0 +1,172 @@
+--
+-- /*
+--  *
+--  *  * Copyright (c) 2024 Berk Delibalta
+--  *  *
+--  *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+--  *  * of this software and associated documentation files (the "Software"), to deal
+--  *  * in the Software without restriction, including without limitation the rights
+--  *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+--  *  * copies of the Software, and to permit persons to whom the Software is
+--  *  * furnished to do so, subject to the following conditions:
+--  *  *
+--  *  * The above copyright notice and this permission notice shall be included in
+--  *  * all copies or substantial portions of the Software.
+--  *  *
+--  *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+--  *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+--  *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+--  *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+--  *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+--  *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+--  *  * THE SOFTWARE.
+--  *
+--  */
+--
+
+-- Optional MySQL layout of the transactions table, RANGE partitioned by accounting month.
+-- Run by the "partitioned" profile before Hibernate, which then leaves the schema alone (see application-partitioned.properties).
+--
+-- MySQL requires every unique key of a partitioned table to contain the partitioning column, so the primary key and the
+-- transaction_id / operation_id unique keys include accounting_date. A transaction keeps its accounting date, so a
+-- re-fetched transaction still collides with its stored row and INSERT IGNORE still skips it.
+-- Range reads of one account within a few months prune to those months' partitions and use the composite index there.
+--
+-- New months are split off p_future ahead of time, e.g.:
+--   ALTER TABLE transactions REORGANIZE PARTITION p_future INTO (
+--       PARTITION p202701 VALUES LESS THAN ('2027-02-01'), PARTITION p_future VALUES LESS THAN (MAXVALUE));
+
+CREATE TABLE IF NOT EXISTS transactions
+(
+    id              BIGINT         NOT NULL,
+    account_id      BIGINT,
+    transaction_id  BIGINT         NOT NULL,
+    operation_id    BIGINT         NOT NULL,
+    accounting_date DATE           NOT NULL,
+    value_date      DATE           NOT NULL,
+    type            VARCHAR(255)   NOT NULL,
+    amount          DECIMAL(10, 2) NOT NULL,
+    currency        VARCHAR(255)   NOT NULL,
+    description     VARCHAR(255)   NOT NULL,
+    PRIMARY KEY (id, accounting_date),
+    UNIQUE KEY uk_transactions_transaction_id (transaction_id, accounting_date),
+    UNIQUE KEY uk_transactions_operation_id (operation_id, accounting_date),
+    KEY idx_transactions_account_dates (account_id, accounting_date, value_date, transaction_id)
+) PARTITION BY RANGE COLUMNS (accounting_date) (
+    PARTITION p201901 VALUES LESS THAN ('2019-02-01'),
+    PARTITION p201902 VALUES LESS THAN ('2019-03-01'),
+    PARTITION p201903 VALUES LESS THAN ('2019-04-01'),
+    PARTITION p201904 VALUES LESS THAN ('2019-05-01'),
+    PARTITION p201905 VALUES LESS THAN ('2019-06-01'),
+    PARTITION p201906 VALUES LESS THAN ('2019-07-01'),
+    PARTITION p201907 VALUES LESS THAN ('2019-08-01'),
+    PARTITION p201908 VALUES LESS THAN ('2019-09-01'),
+    PARTITION p201909 VALUES LESS THAN ('2019-10-01'),
+    PARTITION p201910 VALUES LESS THAN ('2019-11-01'),
+    PARTITION p201911 VALUES LESS THAN ('2019-12-01'),
+    PARTITION p201912 VALUES LESS THAN ('2020-01-01'),
+    PARTITION p202001 VALUES LESS THAN ('2020-02-01'),
+    PARTITION p202002 VALUES LESS THAN ('2020-03-01'),
+    PARTITION p202003 VALUES LESS THAN ('2020-04-01'),
+    PARTITION p202004 VALUES LESS THAN ('2020-05-01'),
+    PARTITION p202005 VALUES LESS THAN ('2020-06-01'),
+    PARTITION p202006 VALUES LESS THAN ('2020-07-01'),
+    PARTITION p202007 VALUES LESS THAN ('2020-08-01'),
+    PARTITION p202008 VALUES LESS THAN ('2020-09-01'),
+    PARTITION p202009 VALUES LESS THAN ('2020-10-01'),
+    PARTITION p202010 VALUES LESS THAN ('2020-11-01'),
+    PARTITION p202011 VALUES LESS THAN ('2020-12-01'),
+    PARTITION p202012 VALUES LESS THAN ('2021-01-01'),
+    PARTITION p202101 VALUES LESS THAN ('2021-02-01'),
+    PARTITION p202102 VALUES LESS THAN ('2021-03-01'),
+    PARTITION p202103 VALUES LESS THAN ('2021-04-01'),
+    PARTITION p202104 VALUES LESS THAN ('2021-05-01'),
+    PARTITION p202105 VALUES LESS THAN ('2021-06-01'),
+    PARTITION p202106 VALUES LESS THAN ('2021-07-01'),
+    PARTITION p202107 VALUES LESS THAN ('2021-08-01'),
+    PARTITION p202108 VALUES LESS THAN ('2021-09-01'),
+    PARTITION p202109 VALUES LESS THAN ('2021-10-01'),
+    PARTITION p202110 VALUES LESS THAN ('2021-11-01'),
+    PARTITION p202111 VALUES LESS THAN ('2021-12-01'),
+    PARTITION p202112 VALUES LESS THAN ('2022-01-01'),
+    PARTITION p202201 VALUES LESS THAN ('2022-02-01'),
+    PARTITION p202202 VALUES LESS THAN ('2022-03-01'),
+    PARTITION p202203 VALUES LESS THAN ('2022-04-01'),
+    PARTITION p202204 VALUES LESS THAN ('2022-05-01'),
+    PARTITION p202205 VALUES LESS THAN ('2022-06-01'),
+    PARTITION p202206 VALUES LESS THAN ('2022-07-01'),
+    PARTITION p202207 VALUES LESS THAN ('2022-08-01'),
+    PARTITION p202208 VALUES LESS THAN ('2022-09-01'),
+    PARTITION p202209 VALUES LESS THAN ('2022-10-01'),
+    PARTITION p202210 VALUES LESS THAN ('2022-11-01'),
+    PARTITION p202211 VALUES LESS THAN ('2022-12-01'),
+    PARTITION p202212 VALUES LESS THAN ('2023-01-01'),
+    PARTITION p202301 VALUES LESS THAN ('2023-02-01'),
+    PARTITION p202302 VALUES LESS THAN ('2023-03-01'),
+    PARTITION p202303 VALUES LESS THAN ('2023-04-01'),
+    PARTITION p202304 VALUES LESS THAN ('2023-05-01'),
+    PARTITION p202305 VALUES LESS THAN ('2023-06-01'),
+    PARTITION p202306 VALUES LESS THAN ('2023-07-01'),
+    PARTITION p202307 VALUES LESS THAN ('2023-08-01'),
+    PARTITION p202308 VALUES LESS THAN ('2023-09-01'),
+    PARTITION p202309 VALUES LESS THAN ('2023-10-01'),
+    PARTITION p202310 VALUES LESS THAN ('2023-11-01'),
+    PARTITION p202311 VALUES LESS THAN ('2023-12-01'),
+    PARTITION p202312 VALUES LESS THAN ('2024-01-01'),
+    PARTITION p202401 VALUES LESS THAN ('2024-02-01'),
+    PARTITION p202402 VALUES LESS THAN ('2024-03-01'),
+    PARTITION p202403 VALUES LESS THAN ('2024-04-01'),
+    PARTITION p202404 VALUES LESS THAN ('2024-05-01'),
+    PARTITION p202405 VALUES LESS THAN ('2024-06-01'),
+    PARTITION p202406 VALUES LESS THAN ('2024-07-01'),
+    PARTITION p202407 VALUES LESS THAN ('2024-08-01'),
+    PARTITION p202408 VALUES LESS THAN ('2024-09-01'),
+    PARTITION p202409 VALUES LESS THAN ('2024-10-01'),
+    PARTITION p202410 VALUES LESS THAN ('2024-11-01'),
+    PARTITION p202411 VALUES LESS THAN ('2024-12-01'),
+    PARTITION p202412 VALUES LESS THAN ('2025-01-01'),
+    PARTITION p202501 VALUES LESS THAN ('2025-02-01'),
+    PARTITION p202502 VALUES LESS THAN ('2025-03-01'),
+    PARTITION p202503 VALUES LESS THAN ('2025-04-01'),
+    PARTITION p202504 VALUES LESS THAN ('2025-05-01'),
+    PARTITION p202505 VALUES LESS THAN ('2025-06-01'),
+    PARTITION p202506 VALUES LESS THAN ('2025-07-01'),
+    PARTITION p202507 VALUES LESS THAN ('2025-08-01'),
+    PARTITION p202508 VALUES LESS THAN ('2025-09-01'),
+    PARTITION p202509 VALUES LESS THAN ('2025-10-01'),
+    PARTITION p202510 VALUES LESS THAN ('2025-11-01'),
+    PARTITION p202511 VALUES LESS THAN ('2025-12-01'),
+    PARTITION p202512 VALUES LESS THAN ('2026-01-01'),
+    PARTITION p202601 VALUES LESS THAN ('2026-02-01'),
+    PARTITION p202602 VALUES LESS THAN ('2026-03-01'),
+    PARTITION p202603 VALUES LESS THAN ('2026-04-01'),
+    PARTITION p202604 VALUES LESS THAN ('2026-05-01'),
+    PARTITION p202605 VALUES LESS THAN ('2026-06-01'),
+    PARTITION p202606 VALUES LESS THAN ('2026-07-01'),
+    PARTITION p202607 VALUES LESS THAN ('2026-08-01'),
+    PARTITION p202608 VALUES LESS THAN ('2026-09-01'),
+    PARTITION p202609 VALUES LESS THAN ('2026-10-01'),
+    PARTITION p202610 VALUES LESS THAN ('2026-11-01'),
+    PARTITION p202611 VALUES LESS THAN ('2026-12-01'),
+    PARTITION p202612 VALUES LESS THAN ('2027-01-01'),
+    PARTITION p_future VALUES LESS THAN (MAXVALUE)
+);
+
+CREATE TABLE IF NOT EXISTS transactions_seq
+(
+    next_val BIGINT
+);
+
+INSERT INTO transactions_seq (next_val)
+SELECT 1
+FROM DUAL
+WHERE NOT EXISTS (SELECT * FROM transactions_seq);
+
+CREATE TABLE IF NOT EXISTS account_sync_state
+(
+    account_id  BIGINT      NOT NULL,
+    synced_from DATE        NOT NULL,
+    watermark   DATE        NOT NULL,
+    updated_at  DATETIME(6) NOT NULL,
+    PRIMARY KEY (account_id)
+);
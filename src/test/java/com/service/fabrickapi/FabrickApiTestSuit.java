@@ -8,10 +8,14 @@ import org.junit.platform.suite.api.SuiteDisplayName;
 @Suite
 @SelectPackages({
         "com.service.fabrickapi.integration",
+        "com.service.fabrickapi.cache",
         "com.service.fabrickapi.controller",
         "com.service.fabrickapi.service.implementation",
         "com.service.fabrickapi.entity.jpa",
-        "com.service.fabrickapi.entity.json"
+        "com.service.fabrickapi.entity.json",
+        "com.service.fabrickapi.persistence",
+        "com.service.fabrickapi.shared",
+        "com.service.fabrickapi.upstream"
 })
 @SuiteDisplayName("Fabrick API Quality Insurance tests")
 class FabrickApiTestSuit {
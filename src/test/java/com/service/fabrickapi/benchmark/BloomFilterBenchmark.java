@@ -0,0 +1,112 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.benchmark;
+
+import com.service.fabrickapi.shared.ConcurrentLongHashSet;
+import com.service.fabrickapi.shared.LongBloomFilter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.SplittableRandom;
+
+/**
+ * Memory against false positive rate of the Bloom filter behind the persisted transaction filter, next to the exact
+ * structures it saves: the open-addressing long set and a HashSet of boxed longs. -Dbenchmark.ids stored ids
+ * (default 1M) are added, then as many absent ids are probed to measure the false positive rate and lookup time.
+ * HashSet memory is the used heap measured around its construction, so it is approximate.
+ */
+class BloomFilterBenchmark {
+    private static final int IDS = Integer.getInteger("benchmark.ids", 1_000_000);
+
+    @Test
+    @DisplayName("memory and false positive rate of the Bloom filter against exact sets - persisted filter benchmark ⏱️")
+    void compareMemoryAndFalsePositives() {
+        var random = new SplittableRandom(42);
+        var stored = random.longs(IDS, 1, Long.MAX_VALUE / 2).toArray();
+        var absent = random.longs(IDS, Long.MAX_VALUE / 2, Long.MAX_VALUE).toArray();
+
+        System.out.printf("%d stored ids, %d absent ids probed%n", IDS, IDS);
+        System.out.printf("%-24s %12s %10s %12s %14s%n", "structure", "memory MB", "bits/id", "measured fpp", "ns per lookup");
+        for (double fpp : new double[]{0.1, 0.01, 0.001, 0.0001}) {
+            var bloomFilter = new LongBloomFilter(IDS, fpp);
+            for (long id : stored)
+                bloomFilter.put(id);
+            lookups(bloomFilter, absent);
+            long start = System.nanoTime();
+            long positives = lookups(bloomFilter, absent);
+            double nanos = (double) (System.nanoTime() - start) / absent.length;
+            System.out.printf("%-24s %12.2f %10.2f %11.4f%% %14.1f%n", "bloom k=" + bloomFilter.hashCount() + " p=" + fpp,
+                    bloomFilter.bitCount() / 8.0 / 1024 / 1024, (double) bloomFilter.bitCount() / IDS,
+                    positives * 100.0 / absent.length, nanos);
+        }
+
+        var exact = new ConcurrentLongHashSet(IDS);
+        for (long id : stored)
+            exact.add(id);
+        lookups(exact, absent);
+        long start = System.nanoTime();
+        lookups(exact, absent);
+        double nanos = (double) (System.nanoTime() - start) / absent.length;
+        System.out.printf("%-24s %12.2f %10.2f %11.4f%% %14.1f%n", "open-addressing set",
+                exact.capacity() * 8.0 / 1024 / 1024, exact.capacity() * 64.0 / IDS, 0.0, nanos);
+
+        long before = usedHeap();
+        var boxed = new HashSet<Long>(IDS * 2);
+        for (long id : stored)
+            boxed.add(id);
+        long bytes = usedHeap() - before;
+        start = System.nanoTime();
+        long hits = 0;
+        for (long id : absent)
+            if (boxed.contains(id))
+                hits++;
+        nanos = (double) (System.nanoTime() - start) / absent.length;
+        System.out.printf("%-24s %12.2f %10.2f %11.4f%% %14.1f%n", "HashSet<Long>",
+                bytes / 1024.0 / 1024, bytes * 8.0 / IDS, hits * 100.0 / absent.length, nanos);
+    }
+
+    private static long lookups(LongBloomFilter bloomFilter, long[] ids) {
+        long positives = 0;
+        for (long id : ids)
+            if (bloomFilter.mightContain(id))
+                positives++;
+        return positives;
+    }
+
+    private static long lookups(ConcurrentLongHashSet set, long[] ids) {
+        long positives = 0;
+        for (long id : ids)
+            if (set.contains(id))
+                positives++;
+        return positives;
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        var runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.benchmark;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Hit rates of an LRU map and of Caffeine's W-TinyLFU replaying the same trace of account ids at several cache sizes.
+ * The trace is read from -Dbenchmark.trace (one account id per line) when set, otherwise it is generated:
+ * -Dbenchmark.requests lookups (default 2M) over -Dbenchmark.accounts accounts (default 100k) following a Zipf
+ * distribution, interleaved with scans of accounts never seen again, as batch jobs walking all accounts do.
+ */
+class CacheHitRateBenchmark {
+    private static final int ACCOUNTS = Integer.getInteger("benchmark.accounts", 100_000);
+    private static final int REQUESTS = Integer.getInteger("benchmark.requests", 2_000_000);
+    private static final double ZIPF_EXPONENT = 0.9;
+    private static final int SCAN_EVERY = 200_000;
+    private static final int SCAN_LENGTH = 20_000;
+
+    @Test
+    @DisplayName("hit rate of LRU and W-TinyLFU replaying an account trace - cache benchmark ⏱️")
+    void compareHitRates() throws IOException {
+        var trace = System.getProperty("benchmark.trace") == null
+                ? zipfWithScans()
+                : Files.readAllLines(Path.of(System.getProperty("benchmark.trace"))).stream()
+                .filter(line -> !line.isBlank())
+                .mapToLong(line -> Long.parseLong(line.trim()))
+                .toArray();
+        var distinct = Arrays.stream(trace).distinct().count();
+
+        System.out.printf("%d lookups over %d accounts%n", trace.length, distinct);
+        System.out.printf("%-14s %12s %12s%n", "cache size", "LRU", "W-TinyLFU");
+        for (double share : new double[]{0.005, 0.01, 0.05, 0.10}) {
+            int size = (int) Math.max(1, distinct * share);
+            System.out.printf("%-14s %11.2f%% %11.2f%%%n",
+                    size + " (" + share * 100 + "%)", lru(trace, size) * 100, tinyLfu(trace, size) * 100);
+        }
+    }
+
+    private static double lru(long[] trace, int size) {
+        var cache = new LinkedHashMap<Long, Long>(size * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+                return size() > size;
+            }
+        };
+        long hits = 0;
+        for (long key : trace) {
+            if (cache.get(key) != null)
+                hits++;
+            else
+                cache.put(key, key);
+        }
+        return (double) hits / trace.length;
+    }
+
+    private static double tinyLfu(long[] trace, int size) {
+        Cache<Long, Long> cache = Caffeine.newBuilder()
+                .maximumSize(size)
+                .executor(Runnable::run)
+                .recordStats()
+                .build();
+        for (long key : trace)
+            cache.get(key, account -> account);
+        return cache.stats().hitRate();
+    }
+
+    private static long[] zipfWithScans() {
+        var random = new SplittableRandom(42);
+        var cumulative = new double[ACCOUNTS];
+        double sum = 0;
+        for (int rank = 0; rank < ACCOUNTS; rank++) {
+            sum += 1 / Math.pow(rank + 1, ZIPF_EXPONENT);
+            cumulative[rank] = sum;
+        }
+
+        var trace = new long[REQUESTS];
+        long scanned = ACCOUNTS;
+        for (int i = 0; i < REQUESTS; i++) {
+            if (i % SCAN_EVERY < SCAN_LENGTH && i >= SCAN_EVERY) {
+                trace[i] = scanned++;
+                continue;
+            }
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            trace[i] = rank < 0 ? -rank - 1 : rank;
+        }
+        return trace;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.benchmark;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.service.fabrickapi.configuration.Credentials;
+import com.service.fabrickapi.model.dto.AccountBalanceDTO;
+import com.service.fabrickapi.model.dto.TransactionDTO;
+import com.service.fabrickapi.shared.Utils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time and allocation per call (gc.alloc.rate.norm) of the former tree-based decoding
+ * against the streaming decoding of Utils, for a balance and a 200-transaction list.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadDecodingBenchmark {
+    private ObjectMapper objectMapper;
+    private Utils utils;
+    private byte[] balance;
+    private byte[] transactions;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        utils = new Utils(new Credentials("http://localhost", "S2S", "key", "/balance", "/transactions", "/transfers"),
+                new RestTemplate(), objectMapper);
+        balance = UpstreamStubServer.BALANCE_BODY.getBytes(StandardCharsets.UTF_8);
+
+        var list = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            if (i > 0)
+                list.append(',');
+            list.append("""
+                    {"transactionId":"%d","operationId":"%d","accountingDate":"2019-04-01","valueDate":"2019-04-01",
+                    "type":{"enumeration":"GBS_TRANSACTION_TYPE","value":"GBS_ACCOUNT_TRANSACTION_TYPE_0010"},
+                    "amount":-800.50,"currency":"EUR","description":"BA JOHN DOE PAYMENT INVOICE 75/2017"}
+                    """.formatted(1331714087L + i, 273015L + i));
+        }
+        transactions = ("{\"status\":\"OK\",\"error\":[],\"payload\":{\"list\":[" + list + "]}}")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public AccountBalanceDTO balanceTree() throws IOException {
+        String body = new String(balance, StandardCharsets.UTF_8);
+        JsonNode payloadNode = objectMapper.readTree(body).path("payload");
+        return objectMapper.readValue(payloadNode.toString(), AccountBalanceDTO.class);
+    }
+
+    @Benchmark
+    public AccountBalanceDTO balanceStreaming() throws IOException {
+        return utils.fromJson(new ByteArrayInputStream(balance), AccountBalanceDTO.class);
+    }
+
+    @Benchmark
+    public List<TransactionDTO> transactionsTree() throws IOException {
+        String body = new String(transactions, StandardCharsets.UTF_8);
+        JsonNode payloadNode = objectMapper.readTree(body).path("payload").path("list");
+        JavaType type = new ObjectMapper().getTypeFactory().constructCollectionType(List.class, TransactionDTO.class);
+        return new ObjectMapper().readValue(payloadNode.toString(), type);
+    }
+
+    @Benchmark
+    public List<TransactionDTO> transactionsStreaming() throws IOException {
+        return utils.fromJsonList(new ByteArrayInputStream(transactions), TransactionDTO.class);
+    }
+
+    @Test
+    @DisplayName("allocation per call of tree and streaming payload decoding - jmh benchmark ⏱️")
+    void run() throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(PayloadDecodingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
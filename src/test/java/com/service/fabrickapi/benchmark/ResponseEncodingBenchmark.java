@@ -0,0 +1,119 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.benchmark;
+
+import com.service.fabrickapi.cache.ResponseBytesCache;
+import com.service.fabrickapi.configuration.CachingProperties;
+import com.service.fabrickapi.model.rest.TransactionRest;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.xml.MappingJackson2XmlHttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.accept.ContentNegotiationManager;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Time and allocation per call (gc.alloc.rate.norm) of answering GET /transactions with 30 cached transactions:
+ * encoding them with the message converter on every request, as before, against the ResponseBytesCache bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseEncodingBenchmark {
+    private static final Type TRANSACTIONS_TYPE = ResolvableType.forClassWithGenerics(List.class, TransactionRest.class).getType();
+    private static final CachingProperties.Spec SPEC = new CachingProperties.Spec(1 << 24, Duration.ofMinutes(5), null);
+    @Param({"application/json", "application/xml"})
+    public String mediaType;
+    @Param({"30"})
+    public int transactions;
+    private List<TransactionRest> transactionRests;
+    private GenericHttpMessageConverter<Object> converter;
+    private ResponseBytesCache responseBytesCache;
+    private ServletWebRequest request;
+
+    @Setup
+    public void setUp() {
+        var first = LocalDate.of(2019, 1, 1);
+        transactionRests = IntStream.range(0, transactions).mapToObj(i -> new TransactionRest((long) i, (long) i,
+                java.sql.Date.valueOf(first.plusDays(i)), java.sql.Date.valueOf(first.plusDays(i + 1)),
+                Map.of("enumeration", "GBS_TRANSACTION_TYPE", "value", "GBS_ACCOUNT_TRANSACTION_TYPE_0050"),
+                BigDecimal.valueOf(i * 1000L, 2), "EUR", "PAYMENT " + i)).toList();
+        converter = MediaType.APPLICATION_XML_VALUE.equals(mediaType)
+                ? new MappingJackson2XmlHttpMessageConverter() : new MappingJackson2HttpMessageConverter();
+        responseBytesCache = new ResponseBytesCache(new CachingProperties(SPEC, SPEC, SPEC),
+                () -> List.of(converter), ContentNegotiationManager::new);
+        var servletRequest = new MockHttpServletRequest("GET", "/api/v1/account/1/transactions");
+        servletRequest.addHeader(HttpHeaders.ACCEPT, mediaType);
+        servletRequest.setAttribute(HandlerMapping.PRODUCIBLE_MEDIA_TYPES_ATTRIBUTE,
+                new LinkedHashSet<>(List.of(MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON)));
+        request = new ServletWebRequest(servletRequest);
+    }
+
+    @Benchmark
+    public byte[] encodeEachRequest() throws Exception {
+        var message = new MockHttpOutputMessage();
+        converter.write(transactionRests, TRANSACTIONS_TYPE, MediaType.parseMediaType(mediaType), message);
+        return message.getBodyAsBytes();
+    }
+
+    @Benchmark
+    public byte[] cachedBytes() throws Exception {
+        return responseBytesCache.ok(request, "transactions", 1L, "", transactionRests, TRANSACTIONS_TYPE,
+                new HttpHeaders()).getBody();
+    }
+
+    @Test
+    @DisplayName("time and allocation of encoding each response against the cached bytes - jmh benchmark ⏱️")
+    void run() throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(ResponseEncodingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.benchmark;
+
+import com.service.fabrickapi.model.rest.TransactionRest;
+import com.service.fabrickapi.shared.TopK;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Time and allocation per call (gc.alloc.rate.norm) of selecting the 30 most recent of n transactions:
+ * the former full sort then limit, sequential and parallel, against the TopK heap collector.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TopKSelectionBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int transactions;
+    @Param({"30"})
+    public int limit;
+    private List<TransactionRest> transactionRests;
+
+    @Setup
+    public void setUp() {
+        var random = new Random(42);
+        var first = LocalDate.of(2019, 1, 1);
+        transactionRests = IntStream.range(0, transactions).mapToObj(i -> {
+            var accountingDate = first.plusDays(random.nextInt(5 * 365));
+            return new TransactionRest((long) i, (long) i, java.sql.Date.valueOf(accountingDate),
+                    java.sql.Date.valueOf(accountingDate.plusDays(random.nextInt(3))), null,
+                    BigDecimal.valueOf(random.nextInt(100_000), 2), "EUR", "PAYMENT " + i);
+        }).toList();
+    }
+
+    @Benchmark
+    public List<TransactionRest> sortLimit() {
+        return transactionRests.stream().sorted(TransactionRest.MOST_RECENT_FIRST).limit(limit).toList();
+    }
+
+    @Benchmark
+    public List<TransactionRest> parallelSortLimit() {
+        return transactionRests.parallelStream().sorted(TransactionRest.MOST_RECENT_FIRST).limit(limit).toList();
+    }
+
+    @Benchmark
+    public List<TransactionRest> topK() {
+        return transactionRests.stream().collect(TopK.first(limit, TransactionRest.MOST_RECENT_FIRST));
+    }
+
+    @Test
+    @DisplayName("time and allocation of sort then limit against a top k heap - jmh benchmark ⏱️")
+    void run() throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(TopKSelectionBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
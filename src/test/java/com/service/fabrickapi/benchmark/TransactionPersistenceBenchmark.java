@@ -0,0 +1,96 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.benchmark;
+
+import com.service.fabrickapi.entity.TransactionEntity;
+import com.service.fabrickapi.repository.TransactionRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.LongStream;
+
+/**
+ * Throughput of storing -Dbenchmark.rounds responses (default 20) of 500 transactions into H2, each overlapping
+ * the previous one by half as re-fetched date ranges do: the former lookup-and-save per row against the batched upsert.
+ */
+@DataJpaTest(properties = "spring.jpa.show-sql=false")
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TransactionPersistenceBenchmark {
+    private static final int ROUNDS = Integer.getInteger("benchmark.rounds", 20);
+    private static final int RESPONSE_SIZE = 500;
+
+    @Autowired
+    TransactionRepository transactionRepository;
+
+    @Test
+    @DisplayName("row by row lookup and save against batched upsert - persistence benchmark ⏱️")
+    void compareStrategies() {
+        for (int round = 0; round < 2; round++) {
+            // the first round warms up the JIT, the connection pool and the statement cache
+            System.out.printf("%-24s %10s %12s %10s%n", round == 0 ? "WARM-UP" : "STRATEGY", "rows", "rows/s", "stored");
+            run("lookup + save per row", responses -> responses.forEach(transactionEntity -> {
+                if (transactionRepository.findByTransactionId(transactionEntity.getTransactionId()).isEmpty())
+                    transactionRepository.save(transactionEntity);
+            }));
+            run("batched upsert", transactionRepository::upsertAll);
+        }
+    }
+
+    private void run(String label, Consumer<List<TransactionEntity>> strategy) {
+        transactionRepository.deleteAll();
+        long started = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++)
+            strategy.accept(response(round));
+        double seconds = (System.nanoTime() - started) / 1e9;
+        System.out.printf("%-24s %10d %12.0f %10d%n", label, ROUNDS * RESPONSE_SIZE,
+                ROUNDS * RESPONSE_SIZE / seconds, transactionRepository.count());
+    }
+
+    private static List<TransactionEntity> response(int round) {
+        long first = (long) round * RESPONSE_SIZE / 2;
+        return LongStream.range(first, first + RESPONSE_SIZE).mapToObj(transactionId -> {
+            var transactionEntity = new TransactionEntity();
+            transactionEntity.setTransactionId(transactionId);
+            transactionEntity.setOperationId(transactionId);
+            transactionEntity.setAccountingDate(new Date());
+            transactionEntity.setValueDate(new Date());
+            transactionEntity.setType("{\"enumeration\":\"GBS_TRANSACTION_TYPE\",\"value\":\"GBS_ACCOUNT_TRANSACTION_TYPE_0050\"}");
+            transactionEntity.setAmount(BigDecimal.valueOf(-800));
+            transactionEntity.setCurrency("EUR");
+            transactionEntity.setDescription("BA JOHN DOE PAYMENT INVOICE 75/2017");
+            return transactionEntity;
+        }).toList();
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.benchmark;
+
+import com.service.fabrickapi.repository.TransactionRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+
+/**
+ * Latency of the per-account accounting date range queries at -Dbenchmark.rows rows (default 10M) spread over
+ * -Dbenchmark.accounts accounts (default 10k) and ten years, with the composite (account_id, accounting_date,
+ * value_date) index and without it. The table lives in an H2 file under target/benchmark, filled once and reused
+ * by later runs; -Dbenchmark.queries indexed queries are timed (default 2000), and a tenth of them or at least 5
+ * without the index, as each of those scans the table.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.datasource.url=jdbc:h2:file:./target/benchmark/transactions;CACHE_SIZE=262144"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TransactionRangeQueryBenchmark {
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 10_000_000);
+    private static final int ACCOUNTS = Integer.getInteger("benchmark.accounts", 10_000);
+    private static final int QUERIES = Integer.getInteger("benchmark.queries", 2_000);
+    private static final LocalDate LAST_DAY = LocalDate.parse("2025-12-31");
+
+    @Autowired
+    TransactionRepository transactionRepository;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("account range query latency with and without the composite index - range query benchmark ⏱️")
+    void compareIndexedAndFullScan() {
+        fill();
+        System.out.printf("%d rows, %d accounts%n", ROWS, ACCOUNTS);
+        System.out.printf("%-34s %8s %10s %10s %10s %8s%n", "query", "queries", "p50 ms", "p99 ms", "max ms", "rows");
+
+        measure("month, indexed (warm-up)", QUERIES, this::month);
+        measure("month, indexed", QUERIES, this::month);
+        measure("latest 30 in a year, indexed", QUERIES, this::latestOfYear);
+        measure("count in a quarter, indexed", QUERIES, this::quarterCount);
+
+        jdbcTemplate.execute("DROP INDEX idx_transactions_account_dates");
+        try {
+            measure("month, full scan", Math.max(5, QUERIES / 10 / 10), this::month);
+        } finally {
+            createIndex();
+        }
+    }
+
+    private void createIndex() {
+        jdbcTemplate.execute("CREATE INDEX idx_transactions_account_dates ON transactions (account_id, accounting_date, value_date, transaction_id)");
+    }
+
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    private long month() {
+        var from = LAST_DAY.minusDays(random.nextInt(3_600)).withDayOfMonth(1);
+        return transactionRepository.findByAccountIdAndAccountingDateBetween((long) random.nextInt(ACCOUNTS),
+                Date.valueOf(from), Date.valueOf(from.plusMonths(1).minusDays(1))).size();
+    }
+
+    private long latestOfYear() {
+        var to = LAST_DAY.minusDays(random.nextInt(3_285));
+        return transactionRepository.findByAccountIdAndAccountingDateBetweenOrderByAccountingDateDescValueDateDescTransactionIdDesc(
+                (long) random.nextInt(ACCOUNTS), Date.valueOf(to.minusYears(1)), Date.valueOf(to), Limit.of(30)).size();
+    }
+
+    private long quarterCount() {
+        var to = LAST_DAY.minusDays(random.nextInt(3_560));
+        return transactionRepository.countByAccountIdAndAccountingDateBetween((long) random.nextInt(ACCOUNTS),
+                Date.valueOf(to.minusMonths(3)), Date.valueOf(to));
+    }
+
+    private static void measure(String label, int queries, Supplier<Long> query) {
+        var millis = new double[queries];
+        long rows = 0;
+        for (int i = 0; i < queries; i++) {
+            long started = System.nanoTime();
+            rows += query.get();
+            millis[i] = (System.nanoTime() - started) / 1e6;
+        }
+        Arrays.sort(millis);
+        System.out.printf("%-34s %8d %10.3f %10.3f %10.3f %8.1f%n", label, queries,
+                millis[queries / 2], millis[(int) (queries * 0.99)], millis[queries - 1], (double) rows / queries);
+    }
+
+    private void fill() {
+        if (transactionRepository.count() == ROWS)
+            return;
+        System.out.printf("FILLING %d ROWS, REUSED BY LATER RUNS%n", ROWS);
+        long started = System.nanoTime();
+        jdbcTemplate.execute("TRUNCATE TABLE transactions");
+        // built once after the load rather than maintained row by row
+        jdbcTemplate.execute("DROP INDEX IF EXISTS idx_transactions_account_dates");
+        jdbcTemplate.execute("""
+                INSERT INTO transactions (id, account_id, transaction_id, operation_id, accounting_date, value_date,
+                                          type, amount, currency, description)
+                SELECT X, MOD(X, %d), X, X, DATEADD(DAY, -MOD(X * 7919, 3650), DATE '%s'),
+                       DATEADD(DAY, -MOD(X * 7919, 3650) + 1, DATE '%s'),
+                       '{"enumeration":"GBS_TRANSACTION_TYPE","value":"GBS_ACCOUNT_TRANSACTION_TYPE_0050"}',
+                       -800, 'EUR', 'BA JOHN DOE PAYMENT INVOICE 75/2017'
+                FROM SYSTEM_RANGE(1, %d)
+                """.formatted(ACCOUNTS, LAST_DAY, LAST_DAY, ROWS));
+        createIndex();
+        jdbcTemplate.execute("ANALYZE");
+        System.out.printf("FILLED IN %.0f s%n", (System.nanoTime() - started) / 1e9);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.service.fabrickapi.configuration.Credentials;
+import com.service.fabrickapi.configuration.UpstreamClientConfiguration;
+import com.service.fabrickapi.configuration.UpstreamProperties;
+import com.service.fabrickapi.service.FabrickRestService;
+import com.service.fabrickapi.service.ReactiveFabrickRestService;
+import com.service.fabrickapi.service.implementation.FabrickRestServiceImpl;
+import com.service.fabrickapi.service.implementation.ReactiveFabrickRestServiceImpl;
+import com.service.fabrickapi.shared.Utils;
+import com.service.fabrickapi.upstream.AdaptiveLimiter;
+import com.service.fabrickapi.upstream.UpstreamGuards;
+import com.service.fabrickapi.upstream.UpstreamHedging;
+import com.service.fabrickapi.upstream.UpstreamMode;
+import com.service.fabrickapi.upstream.UpstreamRetry;
+import com.service.fabrickapi.upstream.UpstreamTransport;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Threads and throughput needed to keep -Dbenchmark.inflight calls (default 2000) in flight against a stub
+ * answering after 200ms, through the blocking FabrickRestService and through the ReactiveFabrickRestService.
+ */
+class UpstreamModeLoadBenchmark {
+    private static final int IN_FLIGHT = Integer.getInteger("benchmark.inflight", 2_000);
+    private static final int TOMCAT_MAX_THREADS = 200;
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    @Test
+    @DisplayName("threads and throughput of the blocking and reactive request paths - upstream benchmark ⏱️")
+    void compareModes() throws Exception {
+        try (var stub = new UpstreamStubServer(Duration.ofMillis(200), UpstreamStubServer.BALANCE_BODY)) {
+            var credentials = new Credentials(stub.baseUrl(), "S2S", "key", "/accounts/{accountId}",
+                    "/accounts/{accountId}/transactions", "/accounts/{accountId}/payments/money-transfers");
+            var properties = new UpstreamProperties(UpstreamMode.BLOCKING, UpstreamTransport.POOLED,
+                    Duration.ofSeconds(10), Duration.ofSeconds(30), IN_FLIGHT, IN_FLIGHT,
+                    Duration.ofSeconds(30), Duration.ofMinutes(5), Duration.ofSeconds(2), Duration.ofSeconds(2));
+            var configuration = new UpstreamClientConfiguration(properties);
+            var restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(
+                    configuration.pooledHttpClient(configuration.upstreamConnectionManager())));
+            var utils = new Utils(credentials, restTemplate, new ObjectMapper());
+
+            var blocking = new FabrickRestServiceImpl(credentials, utils, UpstreamGuards.disabled(), UpstreamRetry.disabled(),
+                    UpstreamHedging.disabled(), AdaptiveLimiter.disabled());
+            var reactive = new ReactiveFabrickRestServiceImpl(credentials, utils, WebClient.builder(), properties);
+
+            for (int round = 0; round < 2; round++) {
+                // the first round warms up the JIT and opens the connections, only the second one is meaningful
+                System.out.printf("%-28s %10s %12s %14s%n", round == 0 ? "WARM-UP" : "PATH", "calls", "req/s", "peak threads");
+                reactive(reactive);
+                blocking(blocking, TOMCAT_MAX_THREADS, "blocking (200 threads)");
+                blocking(blocking, IN_FLIGHT, "blocking (thread per call)");
+            }
+        }
+    }
+
+    private static void blocking(FabrickRestService service, int threads, String label) throws Exception {
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        try {
+            THREADS.resetPeakThreadCount();
+            long started = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>(IN_FLIGHT);
+            for (int i = 0; i < IN_FLIGHT; i++)
+                futures.add(workers.submit(() -> service.getAccountBalance(14537780L)));
+            for (Future<?> future : futures)
+                future.get();
+            report(label, started);
+        } finally {
+            workers.shutdownNow();
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void reactive(ReactiveFabrickRestService service) {
+        THREADS.resetPeakThreadCount();
+        long started = System.nanoTime();
+        Flux.range(0, IN_FLIGHT)
+                .flatMap(i -> service.getAccountBalance(14537780L), IN_FLIGHT)
+                .blockLast();
+        report("reactive", started);
+    }
+
+    private static void report(String label, long started) {
+        double seconds = (System.nanoTime() - started) / 1e9;
+        System.out.printf("%-28s %10d %12.0f %14d%n", label, IN_FLIGHT, IN_FLIGHT / seconds, THREADS.getPeakThreadCount());
+    }
+}
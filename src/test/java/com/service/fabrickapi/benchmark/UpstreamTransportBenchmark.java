@@ -0,0 +1,110 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.benchmark;
+
+import com.service.fabrickapi.configuration.UpstreamClientConfiguration;
+import com.service.fabrickapi.configuration.UpstreamProperties;
+import com.service.fabrickapi.upstream.UpstreamMode;
+import com.service.fabrickapi.upstream.UpstreamTransport;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Latency distribution of the upstream transports against a local stub with a 2ms service time.
+ * Tune with -Dbenchmark.clients and -Dbenchmark.requests.
+ */
+class UpstreamTransportBenchmark {
+    private static final int CLIENTS = Integer.getInteger("benchmark.clients", 64);
+    private static final int REQUESTS = Integer.getInteger("benchmark.requests", 20_000);
+
+    @Test
+    @DisplayName("p50/p99 of the simple, pooled and http2 transports - upstream benchmark ⏱️")
+    void compareTransports() throws Exception {
+        try (var stub = new UpstreamStubServer(Duration.ofMillis(2), UpstreamStubServer.BALANCE_BODY)) {
+            System.out.printf("%-8s %10s %10s %10s %12s%n", "TRANSPORT", "p50 (us)", "p99 (us)", "max (us)", "req/s");
+            for (UpstreamTransport transport : UpstreamTransport.values()) {
+                var properties = new UpstreamProperties(UpstreamMode.BLOCKING, transport, Duration.ofSeconds(10), Duration.ofSeconds(10),
+                        CLIENTS * 2, CLIENTS * 2, Duration.ofSeconds(30), Duration.ofMinutes(5), Duration.ofSeconds(2), Duration.ofSeconds(2));
+                var configuration = new UpstreamClientConfiguration(properties);
+                var connectionManager = configuration.upstreamConnectionManager();
+                ClientHttpRequestFactory requestFactory = switch (transport) {
+                    case SIMPLE -> configuration.simpleRequestFactory();
+                    case POOLED -> new HttpComponentsClientHttpRequestFactory(configuration.pooledHttpClient(connectionManager));
+                    case HTTP2 -> configuration.http2RequestFactory();
+                };
+                var restTemplate = new RestTemplate(requestFactory);
+
+                run(restTemplate, stub.baseUrl(), REQUESTS / 4);
+                long started = System.nanoTime();
+                long[] latencies = run(restTemplate, stub.baseUrl(), REQUESTS);
+                double seconds = (System.nanoTime() - started) / 1e9;
+
+                Arrays.sort(latencies);
+                System.out.printf("%-8s %10d %10d %10d %12.0f%n", transport,
+                        percentile(latencies, 0.50) / 1000, percentile(latencies, 0.99) / 1000,
+                        latencies[latencies.length - 1] / 1000, REQUESTS / seconds);
+                connectionManager.close();
+            }
+        }
+    }
+
+    private static long[] run(RestTemplate restTemplate, String url, int requests) throws Exception {
+        long[] latencies = new long[requests];
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int client = 0; client < CLIENTS; client++) {
+                int offset = client;
+                futures.add(clients.submit(() -> {
+                    for (int i = offset; i < requests; i += CLIENTS) {
+                        long start = System.nanoTime();
+                        restTemplate.getForObject(url + "/accounts/14537780", String.class);
+                        latencies[i] = System.nanoTime() - start;
+                    }
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        } finally {
+            clients.shutdownNow();
+        }
+        return latencies;
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)];
+    }
+}
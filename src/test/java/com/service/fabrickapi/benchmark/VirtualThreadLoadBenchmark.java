@@ -0,0 +1,180 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.service.fabrickapi.configuration.Credentials;
+import com.service.fabrickapi.configuration.UpstreamClientConfiguration;
+import com.service.fabrickapi.configuration.UpstreamProperties;
+import com.service.fabrickapi.service.FabrickRestService;
+import com.service.fabrickapi.service.implementation.FabrickRestServiceImpl;
+import com.service.fabrickapi.shared.Utils;
+import com.service.fabrickapi.upstream.AdaptiveLimiter;
+import com.service.fabrickapi.upstream.UpstreamGuards;
+import com.service.fabrickapi.upstream.UpstreamHedging;
+import com.service.fabrickapi.upstream.UpstreamMode;
+import com.service.fabrickapi.upstream.UpstreamRetry;
+import com.service.fabrickapi.upstream.UpstreamTransport;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.web.embedded.TomcatVirtualThreadsWebServerFactoryCustomizer;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServer;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+
+/**
+ * Latency, throughput and platform threads of an embedded Tomcat serving -Dbenchmark.inflight concurrent balance
+ * requests (default 5000), each one a blocking FabrickRestService call to a stub answering after -Dbenchmark.delay
+ * milliseconds (default 1000):
+ * once on Tomcat's default pool of 200 platform threads, once on virtual threads as configured by
+ * {@code spring.threads.virtual.enabled=true}.
+ */
+class VirtualThreadLoadBenchmark {
+    private static final int IN_FLIGHT = Integer.getInteger("benchmark.inflight", 5_000);
+    private static final Duration DELAY = Duration.ofMillis(Integer.getInteger("benchmark.delay", 1_000));
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    @Test
+    @DisplayName("latency and threads of platform and virtual Tomcat request threads - virtual threads benchmark ⏱️")
+    void compareThreads() throws Exception {
+        try (var stub = new UpstreamStubServer(DELAY, UpstreamStubServer.BALANCE_BODY)) {
+            var credentials = new Credentials(stub.baseUrl(), "S2S", "key", "/accounts/{accountId}",
+                    "/accounts/{accountId}/transactions", "/accounts/{accountId}/payments/money-transfers");
+            var properties = new UpstreamProperties(UpstreamMode.BLOCKING, UpstreamTransport.POOLED,
+                    Duration.ofSeconds(10), Duration.ofSeconds(60), IN_FLIGHT, IN_FLIGHT,
+                    Duration.ofSeconds(30), Duration.ofMinutes(5), Duration.ofSeconds(2), Duration.ofSeconds(2));
+            var configuration = new UpstreamClientConfiguration(properties);
+            var restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(
+                    configuration.pooledHttpClient(configuration.upstreamConnectionManager())));
+            var utils = new Utils(credentials, restTemplate, new ObjectMapper());
+            var service = new FabrickRestServiceImpl(credentials, utils, UpstreamGuards.disabled(), UpstreamRetry.disabled(),
+                    UpstreamHedging.disabled(), AdaptiveLimiter.disabled());
+
+            for (int round = 0; round < 2; round++) {
+                // the first round warms up the JIT and opens the connections, only the second one is meaningful
+                System.out.printf("%-26s %8s %10s %10s %10s %14s%n",
+                        round == 0 ? "WARM-UP" : "TOMCAT THREADS", "calls", "req/s", "p50 ms", "p99 ms", "peak threads");
+                load(service, false, "platform (200 max)");
+                load(service, true, "virtual");
+            }
+        }
+    }
+
+    private static void load(FabrickRestService service, boolean virtual, String label) throws Exception {
+        var factory = new TomcatServletWebServerFactory(0);
+        if (virtual)
+            new TomcatVirtualThreadsWebServerFactoryCustomizer().customize(factory);
+        // as many connections as requests, so that only the request threads bound the concurrency
+        factory.addConnectorCustomizers(connector -> connector.setProperty("maxConnections", String.valueOf(IN_FLIGHT * 2)));
+        factory.addConnectorCustomizers(connector -> connector.setProperty("acceptCount", String.valueOf(IN_FLIGHT)));
+        WebServer server = factory.getWebServer(context -> context.addServlet("balance", new BalanceServlet(service))
+                .addMapping("/balance"));
+        server.start();
+        try {
+            THREADS.resetPeakThreadCount();
+            // the load comes from another JVM, whose sockets and threads are neither counted nor limiting here
+            var java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+            var process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    LoadGenerator.class.getName(), "http://127.0.0.1:" + server.getPort() + "/balance",
+                    String.valueOf(IN_FLIGHT))
+                    .redirectErrorStream(true)
+                    .start();
+            var output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).stripTrailing();
+            if (process.waitFor() != 0)
+                throw new IllegalStateException(output);
+            System.out.printf("%-26s %8d%s %14d%n", label, IN_FLIGHT, output, THREADS.getPeakThreadCount());
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Sends the requests all at once and prints their throughput and latency percentiles.
+     */
+    static final class LoadGenerator {
+        public static void main(String[] args) {
+            var request = HttpRequest.newBuilder(URI.create(args[0])).timeout(Duration.ofMinutes(2)).build();
+            int calls = Integer.parseInt(args[1]);
+            try (var client = HttpClient.newBuilder()
+                    .executor(Executors.newVirtualThreadPerTaskExecutor())
+                    .connectTimeout(Duration.ofSeconds(30))
+                    .build()) {
+                long started = System.nanoTime();
+                List<CompletableFuture<Long>> futures = new ArrayList<>(calls);
+                for (int i = 0; i < calls; i++) {
+                    long sent = System.nanoTime();
+                    futures.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                            .thenApply(response -> {
+                                if (response.statusCode() != 200)
+                                    throw new IllegalStateException("STATUS " + response.statusCode());
+                                return System.nanoTime() - sent;
+                            }));
+                }
+                long[] latencies = futures.stream().mapToLong(CompletableFuture::join).sorted().toArray();
+                double seconds = (System.nanoTime() - started) / 1e9;
+                System.out.printf("%10.0f %10.0f %10.0f%n", calls / seconds,
+                        percentile(latencies, 0.50), percentile(latencies, 0.99));
+            }
+        }
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)] / 1e6;
+    }
+
+    private static final class BalanceServlet extends HttpServlet {
+        private final transient FabrickRestService service;
+
+        private BalanceServlet(FabrickRestService service) {
+            this.service = service;
+        }
+
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            var balance = service.getAccountBalance(14537780L);
+            response.setContentType("text/plain");
+            response.getWriter().write(balance.isPresent() ? "OK" : "EMPTY");
+        }
+    }
+}
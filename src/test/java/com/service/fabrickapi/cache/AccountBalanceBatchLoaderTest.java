@@ -0,0 +1,132 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Weigher;
+import com.service.fabrickapi.configuration.BalancesProperties;
+import com.service.fabrickapi.configuration.CacheConfiguration;
+import com.service.fabrickapi.configuration.CachingProperties;
+import com.service.fabrickapi.exception.AccountServiceException;
+import com.service.fabrickapi.model.rest.AccountBalanceRest;
+import com.service.fabrickapi.model.rest.AccountBalanceResultRest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.LongStream;
+
+import static com.service.fabrickapi.model.error.ErrorMessages.GATEWAY_TIMEOUT_ERROR;
+import static com.service.fabrickapi.model.error.ErrorMessages.RECORD_NOT_FOUND;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AccountBalanceBatchLoaderTest {
+
+    static final CachingProperties.Spec ACCOUNT = new CachingProperties.Spec(1000, Duration.ofMinutes(5), null);
+
+    final ExecutorService io = Executors.newVirtualThreadPerTaskExecutor();
+    final CountDownLatch upstreamHangs = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        upstreamHangs.countDown();
+        io.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("answer cached balances, load the others and report failed and late accounts apart - batch balance test 📚")
+    void partialResults() {
+        var loads = new AtomicInteger();
+        var accountCache = accountCache(accountId -> {
+            loads.incrementAndGet();
+            if (accountId == 3L)
+                throw new AccountServiceException(RECORD_NOT_FOUND.getMessage());
+            if (accountId == 4L)
+                await(upstreamHangs);
+            return balance(accountId);
+        });
+        accountCache.synchronous().put(1L, balance(1L));
+        var loader = new AccountBalanceBatchLoader(accountCache, new BalancesProperties(200, 4, Duration.ofMillis(300)));
+
+        var results = loader.getAccountBalances(List.of(4L, 3L, 2L, 1L));
+
+        assertThat(results).extracting(AccountBalanceResultRest::accountId).containsExactly(4L, 3L, 2L, 1L);
+        assertThat(results.get(0).error().message()).isEqualTo(GATEWAY_TIMEOUT_ERROR.getMessage());
+        assertThat(results.get(1).error().message()).isEqualTo(RECORD_NOT_FOUND.getMessage());
+        assertThat(results.get(2).balance()).isEqualTo(balance(2L));
+        assertThat(results.get(3).balance()).isEqualTo(balance(1L));
+        assertThat(results.get(2).error()).isNull();
+        assertThat(loads).hasValue(3);
+    }
+
+    @Test
+    @DisplayName("load at most max concurrency balances of a batch at once - batch balance test 📚")
+    void boundsConcurrency() {
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+        var accountCache = accountCache(accountId -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            return balance(accountId);
+        });
+        var loader = new AccountBalanceBatchLoader(accountCache, new BalancesProperties(200, 3, Duration.ofSeconds(10)));
+
+        var results = loader.getAccountBalances(LongStream.rangeClosed(1, 30).boxed().toList());
+
+        assertThat(results).allSatisfy(result -> assertThat(result.balance()).isNotNull());
+        assertThat(maxRunning.get()).isBetween(1, 3);
+    }
+
+    private AsyncLoadingCache<Object, Object> accountCache(Function<Long, AccountBalanceRest> upstream) {
+        return CacheConfiguration.caffeine(ACCOUNT, Weigher.singletonWeigher())
+                .executor(io)
+                .buildAsync(accountId -> upstream.apply((Long) accountId));
+    }
+
+    private static AccountBalanceRest balance(Long accountId) {
+        return new AccountBalanceRest(accountId, "IT40L0326822300052849400440", 3268L, 22300L, "IT", 40, "L",
+                52849400440L, "", "Conto Websella", "LUCA TERRIBILE", null, "EUR");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.cache;
+
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Weigher;
+import com.service.fabrickapi.configuration.CacheConfiguration;
+import com.service.fabrickapi.configuration.CachingProperties;
+import com.service.fabrickapi.exception.FabrickRestServiceException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AccountBalanceFreshnessTest {
+
+    static final CachingProperties.Spec ACCOUNT = new CachingProperties.Spec(100, Duration.ofMinutes(5), Duration.ofSeconds(30));
+
+    AtomicLong nanos;
+    AtomicInteger loads;
+    AtomicBoolean upstreamDown;
+    Queue<Runnable> refreshes;
+    LoadingCache<Object, Object> accountCache;
+    AccountBalanceFreshness accountBalanceFreshness;
+
+    @BeforeEach
+    void setUp() {
+        nanos = new AtomicLong();
+        loads = new AtomicInteger();
+        upstreamDown = new AtomicBoolean();
+        refreshes = new ArrayDeque<>();
+        accountCache = CacheConfiguration.caffeine(ACCOUNT, Weigher.singletonWeigher())
+                .ticker(nanos::get)
+                .executor(refreshes::add)
+                .build(accountId -> {
+                    if (upstreamDown.get())
+                        throw new FabrickRestServiceException("503 Service Unavailable");
+                    return "balance " + loads.incrementAndGet();
+                });
+        accountBalanceFreshness = new AccountBalanceFreshness(accountCache, ACCOUNT.refreshAfterWrite());
+    }
+
+    @Test
+    @DisplayName("past the soft TTL the cached balance is served and refreshed in the background - balance freshness test 🌡️")
+    void staleWhileRevalidate() {
+        assertThat(accountCache.get(1L)).isEqualTo("balance 1");
+        advance(Duration.ofSeconds(10));
+        assertThat(accountBalanceFreshness.headers(1L).getFirst(HttpHeaders.AGE)).isEqualTo("10");
+        assertThat(accountBalanceFreshness.headers(1L).containsKey(HttpHeaders.WARNING)).isFalse();
+
+        advance(Duration.ofSeconds(25));
+        assertThat(accountCache.get(1L)).isEqualTo("balance 1");
+        assertThat(loads).hasValue(1);
+        runRefreshes();
+        assertThat(accountCache.get(1L)).isEqualTo("balance 2");
+        assertThat(accountBalanceFreshness.headers(1L).getFirst(HttpHeaders.AGE)).isEqualTo("0");
+    }
+
+    @Test
+    @DisplayName("the balance may be cached privately for what is left of the soft TTL - balance freshness test 🌡️")
+    void cacheControl() {
+        assertThat(accountBalanceFreshness.cacheControl(1L).getHeaderValue()).isEqualTo("max-age=30, private");
+        accountCache.get(1L);
+        advance(Duration.ofSeconds(12));
+        assertThat(accountBalanceFreshness.cacheControl(1L).getHeaderValue()).isEqualTo("max-age=18, private");
+        advance(Duration.ofSeconds(40));
+        assertThat(accountBalanceFreshness.cacheControl(1L).getHeaderValue()).isEqualTo("max-age=0, private");
+    }
+
+    @Test
+    @DisplayName("with the upstream failing the stale balance is served until the hard TTL - balance freshness test 🌡️")
+    void staleIfError() {
+        accountCache.get(1L);
+        upstreamDown.set(true);
+
+        advance(Duration.ofMinutes(4));
+        assertThat(accountCache.get(1L)).isEqualTo("balance 1");
+        runRefreshes();
+        assertThat(accountCache.get(1L)).isEqualTo("balance 1");
+        var headers = accountBalanceFreshness.headers(1L);
+        assertThat(headers.getFirst(HttpHeaders.AGE)).isEqualTo("240");
+        assertThat(headers.containsKey(HttpHeaders.WARNING)).isFalse();
+
+        advance(Duration.ofMinutes(2));
+        assertThrows(FabrickRestServiceException.class, () -> accountCache.get(1L));
+        assertThat(accountBalanceFreshness.headers(1L).isEmpty()).isTrue();
+    }
+
+    private void runRefreshes() {
+        while (!refreshes.isEmpty())
+            refreshes.poll().run();
+    }
+
+    private void advance(Duration duration) {
+        nanos.addAndGet(duration.toNanos());
+    }
+}
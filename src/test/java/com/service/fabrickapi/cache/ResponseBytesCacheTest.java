@@ -0,0 +1,192 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.cache;
+
+import com.service.fabrickapi.configuration.CachingProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.xml.MappingJackson2XmlHttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.accept.ContentNegotiationManager;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ResponseBytesCacheTest {
+
+    static final CachingProperties.Spec RESPONSES = new CachingProperties.Spec(1 << 20, Duration.ofMinutes(5), null);
+
+    AtomicReference<Instant> now;
+    ResponseBytesCache responseBytesCache;
+
+    @BeforeEach
+    void setUp() {
+        now = new AtomicReference<>(Instant.parse("2024-03-01T10:00:00Z"));
+        var clock = mock(Clock.class);
+        when(clock.instant()).thenAnswer(invocation -> now.get());
+        responseBytesCache = new ResponseBytesCache(new CachingProperties(RESPONSES, RESPONSES, RESPONSES),
+                () -> List.of(new MappingJackson2XmlHttpMessageConverter(), new MappingJackson2HttpMessageConverter()),
+                ContentNegotiationManager::new, clock);
+    }
+
+    @Test
+    @DisplayName("the same value is served from the encoded bytes, a new one is encoded again - response bytes cache test 📦")
+    void reusesBytesOfSameSource() throws Exception {
+        var transactions = List.of(Map.of("transactionId", 1), Map.of("transactionId", 2));
+
+        var first = responseBytesCache.ok(request("application/json"), "transactions", 1L, "30", transactions, List.class, new HttpHeaders());
+        var copy = responseBytesCache.ok(request("application/json"), "transactions", 1L, "30", new ArrayList<>(transactions), List.class, new HttpHeaders());
+        assertThat(copy.getBody()).isSameAs(first.getBody());
+        assertThat(new String(first.getBody())).isEqualTo("[{\"transactionId\":1},{\"transactionId\":2}]");
+        assertThat(first.getHeaders().getETag()).startsWith("\"").endsWith("\"");
+
+        var reloaded = List.of(Map.of("transactionId", 1), Map.of("transactionId", 2));
+        var equal = responseBytesCache.ok(request("application/json"), "transactions", 1L, "30", reloaded, List.class, new HttpHeaders());
+        assertThat(equal.getBody()).isNotSameAs(first.getBody());
+        assertThat(equal.getHeaders().getETag()).isEqualTo(first.getHeaders().getETag());
+
+        var changed = responseBytesCache.ok(request("application/json"), "transactions", 1L, "30", List.of(Map.of("transactionId", 3)), List.class, new HttpHeaders());
+        assertThat(changed.getHeaders().getETag()).isNotEqualTo(first.getHeaders().getETag());
+    }
+
+    @Test
+    @DisplayName("each media type is encoded and cached apart, as Spring MVC negotiates it - response bytes cache test 📦")
+    void negotiatesMediaType() throws Exception {
+        var balance = Map.of("balance", 100);
+        var headers = new HttpHeaders();
+        headers.set(HttpHeaders.AGE, "3");
+
+        var xml = responseBytesCache.ok(request("*/*"), "balance", 1L, "", balance, Map.class, headers);
+        var json = responseBytesCache.ok(request("application/xml;q=0.5, application/json"), "balance", 1L, "", balance, Map.class, headers);
+
+        assertThat(xml.getHeaders().getContentType().isCompatibleWith(MediaType.APPLICATION_XML)).isTrue();
+        assertThat(new String(xml.getBody())).startsWith("<");
+        assertThat(json.getHeaders().getContentType().isCompatibleWith(MediaType.APPLICATION_JSON)).isTrue();
+        assertThat(new String(json.getBody())).isEqualTo("{\"balance\":100}");
+        assertThat(json.getHeaders().getETag()).isNotEqualTo(xml.getHeaders().getETag());
+        assertThat(json.getHeaders().getFirst(HttpHeaders.AGE)).isEqualTo("3");
+        assertThat(responseBytesCache.nativeCache().estimatedSize()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Last-Modified moves only when the encoded body changes - response bytes cache test 📦")
+    void lastModifiedFollowsETag() throws Exception {
+        var first = responseBytesCache.ok(request("application/json"), "balance", 1L, "", Map.of("balance", 1), Map.class, new HttpHeaders());
+        assertThat(first.getHeaders().getLastModified()).isEqualTo(now.get().toEpochMilli());
+
+        now.set(now.get().plusSeconds(30));
+        var refreshed = responseBytesCache.ok(request("application/json"), "balance", 1L, "", Map.of("balance", 1), Map.class, new HttpHeaders());
+        assertThat(refreshed.getHeaders().getLastModified()).isEqualTo(first.getHeaders().getLastModified());
+
+        var changed = responseBytesCache.ok(request("application/json"), "balance", 1L, "", Map.of("balance", 2), Map.class, new HttpHeaders());
+        assertThat(changed.getHeaders().getLastModified()).isEqualTo(now.get().toEpochMilli());
+    }
+
+    @Test
+    @DisplayName("a body younger than max-age is served without the service - response bytes cache test 📦")
+    void freshWithinMaxAge() throws Exception {
+        var headers = new HttpHeaders();
+        headers.setCacheControl(CacheControl.maxAge(Duration.ofSeconds(10)).cachePrivate());
+        assertThat(responseBytesCache.fresh(request("application/json"), "transactions", 1L, "30", Duration.ofSeconds(10), headers)).isEmpty();
+
+        var encoded = responseBytesCache.ok(request("application/json"), "transactions", 1L, "30", List.of(Map.of("transactionId", 1)), List.class, headers);
+        var fresh = responseBytesCache.fresh(request("application/json"), "transactions", 1L, "30", Duration.ofSeconds(10), headers);
+
+        assertThat(fresh).hasValueSatisfying(response -> {
+            assertThat(response.getBody()).isSameAs(encoded.getBody());
+            assertThat(response.getHeaders().getETag()).isEqualTo(encoded.getHeaders().getETag());
+            assertThat(response.getHeaders().getCacheControl()).isEqualTo("max-age=10, private");
+        });
+        assertThat(responseBytesCache.fresh(request("application/xml"), "transactions", 1L, "30", Duration.ofSeconds(10), headers)).isEmpty();
+        assertThat(responseBytesCache.fresh(request("application/json"), "transactions", 1L, "30", Duration.ZERO, headers)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("a body found encoded from the value of the service again is fresh for another max-age - response bytes cache test 📦")
+    void revalidatedBodyStaysFresh() throws Exception {
+        var headers = new HttpHeaders();
+        var transactions = List.of(Map.of("transactionId", 1));
+        responseBytesCache.ok(request("application/json"), "transactions", 1L, "30", transactions, List.class, headers);
+
+        now.set(now.get().plusSeconds(8));
+        responseBytesCache.ok(request("application/json"), "transactions", 1L, "30", List.copyOf(transactions), List.class, headers);
+        now.set(now.get().plusSeconds(8));
+
+        assertThat(responseBytesCache.fresh(request("application/json"), "transactions", 1L, "30", Duration.ofSeconds(10), headers)).isPresent();
+        now.set(now.get().plusSeconds(2));
+        assertThat(responseBytesCache.fresh(request("application/json"), "transactions", 1L, "30", Duration.ofSeconds(10), headers)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("evicting an account drops its responses only - response bytes cache test 📦")
+    void evictsAccount() throws Exception {
+        responseBytesCache.ok(request("application/json"), "balance", 1L, "", Map.of("balance", 1), Map.class, new HttpHeaders());
+        responseBytesCache.ok(request("application/json"), "transactions", 1L, "30", List.of(), List.class, new HttpHeaders());
+        responseBytesCache.ok(request("application/json"), "balance", 2L, "", Map.of("balance", 2), Map.class, new HttpHeaders());
+
+        responseBytesCache.evict(1L);
+
+        assertThat(responseBytesCache.nativeCache().asMap().keySet())
+                .singleElement()
+                .satisfies(key -> assertThat(((ResponseBytesCache.Key) key).accountId()).isEqualTo(2L));
+    }
+
+    @Test
+    @DisplayName("a value is the same source only as the same instance or a list of the same instances - response bytes cache test 📦")
+    void sameSource() {
+        var a = Map.of("id", 1);
+        var b = Map.of("id", 1);
+        assertThat(ResponseBytesCache.sameSource(a, a)).isTrue();
+        assertThat(ResponseBytesCache.sameSource(a, b)).isFalse();
+        assertThat(ResponseBytesCache.sameSource(List.of(a), new ArrayList<>(List.of(a)))).isTrue();
+        assertThat(ResponseBytesCache.sameSource(List.of(a), List.of(b))).isFalse();
+        assertThat(ResponseBytesCache.sameSource(List.of(a), List.of(a, a))).isFalse();
+    }
+
+    private static ServletWebRequest request(String accept) {
+        var request = new MockHttpServletRequest("GET", "/api/v1/account/1/balance");
+        request.addHeader(HttpHeaders.ACCEPT, accept);
+        request.setAttribute(HandlerMapping.PRODUCIBLE_MEDIA_TYPES_ATTRIBUTE,
+                new LinkedHashSet<>(List.of(MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON)));
+        return new ServletWebRequest(request);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.cache;
+
+import com.service.fabrickapi.configuration.CachingProperties;
+import com.service.fabrickapi.model.rest.TransactionRest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransactionRangeCacheTest {
+
+    static final LocalDate TODAY = LocalDate.of(2024, 3, 15);
+    static final CachingProperties CACHING = new CachingProperties(
+            new CachingProperties.Spec(100, Duration.ofMinutes(5), Duration.ofSeconds(30)),
+            new CachingProperties.Spec(100, Duration.ofMinutes(5), null),
+            new CachingProperties.Spec(1000, Duration.ofMinutes(5), null));
+
+    TransactionRangeCache transactionRangeCache;
+    List<LocalDate[]> loads;
+    BiFunction<LocalDate, LocalDate, List<TransactionRest>> loader;
+
+    @BeforeEach
+    void setUp() {
+        var clock = Clock.fixed(TODAY.atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC);
+        transactionRangeCache = new TransactionRangeCache(CACHING, Runnable::run, clock);
+        loads = new ArrayList<>();
+        loader = (from, to) -> {
+            loads.add(new LocalDate[]{from, to});
+            return from.datesUntil(to.plusDays(1)).map(TransactionRangeCacheTest::transaction).toList();
+        };
+    }
+
+    @Test
+    @DisplayName("sub-range of a cached range is served locally - transaction range cache test 🗓️")
+    void subRangeServedLocally() {
+        var last30Days = transactionRangeCache.getTransactions(1L, TODAY.minusDays(31), TODAY.minusDays(2), loader);
+        var last7Days = transactionRangeCache.getTransactions(1L, TODAY.minusDays(8), TODAY.minusDays(2), loader);
+
+        assertThat(last30Days).hasSize(30);
+        assertThat(last7Days).hasSize(7);
+        assertThat(last7Days).allMatch(t -> !TransactionRangeCache.accountingDate(t).isBefore(TODAY.minusDays(8)));
+        assertThat(loads).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("partially covered range loads only the gaps - transaction range cache test 🗓️")
+    void onlyGapsAreLoaded() {
+        transactionRangeCache.getTransactions(1L, LocalDate.of(2024, 1, 10), LocalDate.of(2024, 1, 20), loader);
+        transactionRangeCache.getTransactions(1L, LocalDate.of(2024, 2, 1), LocalDate.of(2024, 2, 10), loader);
+        loads.clear();
+
+        var transactions = transactionRangeCache.getTransactions(1L, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 2, 5), loader);
+
+        assertThat(transactions).hasSize(36);
+        assertThat(transactions).extracting(TransactionRest::transactionId).doesNotHaveDuplicates();
+        assertThat(loads).extracting(gap -> gap[0] + ".." + gap[1])
+                .containsExactly("2024-01-01..2024-01-09", "2024-01-21..2024-01-31");
+
+        loads.clear();
+        transactionRangeCache.getTransactions(1L, LocalDate.of(2024, 1, 5), LocalDate.of(2024, 2, 10), loader);
+        assertThat(loads).isEmpty();
+    }
+
+    @Test
+    @DisplayName("today is never covered, other accounts are not shared - transaction range cache test 🗓️")
+    void todayAlwaysReloaded() {
+        transactionRangeCache.getTransactions(1L, TODAY.minusDays(5), TODAY, loader);
+        loads.clear();
+
+        var transactions = transactionRangeCache.getTransactions(1L, TODAY.minusDays(5), TODAY, loader);
+        transactionRangeCache.getTransactions(2L, TODAY.minusDays(5), TODAY.minusDays(1), loader);
+
+        assertThat(transactions).hasSize(6);
+        assertThat(loads).extracting(gap -> gap[0] + ".." + gap[1])
+                .containsExactly(TODAY + ".." + TODAY, TODAY.minusDays(5) + ".." + TODAY.minusDays(1));
+    }
+
+    @Test
+    @DisplayName("accounts are bounded by the number of transactions they hold - transaction range cache test 🗓️")
+    void boundedByWeight() {
+        transactionRangeCache.getTransactions(1L, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 2, 29), loader);
+        transactionRangeCache.getTransactions(2L, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 2, 29), loader);
+        var cache = transactionRangeCache.nativeCache();
+        cache.cleanUp();
+
+        assertThat(cache.estimatedSize()).isEqualTo(1);
+        assertThat(cache.policy().eviction().orElseThrow().weightedSize()).hasValue(61);
+        assertThat(cache.stats().evictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("gaps of one range are loaded concurrently - transaction range cache test 🗓️")
+    void gapsLoadedConcurrently() throws Exception {
+        try (var io = Executors.newVirtualThreadPerTaskExecutor()) {
+            var clock = Clock.fixed(TODAY.atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC);
+            var concurrentCache = new TransactionRangeCache(CACHING, io, clock);
+            concurrentCache.getTransactions(1L, LocalDate.of(2024, 1, 10), LocalDate.of(2024, 1, 20), loader);
+            var bothLoading = new CountDownLatch(2);
+
+            var transactions = concurrentCache.getTransactions(1L, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31),
+                    (from, to) -> {
+                        bothLoading.countDown();
+                        try {
+                            // only returns if the other gap is loading at the same time
+                            assertThat(bothLoading.await(5, TimeUnit.SECONDS)).isTrue();
+                        } catch (InterruptedException e) {
+                            throw new IllegalStateException(e);
+                        }
+                        return from.datesUntil(to.plusDays(1)).map(TransactionRangeCacheTest::transaction).toList();
+                    });
+
+            assertThat(transactions).hasSize(31);
+            assertThat(transactions).extracting(TransactionRest::transactionId).doesNotHaveDuplicates();
+        }
+    }
+
+    private static TransactionRest transaction(LocalDate accountingDate) {
+        var date = Date.from(accountingDate.atStartOfDay(ZoneOffset.UTC).toInstant());
+        return new TransactionRest(accountingDate.toEpochDay(), accountingDate.toEpochDay(), date, date, null,
+                BigDecimal.TEN, "EUR", "Transaction of " + accountingDate);
+    }
+}
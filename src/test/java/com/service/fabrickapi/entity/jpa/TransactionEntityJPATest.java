@@ -35,11 +35,15 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Limit;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.LongStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -112,4 +116,91 @@ class TransactionEntityJPATest {
         int isDeleted = this.transactionRepository.deleteByTransactionId(TRANSACTION_ID);
         assertThat(isDeleted).isEqualTo(1);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("batch upsert inserts only the new transactions - entity jpa test 🛠️")
+    public void upsertAllIgnoresStoredTransactions() {
+        testEntityManager.flush();
+        var stored = transaction(TRANSACTION_ID, OPERATION_ID);
+        var fresh = List.of(transaction(TRANSACTION_ID + 1, OPERATION_ID + 1), transaction(TRANSACTION_ID + 2, OPERATION_ID + 2));
+
+        assertThat(this.transactionRepository.upsertAll(List.of(stored, fresh.get(0), fresh.get(1)))).isEqualTo(2);
+        assertThat(this.transactionRepository.upsertAll(fresh)).isZero();
+        assertThat(this.transactionRepository.upsertAll(List.of(transaction(TRANSACTION_ID + 3, OPERATION_ID)))).isZero();
+        assertThat(this.transactionRepository.count()).isEqualTo(3);
+        assertThat(this.transactionRepository.findByTransactionId(TRANSACTION_ID + 2))
+                .hasValueSatisfying(transaction -> assertThat(transaction.getDescription()).isEqualTo("PD VISA CORPORATE 10"));
+    }
+
+    @Test
+    @DisplayName("assign stored transactions to an account and read its accounting date range - entity jpa test 🛠️")
+    public void assignAccountAndFindByAccountingDateRange() {
+        testEntityManager.flush();
+
+        assertThat(this.transactionRepository.assignAccount(7L, List.of(TRANSACTION_ID))).isEqualTo(1);
+        assertThat(this.transactionRepository.assignAccount(8L, List.of(TRANSACTION_ID))).isZero();
+        testEntityManager.clear();
+
+        var from = java.sql.Date.valueOf(LocalDate.of(1969, 12, 31));
+        var to = java.sql.Date.valueOf(LocalDate.of(1970, 1, 2));
+        assertThat(this.transactionRepository.findByAccountIdAndAccountingDateBetween(7L, from, to))
+                .extracting(TransactionEntity::getTransactionId)
+                .containsExactly(TRANSACTION_ID);
+        assertThat(this.transactionRepository.findByAccountIdAndAccountingDateBetween(8L, from, to)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("read the latest transactions of an account range and count them - entity jpa test 🛠️")
+    public void findLatestAndCountByAccountingDateRange() {
+        var transactions = LongStream.rangeClosed(1, 5).mapToObj(day -> {
+            var transactionEntity = transaction(TRANSACTION_ID + day, OPERATION_ID + day);
+            transactionEntity.setAccountId(7L);
+            transactionEntity.setAccountingDate(java.sql.Date.valueOf(LocalDate.of(2024, 1, (int) day)));
+            return transactionEntity;
+        }).toList();
+        this.transactionRepository.upsertAll(transactions);
+
+        var from = java.sql.Date.valueOf(LocalDate.of(2024, 1, 2));
+        var to = java.sql.Date.valueOf(LocalDate.of(2024, 1, 4));
+        assertThat(this.transactionRepository.findByAccountIdAndAccountingDateBetweenOrderByAccountingDateDescValueDateDescTransactionIdDesc(
+                7L, from, to, Limit.of(2)))
+                .extracting(TransactionEntity::getTransactionId)
+                .containsExactly(TRANSACTION_ID + 4, TRANSACTION_ID + 3);
+        assertThat(this.transactionRepository.countByAccountIdAndAccountingDateBetween(7L, from, to)).isEqualTo(3);
+        assertThat(this.transactionRepository.findPageAfter(7L, from, to, java.sql.Date.valueOf(LocalDate.of(2024, 1, 3)),
+                VALUE_DATE, TRANSACTION_ID + 3, Limit.of(2)))
+                .extracting(TransactionEntity::getTransactionId)
+                .containsExactly(TRANSACTION_ID + 2);
+    }
+
+    @Test
+    @DisplayName("stream the transactions of an account range oldest first - entity jpa test 🛠️")
+    public void streamByAccountingDateRange() {
+        var transactions = LongStream.rangeClosed(1, 5).mapToObj(day -> {
+            var transactionEntity = transaction(TRANSACTION_ID + day, OPERATION_ID + day);
+            transactionEntity.setAccountId(7L);
+            transactionEntity.setAccountingDate(java.sql.Date.valueOf(LocalDate.of(2024, 1, (int) (6 - day))));
+            return transactionEntity;
+        }).toList();
+        this.transactionRepository.upsertAll(transactions);
+
+        try (var transactionEntities = this.transactionRepository.streamByAccountIdAndAccountingDateBetween(7L,
+                java.sql.Date.valueOf(LocalDate.of(2024, 1, 2)), java.sql.Date.valueOf(LocalDate.of(2024, 1, 4)))) {
+            assertThat(transactionEntities.map(TransactionEntity::getTransactionId))
+                    .containsExactly(TRANSACTION_ID + 4, TRANSACTION_ID + 3, TRANSACTION_ID + 2);
+        }
+    }
+
+    private TransactionEntity transaction(Long transactionId, Long operationId) {
+        var transactionEntity = new TransactionEntity();
+        transactionEntity.setTransactionId(transactionId);
+        transactionEntity.setOperationId(operationId);
+        transactionEntity.setAccountingDate(ACCOUNTING_DATE);
+        transactionEntity.setValueDate(VALUE_DATE);
+        transactionEntity.setType("{\"enumeration\":\"GBS_TRANSACTION_TYPE\",\"value\":\"GBS_ACCOUNT_TRANSACTION_TYPE_0050\"}");
+        transactionEntity.setAmount(BigDecimal.valueOf(343.77));
+        transactionEntity.setCurrency("EUR");
+        transactionEntity.setDescription("PD VISA CORPORATE 10");
+        return transactionEntity;
+    }
+}
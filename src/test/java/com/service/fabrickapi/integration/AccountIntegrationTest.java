@@ -27,10 +27,22 @@
 package com.service.fabrickapi.integration;
 
 import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.service.fabrickapi.cache.AccountBalanceFreshness;
+import com.service.fabrickapi.cache.ResponseBytesCache;
+import com.service.fabrickapi.configuration.CachingProperties;
+import com.service.fabrickapi.configuration.TransactionsProperties;
 import com.service.fabrickapi.controller.AccountController;
+import com.service.fabrickapi.exception.UpstreamUnavailableException;
+import com.service.fabrickapi.model.error.ErrorMessage;
 import com.service.fabrickapi.model.rest.AccountBalanceRest;
+import com.service.fabrickapi.model.rest.AccountBalanceResultRest;
+import com.service.fabrickapi.model.rest.AccountOverviewRest;
+import com.service.fabrickapi.model.rest.TransactionPageRest;
 import com.service.fabrickapi.model.rest.TransactionRest;
+import com.service.fabrickapi.persistence.ExportFormat;
+import com.service.fabrickapi.service.AccountOverviewService;
 import com.service.fabrickapi.service.AccountService;
+import com.service.fabrickapi.service.TransactionExport;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -39,25 +51,42 @@ import org.mockito.InjectMocks;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
+import static com.service.fabrickapi.model.error.ErrorMessages.RECORD_NOT_FOUND;
+import static com.service.fabrickapi.model.error.ErrorMessages.SERVICE_UNAVAILABLE_ERROR;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(MockitoExtension.class)
 @WebMvcTest(AccountController.class)
+@Import(ResponseBytesCache.class)
+@EnableConfigurationProperties({CachingProperties.class, TransactionsProperties.class})
 public class AccountIntegrationTest {
 
     private static final XmlMapper xmlMapper = new XmlMapper();
@@ -67,6 +96,10 @@ public class AccountIntegrationTest {
     MockMvc mockMvc;
     @MockBean
     AccountService accountService;
+    @MockBean
+    AccountBalanceFreshness accountBalanceFreshness;
+    @MockBean
+    AccountOverviewService accountOverviewService;
     AccountBalanceRest accountBalanceRest;
     Date activatedDate;
     TransactionRest transactionRest;
@@ -110,7 +143,7 @@ public class AccountIntegrationTest {
                 987654321L,
                 accountingDate,
                 valueDate,
-                new Object(),
+                Map.of("enumeration", "GBS_TRANSACTION_TYPE", "value", "GBS_ACCOUNT_TRANSACTION_TYPE_0050"),
                 BigDecimal.valueOf(500.50),
                 "EUR",
                 "Sample Transaction"
@@ -122,6 +155,8 @@ public class AccountIntegrationTest {
     @DisplayName("get account balance - account integration test 📡")
     void getAccountBalance() throws Exception {
         when(accountService.getAccountBalance(anyLong())).thenReturn(accountBalanceRest);
+        when(accountBalanceFreshness.headers(anyLong())).thenReturn(new HttpHeaders());
+        when(accountBalanceFreshness.cacheControl(anyLong())).thenReturn(CacheControl.maxAge(Duration.ofSeconds(30)).cachePrivate());
 
         var result = mockMvc.perform(
                         get("/api/v1/account/{accountId}/balance", 1234L)
@@ -149,15 +184,110 @@ public class AccountIntegrationTest {
         assertThat(balanceRest.currency()).isEqualTo(accountBalanceRest.currency());
     }
 
+    @Test
+    @DisplayName("get account balance again with its ETag as 304 Not Modified - account integration test 📡")
+    void getAccountBalanceNotModified() throws Exception {
+        when(accountService.getAccountBalance(anyLong())).thenReturn(accountBalanceRest);
+        when(accountBalanceFreshness.headers(anyLong())).thenReturn(new HttpHeaders());
+        when(accountBalanceFreshness.cacheControl(anyLong())).thenReturn(CacheControl.maxAge(Duration.ofSeconds(30)).cachePrivate());
+
+        var first = mockMvc.perform(get("/api/v1/account/{accountId}/balance", 1234L)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=30, private"))
+                .andExpect(jsonPath("$.iban").value(accountBalanceRest.iban()))
+                .andReturn();
+        var eTag = first.getResponse().getHeader(HttpHeaders.ETAG);
+
+        var notModified = mockMvc.perform(get("/api/v1/account/{accountId}/balance", 1234L)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag))
+                .andReturn();
+        assertThat(notModified.getResponse().getContentLength()).isZero();
+
+        mockMvc.perform(get("/api/v1/account/{accountId}/balance", 1234L)
+                        .accept(MediaType.APPLICATION_XML)
+                        .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/v1/account/{accountId}/balance", 1234L)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.IF_MODIFIED_SINCE, first.getResponse().getHeader(HttpHeaders.LAST_MODIFIED)))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    @DisplayName("get account transactions again within max-age without the service - account integration test 📡")
+    void getAccountTransactionsWithinMaxAge() throws Exception {
+        when(accountService.getAccountTransactions(1234L, "2019-11-01", "2019-12-01", null)).thenReturn(List.of(transactionRest));
+
+        var first = mockMvc.perform(get("/api/v1/account/{accountId}/transactions", 1234L)
+                        .param("fromAccountingDate", "2019-11-01")
+                        .param("toAccountingDate", "2019-12-01")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=10, private"))
+                .andReturn();
+
+        mockMvc.perform(get("/api/v1/account/{accountId}/transactions", 1234L)
+                        .param("fromAccountingDate", "2019-11-01")
+                        .param("toAccountingDate", "2019-12-01")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.IF_NONE_MATCH, first.getResponse().getHeader(HttpHeaders.ETAG)))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=10, private"));
+        verify(accountService, times(1)).getAccountTransactions(1234L, "2019-11-01", "2019-12-01", null);
+    }
+
+    @Test
+    @DisplayName("get the balances of several accounts with per-account errors - account integration test 📡")
+    void getAccountBalances() throws Exception {
+        when(accountService.getAccountBalances(List.of(1234567890L, 42L))).thenReturn(List.of(
+                new AccountBalanceResultRest(1234567890L, accountBalanceRest, null),
+                new AccountBalanceResultRest(42L, null, new ErrorMessage(RECORD_NOT_FOUND.getMessage(), new Date()))));
+
+        mockMvc.perform(get("/api/v1/account/balances")
+                        .param("accountIds", "1234567890,42")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].accountId").value(1234567890L))
+                .andExpect(jsonPath("$[0].balance.iban").value(accountBalanceRest.iban()))
+                .andExpect(jsonPath("$[1].accountId").value(42))
+                .andExpect(jsonPath("$[1].balance").doesNotExist())
+                .andExpect(jsonPath("$[1].error.message").value(RECORD_NOT_FOUND.getMessage()));
+    }
+
+    @Test
+    @DisplayName("get the balance and recent transactions in one payload - account integration test 📡")
+    void getAccountOverview() throws Exception {
+        var transaction = new TransactionRest(123456789L, 987654321L, accountingDate, valueDate,
+                Map.of("enumeration", "GBS_TRANSACTION_TYPE", "value", "GBS_ACCOUNT_TRANSACTION_TYPE_0050"),
+                BigDecimal.valueOf(-800), "EUR", "Sample Transaction");
+        when(accountOverviewService.getAccountOverview(1234L, null, null, 5))
+                .thenReturn(new AccountOverviewRest(accountBalanceRest, List.of(transaction)));
+
+        mockMvc.perform(get("/api/v1/account/{accountId}/overview", 1234L)
+                        .param("limit", "5")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balance.accountId").value(accountBalanceRest.accountId()))
+                .andExpect(jsonPath("$.transactions[0].transactionId").value(transaction.transactionId()));
+    }
+
     @Test
     @DisplayName("get account transactions - account integration test 📡")
     void getAccountTransactions() throws Exception {
-        when(accountService.getAccountTransactions(anyLong(), anyString(), anyString())).thenReturn(List.of(transactionRest));
+        when(accountService.getAccountTransactions(1234L, "2019-11-01", "2019-12-01", 5)).thenReturn(List.of(transactionRest));
 
         var result = mockMvc.perform(
                         get("/api/v1/account/{accountId}/transactions", 1234L)
                                 .param("fromAccountingDate", "2019-11-01")
                                 .param("toAccountingDate", "2019-12-01")
+                                .param("limit", "5")
                                 .content(MediaType.APPLICATION_JSON_VALUE)
                                 .accept(MediaType.APPLICATION_XML_VALUE))
                 .andExpect(status().isOk())
@@ -175,5 +305,65 @@ public class AccountIntegrationTest {
         assertThat(transactionRests.getFirst().description()).isEqualTo(transactionRest.description());
     }
 
+    @Test
+    @DisplayName("get a transaction history page - account integration test 📡")
+    void getTransactionHistory() throws Exception {
+        var storedTransaction = new TransactionRest(transactionRest.transactionId(), transactionRest.operationId(),
+                accountingDate, valueDate, Map.of("enumeration", "GBS_TRANSACTION_TYPE"), transactionRest.amount(),
+                transactionRest.currency(), transactionRest.description());
+        when(accountService.getTransactionHistory(1234L, "2019-11-01", "2019-12-01", 10, "bmV4dA"))
+                .thenReturn(new TransactionPageRest(List.of(storedTransaction), "YWZ0ZXI"));
+
+        mockMvc.perform(
+                        get("/api/v1/account/{accountId}/transactions/history", 1234L)
+                                .param("fromAccountingDate", "2019-11-01")
+                                .param("toAccountingDate", "2019-12-01")
+                                .param("size", "10")
+                                .param("cursor", "bmV4dA")
+                                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transactions[0].transactionId").value(transactionRest.transactionId()))
+                .andExpect(jsonPath("$.nextCursor").value("YWZ0ZXI"));
+    }
+
+    @Test
+    @DisplayName("stream a gzip compressed transaction export - account integration test 📡")
+    void exportTransactions() throws Exception {
+        var csv = "transactionId,operationId\n1,2\n";
+        when(accountService.exportTransactions(1234L, "2019-11-01", "2019-12-01", "csv"))
+                .thenReturn(new TransactionExport(ExportFormat.CSV, "transactions.csv",
+                        outputStream -> outputStream.write(csv.getBytes())));
 
+        var started = mockMvc.perform(
+                        get("/api/v1/account/{accountId}/transactions/export", 1234L)
+                                .param("fromAccountingDate", "2019-11-01")
+                                .param("toAccountingDate", "2019-12-01")
+                                .param("format", "csv")
+                                .param("gzip", "true"))
+                .andReturn();
+        var result = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "text/csv"))
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"transactions.csv\""))
+                .andReturn();
+
+        try (var gzipInputStream = new GZIPInputStream(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+            assertThat(new String(gzipInputStream.readAllBytes())).isEqualTo(csv);
+        }
+    }
+
+    @Test
+    @DisplayName("upstream call rejected by an open circuit answers 503 with Retry-After - account integration test 📡")
+    void getAccountBalanceCircuitOpen() throws Exception {
+        when(accountService.getAccountBalance(anyLong())).thenThrow(new UpstreamUnavailableException(
+                SERVICE_UNAVAILABLE_ERROR.getMessage() + " - CIRCUIT BALANCE OPEN", Duration.ofMillis(12_300)));
+
+        mockMvc.perform(
+                        get("/api/v1/account/{accountId}/balance", 1234L)
+                                .accept(MediaType.APPLICATION_JSON_VALUE))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "13"))
+                .andExpect(jsonPath("$.message").value("503 Service Unavailable - CIRCUIT BALANCE OPEN"));
+    }
 }
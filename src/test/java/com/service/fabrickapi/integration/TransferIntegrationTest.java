@@ -52,6 +52,7 @@ import java.util.List;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -136,7 +137,7 @@ public class TransferIntegrationTest {
     @Test
     @DisplayName("transfer loan - transfer integration test 📡")
     void transferLoan() throws Exception {
-        when(transferService.transferLoan(anyLong(), any(LoanTransferRequest.class))).thenReturn(loanTransferRest);
+        when(transferService.transferLoan(anyLong(), any(LoanTransferRequest.class), eq("transfer-1"))).thenReturn(loanTransferRest);
 
         var result = mockMvc.perform(
                         post("/api/v1/transfer/{accountId}", 1234L)
@@ -155,6 +156,7 @@ public class TransferIntegrationTest {
                                         }
                                         """)
                                 .contentType(MediaType.APPLICATION_JSON_VALUE)
+                                .header("Idempotency-Key", "transfer-1")
                                 .accept(MediaType.APPLICATION_XML))
                 .andExpect(status().isOk())
                 .andReturn();
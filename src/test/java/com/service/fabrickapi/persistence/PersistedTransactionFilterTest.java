@@ -0,0 +1,104 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.persistence;
+
+import com.service.fabrickapi.configuration.PersistedFilterProperties;
+import com.service.fabrickapi.persistence.PersistedTransactionFilter.Membership;
+import com.service.fabrickapi.repository.TransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.concurrent.Executors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PersistedTransactionFilterTest {
+
+    SimpleMeterRegistry meterRegistry;
+    TransactionRepository transactionRepository;
+    PersistedTransactionFilter persistedTransactionFilter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        transactionRepository = mock(TransactionRepository.class);
+        when(transactionRepository.streamAllTransactionIds()).thenAnswer(invocation -> Stream.empty());
+        persistedTransactionFilter = new PersistedTransactionFilter(transactionRepository,
+                mock(PlatformTransactionManager.class), new PersistedFilterProperties(0.01, 100_000, 1_000), meterRegistry);
+    }
+
+    @Test
+    @DisplayName("ids are maybe stored until the rebuild completes - persisted filter test 🧮")
+    void failsClosedUntilRebuilt() {
+        when(transactionRepository.count()).thenThrow(new DataAccessResourceFailureException("down"));
+        persistedTransactionFilter.add(1L);
+
+        persistedTransactionFilter.rebuild();
+
+        assertThat(persistedTransactionFilter.check(1L)).isEqualTo(Membership.KNOWN);
+        assertThat(persistedTransactionFilter.check(2L)).isEqualTo(Membership.MAYBE);
+    }
+
+    @Test
+    @DisplayName("recent ids are known, older ones maybe stored, others new - persisted filter test 🧮")
+    void classifiesStoredIds() {
+        persistedTransactionFilter.rebuild();
+        LongStream.range(1, 5_001).forEach(persistedTransactionFilter::add);
+
+        assertThat(persistedTransactionFilter.check(5_000L)).isEqualTo(Membership.KNOWN);
+        assertThat(persistedTransactionFilter.check(1L)).isEqualTo(Membership.MAYBE);
+        assertThat(persistedTransactionFilter.isKnown(1L)).isFalse();
+        assertThat(persistedTransactionFilter.check(null)).isEqualTo(Membership.NEW);
+        var falsePositives = LongStream.range(1_000_000, 1_100_000)
+                .filter(id -> persistedTransactionFilter.check(id) != Membership.NEW)
+                .count();
+        assertThat(falsePositives).isLessThan(2_000);
+        assertThat(meterRegistry.counter("fabrick.persisted-filter.checks", "result", "new").count())
+                .isGreaterThan(98_000);
+    }
+
+    @Test
+    @DisplayName("ids added concurrently are never reported new - persisted filter test 🧵")
+    void hasNoFalseNegativesUnderConcurrentAdds() throws Exception {
+        persistedTransactionFilter.rebuild();
+        try (var executor = Executors.newFixedThreadPool(8)) {
+            for (int t = 0; t < 8; t++) {
+                long first = t * 10_000L + 1;
+                executor.submit(() -> LongStream.range(first, first + 10_000).forEach(persistedTransactionFilter::add));
+            }
+        }
+
+        assertThat(LongStream.range(1, 80_001).filter(id -> persistedTransactionFilter.check(id) == Membership.NEW))
+                .isEmpty();
+    }
+}
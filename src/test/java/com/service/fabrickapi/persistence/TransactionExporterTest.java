@@ -0,0 +1,182 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.persistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.service.fabrickapi.entity.TransactionEntity;
+import com.service.fabrickapi.repository.TransactionRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransactionExporterTest {
+    private static final LocalDate FROM = LocalDate.of(2024, 1, 1);
+    private static final LocalDate TO = LocalDate.of(2024, 1, 31);
+    private static final long HEAP_TEST_ROWS = 100_000;
+
+    TransactionRepository transactionRepository;
+    EntityManager entityManager;
+    TransactionExporter transactionExporter;
+
+    @BeforeEach
+    void setUp() {
+        transactionRepository = mock(TransactionRepository.class);
+        entityManager = mock(EntityManager.class);
+        transactionExporter = new TransactionExporter(transactionRepository, entityManager,
+                mock(PlatformTransactionManager.class), new ObjectMapper());
+    }
+
+    @Test
+    @DisplayName("export transactions as ndjson and csv, detaching each row - transaction exporter test 📤")
+    void exportsNdjsonAndCsv() throws Exception {
+        var quoted = transaction(2);
+        quoted.setType(null);
+        quoted.setDescription("RENT, \"JANUARY\"");
+        when(transactionRepository.streamByAccountIdAndAccountingDateBetween(7L, java.sql.Date.valueOf(FROM), java.sql.Date.valueOf(TO)))
+                .thenAnswer(invocation -> Stream.of(transaction(1), quoted));
+
+        var ndjson = new ByteArrayOutputStream();
+        var csv = new ByteArrayOutputStream();
+        assertThat(transactionExporter.export(7L, FROM, TO, ExportFormat.NDJSON, ndjson)).isEqualTo(2);
+        assertThat(transactionExporter.export(7L, FROM, TO, ExportFormat.CSV, csv)).isEqualTo(2);
+
+        var lines = ndjson.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(2);
+        var first = new ObjectMapper().readTree(lines[0]);
+        assertThat(first.get("transactionId").asLong()).isEqualTo(1);
+        assertThat(first.get("accountingDate").asText()).isEqualTo("2024-01-01");
+        assertThat(first.get("type").get("enumeration").asText()).isEqualTo("GBS_TRANSACTION_TYPE");
+        assertThat(first.get("amount").decimalValue()).isEqualByComparingTo("-12.50");
+        assertThat(new ObjectMapper().readTree(lines[1]).get("type").isNull()).isTrue();
+        assertThat(csv.toString(StandardCharsets.UTF_8)).isEqualTo("""
+                transactionId,operationId,accountingDate,valueDate,type,amount,currency,description
+                1,1,2024-01-01,2024-01-01,"{""enumeration"":""GBS_TRANSACTION_TYPE""}",-12.50,EUR,RENT
+                2,2,2024-01-02,2024-01-02,,-12.50,EUR,"RENT, ""JANUARY\"""
+                """);
+        verify(entityManager, times(4)).detach(any(TransactionEntity.class));
+    }
+
+    @Test
+    @DisplayName("export a legacy type as a json string - transaction exporter test 📤")
+    void exportsLegacyTypeAsString() throws Exception {
+        var legacy = transaction(2);
+        legacy.setType("{enumeration=GBS_TRANSACTION_TYPE, value=GBS_ACCOUNT_TRANSACTION_TYPE_0050}");
+        when(transactionRepository.streamByAccountIdAndAccountingDateBetween(7L, java.sql.Date.valueOf(FROM), java.sql.Date.valueOf(TO)))
+                .thenAnswer(invocation -> Stream.of(transaction(1), legacy));
+
+        var ndjson = new ByteArrayOutputStream();
+        transactionExporter.export(7L, FROM, TO, ExportFormat.NDJSON, ndjson);
+
+        var lines = ndjson.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(new ObjectMapper().readTree(lines[0]).get("type").get("enumeration").asText()).isEqualTo("GBS_TRANSACTION_TYPE");
+        assertThat(new ObjectMapper().readTree(lines[1]).get("type").asText()).isEqualTo(legacy.getType());
+    }
+
+    @Test
+    @DisplayName("export 100k transactions in a 16 MB heap - transaction exporter test 📤")
+    void exportsInBoundedHeap() throws Exception {
+        var java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        var process = new ProcessBuilder(java, "-Xmx16m", "-cp", System.getProperty("java.class.path"),
+                BoundedHeapExport.class.getName(), String.valueOf(HEAP_TEST_ROWS))
+                .redirectErrorStream(true)
+                .start();
+        var output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+
+        assertThat(process.waitFor(5, TimeUnit.MINUTES)).isTrue();
+        assertThat(process.exitValue()).as(output).isZero();
+        assertThat(output).contains("EXPORTED ROWS " + HEAP_TEST_ROWS);
+    }
+
+    private static TransactionEntity transaction(long transactionId) {
+        var transactionEntity = new TransactionEntity();
+        transactionEntity.setAccountId(7L);
+        transactionEntity.setTransactionId(transactionId);
+        transactionEntity.setOperationId(transactionId);
+        var date = java.sql.Date.valueOf(FROM.plusDays((transactionId - 1) % 31));
+        transactionEntity.setAccountingDate(date);
+        transactionEntity.setValueDate(date);
+        transactionEntity.setType("{\"enumeration\":\"GBS_TRANSACTION_TYPE\"}");
+        transactionEntity.setAmount(new BigDecimal("-12.50"));
+        transactionEntity.setCurrency("EUR");
+        transactionEntity.setDescription("RENT");
+        return transactionEntity;
+    }
+
+    /**
+     * Exports generated rows to a byte counter in the small heap of a child JVM: neither the rows nor their 20 MB
+     * of output would fit in it if the exporter held on to them.
+     */
+    static class BoundedHeapExport {
+        public static void main(String[] args) throws Exception {
+            var rows = Long.parseLong(args[0]);
+            var transactionRepository = proxy(TransactionRepository.class, (proxy, method, arguments) ->
+                    method.getName().equals("streamByAccountIdAndAccountingDateBetween")
+                            ? LongStream.rangeClosed(1, rows).mapToObj(TransactionExporterTest::transaction)
+                            : null);
+            var bytes = new long[1];
+            var counter = new OutputStream() {
+                @Override
+                public void write(int b) {
+                    bytes[0]++;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    bytes[0] += len;
+                }
+            };
+
+            var exported = new TransactionExporter(transactionRepository, proxy(EntityManager.class, (proxy, method, arguments) -> null),
+                    proxy(PlatformTransactionManager.class, (proxy, method, arguments) -> null), new ObjectMapper())
+                    .export(7L, FROM, TO, ExportFormat.NDJSON, counter);
+            System.out.printf("EXPORTED ROWS %d BYTES %d MAX HEAP %d%n", exported, bytes[0], Runtime.getRuntime().maxMemory());
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, java.lang.reflect.InvocationHandler handler) {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+        }
+    }
+}
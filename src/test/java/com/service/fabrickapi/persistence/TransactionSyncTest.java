@@ -0,0 +1,155 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.persistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.service.fabrickapi.entity.AccountSyncStateEntity;
+import com.service.fabrickapi.entity.TransactionEntity;
+import com.service.fabrickapi.mapper.TransactionEntityRestMapper;
+import com.service.fabrickapi.model.rest.TransactionRest;
+import com.service.fabrickapi.repository.AccountSyncStateRepository;
+import com.service.fabrickapi.repository.TransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class TransactionSyncTest {
+
+    static final LocalDate TODAY = LocalDate.parse("2024-03-10");
+
+    Map<Long, AccountSyncStateEntity> states;
+    List<LocalDate[]> fetches;
+    TransactionRepository transactionRepository;
+    TransactionWriteBehind transactionWriteBehind;
+    TransactionSync transactionSync;
+
+    @BeforeEach
+    void setUp() {
+        states = new HashMap<>();
+        fetches = new ArrayList<>();
+        var accountSyncStateRepository = mock(AccountSyncStateRepository.class);
+        when(accountSyncStateRepository.findById(anyLong()))
+                .thenAnswer(invocation -> Optional.ofNullable(states.get(invocation.<Long>getArgument(0))));
+        when(accountSyncStateRepository.save(any())).thenAnswer(invocation -> {
+            AccountSyncStateEntity state = invocation.getArgument(0);
+            states.put(state.getAccountId(), state);
+            return state;
+        });
+        transactionRepository = mock(TransactionRepository.class);
+        transactionWriteBehind = mock(TransactionWriteBehind.class);
+        when(transactionWriteBehind.enqueue(anyLong(), anyList())).thenReturn(CompletableFuture.completedFuture(null));
+        transactionSync = new TransactionSync(accountSyncStateRepository, transactionRepository,
+                new TransactionEntityRestMapper(new ObjectMapper()), transactionWriteBehind, new SimpleMeterRegistry(),
+                Runnable::run, Clock.fixed(TODAY.atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC));
+    }
+
+    @Test
+    @DisplayName("stored ranges are read from the database, only the delta is fetched - transaction sync test 🔁")
+    void fetchesOnlyTheDelta() {
+        transactionSync.getTransactions(1L, day(1), TODAY, this::fetch);
+        assertThat(states.get(1L).getSyncedFrom()).isEqualTo(day(1));
+        assertThat(states.get(1L).getWatermark()).isEqualTo(day(9));
+
+        when(transactionRepository.findByAccountIdAndAccountingDateBetween(eq(1L), any(), any()))
+                .thenReturn(List.of(entity(3), entity(4)));
+        var local = transactionSync.getTransactions(1L, day(3), day(5), this::fetch);
+
+        assertThat(local).extracting(TransactionRest::transactionId).containsExactly(3L, 4L);
+        assertThat(fetches).hasSize(1);
+        verify(transactionRepository).findByAccountIdAndAccountingDateBetween(1L,
+                java.sql.Date.valueOf(day(3)), java.sql.Date.valueOf(day(5)));
+
+        transactionSync.getTransactions(1L, day(5), TODAY, this::fetch);
+
+        assertThat(fetches).hasSize(2);
+        assertThat(fetches.get(1)).containsExactly(TODAY, TODAY);
+        assertThat(states.get(1L).getWatermark()).isEqualTo(day(9));
+    }
+
+    @Test
+    @DisplayName("the stored range grows without holes and only after the transactions are stored - transaction sync test 🔁")
+    void advancesOnlyAfterStoring() {
+        transactionSync.getTransactions(1L, day(5), day(6), this::fetch);
+        when(transactionWriteBehind.enqueue(anyLong(), anyList()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("database down")));
+
+        var transactions = transactionSync.getTransactions(1L, day(1), day(2), this::fetch);
+
+        assertThat(fetches.get(1)).containsExactly(day(1), day(4));
+        assertThat(transactions).extracting(TransactionRest::transactionId).containsExactly(1L, 2L);
+        assertThat(states.get(1L).getSyncedFrom()).isEqualTo(day(5));
+        assertThat(states.get(1L).getWatermark()).isEqualTo(day(6));
+    }
+
+    private List<TransactionRest> fetch(LocalDate from, LocalDate to) {
+        fetches.add(new LocalDate[]{from, to});
+        return from.datesUntil(to.plusDays(1))
+                .map(date -> transaction(date.getDayOfMonth()))
+                .toList();
+    }
+
+    private static LocalDate day(int dayOfMonth) {
+        return TODAY.withDayOfMonth(dayOfMonth);
+    }
+
+    private static TransactionRest transaction(int dayOfMonth) {
+        var date = Date.from(day(dayOfMonth).atStartOfDay(ZoneOffset.UTC).toInstant());
+        return new TransactionRest((long) dayOfMonth, (long) dayOfMonth, date, date, null, BigDecimal.ONE, "EUR", "T");
+    }
+
+    private static TransactionEntity entity(int dayOfMonth) {
+        var transactionEntity = new TransactionEntity();
+        transactionEntity.setAccountId(1L);
+        transactionEntity.setTransactionId((long) dayOfMonth);
+        transactionEntity.setOperationId((long) dayOfMonth);
+        transactionEntity.setAccountingDate(java.sql.Date.valueOf(day(dayOfMonth)));
+        transactionEntity.setValueDate(java.sql.Date.valueOf(day(dayOfMonth)));
+        transactionEntity.setType("{\"enumeration\":\"GBS_TRANSACTION_TYPE\",\"value\":\"GBS_ACCOUNT_TRANSACTION_TYPE_0010\"}");
+        transactionEntity.setAmount(BigDecimal.ONE);
+        transactionEntity.setCurrency("EUR");
+        transactionEntity.setDescription("T");
+        return transactionEntity;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.persistence;
+
+import com.service.fabrickapi.configuration.PersistedFilterProperties;
+import com.service.fabrickapi.configuration.WriteBehindProperties;
+import com.service.fabrickapi.mapper.AccountTransactionSaveMapper;
+import com.service.fabrickapi.model.rest.TransactionRest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransactionWriteBehindTest {
+
+    List<List<Long>> batches;
+    CountDownLatch writerBlocked;
+    Long poison;
+    SimpleMeterRegistry meterRegistry;
+    AccountTransactionSaveMapper accountTransactionSaveMapper;
+
+    @BeforeEach
+    void setUp() {
+        batches = Collections.synchronizedList(new ArrayList<>());
+        writerBlocked = new CountDownLatch(0);
+        poison = null;
+        meterRegistry = new SimpleMeterRegistry();
+        accountTransactionSaveMapper = new AccountTransactionSaveMapper(null, null, null) {
+            @Override
+            public List<TransactionRest> apply(Long accountId, List<TransactionRest> transactionRests) {
+                try {
+                    if (Thread.currentThread().getName().equals("transactions-writer"))
+                        writerBlocked.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                var transactionIds = transactionRests.stream().map(TransactionRest::transactionId).toList();
+                if (transactionIds.contains(poison))
+                    throw new IllegalStateException("cannot store " + poison);
+                batches.add(transactionIds);
+                return transactionRests;
+            }
+        };
+    }
+
+    @Test
+    @DisplayName("enqueued transactions are written in batches and flushed on stop - write-behind test 📥")
+    void writesInBatchesAndFlushesOnStop() {
+        var writeBehind = writeBehind(100, 4);
+        writeBehind.start();
+        writerBlocked = new CountDownLatch(1);
+
+        writeBehind.enqueue(1L, transactions(1, 10));
+        var stored = writeBehind.enqueue(1L, transactions(11, 10));
+        assertThat(stored).isNotDone();
+        writerBlocked.countDown();
+        writeBehind.stop();
+
+        assertThat(stored).isCompleted();
+
+        assertThat(batches).allMatch(batch -> batch.size() <= 4);
+        assertThat(batches.stream().flatMap(List::stream)).containsExactlyElementsOf(LongStream.rangeClosed(1, 20).boxed().toList());
+        assertThat(meterRegistry.counter("fabrick.write-behind.written").count()).isEqualTo(20);
+        assertThat(meterRegistry.timer("fabrick.write-behind.lag").count()).isEqualTo(20);
+    }
+
+    @Test
+    @DisplayName("a full queue makes the caller write the rest itself - write-behind test 📥")
+    void callerRunsWhenFull() {
+        var writeBehind = writeBehind(5, 5);
+        writeBehind.start();
+        writerBlocked = new CountDownLatch(1);
+        writeBehind.enqueue(1L, transactions(1, 1));
+        while (meterRegistry.get("fabrick.write-behind.queue.depth").gauge().value() > 0)
+            Thread.onSpinWait();
+
+        writeBehind.enqueue(1L, transactions(2, 8));
+
+        assertThat(batches).containsExactly(List.of(7L, 8L, 9L));
+        assertThat(meterRegistry.counter("fabrick.write-behind.caller.runs").count()).isEqualTo(1);
+        writerBlocked.countDown();
+        writeBehind.stop();
+        assertThat(batches.stream().flatMap(List::stream)).hasSize(9);
+    }
+
+    @Test
+    @DisplayName("transactions still queued when the writer does not stop in time are written by stop - write-behind test 📥")
+    void flushesOnTheStoppingThread() {
+        var writeBehind = writeBehind(100, 4, Duration.ofMillis(100));
+        writeBehind.start();
+        writerBlocked = new CountDownLatch(1);
+        var inFlight = writeBehind.enqueue(1L, transactions(1, 1));
+        while (meterRegistry.get("fabrick.write-behind.queue.depth").gauge().value() > 0)
+            Thread.onSpinWait();
+        var queued = writeBehind.enqueue(1L, transactions(2, 10));
+
+        writeBehind.stop();
+
+        assertThat(queued).isCompleted();
+        assertThat(batches.stream().flatMap(List::stream)).containsExactlyElementsOf(LongStream.rangeClosed(2, 11).boxed().toList());
+        writerBlocked.countDown();
+        assertThat(inFlight).succeedsWithin(Duration.ofSeconds(5));
+    }
+
+    @Test
+    @DisplayName("a failed batch is written again one transaction at a time - write-behind test 📥")
+    void retriesFailedBatchOneByOne() {
+        var writeBehind = writeBehind(100, 10);
+        poison = 3L;
+        writerBlocked = new CountDownLatch(1);
+        writeBehind.start();
+        var failing = writeBehind.enqueue(1L, transactions(1, 3));
+        var stored = writeBehind.enqueue(1L, transactions(4, 3));
+        writerBlocked.countDown();
+        writeBehind.stop();
+
+        assertThat(stored).isCompleted();
+        assertThat(failing).isCompletedExceptionally();
+        assertThat(batches.stream().flatMap(List::stream)).containsExactly(1L, 2L, 4L, 5L, 6L);
+    }
+
+    private TransactionWriteBehind writeBehind(int capacity, int batchSize) {
+        return writeBehind(capacity, batchSize, Duration.ofSeconds(5));
+    }
+
+    private TransactionWriteBehind writeBehind(int capacity, int batchSize, Duration shutdownTimeout) {
+        return new TransactionWriteBehind(accountTransactionSaveMapper,
+                new WriteBehindProperties(true, capacity, batchSize, Duration.ofMillis(10), shutdownTimeout),
+                new PersistedTransactionFilter(null, null, new PersistedFilterProperties(0.01, 1000, 64), meterRegistry),
+                meterRegistry);
+    }
+
+    private static List<TransactionRest> transactions(long first, int count) {
+        return LongStream.range(first, first + count)
+                .mapToObj(id -> new TransactionRest(id, id, new Date(), new Date(), null, BigDecimal.ONE, "EUR", "T" + id))
+                .toList();
+    }
+}
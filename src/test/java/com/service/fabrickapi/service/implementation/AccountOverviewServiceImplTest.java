@@ -0,0 +1,107 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.service.implementation;
+
+import com.service.fabrickapi.configuration.OverviewProperties;
+import com.service.fabrickapi.exception.AccountServiceException;
+import com.service.fabrickapi.model.rest.AccountBalanceRest;
+import com.service.fabrickapi.model.rest.TransactionRest;
+import com.service.fabrickapi.service.AccountService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.mockito.stubbing.Answer;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.List;
+
+import static com.service.fabrickapi.model.error.ErrorMessages.GATEWAY_TIMEOUT_ERROR;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+class AccountOverviewServiceImplTest {
+
+    @InjectMocks
+    AccountOverviewServiceImpl accountOverviewService;
+    @Mock
+    AccountService accountService;
+    @Spy
+    OverviewProperties overviewProperties = new OverviewProperties(30, Duration.ofMillis(500));
+    AccountBalanceRest accountBalanceRest;
+    TransactionRest transactionRest;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        accountBalanceRest = new AccountBalanceRest(14537780L, "IT40L0326822300052849400440", 3268L, 22300L, "IT",
+                40, "L", 52849400440L, "", "Conto Websella", "LUCA TERRIBILE", new Date(), "EUR");
+        transactionRest = new TransactionRest(1331714087L, 1331714087L, new Date(), new Date(), null,
+                BigDecimal.valueOf(-800), "EUR", "BA JOHN DOE PAYMENT INVOICE 75/2017");
+    }
+
+    @Test
+    @DisplayName("fetch balance and last 30 days of transactions concurrently - account overview service test 🧭")
+    void getAccountOverview() {
+        var today = LocalDate.now();
+        when(accountService.getAccountBalance(14537780L)).thenAnswer(after(200, accountBalanceRest));
+        when(accountService.getAccountTransactions(14537780L, today.minusDays(30).toString(), today.toString(), null))
+                .thenAnswer(after(200, List.of(transactionRest)));
+
+        long started = System.nanoTime();
+        var overview = accountOverviewService.getAccountOverview(14537780L, null, null, null);
+
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofMillis(390));
+        assertThat(overview.balance()).isEqualTo(accountBalanceRest);
+        assertThat(overview.transactions()).containsExactly(transactionRest);
+    }
+
+    @Test
+    @DisplayName("fail with a 504 past the deadline - account overview service test 🧭")
+    void getAccountOverviewTimesOut() {
+        when(accountService.getAccountBalance(anyLong())).thenAnswer(after(5_000, accountBalanceRest));
+        when(accountService.getAccountTransactions(14537780L, "2019-01-01", "2019-12-01", 5))
+                .thenReturn(List.of(transactionRest));
+
+        var thrown = assertThrows(AccountServiceException.class,
+                () -> accountOverviewService.getAccountOverview(14537780L, "2019-01-01", "2019-12-01", 5));
+        assertThat(thrown.getMessage()).isEqualTo(GATEWAY_TIMEOUT_ERROR.getMessage());
+    }
+
+    private static <T> Answer<T> after(long millis, T value) {
+        return invocation -> {
+            Thread.sleep(millis);
+            return value;
+        };
+    }
+}
@@ -26,30 +26,55 @@
 
 package com.service.fabrickapi.service.implementation;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.service.fabrickapi.cache.AccountBalanceBatchLoader;
+import com.service.fabrickapi.cache.TransactionRangeCache;
+import com.service.fabrickapi.configuration.CachingProperties;
+import com.service.fabrickapi.configuration.HistoryProperties;
+import com.service.fabrickapi.configuration.TransactionsProperties;
+import com.service.fabrickapi.configuration.ExecutorProperties;
+import com.service.fabrickapi.configuration.ServiceExecutors;
+import com.service.fabrickapi.entity.TransactionEntity;
 import com.service.fabrickapi.exception.AccountServiceException;
 import com.service.fabrickapi.mapper.AccountBalancerRestMapper;
-import com.service.fabrickapi.mapper.AccountTransactionSaveMapper;
+import com.service.fabrickapi.mapper.TransactionEntityRestMapper;
 import com.service.fabrickapi.mapper.TransactionRestMapper;
 import com.service.fabrickapi.model.dto.AccountBalanceDTO;
 import com.service.fabrickapi.model.dto.TransactionDTO;
 import com.service.fabrickapi.model.rest.AccountBalanceRest;
+import com.service.fabrickapi.model.rest.AccountBalanceResultRest;
 import com.service.fabrickapi.model.rest.TransactionRest;
+import com.service.fabrickapi.persistence.ExportFormat;
+import com.service.fabrickapi.persistence.TransactionExporter;
+import com.service.fabrickapi.persistence.TransactionSync;
+import com.service.fabrickapi.repository.TransactionRepository;
 import com.service.fabrickapi.service.FabrickRestService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.data.domain.Limit;
 
+import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+import java.util.stream.LongStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
@@ -64,7 +89,27 @@ class AccountServiceImplTest {
     @Mock
     TransactionRestMapper transactionRestMapper;
     @Mock
-    AccountTransactionSaveMapper accountTransactionSaveMapper;
+    TransactionSync transactionSync;
+    @Mock
+    TransactionRepository transactionRepository;
+    @Mock
+    TransactionExporter transactionExporter;
+    @Mock
+    AccountBalanceBatchLoader accountBalanceBatchLoader;
+    @Spy
+    TransactionEntityRestMapper transactionEntityRestMapper = new TransactionEntityRestMapper(new ObjectMapper());
+    @Spy
+    HistoryProperties historyProperties = new HistoryProperties(2, 3, Duration.ofSeconds(1));
+    @Spy
+    TransactionsProperties transactionsProperties = new TransactionsProperties(30, 3, Duration.ofSeconds(10));
+    @Spy
+    ServiceExecutors serviceExecutors = new ServiceExecutors(new ExecutorProperties(
+            new ExecutorProperties.Cpu(2, 100, 2), new ExecutorProperties.Io(8)), new SimpleMeterRegistry());
+    @Spy
+    TransactionRangeCache transactionRangeCache = new TransactionRangeCache(new CachingProperties(
+            new CachingProperties.Spec(100, Duration.ofMinutes(5), null),
+            new CachingProperties.Spec(1000, Duration.ofMinutes(5), null),
+            new CachingProperties.Spec(1000, Duration.ofMinutes(5), null)), serviceExecutors);
     AccountBalanceDTO accountBalanceDTO;
     AccountBalanceRest accountBalanceRest;
     Date activatedDate;
@@ -179,14 +224,32 @@ class AccountServiceImplTest {
         verify(fabrickRestService, times(1)).getAccountBalance(anyLong());
     }
 
+    @Test
+    @DisplayName("get the balances of distinct accounts and reject empty or oversized batches - transfer service test 🏗️")
+    void getAccountBalances() {
+        var results = List.of(new AccountBalanceResultRest(2L, accountBalanceRest, null),
+                new AccountBalanceResultRest(1L, accountBalanceRest, null));
+        when(accountBalanceBatchLoader.maxAccounts()).thenReturn(2);
+        when(accountBalanceBatchLoader.getAccountBalances(List.of(2L, 1L))).thenReturn(results);
+
+        assertThat(accountService.getAccountBalances(List.of(2L, 1L, 2L))).isEqualTo(results);
+        assertThrows(AccountServiceException.class, () -> accountService.getAccountBalances(List.of()));
+        assertThrows(AccountServiceException.class, () -> accountService.getAccountBalances(List.of(1L, 2L, 3L)));
+
+        verify(accountBalanceBatchLoader, times(1)).getAccountBalances(anyList());
+    }
+
     @Test
     @DisplayName("get account transactions - transfer service test 🏗️")
+    @SuppressWarnings("unchecked")
     void getAccountTransactions() {
+        when(transactionSync.getTransactions(anyLong(), any(), any(), any())).thenAnswer(invocation ->
+                invocation.<BiFunction<LocalDate, LocalDate, List<TransactionRest>>>getArgument(3)
+                        .apply(invocation.getArgument(1), invocation.getArgument(2)));
         when(fabrickRestService.getAccountTransactions(anyLong(), anyString(), anyString())).thenReturn(Optional.of(List.of(transactionDTO)));
         when(transactionRestMapper.apply(any(TransactionDTO.class))).thenReturn(transactionRest);
-        when(accountTransactionSaveMapper.apply(any(TransactionRest.class))).thenReturn(transactionRest);
 
-        var transactionRests = accountService.getAccountTransactions(1L, "2019-11-01", "2019-12-29");
+        var transactionRests = accountService.getAccountTransactions(1L, "2019-11-01", "2019-12-29", null);
 
         assertThat(transactionRests).isNotEmpty();
         assertThat(transactionRests.getFirst().transactionId()).isEqualTo(123456789L);
@@ -199,7 +262,22 @@ class AccountServiceImplTest {
 
         verify(fabrickRestService, times(1)).getAccountTransactions(anyLong(), anyString(), anyString());
         verify(transactionRestMapper, times(1)).apply(any(TransactionDTO.class));
-        verify(accountTransactionSaveMapper, times(1)).apply(any(TransactionRest.class));
+        verify(transactionSync, times(1)).getTransactions(eq(1L), eq(LocalDate.parse("2019-11-01")), eq(LocalDate.parse("2019-12-29")), any());
+    }
+
+    @Test
+    @DisplayName("get the most recent transactions up to the maximum limit - transfer service test 🏗️")
+    void getAccountTransactionsLimited() {
+        var fetched = LongStream.rangeClosed(1, 5)
+                .mapToObj(id -> new TransactionRest(id, id, utcDate(LocalDate.of(2019, 11, (int) (id + 1) / 2)),
+                        utcDate(LocalDate.of(2019, 11, 1)), null, BigDecimal.ONE, "EUR", "Sample Transaction"))
+                .toList();
+        when(transactionSync.getTransactions(anyLong(), any(), any(), any())).thenReturn(fetched);
+
+        assertThat(accountService.getAccountTransactions(1L, "2019-11-01", "2019-11-30", 2))
+                .extracting(TransactionRest::transactionId).containsExactly(5L, 4L);
+        assertThat(accountService.getAccountTransactions(1L, "2019-11-01", "2019-11-30", 10))
+                .extracting(TransactionRest::transactionId).containsExactly(5L, 4L, 3L);
     }
 
     @Test
@@ -213,4 +291,79 @@ class AccountServiceImplTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("get account transactions with an invalid date range - transfer service test 🏗️")
+    void getAccountTransactionsInvalidRange() {
+        assertThrows(AccountServiceException.class, () -> accountService.getAccountTransactions(1L, "2019-12-29", "2019-11-01", null));
+        assertThrows(AccountServiceException.class, () -> accountService.getAccountTransactions(1L, "29/12/2019", "2019-12-31", null));
+        assertThrows(AccountServiceException.class, () -> accountService.getAccountTransactions(1L, "2019-11-01", "2019-12-31", 0));
+
+        verifyNoInteractions(fabrickRestService);
+    }
+
+    @Test
+    @DisplayName("page through the transaction history with the returned cursor - transfer service test 🏗️")
+    void getTransactionHistory() {
+        when(transactionSync.sync(anyLong(), any(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        var stored = LongStream.rangeClosed(1, 5).mapToObj(AccountServiceImplTest::transactionEntity).toList().reversed();
+        var from = java.sql.Date.valueOf("2019-11-01");
+        var to = java.sql.Date.valueOf("2019-11-30");
+        when(transactionRepository.findByAccountIdAndAccountingDateBetweenOrderByAccountingDateDescValueDateDescTransactionIdDesc(
+                1L, from, to, Limit.of(4))).thenReturn(stored.subList(0, 4));
+        when(transactionRepository.findPageAfter(1L, from, to, java.sql.Date.valueOf("2019-11-03"),
+                java.sql.Date.valueOf("2019-11-03"), 3L, Limit.of(4))).thenReturn(stored.subList(3, 5));
+
+        var first = accountService.getTransactionHistory(1L, "2019-11-01", "2019-11-30", 10, null);
+        var second = accountService.getTransactionHistory(1L, "2019-11-01", "2019-11-30", 10, first.nextCursor());
+
+        assertThat(first.transactions()).extracting(TransactionRest::transactionId).containsExactly(5L, 4L, 3L);
+        assertThat(second.transactions()).extracting(TransactionRest::transactionId).containsExactly(2L, 1L);
+        assertThat(second.nextCursor()).isNull();
+        verify(transactionSync, times(1)).sync(eq(1L), eq(LocalDate.parse("2019-11-01")), eq(LocalDate.parse("2019-11-30")), any());
+    }
+
+    @Test
+    @DisplayName("get the transaction history with an invalid page size or cursor - transfer service test 🏗️")
+    void getTransactionHistoryInvalidRequest() {
+        assertThrows(AccountServiceException.class, () -> accountService.getTransactionHistory(1L, "2019-11-01", "2019-11-30", 0, null));
+        assertThrows(AccountServiceException.class, () -> accountService.getTransactionHistory(1L, "2019-11-01", "2019-11-30", 10, "not a cursor"));
+
+        verifyNoInteractions(transactionRepository);
+    }
+
+    @Test
+    @DisplayName("export transactions only once the body is written - transfer service test 🏗️")
+    void exportTransactions() throws Exception {
+        when(transactionSync.sync(anyLong(), any(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        var export = accountService.exportTransactions(1L, "2019-11-01", "2019-11-30", "CSV");
+
+        assertThat(export.format()).isEqualTo(ExportFormat.CSV);
+        assertThat(export.fileName()).isEqualTo("transactions-1-2019-11-01-2019-11-30.csv");
+        verify(transactionSync, times(1)).sync(eq(1L), eq(LocalDate.parse("2019-11-01")), eq(LocalDate.parse("2019-11-30")), any());
+        verifyNoInteractions(transactionExporter);
+        var outputStream = new ByteArrayOutputStream();
+        export.body().writeTo(outputStream);
+        verify(transactionExporter, times(1)).export(1L, LocalDate.parse("2019-11-01"), LocalDate.parse("2019-11-30"),
+                ExportFormat.CSV, outputStream);
+        assertThrows(AccountServiceException.class, () -> accountService.exportTransactions(1L, "2019-11-01", "2019-11-30", "xml"));
+    }
+
+    private static Date utcDate(LocalDate date) {
+        return Date.from(date.atStartOfDay(ZoneOffset.UTC).toInstant());
+    }
+
+    private static TransactionEntity transactionEntity(long transactionId) {
+        var transactionEntity = new TransactionEntity();
+        transactionEntity.setAccountId(1L);
+        transactionEntity.setTransactionId(transactionId);
+        transactionEntity.setOperationId(transactionId);
+        transactionEntity.setAccountingDate(java.sql.Date.valueOf(LocalDate.of(2019, 11, (int) transactionId)));
+        transactionEntity.setValueDate(java.sql.Date.valueOf(LocalDate.of(2019, 11, (int) transactionId)));
+        transactionEntity.setType("{\"enumeration\":\"GBS_TRANSACTION_TYPE\",\"value\":\"GBS_ACCOUNT_TRANSACTION_TYPE_0050\"}");
+        transactionEntity.setAmount(BigDecimal.ONE);
+        transactionEntity.setCurrency("EUR");
+        transactionEntity.setDescription("Sample Transaction");
+        return transactionEntity;
+    }
+}
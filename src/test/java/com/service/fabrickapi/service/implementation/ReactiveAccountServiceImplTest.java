@@ -0,0 +1,139 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.service.implementation;
+
+import com.service.fabrickapi.configuration.TransactionsProperties;
+import com.service.fabrickapi.configuration.ExecutorProperties;
+import com.service.fabrickapi.configuration.ServiceExecutors;
+import com.service.fabrickapi.exception.AccountServiceException;
+import com.service.fabrickapi.mapper.AccountBalancerRestMapper;
+import com.service.fabrickapi.mapper.TransactionRestMapper;
+import com.service.fabrickapi.model.dto.AccountBalanceDTO;
+import com.service.fabrickapi.model.dto.TransactionDTO;
+import com.service.fabrickapi.model.rest.AccountBalanceRest;
+import com.service.fabrickapi.model.rest.TransactionRest;
+import com.service.fabrickapi.persistence.TransactionWriteBehind;
+import com.service.fabrickapi.service.ReactiveFabrickRestService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class ReactiveAccountServiceImplTest {
+
+    @InjectMocks
+    ReactiveAccountServiceImpl reactiveAccountService;
+    @Mock
+    ReactiveFabrickRestService reactiveFabrickRestService;
+    @Mock
+    AccountBalancerRestMapper accountBalancerRestMapper;
+    @Mock
+    TransactionRestMapper transactionRestMapper;
+    @Mock
+    TransactionWriteBehind transactionWriteBehind;
+    @Spy
+    TransactionsProperties transactionsProperties = new TransactionsProperties(30, 1000, Duration.ofSeconds(10));
+    @Spy
+    ServiceExecutors serviceExecutors = new ServiceExecutors(new ExecutorProperties(
+            new ExecutorProperties.Cpu(2, 100, 2), new ExecutorProperties.Io(8)), new SimpleMeterRegistry());
+    AccountBalanceDTO accountBalanceDTO;
+    AccountBalanceRest accountBalanceRest;
+    TransactionDTO transactionDTO;
+    TransactionRest transactionRest;
+
+    @BeforeEach
+    void setUp() {
+        var date = new Date();
+
+        accountBalanceDTO = new AccountBalanceDTO("1234567890", "IT12345678901234567890", "12345", "67890", "IT",
+                "123", "ABC123", "987654321", "MyAlias", "Savings Account", "John Doe", "2022-01-29", "EUR");
+        accountBalanceRest = new AccountBalanceRest(1234567890L, "IT12345678901234567890", 12345L, 67890L, "IT",
+                123, "ABC123", 987654321L, "MyAlias", "Savings Account", "John Doe", date, "EUR");
+        transactionDTO = new TransactionDTO("123456789", "987654321", date, date, new Object(),
+                BigDecimal.valueOf(500.50), "EUR", "Sample Transaction");
+        transactionRest = new TransactionRest(123456789L, 987654321L, date, date, new Object(),
+                BigDecimal.valueOf(500.50), "EUR", "Sample Transaction");
+
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    @DisplayName("get account balance - reactive account service test 🏗️")
+    void getAccountBalance() {
+        when(reactiveFabrickRestService.getAccountBalance(anyLong())).thenReturn(Mono.just(accountBalanceDTO));
+        when(accountBalancerRestMapper.apply(any(AccountBalanceDTO.class))).thenReturn(accountBalanceRest);
+
+        var returnValue = reactiveAccountService.getAccountBalance(1L).block();
+
+        assertThat(returnValue).isEqualTo(accountBalanceRest);
+        verify(reactiveFabrickRestService, times(1)).getAccountBalance(anyLong());
+    }
+
+    @Test
+    @DisplayName("get account balance for non-existing user and receive error - reactive account service test 🏗️")
+    void getAccountBalanceThrowsError() {
+        when(reactiveFabrickRestService.getAccountBalance(anyLong())).thenReturn(Mono.empty());
+
+        assertThrows(AccountServiceException.class, () -> reactiveAccountService.getAccountBalance(1L).block());
+        verify(accountBalancerRestMapper, never()).apply(any(AccountBalanceDTO.class));
+    }
+
+    @Test
+    @DisplayName("get account transactions - reactive account service test 🏗️")
+    void getAccountTransactions() {
+        when(reactiveFabrickRestService.getAccountTransactions(anyLong(), anyString(), anyString()))
+                .thenReturn(Mono.just(List.of(transactionDTO)));
+        when(transactionRestMapper.apply(any(TransactionDTO.class))).thenReturn(transactionRest);
+
+        var transactionRests = reactiveAccountService.getAccountTransactions(1L, "2019-11-01", "2019-12-29", null).block();
+
+        assertThat(transactionRests).containsExactly(transactionRest);
+        verify(transactionWriteBehind, times(1)).enqueue(1L, List.of(transactionRest));
+    }
+
+    @Test
+    @DisplayName("get account transactions with an invalid limit - reactive account service test 🏗️")
+    void getAccountTransactionsInvalidLimit() {
+        assertThrows(AccountServiceException.class,
+                () -> reactiveAccountService.getAccountTransactions(1L, "2019-11-01", "2019-12-29", 0).block());
+        verifyNoInteractions(reactiveFabrickRestService);
+    }
+}
@@ -120,10 +120,10 @@ class TransferServiceImplTest {
     @Test
     @DisplayName("transfer loan - transfer service test 🏗️")
     void transferLoan() {
-        when(fabrickRestService.executeTransfer(anyLong(), any(LoanTransferRequest.class))).thenReturn(Optional.ofNullable(loanTransferDTO));
+        when(fabrickRestService.executeTransfer(anyLong(), any(LoanTransferRequest.class), eq("transfer-1"))).thenReturn(Optional.ofNullable(loanTransferDTO));
         when(loanTransferRestMapper.apply(any(LoanTransferDTO.class))).thenReturn(loanTransferRest);
 
-        LoanTransferRest returnValue = transferService.transferLoan(ACCOUNT_ID, loanTransferRequest);
+        LoanTransferRest returnValue = transferService.transferLoan(ACCOUNT_ID, loanTransferRequest, "transfer-1");
 
         assertThat(returnValue).isNotNull();
         assertThat(returnValue.moneyTransferId()).isEqualTo(12345L);
@@ -139,7 +139,7 @@ class TransferServiceImplTest {
         assertThat(returnValue.isUrgent()).isEqualTo(true);
         assertThat(returnValue.isInstant()).isEqualTo(false);
 
-        verify(fabrickRestService, times(1)).executeTransfer(anyLong(), any(LoanTransferRequest.class));
+        verify(fabrickRestService, times(1)).executeTransfer(anyLong(), any(LoanTransferRequest.class), eq("transfer-1"));
         verify(loanTransferRestMapper, times(1)).apply(any(LoanTransferDTO.class));
 
     }
@@ -147,12 +147,12 @@ class TransferServiceImplTest {
     @Test
     @DisplayName("make a loan transfer for non-existing user and receive error - transfer service test 🏗️")
     void transferLoanThrowsException() {
-        when(fabrickRestService.executeTransfer(anyLong(), any(LoanTransferRequest.class))).thenReturn(Optional.empty());
+        when(fabrickRestService.executeTransfer(anyLong(), any(LoanTransferRequest.class), isNull())).thenReturn(Optional.empty());
         when(loanTransferRestMapper.apply(any(LoanTransferDTO.class))).thenReturn(null);
 
-        assertThrows(TransferServiceException.class, () -> transferService.transferLoan(ACCOUNT_ID + 1, loanTransferRequest));
+        assertThrows(TransferServiceException.class, () -> transferService.transferLoan(ACCOUNT_ID + 1, loanTransferRequest, null));
 
-        verify(fabrickRestService, times(1)).executeTransfer(anyLong(), any(LoanTransferRequest.class));
+        verify(fabrickRestService, times(1)).executeTransfer(anyLong(), any(LoanTransferRequest.class), isNull());
     }
 
 }
\ No newline at end of file
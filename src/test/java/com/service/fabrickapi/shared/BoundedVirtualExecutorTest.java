@@ -0,0 +1,87 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.shared;
+
+import com.service.fabrickapi.configuration.ServiceExecutors;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BoundedVirtualExecutorTest {
+
+    @Test
+    @DisplayName("run at most max concurrency tasks, counting the others as queued - bounded virtual executor test 🧵")
+    void boundsConcurrency() throws Exception {
+        var executor = new BoundedVirtualExecutor("test-io-", 2);
+        var release = new CountDownLatch(1);
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+        var threadNames = new ConcurrentLinkedQueue<String>();
+
+        for (int i = 0; i < 10; i++) {
+            executor.execute(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                threadNames.add(Thread.currentThread().getName());
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+            });
+        }
+        while (executor.getActiveCount() < 2 || executor.getQueuedCount() < 8)
+            Thread.onSpinWait();
+
+        assertThat(executor.getActiveCount()).isEqualTo(2);
+        assertThat(executor.getQueuedCount()).isEqualTo(8);
+        release.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(maxRunning.get()).isEqualTo(2);
+        assertThat(executor.getActiveCount()).isZero();
+        assertThat(threadNames).hasSize(10).allMatch(name -> name.startsWith("test-io-"));
+    }
+
+    @Test
+    @DisplayName("invokeAll nested in tasks holding every permit completes - bounded virtual executor test 🧵")
+    void nestedInvokeAllDoesNotStarve() throws Exception {
+        var executor = new BoundedVirtualExecutor("test-io-", 2);
+        var outer = CompletableFuture.supplyAsync(() -> ServiceExecutors.invokeAll(List.of(1, 2, 3, 4),
+                gap -> ServiceExecutors.invokeAll(List.of(gap * 10, gap * 10 + 1), range -> range, executor), executor));
+
+        assertThat(outer.get(5, TimeUnit.SECONDS)).containsExactly(
+                List.of(10, 11), List.of(20, 21), List.of(30, 31), List.of(40, 41));
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.shared;
+
+import com.service.fabrickapi.exception.AccountServiceException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FailFastScopeTest {
+
+    @Test
+    @DisplayName("run the subtasks concurrently and return their results - fail fast scope test 🪢")
+    void joinsConcurrentSubtasks() throws Exception {
+        long started = System.nanoTime();
+        try (var scope = new FailFastScope("test-scope-")) {
+            var first = scope.fork(() -> sleepThen(200, "first"));
+            var second = scope.fork(() -> sleepThen(200, "second"));
+            scope.join(Duration.ofSeconds(5));
+
+            assertThat(first.get()).isEqualTo("first");
+            assertThat(second.get()).isEqualTo("second");
+        }
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofMillis(390));
+    }
+
+    @Test
+    @DisplayName("interrupt the sibling and rethrow the first failure - fail fast scope test 🪢")
+    void failureCancelsSibling() throws Exception {
+        var siblingInterrupted = new CountDownLatch(1);
+        try (var scope = new FailFastScope("test-scope-")) {
+            scope.fork(() -> {
+                try {
+                    return sleepThen(10_000, "late");
+                } catch (InterruptedException e) {
+                    siblingInterrupted.countDown();
+                    throw e;
+                }
+            });
+            scope.fork(() -> {
+                throw new AccountServiceException("404 Record Not Found");
+            });
+
+            var thrown = assertThrows(AccountServiceException.class, () -> scope.join(Duration.ofSeconds(5)));
+            assertThat(thrown.getMessage()).isEqualTo("404 Record Not Found");
+        }
+        assertThat(siblingInterrupted.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    @DisplayName("time out at the deadline and interrupt the subtasks still running - fail fast scope test 🪢")
+    void deadlineCancelsSubtasks() throws Exception {
+        var interrupted = new CountDownLatch(1);
+        try (var scope = new FailFastScope("test-scope-")) {
+            scope.fork(() -> sleepThen(50, "fast"));
+            scope.fork(() -> {
+                try {
+                    return sleepThen(10_000, "slow");
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw e;
+                }
+            });
+
+            assertThrows(TimeoutException.class, () -> scope.join(Duration.ofMillis(200)));
+        }
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    @DisplayName("keep the deadline when a subtask returns before the next one is forked - fail fast scope test 🪢")
+    void immediateSubtaskKeepsDeadline() throws Exception {
+        var interrupted = new CountDownLatch(1);
+        long started = System.nanoTime();
+        try (var scope = new FailFastScope("test-scope-")) {
+            var cached = scope.fork(() -> "cached");
+            assertThat(cached.get()).isEqualTo("cached");
+            scope.fork(() -> {
+                try {
+                    return sleepThen(10_000, "slow");
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw e;
+                }
+            });
+
+            assertThrows(TimeoutException.class, () -> scope.join(Duration.ofMillis(100)));
+        }
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isGreaterThanOrEqualTo(Duration.ofMillis(100));
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    @DisplayName("rethrow the exception of a failed subtask as is when its result is read - fail fast scope test 🪢")
+    void resultRethrowsCause() throws Exception {
+        try (var scope = new FailFastScope("test-scope-")) {
+            var failed = scope.fork(() -> {
+                throw new AccountServiceException("404 Record Not Found");
+            });
+            assertThrows(AccountServiceException.class, () -> scope.join(Duration.ofSeconds(5)));
+
+            var thrown = assertThrows(AccountServiceException.class, failed::get);
+            assertThat(thrown.getMessage()).isEqualTo("404 Record Not Found");
+        }
+    }
+
+    private static String sleepThen(long millis, String result) throws InterruptedException {
+        Thread.sleep(millis);
+        return result;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.shared;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TopKTest {
+
+    @Test
+    @DisplayName("keep the first k elements in order, sequentially and in parallel - top k test 🏆")
+    void keepsTheFirstElements() {
+        var values = new Random(42).ints(100_000, 0, 1_000_000).boxed().toList();
+        var expected = values.stream().sorted(Comparator.reverseOrder()).limit(30).toList();
+
+        assertThat(values.stream().collect(TopK.first(30, Comparator.reverseOrder()))).isEqualTo(expected);
+        assertThat(values.parallelStream().collect(TopK.first(30, Comparator.reverseOrder()))).isEqualTo(expected);
+    }
+
+    @Test
+    @DisplayName("rank a long list in chunks on an executor - top k test 🏆")
+    void ranksInChunks() throws Exception {
+        var values = new Random(7).ints(10_001, 0, 1_000_000).boxed().toList();
+        var expected = values.stream().sorted().limit(25).toList();
+
+        try (var executor = Executors.newFixedThreadPool(4)) {
+            assertThat(TopK.first(values, 25, Comparator.<Integer>naturalOrder(), 1_000, executor).get()).isEqualTo(expected);
+            assertThat(TopK.first(values, 25, Comparator.<Integer>naturalOrder(), 20_000, executor).get()).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    @DisplayName("return fewer elements than k, or none for k zero - top k test 🏆")
+    void handlesShortStreams() {
+        assertThat(IntStream.of(3, 1, 2).boxed().collect(TopK.first(10, Comparator.naturalOrder())))
+                .containsExactly(1, 2, 3);
+        assertThat(IntStream.of(3, 1, 2).boxed().collect(TopK.first(0, Comparator.naturalOrder()))).isEmpty();
+        assertThat(List.<Integer>of().stream().collect(TopK.first(5, Comparator.naturalOrder()))).isEmpty();
+    }
+}
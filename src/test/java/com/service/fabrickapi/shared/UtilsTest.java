@@ -0,0 +1,106 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.shared;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.service.fabrickapi.configuration.Credentials;
+import com.service.fabrickapi.exception.AccountServiceException;
+import com.service.fabrickapi.exception.FabrickRestServiceException;
+import com.service.fabrickapi.model.dto.AccountBalanceDTO;
+import com.service.fabrickapi.model.dto.TransactionDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class UtilsTest {
+
+    private static final String BALANCE = """
+            {"status":"OK","error":[{"code":"n/a","description":{"nested":[1,2]}}],
+             "payload":{"accountId":"14537780","iban":"IT40L0326822300052849400440","abiCode":"03268",
+             "cabCode":"22300","countryCode":"IT","internationalCin":"40","nationalCin":"L",
+             "account":"52849400440","alias":"","productName":"Conto Websella","holderName":"LUCA TERRIBILE",
+             "activatedDate":"2016-12-14","currency":"EUR"},
+             "trailer":{"ignored":true}}
+            """;
+    private static final String TRANSACTIONS = """
+            {"status":"OK","error":[],"payload":{"count":1,"list":[
+             {"transactionId":"1331714087","operationId":"00000000273015","accountingDate":"2019-04-01",
+              "valueDate":"2019-04-01","type":{"enumeration":"GBS_TRANSACTION_TYPE","value":"GBS_ACCOUNT_TRANSACTION_TYPE_0010"},
+              "amount":-800,"currency":"EUR","description":"BA JOHN DOE PAYMENT INVOICE 75/2017"}]}}
+            """;
+
+    Utils utils;
+
+    @BeforeEach
+    void setUp() {
+        utils = new Utils(new Credentials("http://localhost", "S2S", "key", "/balance", "/transactions", "/transfers"),
+                new RestTemplate(), new ObjectMapper());
+    }
+
+    @Test
+    @DisplayName("decode payload from a stream, skipping the surrounding fields - utils test 🧰")
+    void fromJsonStream() throws IOException {
+        var balance = utils.fromJson(stream(BALANCE), AccountBalanceDTO.class);
+
+        assertThat(balance.accountId()).isEqualTo("14537780");
+        assertThat(balance.holderName()).isEqualTo("LUCA TERRIBILE");
+        assertThat(balance.currency()).isEqualTo("EUR");
+    }
+
+    @Test
+    @DisplayName("decode payload list from a stream and from a string - utils test 🧰")
+    void fromJsonList() throws IOException {
+        List<TransactionDTO> streamed = utils.fromJsonList(stream(TRANSACTIONS), TransactionDTO.class);
+        List<TransactionDTO> parsed = utils.fromJson(TRANSACTIONS, List.class, TransactionDTO.class);
+
+        assertThat(streamed).hasSize(1);
+        assertThat(streamed.getFirst().transactionId()).isEqualTo("1331714087");
+        assertThat(streamed.getFirst().amount()).isEqualTo(BigDecimal.valueOf(-800));
+        assertThat(parsed).isEqualTo(streamed);
+    }
+
+    @Test
+    @DisplayName("null payload, missing payload and invalid json - utils test 🧰")
+    void fromJsonEdgeCases() throws IOException {
+        assertThat(utils.fromJson(stream("{\"status\":\"OK\",\"payload\":null}"), AccountBalanceDTO.class)).isNull();
+        assertThrows(AccountServiceException.class, () -> utils.fromJson("{\"status\":\"KO\"}", AccountBalanceDTO.class));
+        assertThrows(AccountServiceException.class, () -> utils.fromJsonList(stream("{\"payload\":{}}"), TransactionDTO.class));
+        assertThrows(FabrickRestServiceException.class, () -> utils.fromJson(stream("{\"payload\":{"), AccountBalanceDTO.class));
+    }
+
+    private static ByteArrayInputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.shared;
+
+import com.service.fabrickapi.configuration.VirtualThreadProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VirtualThreadPinningMonitorTest {
+    private final Object monitor = new Object();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    @Test
+    @DisplayName("report virtual threads sleeping in a synchronized block, not under a lock - pinning monitor test 📌")
+    void reportsPinnedThreads() throws Exception {
+        var meterRegistry = new SimpleMeterRegistry();
+        try (var pinningMonitor = new VirtualThreadPinningMonitor(
+                new VirtualThreadProperties(Duration.ofMillis(10)), meterRegistry)) {
+            Thread.ofVirtual().start(this::sleepUnderLock).join();
+            Thread.ofVirtual().start(this::sleepInMonitor).join();
+
+            long deadline = System.nanoTime() + Duration.ofSeconds(20).toNanos();
+            while (meterRegistry.find("fabrick.virtual-threads.pinned").timer() == null && System.nanoTime() < deadline)
+                Thread.sleep(50);
+        }
+
+        assertThat(meterRegistry.find("fabrick.virtual-threads.pinned").timers())
+                .singleElement()
+                .satisfies(timer -> {
+                    assertThat(timer.getId().getTag("site")).isEqualTo(getClass().getName() + ".sleepInMonitor");
+                    assertThat(timer.count()).isEqualTo(1);
+                    assertThat(timer.max(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(50);
+                });
+    }
+
+    private void sleepInMonitor() {
+        synchronized (monitor) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void sleepUnderLock() {
+        lock.lock();
+        try {
+            Thread.sleep(50);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.upstream;
+
+import com.service.fabrickapi.configuration.LimiterProperties;
+import com.service.fabrickapi.exception.FabrickRestServiceException;
+import com.service.fabrickapi.exception.UpstreamUnavailableException;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AdaptiveLimiterTest {
+    static final String BALANCE = """
+            {"status":"OK","error":[],"payload":{"accountId":"14537780","iban":"IT40L0326822300052849400440",
+            "currency":"EUR"}}
+            """;
+
+    SimpleMeterRegistry meterRegistry;
+    AtomicLong now;
+    Duration upstreamLatency;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        now = new AtomicLong();
+        upstreamLatency = Duration.ofMillis(20);
+    }
+
+    @Test
+    @DisplayName("limit converges just above the capacity of a simulated upstream, from above and from below - adaptive limiter test 📈")
+    void convergesOnSimulatedUpstream() {
+        for (var initialLimit : new int[]{4, 60}) {
+            var limiter = limiter(new LimiterProperties(true, initialLimit, 2, 200, Duration.ZERO, 0.9, 100_000));
+            round(limiter, UpstreamOperation.BALANCE, 1);
+
+            for (int round = 0; round < 300; round++) {
+                round(limiter, UpstreamOperation.BALANCE, limiter.limit(UpstreamOperation.BALANCE));
+                if (round >= 200)
+                    assertThat(limiter.limit(UpstreamOperation.BALANCE)).isBetween(10, 20);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("no-load round trip time follows an upstream that got slower for good - adaptive limiter test 📈")
+    void probesNoLoadRtt() {
+        var limiter = limiter(new LimiterProperties(true, 20, 2, 200, Duration.ZERO, 0.9, 10));
+        for (int i = 0; i < 10; i++)
+            round(limiter, UpstreamOperation.BALANCE, 1);
+        assertThat(limiter.noLoadRtt(UpstreamOperation.BALANCE)).isEqualTo(Duration.ofMillis(20));
+
+        upstreamLatency = Duration.ofMillis(50);
+        for (int i = 0; i < 20; i++)
+            round(limiter, UpstreamOperation.BALANCE, 1);
+
+        assertThat(limiter.noLoadRtt(UpstreamOperation.BALANCE)).isEqualTo(Duration.ofMillis(50));
+    }
+
+    @Test
+    @DisplayName("each operation keeps its own limit and no-load round trip time - adaptive limiter test 📈")
+    void limitsEachOperationApart() {
+        var limiter = limiter(new LimiterProperties(true, 20, 2, 200, Duration.ZERO, 0.9, 100_000));
+        round(limiter, UpstreamOperation.BALANCE, 1);
+        for (int round = 0; round < 100; round++)
+            round(limiter, UpstreamOperation.BALANCE, limiter.limit(UpstreamOperation.BALANCE));
+        var balanceLimit = limiter.limit(UpstreamOperation.BALANCE);
+
+        upstreamLatency = Duration.ofMillis(400);
+        for (int round = 0; round < 100; round++)
+            round(limiter, UpstreamOperation.TRANSACTIONS, 1);
+        upstreamLatency = Duration.ofMillis(20);
+        for (int round = 0; round < 10; round++)
+            round(limiter, UpstreamOperation.BALANCE, limiter.limit(UpstreamOperation.BALANCE));
+
+        assertThat(limiter.noLoadRtt(UpstreamOperation.BALANCE)).isEqualTo(Duration.ofMillis(20));
+        assertThat(limiter.noLoadRtt(UpstreamOperation.TRANSACTIONS)).isEqualTo(Duration.ofMillis(400));
+        assertThat(limiter.limit(UpstreamOperation.BALANCE)).isBetween(balanceLimit - 5, balanceLimit + 5);
+        assertThat(meterRegistry.get("fabrick.upstream.limit.no.load.rtt").tag("operation", "transactions").gauge().value())
+                .isEqualTo(400);
+    }
+
+    @Test
+    @DisplayName("timeouts and overload multiply the limit by the backoff ratio down to the minimum - adaptive limiter test 📈")
+    void backsOffOnDrops() {
+        var limiter = limiter(new LimiterProperties(true, 20, 4, 200, Duration.ZERO, 0.5, 1000));
+
+        assertThrows(FabrickRestServiceException.class, () -> limiter.call(UpstreamOperation.BALANCE, () -> {
+            throw new FabrickRestServiceException("504 Gateway Timeout", UpstreamFailure.TIMEOUT);
+        }));
+        assertThat(limiter.limit(UpstreamOperation.BALANCE)).isEqualTo(10);
+        for (int i = 0; i < 5; i++)
+            limiter.release(UpstreamOperation.BALANCE, limiter.acquire(UpstreamOperation.BALANCE), true);
+        assertThat(limiter.limit(UpstreamOperation.BALANCE)).isEqualTo(4);
+        assertThat(meterRegistry.get("fabrick.upstream.limit").tag("operation", "balance").gauge().value()).isEqualTo(4);
+        assertThat(limiter.limit(UpstreamOperation.TRANSFERS)).isEqualTo(20);
+    }
+
+    @Test
+    @DisplayName("calls beyond the limit wait up to max-wait for a slot, then are rejected - adaptive limiter test 📈")
+    void queuesThenRejects() throws Exception {
+        var limiter = limiter(new LimiterProperties(true, 2, 2, 200, Duration.ofSeconds(5), 0.9, 1000));
+        var first = limiter.acquire(UpstreamOperation.BALANCE);
+        limiter.acquire(UpstreamOperation.BALANCE);
+
+        var waited = new CountDownLatch(1);
+        Thread.ofVirtual().start(() -> {
+            limiter.acquire(UpstreamOperation.BALANCE);
+            waited.countDown();
+        });
+        assertThat(waited.await(200, TimeUnit.MILLISECONDS)).isFalse();
+        limiter.release(UpstreamOperation.BALANCE, first, false);
+        assertThat(waited.await(5, TimeUnit.SECONDS)).isTrue();
+
+        var rejecting = limiter(new LimiterProperties(true, 1, 1, 200, Duration.ZERO, 0.9, 1000));
+        rejecting.acquire(UpstreamOperation.BALANCE);
+        var rejected = assertThrows(UpstreamUnavailableException.class,
+                () -> rejecting.call(UpstreamOperation.BALANCE, () -> "balance"));
+        assertThat(rejected.getMessage()).isEqualTo("503 Service Unavailable - CONCURRENCY LIMIT 1 OF BALANCE REACHED");
+        assertThat(rejecting.call(UpstreamOperation.TRANSACTIONS, () -> "transactions")).isEqualTo("transactions");
+        assertThat(meterRegistry.get("fabrick.upstream.limit.rejected").tag("operation", "balance").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("limit shrinks toward the capacity of a local stub with injected latency under 48 callers - adaptive limiter test 📈")
+    void limitsCallsToLocalStub() throws Exception {
+        var stubInFlight = new AtomicInteger();
+        var stubMaxInFlight = new AtomicInteger();
+        var capacity = new Semaphore(8);
+        var body = BALANCE.getBytes(StandardCharsets.UTF_8);
+        var server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        var serverExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(serverExecutor);
+        server.createContext("/", exchange -> {
+            try (exchange) {
+                stubMaxInFlight.accumulateAndGet(stubInFlight.incrementAndGet(), Math::max);
+                // 8 calls served at once in 10ms each, the others queue: latency grows with concurrency
+                capacity.acquire();
+                try {
+                    Thread.sleep(10);
+                } finally {
+                    capacity.release();
+                }
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream outputStream = exchange.getResponseBody()) {
+                    outputStream.write(body);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                stubInFlight.decrementAndGet();
+            }
+        });
+        server.start();
+
+        var limiter = new AdaptiveLimiter(new LimiterProperties(true, 20, 4, 200, Duration.ofMillis(5), 0.9, 1000), meterRegistry);
+        var baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        var restTemplate = new RestTemplate();
+        var completed = new AtomicInteger();
+        var rejected = new AtomicInteger();
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        try (var callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 48; i++)
+                callers.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        try {
+                            limiter.call(UpstreamOperation.BALANCE, () -> restTemplate.getForObject(baseUrl + "/balance", String.class));
+                            completed.incrementAndGet();
+                        } catch (UpstreamUnavailableException e) {
+                            rejected.incrementAndGet();
+                            Thread.sleep(1);
+                        }
+                    }
+                    return null;
+                });
+        } finally {
+            server.stop(0);
+            serverExecutor.shutdownNow();
+        }
+
+        assertThat(completed).hasPositiveValue();
+        assertThat(rejected).hasPositiveValue();
+        assertThat(limiter.limit(UpstreamOperation.BALANCE)).isBetween(4, 20);
+        assertThat(stubMaxInFlight.get()).isLessThan(48);
+        assertThat(meterRegistry.get("fabrick.upstream.limit.rejected").tag("operation", "balance").counter().count())
+                .isEqualTo(rejected.get());
+    }
+
+    /**
+     * Makes calls at once against a simulated upstream serving 10 calls at once, the others queuing there.
+     */
+    private void round(AdaptiveLimiter limiter, UpstreamOperation operation, int calls) {
+        var starts = new ArrayList<Long>();
+        for (int i = 0; i < calls; i++)
+            starts.add(limiter.acquire(operation));
+        now.addAndGet(upstreamLatency.toNanos() * Math.max(10, calls) / 10);
+        starts.forEach(start -> limiter.release(operation, start, false));
+    }
+
+    private AdaptiveLimiter limiter(LimiterProperties limiterProperties) {
+        meterRegistry = new SimpleMeterRegistry();
+        return new AdaptiveLimiter(limiterProperties, meterRegistry, now::get);
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.upstream;
+
+import com.service.fabrickapi.configuration.ResilienceProperties;
+import com.service.fabrickapi.exception.UpstreamUnavailableException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CircuitBreakerTest {
+    static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    static final long SLOW = TimeUnit.SECONDS.toNanos(5);
+
+    AtomicLong now;
+    List<CircuitBreaker.Transition> transitions;
+    CircuitBreaker circuitBreaker;
+
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong();
+        transitions = new ArrayList<>();
+        var guard = new ResilienceProperties.Guard(10, 4, 50, Duration.ofSeconds(3), 80,
+                Duration.ofSeconds(30), 2, 10, Duration.ZERO);
+        circuitBreaker = new CircuitBreaker("BALANCE", guard, now::get, transitions::add);
+    }
+
+    @Test
+    @DisplayName("circuit opens at the failure rate threshold once minimum calls are recorded - circuit breaker test ⚡")
+    void opensAtFailureRate() {
+        call(false, FAST);
+        call(true, FAST);
+        call(true, FAST);
+        assertThat(circuitBreaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        call(false, FAST);
+
+        assertThat(circuitBreaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(transitions).extracting(CircuitBreaker.Transition::to).containsExactly(CircuitBreaker.State.OPEN);
+        var rejected = assertThrows(UpstreamUnavailableException.class, circuitBreaker::acquire);
+        assertThat(rejected.getMessage()).startsWith("503 Service Unavailable");
+        assertThat(rejected.getRetryAfter()).isEqualTo(Duration.ofSeconds(30));
+    }
+
+    @Test
+    @DisplayName("circuit opens at the slow call rate threshold even when calls succeed - circuit breaker test ⚡")
+    void opensAtSlowCallRate() {
+        for (int i = 0; i < 4; i++)
+            call(false, SLOW);
+
+        assertThat(circuitBreaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    @DisplayName("outcomes older than the window are forgotten - circuit breaker test ⚡")
+    void windowSlides() {
+        circuitBreaker = new CircuitBreaker("BALANCE", new ResilienceProperties.Guard(4, 4, 50, Duration.ofSeconds(3), 80,
+                Duration.ofSeconds(30), 2, 10, Duration.ZERO), now::get, transitions::add);
+        call(true, FAST);
+        for (int i = 0; i < 3; i++)
+            call(false, FAST);
+        assertThat(circuitBreaker.snapshot().failureRate()).isEqualTo(25);
+
+        call(false, FAST);
+
+        assertThat(circuitBreaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(circuitBreaker.snapshot().failureRate()).isZero();
+    }
+
+    @Test
+    @DisplayName("open circuit half-opens after its open duration and closes on successful trial calls - circuit breaker test ⚡")
+    void halfOpenCloses() {
+        open();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+
+        var first = circuitBreaker.acquire();
+        var second = circuitBreaker.acquire();
+        assertThat(circuitBreaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThrows(UpstreamUnavailableException.class, circuitBreaker::acquire);
+
+        circuitBreaker.record(first, FAST, false);
+        circuitBreaker.record(second, FAST, false);
+
+        assertThat(circuitBreaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(circuitBreaker.snapshot().transitions()).extracting(CircuitBreaker.Transition::to)
+                .containsExactly(CircuitBreaker.State.OPEN, CircuitBreaker.State.HALF_OPEN, CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    @DisplayName("failing trial calls reopen the circuit - circuit breaker test ⚡")
+    void halfOpenReopens() {
+        open();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+
+        call(true, FAST);
+        call(false, FAST);
+
+        assertThat(circuitBreaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThrows(UpstreamUnavailableException.class, circuitBreaker::acquire);
+    }
+
+    @Test
+    @DisplayName("outcomes of calls permitted before a transition are ignored - circuit breaker test ⚡")
+    void staleOutcomesIgnored() {
+        var stale = circuitBreaker.acquire();
+        open();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        var trial = circuitBreaker.acquire();
+
+        circuitBreaker.record(stale, FAST, true);
+        circuitBreaker.record(stale, FAST, true);
+
+        assertThat(circuitBreaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(circuitBreaker.snapshot().calls()).isZero();
+        circuitBreaker.release(trial);
+    }
+
+    private void open() {
+        for (int i = 0; i < 4; i++)
+            call(true, FAST);
+        assertThat(circuitBreaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    private void call(boolean failure, long nanos) {
+        circuitBreaker.record(circuitBreaker.acquire(), nanos, failure);
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.upstream;
+
+import com.service.fabrickapi.configuration.CoalescingProperties;
+import com.service.fabrickapi.exception.FabrickRestServiceException;
+import com.service.fabrickapi.model.dto.AccountBalanceDTO;
+import com.service.fabrickapi.service.FabrickRestService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class CoalescingFabrickRestServiceTest {
+
+    FabrickRestService fabrickRestService;
+    SimpleMeterRegistry meterRegistry;
+    ExecutorService executor;
+    CountDownLatch release;
+    AccountBalanceDTO accountBalanceDTO;
+
+    @BeforeEach
+    void setUp() {
+        fabrickRestService = mock(FabrickRestService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        release = new CountDownLatch(1);
+        accountBalanceDTO = new AccountBalanceDTO("1234567890", "IT12345678901234567890", "12345", "67890", "IT",
+                "123", "ABC123", "987654321", "MyAlias", "Savings Account", "John Doe", "2022-01-29", "EUR");
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("concurrent identical reads share one upstream call - coalescing test 🔗")
+    void concurrentReadsShareOneCall() throws Exception {
+        when(fabrickRestService.getAccountBalance(anyLong())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(accountBalanceDTO);
+        });
+        var service = new CoalescingFabrickRestService(fabrickRestService, new CoalescingProperties(true, 256, Duration.ofSeconds(5)), meterRegistry);
+
+        var results = submit(20, () -> service.getAccountBalance(1L));
+        awaitCollapsed(19);
+        release.countDown();
+
+        for (var result : results)
+            assertThat(result.get(5, TimeUnit.SECONDS)).contains(accountBalanceDTO);
+        verify(fabrickRestService, times(1)).getAccountBalance(1L);
+        assertThat(service.collapseRatio()).isEqualTo(0.95);
+
+        service.getAccountBalance(1L);
+        verify(fabrickRestService, times(2)).getAccountBalance(1L);
+    }
+
+    @Test
+    @DisplayName("callers beyond max waiters make their own call, failures reach every waiter - coalescing test 🔗")
+    void overflowAndFailure() throws Exception {
+        when(fabrickRestService.getAccountBalance(anyLong())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            throw new FabrickRestServiceException("503 Service Unavailable");
+        });
+        var service = new CoalescingFabrickRestService(fabrickRestService, new CoalescingProperties(true, 2, Duration.ofSeconds(5)), meterRegistry);
+
+        var results = submit(5, () -> service.getAccountBalance(1L));
+        awaitCollapsed(2);
+        while (meterRegistry.counter("fabrick.coalescing.calls", "outcome", "overflow").count() < 2)
+            Thread.onSpinWait();
+        release.countDown();
+
+        for (var result : results) {
+            var exception = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertThat(exception.getCause()).hasMessage("503 Service Unavailable");
+        }
+        verify(fabrickRestService, times(3)).getAccountBalance(1L);
+    }
+
+    @Test
+    @DisplayName("an error of the leader reaches every waiter and frees the key - coalescing test 🔗")
+    void leaderErrorCompletesWaiters() throws Exception {
+        when(fabrickRestService.getAccountBalance(anyLong())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            throw new StackOverflowError("leader error");
+        }).thenReturn(Optional.of(accountBalanceDTO));
+        var service = new CoalescingFabrickRestService(fabrickRestService, new CoalescingProperties(true, 256, Duration.ofSeconds(5)), meterRegistry);
+
+        var results = submit(5, () -> service.getAccountBalance(1L));
+        awaitCollapsed(4);
+        release.countDown();
+
+        for (var result : results) {
+            var exception = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertThat(exception.getCause()).isInstanceOf(StackOverflowError.class);
+        }
+        assertThat(service.getAccountBalance(1L)).contains(accountBalanceDTO);
+    }
+
+    @Test
+    @DisplayName("waiters of a cancelled leader call again instead of failing - coalescing test 🔗")
+    void cancelledLeaderIsCalledAgain() throws Exception {
+        when(fabrickRestService.getAccountBalance(anyLong())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            throw new FabrickRestServiceException("I/O error: Closed by interrupt", UpstreamFailure.CANCELLED);
+        }).thenReturn(Optional.of(accountBalanceDTO));
+        var service = new CoalescingFabrickRestService(fabrickRestService, new CoalescingProperties(true, 256, Duration.ofSeconds(5)), meterRegistry);
+
+        var results = submit(5, () -> service.getAccountBalance(1L));
+        awaitCollapsed(4);
+        release.countDown();
+
+        var failed = 0;
+        for (var result : results) {
+            try {
+                assertThat(result.get(5, TimeUnit.SECONDS)).contains(accountBalanceDTO);
+            } catch (ExecutionException e) {
+                assertThat(e.getCause()).hasMessage("I/O error: Closed by interrupt");
+                failed++;
+            }
+        }
+        assertThat(failed).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("a waiter gives up on a call in flight past max wait and frees its slot - coalescing test 🔗")
+    void waitIsBounded() throws Exception {
+        when(fabrickRestService.getAccountBalance(anyLong())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(accountBalanceDTO);
+        });
+        var service = new CoalescingFabrickRestService(fabrickRestService, new CoalescingProperties(true, 1, Duration.ofMillis(100)), meterRegistry);
+
+        var leader = executor.submit(() -> service.getAccountBalance(1L));
+        while (meterRegistry.counter("fabrick.coalescing.calls", "outcome", "leader").count() < 1)
+            Thread.onSpinWait();
+
+        var exception = assertThrows(FabrickRestServiceException.class, () -> service.getAccountBalance(1L));
+        assertThat(exception).hasMessage("504 Gateway Timeout");
+        assertThrows(FabrickRestServiceException.class, () -> service.getAccountBalance(1L));
+        assertThat(meterRegistry.counter("fabrick.coalescing.calls", "outcome", "overflow").count()).isZero();
+        release.countDown();
+        assertThat(leader.get(5, TimeUnit.SECONDS)).contains(accountBalanceDTO);
+    }
+
+    private <T> List<Future<T>> submit(int callers, Callable<T> call) {
+        var results = new ArrayList<Future<T>>();
+        for (int i = 0; i < callers; i++)
+            results.add(executor.submit(call));
+        return results;
+    }
+
+    private void awaitCollapsed(int expected) {
+        while (meterRegistry.counter("fabrick.coalescing.calls", "outcome", "collapsed").count() < expected)
+            Thread.onSpinWait();
+    }
+}
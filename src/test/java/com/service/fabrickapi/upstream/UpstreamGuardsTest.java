@@ -0,0 +1,180 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.upstream;
+
+import com.service.fabrickapi.configuration.ResilienceProperties;
+import com.service.fabrickapi.exception.FabrickRestServiceException;
+import com.service.fabrickapi.exception.UpstreamUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class UpstreamGuardsTest {
+
+    SimpleMeterRegistry meterRegistry;
+    ExecutorService executor;
+    UpstreamGuards upstreamGuards;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        var guard = new ResilienceProperties.Guard(10, 4, 50, Duration.ofSeconds(3), 80,
+                Duration.ofSeconds(30), 2, 1, Duration.ZERO);
+        upstreamGuards = new UpstreamGuards(new ResilienceProperties(true, guard, guard, guard), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("failing calls open the circuit of their operation only, which then fails fast - upstream guards test 🛡")
+    void failuresOpenCircuit() {
+        for (int i = 0; i < 4; i++)
+            assertThrows(FabrickRestServiceException.class, () -> upstreamGuards.call(UpstreamOperation.BALANCE, () -> {
+                throw new FabrickRestServiceException("I/O error on GET request: Connection refused");
+            }));
+
+        var rejected = assertThrows(UpstreamUnavailableException.class,
+                () -> upstreamGuards.call(UpstreamOperation.BALANCE, () -> "never called"));
+
+        assertThat(rejected.getMessage()).contains("CIRCUIT BALANCE OPEN");
+        assertThat(upstreamGuards.call(UpstreamOperation.TRANSACTIONS, () -> "ok")).isEqualTo("ok");
+        assertThat(upstreamGuards.report().get(UpstreamOperation.BALANCE).circuit().state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(meterRegistry.get("fabrick.upstream.circuit.state")
+                .tags("operation", "balance", "state", "open").gauge().value()).isEqualTo(1);
+        assertThat(meterRegistry.get("fabrick.upstream.circuit.transitions")
+                .tags("operation", "balance", "from", "closed", "to", "open").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("fabrick.upstream.calls")
+                .tags("operation", "balance", "outcome", "not_permitted").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("client errors answered by the Fabrick API do not count as failures - upstream guards test 🛡")
+    void clientErrorsNotFailures() {
+        for (int i = 0; i < 10; i++)
+            assertThrows(FabrickRestServiceException.class, () -> upstreamGuards.call(UpstreamOperation.BALANCE, () -> {
+                throw new FabrickRestServiceException("404 Not Found: \"{\"status\":\"KO\"}\"");
+            }));
+
+        assertThat(upstreamGuards.report().get(UpstreamOperation.BALANCE).circuit().state()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(meterRegistry.get("fabrick.upstream.calls")
+                .tags("operation", "balance", "outcome", "success").counter().count()).isEqualTo(10);
+    }
+
+    @Test
+    @DisplayName("calls rejected by the adaptive limiter are not recorded by the circuit - upstream guards test 🛡")
+    void limiterRejectionsNotRecorded() {
+        for (int i = 0; i < 10; i++)
+            assertThrows(UpstreamUnavailableException.class, () -> upstreamGuards.call(UpstreamOperation.BALANCE, () -> {
+                throw new UpstreamUnavailableException("503 Service Unavailable - CONCURRENCY LIMIT 4 OF BALANCE REACHED", Duration.ofSeconds(1));
+            }));
+
+        assertThat(upstreamGuards.report().get(UpstreamOperation.BALANCE).circuit().calls()).isZero();
+        assertThat(meterRegistry.get("fabrick.upstream.calls")
+                .tags("operation", "balance", "outcome", "limited").counter().count()).isEqualTo(10);
+        assertThat(meterRegistry.get("fabrick.upstream.calls")
+                .tags("operation", "balance", "outcome", "success").counter().count()).isZero();
+    }
+
+    @Test
+    @DisplayName("a half-open trial call ending with an Error hands its permit back - upstream guards test 🛡")
+    void errorReleasesTrialPermit() {
+        var now = new AtomicLong();
+        var guard = new ResilienceProperties.Guard(10, 4, 50, Duration.ofSeconds(3), 80,
+                Duration.ofSeconds(30), 2, 1, Duration.ZERO);
+        var guards = new UpstreamGuards(new ResilienceProperties(true, guard, guard, guard), new SimpleMeterRegistry(), now::get);
+        for (int i = 0; i < 4; i++)
+            assertThrows(FabrickRestServiceException.class, () -> guards.call(UpstreamOperation.BALANCE, () -> {
+                throw new FabrickRestServiceException("I/O error on GET request: Connection refused");
+            }));
+        now.addAndGet(Duration.ofSeconds(31).toNanos());
+
+        for (int i = 0; i < 2; i++)
+            assertThrows(StackOverflowError.class, () -> guards.call(UpstreamOperation.BALANCE, () -> {
+                throw new StackOverflowError();
+            }));
+
+        assertThat(guards.report().get(UpstreamOperation.BALANCE).circuit().state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(guards.call(UpstreamOperation.BALANCE, () -> "ok")).isEqualTo("ok");
+        assertThat(guards.report().get(UpstreamOperation.BALANCE).availableCalls()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("a full bulkhead rejects calls of its operation and frees its slot after the call - upstream guards test 🛡")
+    void bulkheadFull() throws Exception {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var inFlight = executor.submit(() -> upstreamGuards.call(UpstreamOperation.TRANSFERS, () -> {
+            started.countDown();
+            try {
+                return release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        var rejected = assertThrows(UpstreamUnavailableException.class,
+                () -> upstreamGuards.call(UpstreamOperation.TRANSFERS, () -> "never called"));
+
+        assertThat(rejected.getMessage()).contains("BULKHEAD TRANSFERS FULL");
+        assertThat(rejected.getRetryAfter()).isEqualTo(Duration.ofSeconds(1));
+        assertThat(upstreamGuards.report().get(UpstreamOperation.TRANSFERS).availableCalls()).isZero();
+
+        release.countDown();
+        assertThat(inFlight.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(upstreamGuards.call(UpstreamOperation.TRANSFERS, () -> "ok")).isEqualTo("ok");
+        assertThat(meterRegistry.get("fabrick.upstream.bulkhead.available").tag("operation", "transfers").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("disabled guards let every call through - upstream guards test 🛡")
+    void disabled() {
+        var guards = UpstreamGuards.disabled();
+
+        for (int i = 0; i < 20; i++)
+            assertThrows(FabrickRestServiceException.class, () -> guards.call(UpstreamOperation.BALANCE, () -> {
+                throw new FabrickRestServiceException("I/O error on GET request: Connection refused");
+            }));
+
+        assertThat(guards.call(UpstreamOperation.BALANCE, () -> "ok")).isEqualTo("ok");
+        assertThat(guards.report()).isEmpty();
+    }
+}
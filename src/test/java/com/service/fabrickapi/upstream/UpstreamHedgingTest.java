@@ -0,0 +1,196 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.upstream;
+
+import com.service.fabrickapi.configuration.HedgeProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.net.SocketException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.http.HttpStatus.BAD_GATEWAY;
+
+class UpstreamHedgingTest {
+
+    SimpleMeterRegistry meterRegistry;
+    AtomicInteger attempts;
+    UpstreamHedging upstreamHedging;
+
+    @BeforeEach
+    void setUp() {
+        attempts = new AtomicInteger();
+        upstreamHedging = hedging(new HedgeProperties(true, 95, Duration.ofMillis(100), Duration.ofSeconds(1), 100, 10, 0.05, 10),
+                System::nanoTime);
+    }
+
+    @AfterEach
+    void tearDown() {
+        upstreamHedging.shutdown();
+    }
+
+    @Test
+    @DisplayName("a read unanswered after the hedge delay is sent again and the slower attempt is cancelled - upstream hedging test 🦔")
+    void hedgesSlowRead() throws InterruptedException {
+        warmUp();
+        var cancelled = new CountDownLatch(1);
+        var failure = new AtomicReference<UpstreamFailure>();
+
+        var start = System.nanoTime();
+        var balance = upstreamHedging.call(UpstreamOperation.BALANCE, () -> {
+            if (attempts.incrementAndGet() > 11)
+                return "hedge";
+            try {
+                Thread.sleep(10_000);
+                return "primary";
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                var exception = new ResourceAccessException("I/O error", new SocketException("Closed by interrupt"));
+                failure.set(UpstreamFailure.of(exception));
+                cancelled.countDown();
+                throw exception;
+            }
+        });
+
+        assertThat(balance).isEqualTo("hedge");
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+        assertThat(cancelled.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(failure.get()).isEqualTo(UpstreamFailure.CANCELLED);
+        assertThat(count("fabrick.upstream.hedge.calls", "outcome", "hedged")).isEqualTo(1);
+        assertThat(count("fabrick.upstream.hedge.wins", "winner", "hedge")).isEqualTo(1);
+        assertThat(count("fabrick.upstream.hedge.wins", "winner", "primary")).isZero();
+    }
+
+    @Test
+    @DisplayName("a read answered within the hedge delay is made once - upstream hedging test 🦔")
+    void fastReadIsNotHedged() {
+        warmUp();
+
+        var balance = upstreamHedging.call(UpstreamOperation.BALANCE, () -> "attempt " + attempts.incrementAndGet());
+
+        assertThat(balance).isEqualTo("attempt 11");
+        assertThat(attempts).hasValue(11);
+        assertThat(count("fabrick.upstream.hedge.calls", "outcome", "not_hedged")).isEqualTo(11);
+        assertThat(count("fabrick.upstream.hedge.calls", "outcome", "hedged")).isZero();
+        assertThat(upstreamHedging.delay(UpstreamOperation.TRANSACTIONS)).isNull();
+        assertThat(upstreamHedging.delay(UpstreamOperation.TRANSFERS)).isNull();
+        assertThat(upstreamHedging.call(UpstreamOperation.TRANSFERS, () -> "transfer")).isEqualTo("transfer");
+    }
+
+    @Test
+    @DisplayName("a read failing before the hedge delay fails without a hedge - upstream hedging test 🦔")
+    void failureIsNotHedged() {
+        warmUp();
+
+        var exception = assertThrows(HttpServerErrorException.class, () -> upstreamHedging.call(UpstreamOperation.BALANCE, () -> {
+            attempts.incrementAndGet();
+            throw new HttpServerErrorException(BAD_GATEWAY);
+        }));
+
+        assertThat(exception.getStatusCode()).isEqualTo(BAD_GATEWAY);
+        assertThat(attempts).hasValue(11);
+        assertThat(count("fabrick.upstream.hedge.calls", "outcome", "hedged")).isZero();
+    }
+
+    @Test
+    @DisplayName("hedges stop once the hedge budget is spent - upstream hedging test 🦔")
+    void budgetBoundsHedges() {
+        upstreamHedging.shutdown();
+        upstreamHedging = hedging(new HedgeProperties(true, 95, Duration.ofMillis(100), Duration.ofSeconds(1), 100, 10, 0, 1),
+                System::nanoTime);
+        warmUp();
+
+        for (int i = 0; i < 2; i++)
+            assertThat(upstreamHedging.call(UpstreamOperation.BALANCE, slowRead(Duration.ofMillis(300)))).isEqualTo("read");
+
+        assertThat(attempts).hasValue(13);
+        assertThat(count("fabrick.upstream.hedge.calls", "outcome", "hedged")).isEqualTo(1);
+        assertThat(count("fabrick.upstream.hedge.calls", "outcome", "budget_exhausted")).isEqualTo(1);
+        assertThat(meterRegistry.get("fabrick.upstream.hedge.budget").tag("operation", "balance").gauge().value()).isZero();
+    }
+
+    @Test
+    @DisplayName("the hedge delay is the percentile of the recent read latencies, within its bounds - upstream hedging test 🦔")
+    void delayFollowsPercentile() {
+        var now = new AtomicLong();
+        upstreamHedging.shutdown();
+        upstreamHedging = hedging(new HedgeProperties(true, 95, Duration.ofMillis(1), Duration.ofSeconds(1), 20, 20, 0.05, 10),
+                now::get);
+
+        for (int latency = 1; latency <= 19; latency++) {
+            var millis = latency;
+            upstreamHedging.call(UpstreamOperation.BALANCE, () -> now.addAndGet(Duration.ofMillis(millis).toNanos()));
+        }
+        assertThat(upstreamHedging.delay(UpstreamOperation.BALANCE)).isNull();
+
+        upstreamHedging.call(UpstreamOperation.BALANCE, () -> now.addAndGet(Duration.ofMillis(20).toNanos()));
+
+        assertThat(upstreamHedging.delay(UpstreamOperation.BALANCE)).isEqualTo(Duration.ofMillis(19));
+        assertThat(meterRegistry.get("fabrick.upstream.hedge.delay").tag("operation", "balance").gauge().value()).isEqualTo(19);
+    }
+
+    private void warmUp() {
+        for (int i = 0; i < 10; i++)
+            upstreamHedging.call(UpstreamOperation.BALANCE, () -> attempts.incrementAndGet());
+        assertThat(upstreamHedging.delay(UpstreamOperation.BALANCE)).isEqualTo(Duration.ofMillis(100));
+    }
+
+    private Supplier<String> slowRead(Duration latency) {
+        return () -> {
+            attempts.incrementAndGet();
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ResourceAccessException("I/O error");
+            }
+            return "read";
+        };
+    }
+
+    private double count(String name, String key, String value) {
+        var counter = meterRegistry.find(name).tag("operation", "balance").tag(key, value).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private UpstreamHedging hedging(HedgeProperties hedgeProperties, LongSupplier nanoTime) {
+        meterRegistry = new SimpleMeterRegistry();
+        return new UpstreamHedging(hedgeProperties, meterRegistry, nanoTime);
+    }
+}
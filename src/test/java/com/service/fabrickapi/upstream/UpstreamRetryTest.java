@@ -0,0 +1,169 @@
+/*
+ *
+ *  * Copyright (c) 2024 Berk Delibalta
+ *  *
+ *  * Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  * of this software and associated documentation files (the "Software"), to deal
+ *  * in the Software without restriction, including without limitation the rights
+ *  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  * copies of the Software, and to permit persons to whom the Software is
+ *  * furnished to do so, subject to the following conditions:
+ *  *
+ *  * The above copyright notice and this permission notice shall be included in
+ *  * all copies or substantial portions of the Software.
+ *  *
+ *  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  * THE SOFTWARE.
+ *
+ */
+
+package com.service.fabrickapi.upstream;
+
+import com.service.fabrickapi.configuration.RetryProperties;
+import com.service.fabrickapi.exception.FabrickRestServiceException;
+import com.service.fabrickapi.exception.UpstreamUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class UpstreamRetryTest {
+
+    SimpleMeterRegistry meterRegistry;
+    List<Duration> sleeps;
+    AtomicInteger attempts;
+    UpstreamRetry upstreamRetry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        sleeps = new ArrayList<>();
+        attempts = new AtomicInteger();
+        upstreamRetry = retry(new RetryProperties(true, 3, Duration.ofMillis(100), Duration.ofSeconds(2), 0.1, 10));
+    }
+
+    @Test
+    @DisplayName("upstream failures are classified by status and by I/O cause - upstream retry test 🔁")
+    void classification() {
+        assertThat(UpstreamFailure.of(new HttpClientErrorException(HttpStatus.NOT_FOUND))).isEqualTo(UpstreamFailure.CLIENT_ERROR);
+        assertThat(UpstreamFailure.of(new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS))).isEqualTo(UpstreamFailure.THROTTLED);
+        assertThat(UpstreamFailure.of(new HttpServerErrorException(HttpStatus.BAD_GATEWAY))).isEqualTo(UpstreamFailure.UNAVAILABLE);
+        assertThat(UpstreamFailure.of(new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR))).isEqualTo(UpstreamFailure.SERVER_ERROR);
+        assertThat(UpstreamFailure.of(new ResourceAccessException("I/O error", new ConnectException("Connection refused"))))
+                .isEqualTo(UpstreamFailure.CONNECT_FAILED);
+        assertThat(UpstreamFailure.of(new ResourceAccessException("I/O error", new SocketTimeoutException("Read timed out"))))
+                .isEqualTo(UpstreamFailure.TIMEOUT);
+        assertThat(UpstreamFailure.of(new FabrickRestServiceException("500 Invalid json Error"))).isEqualTo(UpstreamFailure.SERVER_ERROR);
+        assertThat(UpstreamFailure.of(new FabrickRestServiceException("payload missing"))).isEqualTo(UpstreamFailure.INVALID_RESPONSE);
+        assertThat(UpstreamFailure.of(new UpstreamUnavailableException("503 Service Unavailable - CIRCUIT BALANCE OPEN", Duration.ZERO)))
+                .isEqualTo(UpstreamFailure.REJECTED);
+    }
+
+    @Test
+    @DisplayName("idempotent calls failing for a transient reason are retried after a jittered backoff - upstream retry test 🔁")
+    void retriesTransientFailures() {
+        var result = upstreamRetry.call(UpstreamOperation.BALANCE, true, () -> {
+            if (attempts.incrementAndGet() < 3)
+                throw new FabrickRestServiceException("503 Service Unavailable", UpstreamFailure.UNAVAILABLE);
+            return "ok";
+        });
+
+        assertThat(result).isEqualTo("ok");
+        assertThat(attempts).hasValue(3);
+        assertThat(sleeps).hasSize(2);
+        assertThat(sleeps.get(0)).isBetween(Duration.ofMillis(100), Duration.ofMillis(300));
+        assertThat(sleeps.get(1)).isBetween(Duration.ofMillis(100), sleeps.get(0).multipliedBy(3));
+        assertThat(meterRegistry.get("fabrick.upstream.retries")
+                .tags("operation", "balance", "failure", "unavailable", "outcome", "retried").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("backoff never exceeds max-backoff - upstream retry test 🔁")
+    void backoffCapped() {
+        var backoff = 100L;
+        for (int i = 0; i < 50; i++) {
+            backoff = upstreamRetry.nextBackoff(backoff);
+            assertThat(backoff).isBetween(100L, 2000L);
+        }
+    }
+
+    @Test
+    @DisplayName("client errors, rejected calls and non-idempotent calls are not retried - upstream retry test 🔁")
+    void notRetried() {
+        assertThrows(FabrickRestServiceException.class, () -> upstreamRetry.call(UpstreamOperation.BALANCE, true, () -> {
+            attempts.incrementAndGet();
+            throw new FabrickRestServiceException("404 Not Found", UpstreamFailure.CLIENT_ERROR);
+        }));
+        assertThrows(UpstreamUnavailableException.class, () -> upstreamRetry.call(UpstreamOperation.BALANCE, true, () -> {
+            attempts.incrementAndGet();
+            throw new UpstreamUnavailableException("503 Service Unavailable - CIRCUIT BALANCE OPEN", Duration.ofSeconds(30));
+        }));
+        assertThrows(FabrickRestServiceException.class, () -> upstreamRetry.call(UpstreamOperation.TRANSFERS, false, () -> {
+            attempts.incrementAndGet();
+            throw new FabrickRestServiceException("504 Gateway Timeout", UpstreamFailure.UNAVAILABLE);
+        }));
+
+        assertThat(attempts).hasValue(3);
+        assertThat(sleeps).isEmpty();
+    }
+
+    @Test
+    @DisplayName("the retry budget stops retries once its tokens are spent - upstream retry test 🔁")
+    void budgetExhausted() {
+        meterRegistry = new SimpleMeterRegistry();
+        upstreamRetry = retry(new RetryProperties(true, 3, Duration.ofMillis(100), Duration.ofSeconds(2), 0.1, 2));
+
+        for (int i = 0; i < 5; i++)
+            assertThrows(FabrickRestServiceException.class, () -> upstreamRetry.call(UpstreamOperation.TRANSACTIONS, true, () -> {
+                attempts.incrementAndGet();
+                throw new FabrickRestServiceException("I/O error", UpstreamFailure.TIMEOUT);
+            }));
+
+        assertThat(attempts).hasValue(7);
+        assertThat(meterRegistry.get("fabrick.upstream.retries")
+                .tags("operation", "transactions", "failure", "timeout", "outcome", "budget_exhausted").counter().count()).isEqualTo(4);
+        assertThat(meterRegistry.get("fabrick.upstream.retry.budget").tag("operation", "transactions").gauge().value())
+                .isLessThan(1);
+    }
+
+    @Test
+    @DisplayName("the retry budget refills with calls up to its capacity - upstream retry test 🔁")
+    void budgetRefills() {
+        var budget = new RetryBudget(0.5, 1);
+
+        assertThat(budget.tryWithdraw()).isTrue();
+        assertThat(budget.tryWithdraw()).isFalse();
+        budget.deposit();
+        assertThat(budget.tryWithdraw()).isFalse();
+        budget.deposit();
+        assertThat(budget.tryWithdraw()).isTrue();
+        for (int i = 0; i < 10; i++)
+            budget.deposit();
+        assertThat(budget.tokens()).isEqualTo(1);
+    }
+
+    private UpstreamRetry retry(RetryProperties retryProperties) {
+        return new UpstreamRetry(retryProperties, meterRegistry, sleeps::add,
+                (origin, bound) -> ThreadLocalRandom.current().nextLong(origin, bound));
+    }
+}